@@ -63,6 +63,36 @@ public final class Environment {
 	 */
 	public static final String QUEUEINGPROCESSOR_BATCHSIZE = "hibernate.search.batch_size";
 
+	/**
+	 * Number of threads used to send the changes of a single transaction to the different
+	 * indexes or shards it affects in parallel, so that with synchronous execution the
+	 * transaction waits for the slowest index rather than for all of them in sequence.
+	 * Defaults to 1: the indexes are processed one after the other by the committing thread.
+	 */
+	public static final String WORKER_DISPATCH_THREADPOOL_SIZE = "hibernate.search.worker.dispatch.thread_pool.size";
+
+	/**
+	 * Number of threads used to build the Lucene Documents of the changed entities. When enabled the
+	 * committing thread reads and copies the indexed properties of each entity and applies the class
+	 * bridges, while field bridges and the assembly of the Document run in a dedicated threadpool.
+	 * Entities using an analyzer discriminator, or having field bridges applied to properties which are
+	 * not plain values (primitives and their wrappers, enums, strings, numbers, dates, ...) or collections
+	 * of them, are always processed by the committing thread: such bridges could otherwise navigate the
+	 * entities from a different thread, outside of their session.
+	 * Defaults to 0: Documents are built by the committing thread.
+	 */
+	public static final String WORKER_DOCUMENT_BUILDING_THREADPOOL_SIZE = "hibernate.search.worker.document_building.thread_pool.size";
+
+	/**
+	 * Maximum number of changes of a single transaction kept in memory, including their Lucene Documents,
+	 * between the moment they are planned and the moment they are applied to the indexes. Further changes
+	 * are serialized to a temporary file, and read back in chunks of this size when applying them.
+	 * Indexes using the local Lucene backend commit the transaction once after its last chunk; other
+	 * backends apply each chunk on their own, so for them the transaction is not atomic.
+	 * Defaults to 0: all changes are kept in memory.
+	 */
+	public static final String WORKER_SPILL_THRESHOLD = "hibernate.search.worker.spill_threshold";
+
 	/**
 	 * Thread pool size
 	 * default 1
@@ -88,6 +118,22 @@ public final class Environment {
 	 */
 	public static final String READER_STRATEGY = READER_PREFIX + "." + "strategy";
 
+	/**
+	 * When using the shared reader strategy, the interval in milliseconds at which a background thread
+	 * checks the index for changes and refreshes the shared IndexReader: queries then get the current
+	 * IndexReader without checking the index, at the cost of seeing changes up to this interval later.
+	 * This is an index-scoped property and defaults to 0, checking the index when each query opens it.
+	 */
+	public static final String READER_REFRESH_PERIOD = READER_PREFIX + "." + "refresh_period";
+
+	/**
+	 * Fully qualified name of an {@link org.hibernate.search.indexes.spi.IndexReaderWarmer} implementation, or
+	 * <code>fieldcache</code> for the built-in warmer loading the FieldCaches needed by queries. The warmer is applied
+	 * to each new IndexReader before queries can use it. This is an index-scoped property; by default IndexReaders
+	 * are not warmed.
+	 */
+	public static final String READER_WARMER = READER_PREFIX + "." + "warmer";
+
 	/**
 	 * filter caching strategy class (must have a no-arg constructor and implement FilterCachingStrategy)
 	 */
@@ -193,6 +239,60 @@ public final class Environment {
 	 */
 	public static final String MAX_QUEUE_LENGTH = "max_queue_length";
 
+	/**
+	 * What the lucene backend does when the queue of an index using async execution is full:
+	 * <ul>
+	 * <li><code>block</code>: the producer blocks until some work has been processed (default)</li>
+	 * <li><code>caller_runs</code>: the producer applies its own changes, possibly out of order with queued work</li>
+	 * <li><code>spill_to_disk</code>: the changes are serialized to a temporary file and queued in order when
+	 * there is space again</li>
+	 * </ul>
+	 * This is an index-scoped property.
+	 */
+	public static final String QUEUE_OVERFLOW_POLICY = "queue_overflow_policy";
+
+	/**
+	 * When set to true on an index using async execution, an update or delete of an entity discards the
+	 * changes to the same entity still waiting in the queue, as they would be overwritten anyway.
+	 * This is an index-scoped property and defaults to false.
+	 */
+	public static final String QUEUE_COALESCING = "queue_coalescing";
+
+	/**
+	 * When set to true on an index using synchronous execution, the lucene backend applies the changes of
+	 * all transactions which arrived while a commit was being performed and then commits them together,
+	 * still blocking each transaction until its changes are committed.
+	 * This is an index-scoped property and defaults to false.
+	 */
+	public static final String GROUP_COMMIT = "group_commit";
+
+	/**
+	 * When {@link #GROUP_COMMIT} is enabled, maximum time in milliseconds a commit is delayed to wait for
+	 * more transactions to join the group. Defaults to 0: only transactions already waiting are grouped.
+	 */
+	public static final String GROUP_COMMIT_MAX_WAIT = "group_commit.max_wait";
+
+	/**
+	 * When {@link #GROUP_COMMIT} is enabled, maximum number of transactions sharing the same commit.
+	 * Defaults to 100.
+	 */
+	public static final String GROUP_COMMIT_MAX_BATCH_SIZE = "group_commit.max_batch_size";
+
+	/**
+	 * When using async execution, changes are committed to the index at this interval in milliseconds
+	 * rather than after each transaction, trading a bounded durability window for throughput.
+	 * Pending changes are committed as well on an explicit flush and at shutdown.
+	 * This is an index-scoped property and defaults to 0, committing each transaction.
+	 */
+	public static final String ASYNC_COMMIT_INTERVAL = "async_commit.interval";
+
+	/**
+	 * When {@link #ASYNC_COMMIT_INTERVAL} is set, changes are committed earlier than the interval
+	 * as soon as this number of operations was applied since the last commit.
+	 * Defaults to 0: no limit.
+	 */
+	public static final String ASYNC_COMMIT_MAX_OPERATIONS = "async_commit.max_operations";
+
 	/**
 	 * If nothing else is specified we use {@code Version.LUCENE_CURRENT} as the default Lucene version. This version
 	 * parameter was introduced by Lucene to attempt providing backwards compatibility when upgrading Lucene versions
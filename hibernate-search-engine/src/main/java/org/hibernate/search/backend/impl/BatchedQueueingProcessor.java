@@ -23,14 +23,31 @@
  */
 package org.hibernate.search.backend.impl;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.hibernate.search.Environment;
 import org.hibernate.search.backend.LuceneWork;
+import org.hibernate.search.backend.impl.lucene.LuceneBackendQueueProcessor;
+import org.hibernate.search.backend.spi.BackendQueueProcessor;
 import org.hibernate.search.backend.spi.Work;
+import org.hibernate.search.batchindexing.impl.Executors;
+import org.hibernate.search.engine.impl.DocumentBuildingPipeline;
 import org.hibernate.search.engine.spi.EntityIndexBinder;
+import org.hibernate.search.exception.ErrorHandler;
+import org.hibernate.search.exception.impl.ErrorContextBuilder;
+import org.hibernate.search.indexes.impl.DirectoryBasedIndexManager;
+import org.hibernate.search.indexes.spi.IndexManager;
 import org.hibernate.search.store.IndexShardingStrategy;
 import org.hibernate.search.util.configuration.impl.ConfigurationParseHelper;
 import org.hibernate.search.util.logging.impl.Log;
@@ -49,11 +66,86 @@ public class BatchedQueueingProcessor implements QueueingProcessor {
 
 	private final int batchSize;
 
+	/**
+	 * Applies the changes to different IndexManagers in parallel, null when disabled
+	 */
+	private final ExecutorService dispatchExecutor;
+
+	/**
+	 * Builds the Documents outside of the committing thread, null when disabled
+	 */
+	private final DocumentBuildingPipeline documentBuildingPipeline;
+
 	private final Map<Class<?>, EntityIndexBinder> entityIndexBinders;
 
-	public BatchedQueueingProcessor(Map<Class<?>, EntityIndexBinder> entityIndexBinders, Properties properties) {
+	/**
+	 * Notified of the works left unapplied when a transaction spilled to disk is only partially applied
+	 */
+	private final ErrorHandler errorHandler;
+
+	/**
+	 * Number of planned changes kept in memory before spilling them to disk, 0 when disabled
+	 */
+	private final int spillThreshold;
+
+	/**
+	 * Writes the spilled changes to disk when the Documents are built by the documentBuildingPipeline, null otherwise
+	 */
+	private final ExecutorService spillExecutor;
+
+	/**
+	 * Held while applying a transaction spilled to disk: it holds the exclusive lock of each local index
+	 * it changes until it's committed, so the transactions must not acquire them in different orders
+	 */
+	private final Object spilledTransactionLock = new Object();
+
+	public BatchedQueueingProcessor(Map<Class<?>, EntityIndexBinder> entityIndexBinders, Properties properties, ErrorHandler errorHandler) {
 		this.entityIndexBinders = entityIndexBinders;
+		this.errorHandler = errorHandler;
 		batchSize = ConfigurationParseHelper.getIntValue( properties, Environment.QUEUEINGPROCESSOR_BATCHSIZE, 0 );
+		int dispatchThreads = ConfigurationParseHelper.getIntValue( properties, Environment.WORKER_DISPATCH_THREADPOOL_SIZE, 1 );
+		if ( dispatchThreads > 1 ) {
+			log.debugf( "Dispatching changes to multiple indexes using %d threads", dispatchThreads );
+			ThreadPoolExecutor executor = Executors.newFixedThreadPool(
+					dispatchThreads,
+					"Index changes dispatcher",
+					Executors.QUEUE_MAX_LENGTH,
+					// transactions in flight might still dispatch after close(): run their changes inline
+					new Executors.CallerAlwaysRunsPolicy()
+			);
+			// idle threads can go away: a rebuilt SearchFactory replaces this instance
+			executor.setKeepAliveTime( 60, TimeUnit.SECONDS );
+			executor.allowCoreThreadTimeOut( true );
+			dispatchExecutor = executor;
+		}
+		else {
+			dispatchExecutor = null;
+		}
+		int documentBuildingThreads = ConfigurationParseHelper.getIntValue( properties, Environment.WORKER_DOCUMENT_BUILDING_THREADPOOL_SIZE, 0 );
+		if ( documentBuildingThreads > 0 ) {
+			log.debugf( "Building documents using %d threads", documentBuildingThreads );
+			documentBuildingPipeline = new DocumentBuildingPipeline( documentBuildingThreads );
+		}
+		else {
+			documentBuildingPipeline = null;
+		}
+		spillThreshold = ConfigurationParseHelper.getIntValue( properties, Environment.WORKER_SPILL_THRESHOLD, 0 );
+		if ( spillThreshold > 0 && documentBuildingPipeline != null ) {
+			// serializing the changes waits for their Documents: keep it off the committing thread too
+			ThreadPoolExecutor executor = Executors.newFixedThreadPool(
+					documentBuildingThreads,
+					"Transaction work spiller",
+					Executors.QUEUE_MAX_LENGTH,
+					// transactions in flight might still spill after close(): write their chunks inline
+					new Executors.CallerAlwaysRunsPolicy()
+			);
+			executor.setKeepAliveTime( 60, TimeUnit.SECONDS );
+			executor.allowCoreThreadTimeOut( true );
+			spillExecutor = executor;
+		}
+		else {
+			spillExecutor = null;
+		}
 	}
 
 	public void add(Work work, WorkQueue workQueue) {
@@ -68,10 +160,28 @@ public class BatchedQueueingProcessor implements QueueingProcessor {
 	}
 
 	public void prepareWorks(WorkQueue workQueue) {
-		workQueue.prepareWorkPlan();
+		if ( spillThreshold > 0 ) {
+			workQueue.prepareWorkPlan( documentBuildingPipeline, new SpillingLuceneWorkQueue( spillThreshold, entityIndexBinders, spillExecutor ) );
+		}
+		else {
+			workQueue.prepareWorkPlan( documentBuildingPipeline );
+		}
 	}
 
 	public void performWorks(WorkQueue workQueue) {
+		SpillingLuceneWorkQueue spilledQueue = workQueue.getSpilledQueue();
+		if ( spilledQueue != null ) {
+			if ( log.isTraceEnabled() ) {
+				log.tracef( "Lucene WorkQueue of %d works spilled to disk sent to backends", spilledQueue.size() );
+			}
+			try {
+				dispatchSpilledWorks( spilledQueue );
+			}
+			finally {
+				spilledQueue.clear();
+			}
+			return;
+		}
 		List<LuceneWork> sealedQueue = workQueue.getSealedQueue();
 		if ( log.isTraceEnabled() ) {
 			StringBuilder sb = new StringBuilder( "Lucene WorkQueue to send to backends:[ \n\t" );
@@ -85,19 +195,175 @@ public class BatchedQueueingProcessor implements QueueingProcessor {
 			sb.append( "]" );
 			log.trace( sb.toString() );
 		}
+		dispatchWorks( sealedQueue );
+	}
+
+	/**
+	 * Applies the changes one chunk at a time, so they never need to be all in memory.
+	 * The local Lucene indexes apply the chunks without committing them, the IndexWriter flushing them
+	 * to the Directory as needed, and commit once after the last one: readers never see part of the
+	 * transaction, and if a chunk fails the changes are rolled back.
+	 * The other backends apply each chunk on their own, so the transaction is not atomic for them: when
+	 * a chunk fails the works which were not applied are reported to the ErrorHandler before propagating
+	 * the failure.
+	 * The indexes are changed in the current thread, as only this thread can use the exclusive locks
+	 * it holds.
+	 */
+	private void dispatchSpilledWorks(SpillingLuceneWorkQueue spilledQueue) {
+		synchronized ( spilledTransactionLock ) {
+			// in the order they were changed, to be committed in the same order
+			Set<LuceneBackendQueueProcessor> localBackends = new LinkedHashSet<LuceneBackendQueueProcessor>();
+			boolean dispatchedToOtherBackends = false;
+			int dispatchedChunks = 0;
+			try {
+				Iterator<List<LuceneWork>> chunks = spilledQueue.chunks();
+				while ( chunks.hasNext() ) {
+					WorkQueuePerIndexSplitter context = splitPerIndex( chunks.next() );
+					for ( IndexManager indexManager : context.getIndexManagers() ) {
+						List<LuceneWork> queue = context.getIndexManagerQueue( indexManager );
+						LuceneBackendQueueProcessor localBackend = getLocalBackend( indexManager );
+						if ( localBackend == null ) {
+							dispatchedToOtherBackends = true;
+							indexManager.performOperations( queue, null );
+						}
+						else {
+							if ( !localBackends.contains( localBackend ) ) {
+								localBackend.beginUncommittedWork();
+								localBackends.add( localBackend );
+							}
+							localBackend.applyUncommittedWork( queue, null );
+						}
+					}
+					dispatchedChunks++;
+				}
+			}
+			catch (RuntimeException e) {
+				rollback( localBackends );
+				if ( dispatchedToOtherBackends ) {
+					reportUnappliedWorks( spilledQueue, dispatchedChunks, e );
+				}
+				throw e;
+			}
+			commit( localBackends );
+		}
+	}
+
+	/**
+	 * @return the backend applying the changes to a Lucene index in this JVM, null if the IndexManager
+	 * delegates them elsewhere
+	 */
+	private static LuceneBackendQueueProcessor getLocalBackend(IndexManager indexManager) {
+		if ( indexManager instanceof DirectoryBasedIndexManager ) {
+			BackendQueueProcessor backend = ( (DirectoryBasedIndexManager) indexManager ).getBackendQueueProcessor();
+			if ( backend instanceof LuceneBackendQueueProcessor ) {
+				return (LuceneBackendQueueProcessor) backend;
+			}
+		}
+		return null;
+	}
+
+	private static void commit(Collection<LuceneBackendQueueProcessor> localBackends) {
+		RuntimeException failure = null;
+		for ( LuceneBackendQueueProcessor localBackend : localBackends ) {
+			try {
+				localBackend.commitUncommittedWork();
+			}
+			catch (RuntimeException e) {
+				// keep going: the other indexes still need to be committed and unlocked
+				if ( failure == null ) {
+					failure = e;
+				}
+			}
+		}
+		if ( failure != null ) {
+			throw failure;
+		}
+	}
+
+	private static void rollback(Collection<LuceneBackendQueueProcessor> localBackends) {
+		for ( LuceneBackendQueueProcessor localBackend : localBackends ) {
+			try {
+				localBackend.rollbackUncommittedWork();
+			}
+			catch (RuntimeException e) {
+				log.debugf( e, "Unable to roll back the changes of a spilled transaction" );
+			}
+		}
+	}
+
+	/**
+	 * Reads the spilled works again to report the ones which were not applied: the works of the chunks not
+	 * dispatched yet, and the works of the previous chunks which were rolled back by a local index.
+	 *
+	 * @param dispatchedChunks the number of chunks dispatched before the failure
+	 */
+	private void reportUnappliedWorks(SpillingLuceneWorkQueue spilledQueue, int dispatchedChunks, RuntimeException failure) {
+		List<LuceneWork> unappliedWorks = new ArrayList<LuceneWork>();
+		try {
+			Iterator<List<LuceneWork>> chunks = spilledQueue.chunks();
+			for ( int chunkIndex = 0; chunks.hasNext(); chunkIndex++ ) {
+				List<LuceneWork> chunk = chunks.next();
+				if ( chunkIndex >= dispatchedChunks ) {
+					unappliedWorks.addAll( chunk );
+				}
+				else {
+					for ( LuceneWork work : chunk ) {
+						if ( isAppliedToLocalIndex( work ) ) {
+							unappliedWorks.add( work );
+						}
+					}
+				}
+			}
+		}
+		catch (RuntimeException e) {
+			log.debugf( e, "Unable to read the rest of the spilled works to report them" );
+		}
+		ErrorContextBuilder builder = new ErrorContextBuilder();
+		builder.errorThatOccurred( failure );
+		builder.allWorkToBeDone( unappliedWorks );
+		errorHandler.handle( builder.createErrorContext() );
+	}
+
+	private boolean isAppliedToLocalIndex(LuceneWork work) {
+		WorkQueuePerIndexSplitter context = splitPerIndex( Collections.singletonList( work ) );
+		for ( IndexManager indexManager : context.getIndexManagers() ) {
+			if ( getLocalBackend( indexManager ) != null ) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void dispatchWorks(List<LuceneWork> luceneWorks) {
+		splitPerIndex( luceneWorks ).commitOperations( null, dispatchExecutor );
+	}
+
+	private WorkQueuePerIndexSplitter splitPerIndex(List<LuceneWork> luceneWorks) {
 		WorkQueuePerIndexSplitter context = new WorkQueuePerIndexSplitter();
-		for ( LuceneWork work : sealedQueue ) {
+		for ( LuceneWork work : luceneWorks ) {
 			final Class<?> entityType = work.getEntityClass();
 			EntityIndexBinder entityIndexBinding = entityIndexBinders.get( entityType );
 			IndexShardingStrategy shardingStrategy = entityIndexBinding.getSelectionStrategy();
 			work.getWorkDelegate( TransactionalSelectionVisitor.INSTANCE )
 				.performOperation( work, shardingStrategy, context );
 		}
-		context.commitOperations( null );
+		return context;
 	}
 
 	public void cancelWorks(WorkQueue workQueue) {
 		workQueue.clear();
 	}
 
+	public void close() {
+		if ( dispatchExecutor != null ) {
+			dispatchExecutor.shutdown();
+		}
+		if ( documentBuildingPipeline != null ) {
+			documentBuildingPipeline.close();
+		}
+		if ( spillExecutor != null ) {
+			spillExecutor.shutdown();
+		}
+	}
+
 }
@@ -0,0 +1,63 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.backend.impl;
+
+import java.io.Serializable;
+import java.util.Map;
+
+import org.apache.lucene.document.Document;
+
+import org.hibernate.search.backend.AddLuceneWork;
+import org.hibernate.search.engine.impl.PendingDocument;
+
+/**
+ * An {@link AddLuceneWork} whose Document is still being built by the
+ * {@link org.hibernate.search.engine.impl.DocumentBuildingPipeline}:
+ * reading the Document blocks until it's ready. It is serialized as a plain AddLuceneWork.
+ *
+ * @author agent <agent@local>
+ */
+public final class DeferredAddLuceneWork extends AddLuceneWork {
+
+	private static final long serialVersionUID = -3290212412066421340L;
+
+	private final transient PendingDocument pendingDocument;
+
+	public DeferredAddLuceneWork(Serializable id, String idInString, Class<?> entity, PendingDocument pendingDocument) {
+		super( id, idInString, entity, null );
+		this.pendingDocument = pendingDocument;
+	}
+
+	@Override
+	public Document getDocument() {
+		return pendingDocument.getDocument();
+	}
+
+	@Override
+	public Map<String, String> getFieldToAnalyzerMap() {
+		return pendingDocument.getFieldToAnalyzerMap();
+	}
+
+	private Object writeReplace() {
+		return new AddLuceneWork( getId(), getIdInString(), getEntityClass(), getDocument(), getFieldToAnalyzerMap() );
+	}
+
+}
@@ -56,4 +56,9 @@ public interface QueueingProcessor {
 	 */
 	void cancelWorks(WorkQueue workQueue);
 
+	/**
+	 * Release resources
+	 */
+	void close();
+
 }
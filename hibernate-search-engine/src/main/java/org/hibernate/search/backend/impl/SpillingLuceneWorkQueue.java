@@ -0,0 +1,352 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.backend.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.hibernate.search.SearchException;
+import org.hibernate.search.backend.LuceneWork;
+import org.hibernate.search.engine.spi.EntityIndexBinder;
+import org.hibernate.search.indexes.serialization.spi.LuceneWorkSerializer;
+import org.hibernate.search.util.logging.impl.Log;
+import org.hibernate.search.util.logging.impl.LoggerFactory;
+
+/**
+ * The {@code LuceneWork} planned for a transaction, keeping at most {@code threshold} works in memory:
+ * when the threshold is reached the works are serialized and appended to a temporary file.
+ * The works are then read back in chunks by {@link #chunks()}, so that applying them to the indexes
+ * doesn't need more memory either.
+ * <p>
+ * The works can only be appended and iterated; {@link #clear()} deletes the file.
+ * If the file can't be written the works are kept in memory.
+ * <p>
+ * When an executor is provided the chunks are written by its threads: serializing the works waits for
+ * their Documents, which might still be built by the {@link org.hibernate.search.engine.impl.DocumentBuildingPipeline}.
+ * Only one chunk per queue is written at a time, so at most twice the threshold is kept in memory.
+ *
+ * @author agent <agent@local>
+ */
+public final class SpillingLuceneWorkQueue implements Iterable<LuceneWork> {
+
+	private static final Log log = LoggerFactory.make();
+
+	private final int threshold;
+	private final Map<Class<?>, EntityIndexBinder> entityIndexBinders;
+	private final ExecutorService spillExecutor;
+
+	private List<LuceneWork> buffer;
+	private int size = 0;
+	private LuceneWorkSerializer serializer;
+	private File file;
+	private DataOutputStream output;
+	private DataInputStream input;
+	private int spilledChunks = 0;
+	private boolean spillFailed = false;
+
+	/**
+	 * The chunk being written by the spillExecutor, and the handle on its completion
+	 */
+	private List<LuceneWork> spillingChunk;
+	private Future<Boolean> pendingSpill;
+
+	/**
+	 * @param threshold the number of works to keep in memory
+	 * @param entityIndexBinders used to find the serializer of the affected indexes
+	 */
+	public SpillingLuceneWorkQueue(int threshold, Map<Class<?>, EntityIndexBinder> entityIndexBinders) {
+		this( threshold, entityIndexBinders, null );
+	}
+
+	/**
+	 * @param threshold the number of works to keep in memory
+	 * @param entityIndexBinders used to find the serializer of the affected indexes
+	 * @param spillExecutor writes the chunks to disk, or null to write them in the current thread
+	 */
+	public SpillingLuceneWorkQueue(int threshold, Map<Class<?>, EntityIndexBinder> entityIndexBinders, ExecutorService spillExecutor) {
+		this.threshold = threshold;
+		this.entityIndexBinders = entityIndexBinders;
+		this.spillExecutor = spillExecutor;
+		this.buffer = new ArrayList<LuceneWork>();
+	}
+
+	public void add(LuceneWork work) {
+		buffer.add( work );
+		size++;
+		if ( buffer.size() >= threshold && !spillFailed ) {
+			spill();
+		}
+	}
+
+	public void addAll(List<LuceneWork> works) {
+		for ( LuceneWork work : works ) {
+			add( work );
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return {@code true} if some of the works were written to disk
+	 */
+	public boolean isSpilled() {
+		awaitPendingSpill();
+		return file != null;
+	}
+
+	/**
+	 * @return the works kept in memory, which are all the works unless {@link #isSpilled()}
+	 */
+	public List<LuceneWork> getBufferedWorks() {
+		awaitPendingSpill();
+		return buffer;
+	}
+
+	/**
+	 * Discards all works and deletes the temporary file.
+	 */
+	public void clear() {
+		awaitPendingSpill();
+		buffer = new ArrayList<LuceneWork>();
+		size = 0;
+		closeQuietly();
+		if ( file != null ) {
+			file.delete();
+			file = null;
+		}
+		spilledChunks = 0;
+	}
+
+	@Override
+	public Iterator<LuceneWork> iterator() {
+		final Iterator<List<LuceneWork>> chunks = chunks();
+		return new Iterator<LuceneWork>() {
+
+			private Iterator<LuceneWork> current = Collections.<LuceneWork>emptyList().iterator();
+
+			public boolean hasNext() {
+				while ( !current.hasNext() && chunks.hasNext() ) {
+					current = chunks.next().iterator();
+				}
+				return current.hasNext();
+			}
+
+			public LuceneWork next() {
+				if ( !hasNext() ) {
+					throw new NoSuchElementException();
+				}
+				return current.next();
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * @return the works in order, as the chunks spilled to disk followed by the ones still in memory
+	 */
+	public Iterator<List<LuceneWork>> chunks() {
+		awaitPendingSpill();
+		if ( file == null ) {
+			return Collections.singletonList( buffer ).iterator();
+		}
+		closeQuietly();
+		try {
+			input = new DataInputStream( new BufferedInputStream( new FileInputStream( file ) ) );
+		}
+		catch (IOException e) {
+			throw log.unableToReadSpilledTransactionWork( file.getName(), e );
+		}
+		final DataInputStream chunksInput = input;
+		final int chunksCount = spilledChunks;
+		return new Iterator<List<LuceneWork>>() {
+
+			private int nextChunk = 0;
+
+			public boolean hasNext() {
+				return nextChunk <= chunksCount;
+			}
+
+			public List<LuceneWork> next() {
+				if ( nextChunk > chunksCount ) {
+					throw new NoSuchElementException();
+				}
+				if ( nextChunk++ == chunksCount ) {
+					return buffer;
+				}
+				try {
+					byte[] data = new byte[chunksInput.readInt()];
+					chunksInput.readFully( data );
+					if ( nextChunk == chunksCount ) {
+						chunksInput.close();
+					}
+					return serializer.toLuceneWorks( data );
+				}
+				catch (IOException e) {
+					throw log.unableToReadSpilledTransactionWork( file.getName(), e );
+				}
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	private void spill() {
+		// don't let the committing thread get more than one chunk ahead of the disk
+		awaitPendingSpill();
+		if ( spillFailed ) {
+			return;
+		}
+		final List<LuceneWork> chunk = buffer;
+		buffer = new ArrayList<LuceneWork>();
+		if ( spillExecutor == null ) {
+			if ( !write( chunk ) ) {
+				keepInMemory( chunk );
+			}
+		}
+		else {
+			spillingChunk = chunk;
+			pendingSpill = spillExecutor.submit( new Callable<Boolean>() {
+				public Boolean call() {
+					return Boolean.valueOf( write( chunk ) );
+				}
+			} );
+		}
+	}
+
+	/**
+	 * Waits for the chunk being written by the spillExecutor, if any; this also makes the state
+	 * it changed visible to the current thread.
+	 */
+	private void awaitPendingSpill() {
+		if ( pendingSpill == null ) {
+			return;
+		}
+		boolean interrupted = false;
+		try {
+			while ( true ) {
+				try {
+					if ( !pendingSpill.get().booleanValue() ) {
+						keepInMemory( spillingChunk );
+					}
+					return;
+				}
+				catch (InterruptedException e) {
+					// the chunk is either going to be written or kept in memory: we need to know which
+					interrupted = true;
+				}
+				catch (ExecutionException e) {
+					log.unableToSpillTransactionWork( e );
+					keepInMemory( spillingChunk );
+					return;
+				}
+			}
+		}
+		finally {
+			pendingSpill = null;
+			spillingChunk = null;
+			if ( interrupted ) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * @return {@code false} if the chunk couldn't be written to disk
+	 */
+	private boolean write(List<LuceneWork> chunk) {
+		try {
+			if ( serializer == null ) {
+				// all serializers understand all entity types
+				EntityIndexBinder binder = entityIndexBinders.get( chunk.get( 0 ).getEntityClass() );
+				serializer = binder.getIndexManagers()[0].getSerializer();
+			}
+			byte[] data = serializer.toSerializedModel( chunk );
+			if ( file == null ) {
+				file = File.createTempFile( "hsearch-transaction-", ".bin" );
+				log.debugf( "Spilling indexing work of a transaction to %s", file );
+			}
+			if ( output == null ) {
+				output = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( file, true ) ) );
+			}
+			output.writeInt( data.length );
+			output.write( data );
+			spilledChunks++;
+			return true;
+		}
+		catch (IOException e) {
+			log.unableToSpillTransactionWork( e );
+		}
+		catch (SearchException e) {
+			log.unableToSpillTransactionWork( e );
+		}
+		return false;
+	}
+
+	/**
+	 * Keeps this chunk and everything after it in memory: the chunks already written are still valid
+	 */
+	private void keepInMemory(List<LuceneWork> chunk) {
+		chunk.addAll( buffer );
+		buffer = chunk;
+		spillFailed = true;
+	}
+
+	private void closeQuietly() {
+		try {
+			if ( output != null ) {
+				output.close();
+			}
+			if ( input != null ) {
+				input.close();
+			}
+		}
+		catch (IOException e) {
+			log.debugf( e, "Error while closing %s", file );
+		}
+		finally {
+			output = null;
+			input = null;
+		}
+	}
+}
@@ -23,10 +23,12 @@
  */
 package org.hibernate.search.backend.impl;
 
+import java.util.Collections;
 import java.util.List;
 
 import org.hibernate.search.backend.LuceneWork;
 import org.hibernate.search.backend.spi.Work;
+import org.hibernate.search.engine.impl.DocumentBuildingPipeline;
 import org.hibernate.search.engine.impl.WorkPlan;
 import org.hibernate.search.engine.spi.SearchFactoryImplementor;
 import org.hibernate.search.util.logging.impl.Log;
@@ -45,6 +47,8 @@ public class WorkQueue {
 	private WorkPlan plan;
 
 	private List<LuceneWork> sealedQueue;
+	//the sealed works when they were spilled to disk, in which case sealedQueue is not used
+	private SpillingLuceneWorkQueue spilledQueue;
 	//flag indicating if the sealed data has been provided meaning that it should no longer be modified
 	private boolean usedSealedData;
 	//flag indicating if data has been sealed and not modified since
@@ -91,6 +95,16 @@ public class WorkQueue {
 		return sealedQueue;
 	}
 
+	/**
+	 * @return the sealed works if they were spilled to disk, or null if they are all in {@link #getSealedQueue()}
+	 */
+	public SpillingLuceneWorkQueue getSpilledQueue() {
+		if ( spilledQueue != null ) {
+			this.sealedAndUnchanged = false;
+		}
+		return spilledQueue;
+	}
+
 	private void setSealedQueue(List<LuceneWork> sealedQueue) {
 		//invalidate the working queue for serializability
 		/*
@@ -105,6 +119,22 @@ public class WorkQueue {
 		 */
 		this.sealedAndUnchanged = true;
 		this.sealedQueue = sealedQueue;
+		releaseSpilledQueue();
+	}
+
+	private void setSpilledQueue(SpillingLuceneWorkQueue spilledQueue) {
+		this.sealedAndUnchanged = true;
+		this.sealedQueue = Collections.emptyList();
+		releaseSpilledQueue();
+		this.spilledQueue = spilledQueue;
+	}
+
+	private void releaseSpilledQueue() {
+		if ( spilledQueue != null ) {
+			// deletes the temporary file of the discarded plan
+			spilledQueue.clear();
+			spilledQueue = null;
+		}
 	}
 
 	public void clear() {
@@ -115,6 +145,7 @@ public class WorkQueue {
 		this.sealedAndUnchanged = false;
 		if ( sealedQueue != null )
 			sealedQueue.clear();
+		releaseSpilledQueue();
 	}
 
 	/**
@@ -131,11 +162,40 @@ public class WorkQueue {
 	 * storing the list of lucene operations to be performed in the sealedQueue.
 	 */
 	public void prepareWorkPlan() {
+		prepareWorkPlan( null );
+	}
+
+	/**
+	 * Same as {@link #prepareWorkPlan()}, but the Documents are built by the pipeline threads.
+	 *
+	 * @param pipeline builds the Documents, or null to build them in the current thread
+	 */
+	public void prepareWorkPlan(DocumentBuildingPipeline pipeline) {
 		if ( ! sealedAndUnchanged ) {
 			plan.processContainedInAndPrepareExecution();
-			List<LuceneWork> luceneWorkPlan = plan.getPlannedLuceneWork();
+			List<LuceneWork> luceneWorkPlan = plan.getPlannedLuceneWork( pipeline );
 			setSealedQueue( luceneWorkPlan );
 		}
 	}
+
+	/**
+	 * Same as {@link #prepareWorkPlan(DocumentBuildingPipeline)}, collecting the lucene operations in the
+	 * given queue so that they are spilled to disk when there are too many of them.
+	 *
+	 * @param pipeline builds the Documents, or null to build them in the current thread
+	 * @param spillingQueue collects the lucene operations; it is not used if the queue is already sealed and unchanged
+	 */
+	public void prepareWorkPlan(DocumentBuildingPipeline pipeline, SpillingLuceneWorkQueue spillingQueue) {
+		if ( ! sealedAndUnchanged ) {
+			plan.processContainedInAndPrepareExecution();
+			plan.enqueuePlannedLuceneWork( pipeline, spillingQueue );
+			if ( spillingQueue.isSpilled() ) {
+				setSpilledQueue( spillingQueue );
+			}
+			else {
+				setSealedQueue( spillingQueue.getBufferedWorks() );
+			}
+		}
+	}
 	
 }
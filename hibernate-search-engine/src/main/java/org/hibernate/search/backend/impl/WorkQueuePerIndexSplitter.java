@@ -20,14 +20,23 @@
  */
 package org.hibernate.search.backend.impl;
 
+import java.util.ArrayList;
 import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
+import org.hibernate.search.SearchException;
 import org.hibernate.search.backend.IndexingMonitor;
 import org.hibernate.search.backend.LuceneWork;
 import org.hibernate.search.indexes.spi.IndexManager;
+import org.hibernate.search.util.logging.impl.Log;
+import org.hibernate.search.util.logging.impl.LoggerFactory;
 
 /**
  * Used by {@link ContextAwareSelectionDelegate} to split a list of operations
@@ -36,7 +45,9 @@ import org.hibernate.search.indexes.spi.IndexManager;
  * @author Sanne Grinovero <sanne@hibernate.org> (C) 2011 Red Hat Inc.
  */
 public class WorkQueuePerIndexSplitter {
-	
+
+	private static final Log log = LoggerFactory.make();
+
 	private IdentityHashMap<IndexManager,List<LuceneWork>> queues = new IdentityHashMap<IndexManager,List<LuceneWork>>();
 
 	/**
@@ -51,15 +62,92 @@ public class WorkQueuePerIndexSplitter {
 		return list;
 	}
 
+	/**
+	 * @return the IndexManagers targeted by the operations stored so far
+	 */
+	public Set<IndexManager> getIndexManagers() {
+		return queues.keySet();
+	}
+
 	/**
 	 * Send all operations stored so far to the backend to be performed, atomically and/or transactionally
 	 * if supported/enabled by each specific backend.
 	 */
 	public void commitOperations(IndexingMonitor monitor) {
-		// FIXME move executor here to parallel work - optionally? See HSEARCH-826
 		for ( Entry<IndexManager,List<LuceneWork>> entry : queues.entrySet() ) {
 			entry.getKey().performOperations( entry.getValue(), monitor );
 		}
 	}
 
+	/**
+	 * Same as {@link #commitOperations(IndexingMonitor)}, but the operations for different IndexManagers
+	 * are sent in parallel: the current thread takes care of one of them and waits for the others to be done,
+	 * so that with synchronous backends this returns when the slowest IndexManager is done.
+	 *
+	 * @param monitor will be notified of the progress, might be null
+	 * @param executor used to send the operations to the other IndexManagers, might be null to disable parallelism
+	 */
+	public void commitOperations(IndexingMonitor monitor, ExecutorService executor) {
+		if ( executor == null || queues.size() < 2 ) {
+			commitOperations( monitor );
+			return;
+		}
+		Iterator<Entry<IndexManager,List<LuceneWork>>> iterator = queues.entrySet().iterator();
+		Entry<IndexManager,List<LuceneWork>> local = iterator.next();
+		List<Future<?>> futures = new ArrayList<Future<?>>( queues.size() - 1 );
+		while ( iterator.hasNext() ) {
+			futures.add( executor.submit( new PerformOperationsTask( iterator.next(), monitor ) ) );
+		}
+		RuntimeException failure = null;
+		try {
+			local.getKey().performOperations( local.getValue(), monitor );
+		}
+		catch (RuntimeException e) {
+			failure = e;
+		}
+		for ( Future<?> future : futures ) {
+			try {
+				future.get();
+			}
+			catch (InterruptedException e) {
+				log.interruptedWhileWaitingForIndexActivity( e );
+				Thread.currentThread().interrupt();
+				break;
+			}
+			catch (ExecutionException e) {
+				if ( failure == null ) {
+					failure = asRuntimeException( e.getCause() );
+				}
+			}
+		}
+		if ( failure != null ) {
+			throw failure;
+		}
+	}
+
+	private static RuntimeException asRuntimeException(Throwable cause) {
+		if ( cause instanceof RuntimeException ) {
+			return (RuntimeException) cause;
+		}
+		return new SearchException( "Error applying updates to the index", cause );
+	}
+
+	private static final class PerformOperationsTask implements Runnable {
+
+		private final IndexManager indexManager;
+		private final List<LuceneWork> operations;
+		private final IndexingMonitor monitor;
+
+		PerformOperationsTask(Entry<IndexManager,List<LuceneWork>> entry, IndexingMonitor monitor) {
+			this.indexManager = entry.getKey();
+			this.operations = entry.getValue();
+			this.monitor = monitor;
+		}
+
+		@Override
+		public void run() {
+			indexManager.performOperations( operations, monitor );
+		}
+	}
+
 }
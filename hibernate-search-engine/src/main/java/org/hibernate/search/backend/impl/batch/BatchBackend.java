@@ -26,7 +26,9 @@ package org.hibernate.search.backend.impl.batch;
 
 import java.util.Set;
 
+import org.apache.lucene.store.Directory;
 import org.hibernate.search.backend.LuceneWork;
+import org.hibernate.search.indexes.spi.IndexManager;
 
 /**
  * Implementations of this interface are not drop-in replacements for the standard BackendQueueProcessor,
@@ -72,4 +74,12 @@ public interface BatchBackend {
 	 */
 	void optimize(Set<Class<?>> targetedClasses);
 
+	/**
+	 * Adds the segments built in other Directories to the index, without
+	 * waiting for the works enqueued asynchronously.
+	 * @param indexManager the index to add the segments to
+	 * @param sources the Directories containing the segments
+	 */
+	void addIndexes(IndexManager indexManager, Directory... sources);
+
 }
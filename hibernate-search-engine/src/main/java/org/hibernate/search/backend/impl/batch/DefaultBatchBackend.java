@@ -27,17 +27,22 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.Set;
 
+import org.apache.lucene.store.Directory;
 import org.hibernate.search.backend.FlushLuceneWork;
 import org.hibernate.search.backend.LuceneWork;
 import org.hibernate.search.backend.OptimizeLuceneWork;
 import org.hibernate.search.backend.impl.StreamingSelectionVisitor;
 import org.hibernate.search.backend.impl.TransactionalSelectionVisitor;
 import org.hibernate.search.backend.impl.WorkQueuePerIndexSplitter;
+import org.hibernate.search.backend.impl.lucene.LuceneBackendQueueProcessor;
 import org.hibernate.search.batchindexing.MassIndexerProgressMonitor;
 import org.hibernate.search.engine.spi.EntityIndexBinder;
+import org.hibernate.search.indexes.impl.DirectoryBasedIndexManager;
 import org.hibernate.search.indexes.spi.IndexManager;
 import org.hibernate.search.spi.SearchFactoryIntegrator;
 import org.hibernate.search.store.IndexShardingStrategy;
+import org.hibernate.search.util.logging.impl.Log;
+import org.hibernate.search.util.logging.impl.LoggerFactory;
 
 /**
  * This is not meant to be used as a regular
@@ -49,6 +54,8 @@ import org.hibernate.search.store.IndexShardingStrategy;
  */
 public class DefaultBatchBackend implements BatchBackend {
 
+	private static final Log log = LoggerFactory.make();
+
 	private final SearchFactoryIntegrator searchFactoryImplementor;
 	private final MassIndexerProgressMonitor progressMonitor;
 
@@ -83,7 +90,7 @@ public class DefaultBatchBackend implements BatchBackend {
 
 	@Override
 	public void flush(Set<Class<?>> entityTypes) {
-		Collection<IndexManager> uniqueIndexManagers = uniqueIndexManagerForTypes( entityTypes );
+		Collection<IndexManager> uniqueIndexManagers = uniqueIndexManagerForTypes( searchFactoryImplementor, entityTypes );
 		for ( IndexManager indexManager : uniqueIndexManagers ) {
 			indexManager.performStreamOperation( FlushLuceneWork.INSTANCE, progressMonitor, false );
 		}
@@ -91,13 +98,30 @@ public class DefaultBatchBackend implements BatchBackend {
 
 	@Override
 	public void optimize(Set<Class<?>> entityTypes) {
-		Collection<IndexManager> uniqueIndexManagers = uniqueIndexManagerForTypes( entityTypes );
+		Collection<IndexManager> uniqueIndexManagers = uniqueIndexManagerForTypes( searchFactoryImplementor, entityTypes );
 		for ( IndexManager indexManager : uniqueIndexManagers ) {
 			indexManager.performStreamOperation( OptimizeLuceneWork.INSTANCE, progressMonitor, false );
 		}
 	}
 
-	private Collection<IndexManager> uniqueIndexManagerForTypes(Collection<Class<?>> entityTypes) {
+	@Override
+	public void addIndexes(IndexManager indexManager, Directory... sources) {
+		if ( !isLocalLuceneIndex( indexManager ) ) {
+			throw log.parallelIndexWritersNotSupported( indexManager.getIndexName() );
+		}
+		LuceneBackendQueueProcessor backend = (LuceneBackendQueueProcessor) ( (DirectoryBasedIndexManager) indexManager ).getBackendQueueProcessor();
+		backend.addIndexContent( sources );
+	}
+
+	/**
+	 * @return true if the index is stored in a local Directory written by this node
+	 */
+	static boolean isLocalLuceneIndex(IndexManager indexManager) {
+		return indexManager instanceof DirectoryBasedIndexManager &&
+				( (DirectoryBasedIndexManager) indexManager ).getBackendQueueProcessor() instanceof LuceneBackendQueueProcessor;
+	}
+
+	static Collection<IndexManager> uniqueIndexManagerForTypes(SearchFactoryIntegrator searchFactoryImplementor, Collection<Class<?>> entityTypes) {
 		HashMap<String,IndexManager> uniqueBackends = new HashMap<String, IndexManager>( entityTypes.size() );
 		for ( Class<?> type : entityTypes ) {
 			EntityIndexBinder indexBindingForEntity = searchFactoryImplementor.getIndexBindingForEntity( type );
@@ -0,0 +1,239 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.backend.impl.batch;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.lucene.store.Directory;
+import org.hibernate.search.backend.AddLuceneWork;
+import org.hibernate.search.backend.LuceneWork;
+import org.hibernate.search.backend.impl.TransactionalSelectionVisitor;
+import org.hibernate.search.backend.impl.WorkQueuePerIndexSplitter;
+import org.hibernate.search.batchindexing.MassIndexerProgressMonitor;
+import org.hibernate.search.engine.spi.EntityIndexBinder;
+import org.hibernate.search.indexes.impl.DirectoryBasedIndexManager;
+import org.hibernate.search.indexes.spi.IndexManager;
+import org.hibernate.search.spi.SearchFactoryIntegrator;
+import org.hibernate.search.util.logging.impl.Log;
+import org.hibernate.search.util.logging.impl.LoggerFactory;
+
+/**
+ * BatchBackend giving each indexing thread its own IndexWriter, writing to a private
+ * temporary directory, to avoid contention on the IndexWriter of the index.
+ * The segments are added to the target BatchBackend when flushing: either the live
+ * index or the side directory where the index is rebuilt.
+ * Only additions are written to the private directories, other works are passed
+ * to the target BatchBackend directly.
+ * The RAM buffer available to bulk load an index is divided among the threads, so that
+ * the private IndexWriters don't use more memory than a single one would.
+ *
+ * @author agent <agent@local>
+ */
+public class ParallelWritersBatchBackend implements BatchBackend {
+
+	private static final Log log = LoggerFactory.make();
+
+	private final SearchFactoryIntegrator searchFactoryImplementor;
+	private final MassIndexerProgressMonitor progressMonitor;
+	private final BatchBackend target;
+	private final int writerThreads;
+	private final List<PrivateWriter> writers = new CopyOnWriteArrayList<PrivateWriter>();
+	private final ThreadLocal<Map<IndexManager, PrivateWriter>> threadWriters = new ThreadLocal<Map<IndexManager, PrivateWriter>>();
+
+	/**
+	 * @param searchFactoryImplementor the SearchFactory owning the indexes
+	 * @param progressMonitor notified of the documents added
+	 * @param entityTypes all the indexed types being indexed, including subtypes
+	 * @param target the BatchBackend the segments are added to
+	 * @param writerThreads the maximum number of threads writing documents concurrently
+	 */
+	public ParallelWritersBatchBackend(SearchFactoryIntegrator searchFactoryImplementor, MassIndexerProgressMonitor progressMonitor,
+			Set<Class<?>> entityTypes, BatchBackend target, int writerThreads) {
+		this.searchFactoryImplementor = searchFactoryImplementor;
+		this.progressMonitor = progressMonitor;
+		this.target = target;
+		this.writerThreads = Math.max( 1, writerThreads );
+		for ( IndexManager indexManager : DefaultBatchBackend.uniqueIndexManagerForTypes( searchFactoryImplementor, entityTypes ) ) {
+			if ( !DefaultBatchBackend.isLocalLuceneIndex( indexManager ) ) {
+				throw log.parallelIndexWritersNotSupported( indexManager.getIndexName() );
+			}
+		}
+	}
+
+	@Override
+	public void enqueueAsyncWork(LuceneWork work) throws InterruptedException {
+		if ( !( work instanceof AddLuceneWork ) ) {
+			// deletions need to be applied to the target index
+			target.enqueueAsyncWork( work );
+			return;
+		}
+		EntityIndexBinder entityIndexBinding = searchFactoryImplementor.getIndexBindingForEntity( work.getEntityClass() );
+		WorkQueuePerIndexSplitter workContext = new WorkQueuePerIndexSplitter();
+		work.getWorkDelegate( TransactionalSelectionVisitor.INSTANCE )
+				.performOperation( work, entityIndexBinding.getSelectionStrategy(), workContext );
+		for ( IndexManager indexManager : workContext.getIndexManagers() ) {
+			getThreadWriter( indexManager ).apply( workContext.getIndexManagerQueue( indexManager ), progressMonitor );
+		}
+	}
+
+	private PrivateWriter getThreadWriter(IndexManager indexManager) {
+		Map<IndexManager, PrivateWriter> map = threadWriters.get();
+		if ( map == null ) {
+			map = new IdentityHashMap<IndexManager, PrivateWriter>();
+			threadWriters.set( map );
+		}
+		PrivateWriter writer = map.get( indexManager );
+		if ( writer == null ) {
+			writer = new PrivateWriter( indexManager, createWorkspace( (DirectoryBasedIndexManager) indexManager ) );
+			map.put( indexManager, writer );
+			writers.add( writer );
+		}
+		return writer;
+	}
+
+	private SideDirectoryWorkspace createWorkspace(DirectoryBasedIndexManager indexManager) {
+		File location;
+		try {
+			location = File.createTempFile( "hsearch-" + indexManager.getIndexName() + "-", ".segments" );
+		}
+		catch (IOException e) {
+			throw log.unableToWriteSideDirectory( indexManager.getIndexName(), System.getProperty( "java.io.tmpdir" ), e );
+		}
+		// replaced by a directory of the same name
+		location.delete();
+		double ramBufferSizeMB = (double) SideDirectoryWorkspace.bulkLoadingRamBufferSizeMB( indexManager ) / writerThreads;
+		return new SideDirectoryWorkspace(
+				indexManager, searchFactoryImplementor.getErrorHandler(), location, ramBufferSizeMB
+		);
+	}
+
+	@Override
+	public void doWorkInSync(LuceneWork work) {
+		target.doWorkInSync( work );
+	}
+
+	/**
+	 * Adds the segments written so far by all threads to the target indexes, then
+	 * flushes the target.
+	 */
+	@Override
+	public void flush(Set<Class<?>> entityTypes) {
+		addSegmentsToTarget( entityTypes );
+		target.flush( entityTypes );
+	}
+
+	/**
+	 * Optimizes the target indexes after adding the segments written so far.
+	 */
+	@Override
+	public void optimize(Set<Class<?>> entityTypes) {
+		addSegmentsToTarget( entityTypes );
+		target.optimize( entityTypes );
+	}
+
+	@Override
+	public void addIndexes(IndexManager indexManager, Directory... sources) {
+		target.addIndexes( indexManager, sources );
+	}
+
+	/**
+	 * Adds the segments of the private directories to the target in a single operation
+	 * per index, and empties them. Indexing threads are blocked meanwhile, only if they
+	 * try to write to the index being added.
+	 */
+	private void addSegmentsToTarget(Set<Class<?>> entityTypes) {
+		for ( IndexManager indexManager : DefaultBatchBackend.uniqueIndexManagerForTypes( searchFactoryImplementor, entityTypes ) ) {
+			List<PrivateWriter> indexWriters = new ArrayList<PrivateWriter>();
+			for ( PrivateWriter writer : writers ) {
+				if ( writer.indexManager == indexManager ) {
+					indexWriters.add( writer );
+				}
+			}
+			if ( indexWriters.isEmpty() ) {
+				continue;
+			}
+			Directory[] sources = new Directory[indexWriters.size()];
+			int locked = 0;
+			try {
+				for ( PrivateWriter writer : indexWriters ) {
+					writer.lock.lock();
+					sources[locked++] = writer.workspace.getDirectory();
+					writer.workspace.flush();
+				}
+				target.addIndexes( indexManager, sources );
+				for ( PrivateWriter writer : indexWriters ) {
+					writer.workspace.clear();
+				}
+			}
+			finally {
+				for ( int i = 0; i < locked; i++ ) {
+					indexWriters.get( i ).lock.unlock();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Deletes the private directories; segments not added to the target yet are discarded.
+	 */
+	public void close() {
+		for ( PrivateWriter writer : writers ) {
+			writer.workspace.close();
+		}
+	}
+
+	private static final class PrivateWriter {
+
+		private final IndexManager indexManager;
+		private final SideDirectoryWorkspace workspace;
+
+		/**
+		 * Only contended while the segments are added to the target.
+		 */
+		private final ReentrantLock lock = new ReentrantLock();
+
+		PrivateWriter(IndexManager indexManager, SideDirectoryWorkspace workspace) {
+			this.indexManager = indexManager;
+			this.workspace = workspace;
+		}
+
+		void apply(List<LuceneWork> works, MassIndexerProgressMonitor monitor) {
+			lock.lock();
+			try {
+				for ( LuceneWork work : works ) {
+					workspace.applyWork( work, monitor );
+				}
+			}
+			finally {
+				lock.unlock();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,193 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.backend.impl.batch;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.store.Directory;
+import org.hibernate.search.backend.LuceneWork;
+import org.hibernate.search.backend.impl.TransactionalSelectionVisitor;
+import org.hibernate.search.backend.impl.WorkQueuePerIndexSplitter;
+import org.hibernate.search.batchindexing.MassIndexerProgressMonitor;
+import org.hibernate.search.engine.spi.EntityIndexBinder;
+import org.hibernate.search.indexes.impl.DirectoryBasedIndexManager;
+import org.hibernate.search.indexes.spi.IndexManager;
+import org.hibernate.search.spi.SearchFactoryIntegrator;
+import org.hibernate.search.util.logging.impl.Log;
+import org.hibernate.search.util.logging.impl.LoggerFactory;
+
+/**
+ * BatchBackend rebuilding the indexes in side directories rather than in the live indexes,
+ * which keep serving queries with their old content until {@link #swapIndexes()} atomically
+ * replaces it with the rebuilt one. The changes applied to the live indexes meanwhile are
+ * recorded, spilling them to disk beyond a threshold, and applied again to the rebuilt content
+ * by the swap. The changes applied before this backend was created are not recorded, so an
+ * interrupted rebuild can't be resumed: the side directories are always started from scratch.
+ * Only local Lucene indexes are supported, and all the entity types stored in each index
+ * need to be rebuilt as the swap replaces the whole index.
+ *
+ * @author agent <agent@local>
+ * @see SideDirectoryWorkspace
+ */
+public class SideDirectoryBatchBackend implements BatchBackend {
+
+	private static final Log log = LoggerFactory.make();
+
+	private final SearchFactoryIntegrator searchFactoryImplementor;
+	private final MassIndexerProgressMonitor progressMonitor;
+	private final Map<IndexManager, SideDirectoryWorkspace> sideWorkspaces = new IdentityHashMap<IndexManager, SideDirectoryWorkspace>();
+
+	/**
+	 * Opens a side directory for each index of the rebuilt types.
+	 *
+	 * @param searchFactoryImplementor the SearchFactory owning the indexes
+	 * @param progressMonitor notified of the documents added to the side directories
+	 * @param entityTypes all the indexed types being rebuilt, including subtypes
+	 */
+	public SideDirectoryBatchBackend(SearchFactoryIntegrator searchFactoryImplementor, MassIndexerProgressMonitor progressMonitor,
+			Set<Class<?>> entityTypes) {
+		this.searchFactoryImplementor = searchFactoryImplementor;
+		this.progressMonitor = progressMonitor;
+		Iterable<IndexManager> indexManagers = DefaultBatchBackend.uniqueIndexManagerForTypes( searchFactoryImplementor, entityTypes );
+		for ( IndexManager indexManager : indexManagers ) {
+			checkSideDirectorySupported( indexManager, entityTypes );
+		}
+		try {
+			for ( IndexManager indexManager : indexManagers ) {
+				DirectoryBasedIndexManager directoryBasedIndexManager = (DirectoryBasedIndexManager) indexManager;
+				SideDirectoryWorkspace workspace = new SideDirectoryWorkspace(
+						directoryBasedIndexManager, searchFactoryImplementor.getErrorHandler(),
+						SideDirectoryWorkspace.sideLocation( directoryBasedIndexManager ),
+						SideDirectoryWorkspace.bulkLoadingRamBufferSizeMB( directoryBasedIndexManager )
+				);
+				sideWorkspaces.put( indexManager, workspace );
+				workspace.recordLiveChanges();
+			}
+		}
+		catch (RuntimeException e) {
+			close();
+			throw e;
+		}
+	}
+
+	private static void checkSideDirectorySupported(IndexManager indexManager, Set<Class<?>> entityTypes) {
+		if ( !DefaultBatchBackend.isLocalLuceneIndex( indexManager ) ) {
+			throw log.sideDirectoryNotSupported( indexManager.getIndexName() );
+		}
+		for ( Class<?> type : indexManager.getContainedTypes() ) {
+			if ( !entityTypes.contains( type ) ) {
+				throw log.sideDirectoryIndexSharedWithOtherTypes( indexManager.getIndexName(), type.getName() );
+			}
+		}
+	}
+
+	@Override
+	public void enqueueAsyncWork(LuceneWork work) throws InterruptedException {
+		// IndexWriter is threadsafe: the indexing threads write to the side directories directly
+		doWorkInSync( work );
+	}
+
+	@Override
+	public void doWorkInSync(LuceneWork work) {
+		EntityIndexBinder entityIndexBinding = searchFactoryImplementor.getIndexBindingForEntity( work.getEntityClass() );
+		WorkQueuePerIndexSplitter workContext = new WorkQueuePerIndexSplitter();
+		work.getWorkDelegate( TransactionalSelectionVisitor.INSTANCE )
+				.performOperation( work, entityIndexBinding.getSelectionStrategy(), workContext );
+		for ( IndexManager indexManager : workContext.getIndexManagers() ) {
+			SideDirectoryWorkspace workspace = sideWorkspaces.get( indexManager );
+			if ( workspace == null ) {
+				// a shard which didn't exist when the rebuild started
+				throw log.sideDirectoryNotSupported( indexManager.getIndexName() );
+			}
+			for ( LuceneWork operation : workContext.getIndexManagerQueue( indexManager ) ) {
+				workspace.applyWork( operation, progressMonitor );
+			}
+		}
+	}
+
+	/**
+	 * Commits the side directories; the live indexes are not affected.
+	 */
+	@Override
+	public void flush(Set<Class<?>> entityTypes) {
+		for ( IndexManager indexManager : DefaultBatchBackend.uniqueIndexManagerForTypes( searchFactoryImplementor, entityTypes ) ) {
+			SideDirectoryWorkspace workspace = sideWorkspaces.get( indexManager );
+			if ( workspace != null ) {
+				workspace.flush();
+			}
+		}
+	}
+
+	/**
+	 * Merges the side directories in a single segment before the swap.
+	 */
+	@Override
+	public void optimize(Set<Class<?>> entityTypes) {
+		for ( IndexManager indexManager : DefaultBatchBackend.uniqueIndexManagerForTypes( searchFactoryImplementor, entityTypes ) ) {
+			SideDirectoryWorkspace workspace = sideWorkspaces.get( indexManager );
+			if ( workspace != null ) {
+				workspace.optimizeBeforeSwap();
+			}
+		}
+	}
+
+	@Override
+	public void addIndexes(IndexManager indexManager, Directory... sources) {
+		sideWorkspaces.get( indexManager ).addIndexes( sources );
+	}
+
+	/**
+	 * Replaces the content of each live index with the one rebuilt in its side directory,
+	 * applying again the changes made to the live index during the rebuild.
+	 * Each index is swapped atomically, independently from the others: when the swap
+	 * of an index fails the other indexes are still swapped, and the first failure
+	 * is rethrown afterwards.
+	 */
+	public void swapIndexes() {
+		RuntimeException failure = null;
+		for ( SideDirectoryWorkspace workspace : sideWorkspaces.values() ) {
+			try {
+				workspace.swap();
+			}
+			catch (RuntimeException e) {
+				log.debugf( e, "Failed to swap index %s", workspace.getIndexName() );
+				if ( failure == null ) {
+					failure = e;
+				}
+			}
+		}
+		if ( failure != null ) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * Closes and deletes the side directories which were not swapped.
+	 */
+	public void close() {
+		for ( SideDirectoryWorkspace workspace : sideWorkspaces.values() ) {
+			workspace.close();
+		}
+	}
+
+}
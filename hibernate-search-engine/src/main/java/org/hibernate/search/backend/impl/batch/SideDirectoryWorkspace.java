@@ -0,0 +1,353 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.backend.impl.batch;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Set;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.SimpleAnalyzer;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexWriterConfig.OpenMode;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.search.Similarity;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.hibernate.search.Environment;
+import org.hibernate.search.backend.IndexingMonitor;
+import org.hibernate.search.backend.LuceneWork;
+import org.hibernate.search.backend.configuration.impl.IndexWriterSetting;
+import org.hibernate.search.backend.impl.lucene.LuceneBackendQueueProcessor;
+import org.hibernate.search.backend.impl.lucene.overrides.ConcurrentMergeScheduler;
+import org.hibernate.search.backend.impl.lucene.works.LuceneWorkVisitor;
+import org.hibernate.search.backend.spi.LuceneIndexingParameters.ParameterSet;
+import org.hibernate.search.engine.spi.DocumentBuilderIndexedEntity;
+import org.hibernate.search.exception.ErrorHandler;
+import org.hibernate.search.indexes.impl.DirectoryBasedIndexManager;
+import org.hibernate.search.store.Workspace;
+import org.hibernate.search.util.impl.FileHelper;
+import org.hibernate.search.util.logging.impl.Log;
+import org.hibernate.search.util.logging.impl.LoggerFactory;
+
+/**
+ * Workspace writing the documents of an index to a side directory rather than to the
+ * live index: either the whole index being rebuilt, which replaces the content of the
+ * live index only when the rebuild is complete, or the segments built by a single
+ * thread, later added to the index.
+ * The IndexWriter is tuned for bulk loading: a large RAM buffer and no merges at all
+ * while loading, the segments are merged once before the swap.
+ * The side directory of a rebuilt index is placed next to the live index when this is
+ * stored in the filesystem, in the temporary directory otherwise; its location only
+ * depends on the index name, so that a side directory left behind by a crashed process
+ * is overwritten by the next rebuild rather than leaked.
+ *
+ * @author agent <agent@local>
+ */
+final class SideDirectoryWorkspace implements Workspace {
+
+	private static final Log log = LoggerFactory.make();
+
+	private static final String SIDE_DIRECTORY_SUFFIX = ".rebuild";
+
+	/**
+	 * RAM buffer used while bulk loading an index, unless the index sets ram_buffer_size explicitly.
+	 */
+	private static final int BULK_LOADING_RAM_BUFFER_SIZE_MB = 256;
+
+	/**
+	 * This Analyzer is never used in practice: during Add operation it's overridden.
+	 */
+	private static final Analyzer SIMPLE_ANALYZER = new SimpleAnalyzer( Environment.DEFAULT_LUCENE_MATCH_VERSION );
+
+	private final DirectoryBasedIndexManager indexManager;
+	private final ErrorHandler errorHandler;
+	private final File location;
+	private final Directory directory;
+	private final IndexWriter writer;
+	private final LuceneWorkVisitor visitor;
+	private volatile boolean optimizeBeforeSwap = false;
+	private boolean closed = false;
+	private boolean recordingLiveChanges = false;
+
+	/**
+	 * @param indexManager the index whose documents are written
+	 * @param errorHandler notified of failures of background merges
+	 * @param location the side directory, any previous content is discarded
+	 * @param ramBufferSizeMB RAM buffer used while bulk loading
+	 * @see #bulkLoadingRamBufferSizeMB(DirectoryBasedIndexManager)
+	 */
+	SideDirectoryWorkspace(DirectoryBasedIndexManager indexManager, ErrorHandler errorHandler, File location,
+			double ramBufferSizeMB) {
+		this.indexManager = indexManager;
+		this.errorHandler = errorHandler;
+		this.location = location;
+		Directory sideDirectory = null;
+		try {
+			sideDirectory = FSDirectory.open( location );
+			this.writer = new IndexWriter( sideDirectory, createBulkLoadingConfig( ramBufferSizeMB ) );
+		}
+		catch (IOException e) {
+			FileHelper.closeResource( sideDirectory );
+			throw log.unableToWriteSideDirectory( indexManager.getIndexName(), location.getPath(), e );
+		}
+		this.directory = sideDirectory;
+		this.visitor = new LuceneWorkVisitor( this );
+	}
+
+	/**
+	 * @return the location where the index is rebuilt, only depending on the index
+	 */
+	static File sideLocation(DirectoryBasedIndexManager indexManager) {
+		Directory liveDirectory = indexManager.getDirectoryProvider().getDirectory();
+		if ( liveDirectory instanceof FSDirectory ) {
+			File liveLocation = ( (FSDirectory) liveDirectory ).getDirectory();
+			return new File( liveLocation.getParentFile(), liveLocation.getName() + SIDE_DIRECTORY_SUFFIX );
+		}
+		else {
+			String tmpDir = System.getProperty( "java.io.tmpdir" );
+			return new File( tmpDir, "hsearch-" + indexManager.getIndexName() + SIDE_DIRECTORY_SUFFIX );
+		}
+	}
+
+	/**
+	 * @return the RAM buffer available to bulk load the index: its ram_buffer_size when set explicitly,
+	 * shared by all the IndexWriters bulk loading it
+	 */
+	static int bulkLoadingRamBufferSizeMB(DirectoryBasedIndexManager indexManager) {
+		ParameterSet indexParameters = indexManager.getIndexingParameters().getIndexParameters();
+		Integer ramBufferSize = indexParameters.getCurrentValueFor( IndexWriterSetting.RAM_BUFFER_SIZE );
+		return ramBufferSize == null ? BULK_LOADING_RAM_BUFFER_SIZE_MB : ramBufferSize.intValue();
+	}
+
+	private IndexWriterConfig createBulkLoadingConfig(double ramBufferSizeMB) {
+		IndexWriterConfig config = createWriterConfig();
+		config.setRAMBufferSizeMB( ramBufferSizeMB );
+		ParameterSet indexParameters = indexManager.getIndexingParameters().getIndexParameters();
+		if ( indexParameters.getCurrentValueFor( IndexWriterSetting.MAX_BUFFERED_DOCS ) == null ) {
+			config.setMaxBufferedDocs( IndexWriterConfig.DISABLE_AUTO_FLUSH );
+		}
+		config.setMergePolicy( NoMergePolicy.NO_COMPOUND_FILES );
+		config.setOpenMode( OpenMode.CREATE );
+		return config;
+	}
+
+	private IndexWriterConfig createWriterConfig() {
+		IndexWriterConfig config = new IndexWriterConfig( Environment.DEFAULT_LUCENE_MATCH_VERSION, SIMPLE_ANALYZER );
+		indexManager.getIndexingParameters().applyToWriter( config );
+		Similarity similarity = indexManager.getSimilarity();
+		if ( similarity != null ) {
+			config.setSimilarity( similarity );
+		}
+		return config;
+	}
+
+	/**
+	 * Applies a single LuceneWork to the side directory.
+	 */
+	void applyWork(LuceneWork work, IndexingMonitor monitor) {
+		work.getWorkDelegate( visitor ).performWork( work, writer, monitor );
+	}
+
+	/**
+	 * Adds the segments of other directories, without merging them.
+	 */
+	void addIndexes(Directory... sources) {
+		try {
+			writer.addIndexes( sources );
+		}
+		catch (IOException e) {
+			throw log.unableToWriteSideDirectory( indexManager.getIndexName(), location.getPath(), e );
+		}
+	}
+
+	/**
+	 * Deletes all the documents of the side directory, and commits.
+	 */
+	void clear() {
+		try {
+			writer.deleteAll();
+			writer.commit();
+		}
+		catch (IOException e) {
+			throw log.unableToWriteSideDirectory( indexManager.getIndexName(), location.getPath(), e );
+		}
+	}
+
+	/**
+	 * Requests the index to be merged in a single segment before the swap,
+	 * rather than following the merge policy of the index.
+	 */
+	void optimizeBeforeSwap() {
+		optimizeBeforeSwap = true;
+	}
+
+	/**
+	 * Records the changes applied to the live index from now on, so that the swap applies
+	 * them again to the rebuilt content: the rebuild might have read the entities before
+	 * they were changed.
+	 */
+	synchronized void recordLiveChanges() {
+		liveBackend().startRecordingChanges();
+		recordingLiveChanges = true;
+	}
+
+	private void stopRecordingLiveChanges() {
+		if ( recordingLiveChanges ) {
+			recordingLiveChanges = false;
+			liveBackend().stopRecordingChanges();
+		}
+	}
+
+	private LuceneBackendQueueProcessor liveBackend() {
+		return (LuceneBackendQueueProcessor) indexManager.getBackendQueueProcessor();
+	}
+
+	/**
+	 * Merges the segments written while bulk loading and atomically replaces the content
+	 * of the live index with the rebuilt one, applying again the recorded live changes.
+	 * The side directory is deleted afterwards, even if the swap failed: the live index
+	 * is unchanged in that case.
+	 */
+	synchronized void swap() {
+		String indexName = indexManager.getIndexName();
+		closed = true;
+		try {
+			writer.close();
+			mergeSegments();
+			liveBackend().replaceIndexContent( directory );
+			recordingLiveChanges = false;
+			log.indexSwappedFromSideDirectory( indexName, location.getPath() );
+		}
+		catch (IOException e) {
+			throw log.unableToWriteSideDirectory( indexName, location.getPath(), e );
+		}
+		finally {
+			stopRecordingLiveChanges();
+			FileHelper.closeResource( directory );
+			FileHelper.delete( location );
+		}
+	}
+
+	private void mergeSegments() throws IOException {
+		IndexWriterConfig config = createWriterConfig();
+		config.setMergePolicy( indexManager.getIndexingParameters().getIndexParameters().getNewMergePolicy() );
+		config.setMergeScheduler( new ConcurrentMergeScheduler( errorHandler, indexManager.getIndexName() ) );
+		config.setOpenMode( OpenMode.APPEND );
+		IndexWriter mergeWriter = new IndexWriter( directory, config );
+		try {
+			if ( optimizeBeforeSwap ) {
+				mergeWriter.forceMerge( 1, true );
+			}
+			else {
+				mergeWriter.maybeMerge();
+			}
+		}
+		finally {
+			// waits for the merges to complete
+			mergeWriter.close();
+		}
+	}
+
+	/**
+	 * Closes the side directory without swapping, deleting it.
+	 */
+	synchronized void close() {
+		if ( closed ) {
+			return;
+		}
+		closed = true;
+		stopRecordingLiveChanges();
+		try {
+			writer.rollback();
+		}
+		catch (IOException e) {
+			log.trace( "IndexWriter rollback failed", e );
+		}
+		FileHelper.closeResource( directory );
+		FileHelper.delete( location );
+	}
+
+	@Override
+	public <T> DocumentBuilderIndexedEntity<?> getDocumentBuilder(Class<T> entity) {
+		return indexManager.getIndexBindingForEntity( entity ).getDocumentBuilder();
+	}
+
+	@Override
+	public Analyzer getAnalyzer(String name) {
+		return indexManager.getAnalyzer( name );
+	}
+
+	@Override
+	public void optimizerPhase() {
+		// merges are deferred to the swap
+	}
+
+	@Override
+	public void performOptimization(IndexWriter writer) {
+		optimizeBeforeSwap();
+	}
+
+	@Override
+	public IndexWriter getIndexWriter() {
+		return writer;
+	}
+
+	@Override
+	public void incrementModificationCounter(int modCount) {
+		// not needed: the optimizer strategy of the index doesn't apply to the side directory
+	}
+
+	@Override
+	public Set<Class<?>> getEntitiesInIndexManager() {
+		return indexManager.getContainedTypes();
+	}
+
+	@Override
+	public void afterTransactionApplied(boolean someFailureHappened, boolean streaming) {
+		// changes are committed by flush only
+	}
+
+	@Override
+	public void flush() {
+		try {
+			writer.commit();
+		}
+		catch (IOException e) {
+			throw log.unableToWriteSideDirectory( indexManager.getIndexName(), location.getPath(), e );
+		}
+	}
+
+	@Override
+	public boolean areSingleTermDeletesSafe() {
+		return false;
+	}
+
+	String getIndexName() {
+		return indexManager.getIndexName();
+	}
+
+	Directory getDirectory() {
+		return directory;
+	}
+
+}
@@ -23,13 +23,24 @@
  */
 package org.hibernate.search.backend.impl.lucene;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
 
 import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.store.Directory;
+import org.hibernate.search.backend.BackendFactory;
+import org.hibernate.search.Environment;
+import org.hibernate.search.backend.LuceneWork;
+import org.hibernate.search.backend.impl.lucene.works.LuceneWorkVisitor;
 import org.hibernate.search.engine.spi.DocumentBuilderIndexedEntity;
+import org.hibernate.search.engine.spi.EntityIndexBinder;
 import org.hibernate.search.exception.impl.ErrorContextBuilder;
 import org.hibernate.search.indexes.impl.CommonPropertiesParse;
 import org.hibernate.search.indexes.impl.DirectoryBasedIndexManager;
@@ -62,6 +73,15 @@ public abstract class AbstractWorkspaceImpl implements Workspace {
 	 */
 	private final AtomicLong operations = new AtomicLong( 0L );
 
+	/**
+	 * Defers commits in async mode once started, null when each transaction is committed.
+	 */
+	private final AsyncCommitScheduler commitScheduler;
+
+	/**
+	 * Records the applied changes while the content of the index is being rebuilt elsewhere, null otherwise.
+	 */
+	private volatile AppliedWorksJournal appliedWorksJournal;
 
 	public AbstractWorkspaceImpl(DirectoryBasedIndexManager indexManager, WorkerBuildContext context, Properties cfg) {
 		this.indexManager = indexManager;
@@ -69,6 +89,32 @@ public abstract class AbstractWorkspaceImpl implements Workspace {
 		this.entitiesInIndexManager = indexManager.getContainedTypes();
 		this.writerHolder = new IndexWriterHolder( context.getErrorHandler(), indexManager );
 		this.indexMetadataIsComplete = CommonPropertiesParse.isIndexMetadataComplete( cfg, context );
+		this.commitScheduler = createCommitScheduler( indexManager.getIndexName(), cfg );
+	}
+
+	private AsyncCommitScheduler createCommitScheduler(String indexName, Properties cfg) {
+		int interval = CommonPropertiesParse.extractAsyncCommitInterval( indexName, cfg );
+		if ( interval == 0 ) {
+			return null;
+		}
+		if ( BackendFactory.isConfiguredAsSync( cfg ) ) {
+			log.debugf( "Ignoring %s on index %s as it's not using async execution", Environment.ASYNC_COMMIT_INTERVAL, indexName );
+			return null;
+		}
+		int maxOperations = CommonPropertiesParse.extractAsyncCommitMaxOperations( indexName, cfg );
+		return new AsyncCommitScheduler( this, indexName, interval, maxOperations );
+	}
+
+	/**
+	 * Starts the async commit policy, if one is configured: until then each transaction is committed.
+	 *
+	 * @param parallelModificationLock the lock held while applying changes to the index,
+	 * held while committing the deferred changes
+	 */
+	void startCommitScheduler(Lock parallelModificationLock) {
+		if ( commitScheduler != null ) {
+			commitScheduler.start( parallelModificationLock );
+		}
 	}
 
 	@Override
@@ -95,6 +141,9 @@ public abstract class AbstractWorkspaceImpl implements Workspace {
 	@Override
 	public void incrementModificationCounter(int modCount) {
 		operations.addAndGet( modCount );
+		if ( commitScheduler != null ) {
+			commitScheduler.operationsApplied( modCount );
+		}
 	}
 
 	@Override
@@ -107,9 +156,58 @@ public abstract class AbstractWorkspaceImpl implements Workspace {
 
 	public void shutDownNow() {
 		log.shuttingDownBackend( indexManager.getIndexName() );
+		if ( commitScheduler != null ) {
+			commitScheduler.stop();
+		}
 		writerHolder.closeIndexWriter();
 	}
 
+	/**
+	 * Invoked after a transaction was applied to decide if it should be committed right away.
+	 * @return false if an async commit policy is going to commit the changes later
+	 */
+	protected boolean isCommitRequired() {
+		return commitScheduler == null || commitScheduler.isCommitDue();
+	}
+
+	/**
+	 * Invoked by the async commit policy to commit the changes of transactions which
+	 * were not committed right away, while holding the parallel modification lock.
+	 */
+	void commitDeferredChanges() {
+		flush();
+	}
+
+	/**
+	 * Commits the changes applied to the IndexWriter, accounting them as committed
+	 * for the async commit policy when the commit is successful.
+	 *
+	 * @param closeWriter true to close the IndexWriter, false to keep it open
+	 */
+	protected void commitIndexWriter(boolean closeWriter) {
+		final long appliedOperations = commitScheduler == null ? 0L : commitScheduler.getAppliedOperations();
+		final boolean committed = closeWriter ? writerHolder.closeIndexWriter() : writerHolder.commitIndexWriter();
+		if ( committed && commitScheduler != null ) {
+			commitScheduler.operationsCommitted( appliedOperations );
+		}
+	}
+
+	/**
+	 * Commits the changes applied so far regardless of the async commit policy, so that
+	 * {@link #rollbackUncommittedChanges()} only discards the changes applied after this.
+	 */
+	void commitAppliedChanges() {
+		commitIndexWriter( false );
+	}
+
+	/**
+	 * Discards the changes applied since the last commit, closing the IndexWriter.
+	 * The caller is expected to hold the exclusive modification lock of the index.
+	 */
+	void rollbackUncommittedChanges() {
+		writerHolder.rollbackIndexWriter();
+	}
+
 	@Override
 	public IndexWriter getIndexWriter() {
 		return writerHolder.getIndexWriter();
@@ -119,6 +217,120 @@ public abstract class AbstractWorkspaceImpl implements Workspace {
 		return writerHolder.getIndexWriter( errorContextBuilder );
 	}
 
+	/**
+	 * Opens an IndexReader having visibility on the uncommitted changes of the IndexWriter.
+	 *
+	 * @param applyDeletes if the uncommitted deletions should be visible as well
+	 * @return the new IndexReader, or null if no IndexWriter is open
+	 */
+	public IndexReader openNRTIndexReader(boolean applyDeletes) {
+		return writerHolder.openNRTIndexReader( applyDeletes );
+	}
+
+	/**
+	 * Adds the segments of the source Directories to this index, optionally replacing all
+	 * of its documents, committing right away regardless of the async commit policy.
+	 * The caller is expected to hold the exclusive modification lock of the index.
+	 *
+	 * @param replaceContent true to delete all documents of the index in the same commit
+	 * @param sources the Directories containing the segments to add
+	 * @throws org.hibernate.search.SearchException if the segments couldn't be added; the index is unchanged in this case
+	 */
+	public void addIndexes(boolean replaceContent, Directory... sources) {
+		addIndexes( replaceContent, Collections.<LuceneWork>emptyList(), sources );
+	}
+
+	/**
+	 * Adds the segments of the source Directories to this index as {@link #addIndexes(boolean, Directory...)},
+	 * then applies the given works again in the same commit.
+	 * The caller is expected to hold the exclusive modification lock of the index.
+	 *
+	 * @param replaceContent true to delete all documents of the index in the same commit
+	 * @param worksToReapply the works to apply after the segments were added
+	 * @param sources the Directories containing the segments to add
+	 * @throws org.hibernate.search.SearchException if the segments couldn't be added; the index is unchanged in this case
+	 */
+	public void addIndexes(boolean replaceContent, Iterable<LuceneWork> worksToReapply, Directory... sources) {
+		// registers as a user of the IndexWriter, released by afterTransactionApplied
+		getIndexWriter();
+		boolean someFailureHappened = true;
+		try {
+			writerHolder.addIndexes( replaceContent, worksToReapply, new LuceneWorkVisitor( this ), sources );
+			someFailureHappened = false;
+		}
+		finally {
+			afterTransactionApplied( someFailureHappened, false );
+		}
+	}
+
+	/**
+	 * Triggers the merges of the segments added by {@link #addIndexes(boolean, Directory...)},
+	 * which are run in the background: the caller doesn't need to hold the exclusive
+	 * modification lock of the index.
+	 */
+	public void maybeMerge() {
+		writerHolder.maybeMerge();
+	}
+
+	/**
+	 * Starts recording the changes applied to the index, as its content is being rebuilt elsewhere:
+	 * the recorded changes are reapplied when the rebuilt content replaces the current one.
+	 */
+	public void startRecordingAppliedWorks() {
+		Map<Class<?>, EntityIndexBinder> entityIndexBinders = new HashMap<Class<?>, EntityIndexBinder>();
+		for ( Class<?> type : entitiesInIndexManager ) {
+			entityIndexBinders.put( type, indexManager.getIndexBindingForEntity( type ) );
+		}
+		AppliedWorksJournal previous = appliedWorksJournal;
+		appliedWorksJournal = new AppliedWorksJournal( entityIndexBinders );
+		if ( previous != null ) {
+			previous.release();
+		}
+	}
+
+	/**
+	 * Stops recording the applied changes, discarding them.
+	 */
+	public void stopRecordingAppliedWorks() {
+		AppliedWorksJournal journal = appliedWorksJournal;
+		appliedWorksJournal = null;
+		if ( journal != null ) {
+			journal.release();
+		}
+	}
+
+	/**
+	 * Replaces the content of the index with the one of the source Directory as
+	 * {@link #addIndexes(boolean, Iterable, Directory...)}, applying again the changes recorded since
+	 * {@link #startRecordingAppliedWorks()} in the same commit, then stops recording.
+	 * The caller is expected to hold the exclusive modification lock of the index.
+	 *
+	 * @param source the Directory containing the new index content
+	 */
+	public void replaceIndexContent(Directory source) {
+		AppliedWorksJournal journal = appliedWorksJournal;
+		appliedWorksJournal = null;
+		try {
+			Iterable<LuceneWork> recordedWorks = journal == null ? Collections.<LuceneWork>emptyList() : journal.getWorks();
+			addIndexes( true, recordedWorks, source );
+		}
+		finally {
+			if ( journal != null ) {
+				journal.release();
+			}
+		}
+	}
+
+	/**
+	 * Invoked after a LuceneWork was successfully applied to the index.
+	 */
+	void workApplied(LuceneWork work) {
+		AppliedWorksJournal journal = appliedWorksJournal;
+		if ( journal != null ) {
+			journal.record( work );
+		}
+	}
+
 	@Override
 	public boolean areSingleTermDeletesSafe() {
 		return indexMetadataIsComplete && entitiesInIndexManager.size() == 1;
@@ -0,0 +1,124 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.backend.impl.lucene;
+
+import java.util.Map;
+
+import org.hibernate.search.backend.AddLuceneWork;
+import org.hibernate.search.backend.DeleteLuceneWork;
+import org.hibernate.search.backend.FlushLuceneWork;
+import org.hibernate.search.backend.LuceneWork;
+import org.hibernate.search.backend.OptimizeLuceneWork;
+import org.hibernate.search.backend.PurgeAllLuceneWork;
+import org.hibernate.search.backend.UpdateLuceneWork;
+import org.hibernate.search.backend.impl.SpillingLuceneWorkQueue;
+import org.hibernate.search.backend.impl.WorkVisitor;
+import org.hibernate.search.engine.spi.EntityIndexBinder;
+
+/**
+ * Records the changes applied to an index, in the order they were applied, so that
+ * they can be applied again to a content replacing the one of the index.
+ * Additions are recorded as updates, as the replacing content might already contain
+ * the same entities; optimizations and flushes don't change the content and are not recorded.
+ * The recorded works retain their Document until the journal is released: beyond
+ * {@link #IN_MEMORY_WORKS} they are serialized to a temporary file, so that a long rebuild
+ * of a busy index doesn't need to hold all of them in memory.
+ *
+ * @author agent <agent@local>
+ */
+final class AppliedWorksJournal implements WorkVisitor<LuceneWork> {
+
+	/**
+	 * Number of recorded works kept in memory, the next ones are written to disk
+	 */
+	private static final int IN_MEMORY_WORKS = 1000;
+
+	// guarded by synchronization on this
+	private final SpillingLuceneWorkQueue works;
+	private boolean released = false;
+
+	/**
+	 * @param entityIndexBinders the bindings of the types stored in the index, used to serialize the works
+	 */
+	AppliedWorksJournal(Map<Class<?>, EntityIndexBinder> entityIndexBinders) {
+		this.works = new SpillingLuceneWorkQueue( IN_MEMORY_WORKS, entityIndexBinders );
+	}
+
+	synchronized void record(LuceneWork work) {
+		if ( released ) {
+			return;
+		}
+		LuceneWork replayed = work.getWorkDelegate( this );
+		if ( replayed != null ) {
+			works.add( replayed );
+		}
+	}
+
+	/**
+	 * @return the recorded works in the order they were applied, read back from disk while iterating;
+	 * valid until {@link #release()}
+	 */
+	synchronized Iterable<LuceneWork> getWorks() {
+		return works;
+	}
+
+	/**
+	 * Discards the recorded works and stops recording.
+	 */
+	synchronized void release() {
+		released = true;
+		works.clear();
+	}
+
+	@Override
+	public LuceneWork getDelegate(AddLuceneWork addLuceneWork) {
+		return new UpdateLuceneWork(
+				addLuceneWork.getId(), addLuceneWork.getIdInString(), addLuceneWork.getEntityClass(),
+				addLuceneWork.getDocument(), addLuceneWork.getFieldToAnalyzerMap()
+		);
+	}
+
+	@Override
+	public LuceneWork getDelegate(DeleteLuceneWork deleteLuceneWork) {
+		return deleteLuceneWork;
+	}
+
+	@Override
+	public LuceneWork getDelegate(OptimizeLuceneWork optimizeLuceneWork) {
+		return null;
+	}
+
+	@Override
+	public LuceneWork getDelegate(PurgeAllLuceneWork purgeAllLuceneWork) {
+		return purgeAllLuceneWork;
+	}
+
+	@Override
+	public LuceneWork getDelegate(UpdateLuceneWork updateLuceneWork) {
+		return updateLuceneWork;
+	}
+
+	@Override
+	public LuceneWork getDelegate(FlushLuceneWork flushLuceneWork) {
+		return null;
+	}
+
+}
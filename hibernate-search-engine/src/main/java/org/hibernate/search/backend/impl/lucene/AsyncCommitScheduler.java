@@ -0,0 +1,147 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.backend.impl.lucene;
+
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.locks.Lock;
+
+import org.hibernate.search.util.logging.impl.Log;
+import org.hibernate.search.util.logging.impl.LoggerFactory;
+
+/**
+ * Commit policy for asynchronous execution: instead of committing after each work list
+ * the workspace commits when the configured number of operations was applied since
+ * the last commit, or at a fixed interval, whichever comes first.
+ * Until it's started, and after it's stopped, each work list is committed.
+ *
+ * @author agent <agent@local>
+ */
+final class AsyncCommitScheduler {
+
+	private static final Log log = LoggerFactory.make();
+
+	private final AbstractWorkspaceImpl workspace;
+	private final String indexName;
+	private final long intervalMillis;
+	private final int maxOperations;
+
+	// guarded by synchronization on this
+	private long appliedOperations = 0;
+	private long committedOperations = 0;
+	private Timer timer;
+	private Lock modificationLock;
+
+	AsyncCommitScheduler(AbstractWorkspaceImpl workspace, String indexName, long intervalMillis, int maxOperations) {
+		this.workspace = workspace;
+		this.indexName = indexName;
+		this.intervalMillis = intervalMillis;
+		this.maxOperations = maxOperations;
+	}
+
+	/**
+	 * @param modificationLock the parallel modification lock of the index, held while committing
+	 * so that the commit doesn't run concurrently with operations needing the exclusive lock.
+	 * Work lists being applied meanwhile might be partially committed, the rest of their changes
+	 * being committed by the next commit.
+	 */
+	synchronized void start(Lock modificationLock) {
+		if ( timer == null ) {
+			this.modificationLock = modificationLock;
+			log.debugf( "Committing index %s every %d ms or %d operations", indexName, intervalMillis, maxOperations );
+			timer = new Timer( "Hibernate Search: Index commit scheduler for index " + indexName, true );
+			timer.schedule( new CommitTask(), intervalMillis, intervalMillis );
+		}
+	}
+
+	synchronized void stop() {
+		if ( timer != null ) {
+			timer.cancel();
+			timer = null;
+		}
+	}
+
+	synchronized void operationsApplied(int count) {
+		appliedOperations += count;
+	}
+
+	/**
+	 * @return the number of operations applied so far; to be read before committing
+	 * and passed to {@link #operationsCommitted(long)} once the commit succeeded.
+	 */
+	synchronized long getAppliedOperations() {
+		return appliedOperations;
+	}
+
+	/**
+	 * Accounts the operations as committed: to be invoked only after a successful commit,
+	 * so that the operations of a failed commit stay pending and are committed by the next run.
+	 *
+	 * @param operations the value of {@link #getAppliedOperations()} read before committing
+	 */
+	synchronized void operationsCommitted(long operations) {
+		if ( operations > committedOperations ) {
+			committedOperations = operations;
+		}
+	}
+
+	/**
+	 * @return true if enough operations where applied since the last commit so that the caller should
+	 * commit right away.
+	 */
+	synchronized boolean isCommitDue() {
+		if ( timer == null ) {
+			return true;
+		}
+		return maxOperations > 0 && appliedOperations - committedOperations >= maxOperations;
+	}
+
+	private synchronized Lock getModificationLock() {
+		return modificationLock;
+	}
+
+	private synchronized boolean hasUncommittedOperations() {
+		return appliedOperations != committedOperations;
+	}
+
+	private final class CommitTask extends TimerTask {
+
+		@Override
+		public void run() {
+			if ( ! hasUncommittedOperations() ) {
+				return;
+			}
+			final Lock lock = getModificationLock();
+			lock.lock();
+			try {
+				workspace.commitDeferredChanges();
+			}
+			catch (RuntimeException e) {
+				// don't let an exception kill the Timer: the operations are still pending, so the next run will commit again
+				log.backendError( e );
+			}
+			finally {
+				lock.unlock();
+			}
+		}
+	}
+
+}
@@ -40,15 +40,15 @@ public class ExclusiveIndexWorkspaceImpl extends AbstractWorkspaceImpl {
 			writerHolder.forceLockRelease();
 		}
 		else {
-			if ( ! streaming ) {
-				writerHolder.commitIndexWriter();
+			if ( ! streaming && isCommitRequired() ) {
+				commitIndexWriter( false );
 			}
 		}
 	}
 
 	@Override
 	public void flush() {
-		writerHolder.commitIndexWriter();
+		commitIndexWriter( false );
 	}
 
 }
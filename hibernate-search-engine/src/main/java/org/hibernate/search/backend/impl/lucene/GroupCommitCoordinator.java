@@ -0,0 +1,178 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.backend.impl.lucene;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+import org.hibernate.search.SearchException;
+import org.hibernate.search.backend.IndexingMonitor;
+import org.hibernate.search.backend.LuceneWork;
+import org.hibernate.search.util.logging.impl.Log;
+import org.hibernate.search.util.logging.impl.LoggerFactory;
+
+/**
+ * Groups the commits of concurrent transactions when using synchronous execution:
+ * the work of all transactions waiting in the queue is applied to the IndexWriter,
+ * then a single commit is performed and all waiting transactions are released.
+ * Transactions arriving while a commit is in progress will share the next commit.
+ *
+ * @author agent <agent@local>
+ */
+final class GroupCommitCoordinator {
+
+	private static final Log log = LoggerFactory.make();
+
+	private final BlockingQueue<PendingTransaction> pending = new LinkedBlockingQueue<PendingTransaction>();
+	private final int maxBatchSize;
+	private final long maxWaitNanos;
+
+	GroupCommitCoordinator(int maxBatchSize, long maxWaitMillis) {
+		this.maxBatchSize = maxBatchSize;
+		this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos( maxWaitMillis );
+	}
+
+	/**
+	 * Enqueues the work list and blocks until it's applied and committed.
+	 */
+	void applyWorkAndWait(List<LuceneWork> workList, IndexingMonitor monitor, LuceneBackendResources resources) {
+		PendingTransaction transaction = new PendingTransaction( workList, monitor, resources );
+		pending.add( transaction );
+		// each transaction schedules a group task: it might find the queue already drained by a previous one,
+		// but this way there's never a transaction waiting without a task to process it.
+		resources.getQueueingExecutor().execute( new GroupCommitTask() );
+		transaction.awaitCommit();
+	}
+
+	private List<PendingTransaction> collectGroup() {
+		List<PendingTransaction> group = new ArrayList<PendingTransaction>();
+		pending.drainTo( group, maxBatchSize );
+		if ( group.isEmpty() || maxWaitNanos == 0 ) {
+			return group;
+		}
+		final long deadline = System.nanoTime() + maxWaitNanos;
+		try {
+			while ( group.size() < maxBatchSize ) {
+				long remaining = deadline - System.nanoTime();
+				if ( remaining <= 0 ) {
+					break;
+				}
+				PendingTransaction next = pending.poll( remaining, TimeUnit.NANOSECONDS );
+				if ( next == null ) {
+					break;
+				}
+				group.add( next );
+				pending.drainTo( group, maxBatchSize - group.size() );
+			}
+		}
+		catch (InterruptedException e) {
+			log.interruptedWhileWaitingForIndexActivity( e );
+			Thread.currentThread().interrupt();
+		}
+		return group;
+	}
+
+	/**
+	 * Runs in the queueing executor of the index: applies a group of transactions and commits once.
+	 */
+	private final class GroupCommitTask implements Runnable {
+
+		@Override
+		public void run() {
+			List<PendingTransaction> group = collectGroup();
+			if ( group.isEmpty() ) {
+				return;
+			}
+			Throwable failure = null;
+			try {
+				LuceneBackendResources resources = null;
+				for ( PendingTransaction transaction : group ) {
+					resources = transaction.resources;
+					new LuceneBackendQueueTask( transaction.workList, resources, transaction.monitor, false ).run();
+				}
+				commit( resources );
+				if ( log.isTraceEnabled() ) {
+					log.tracef( "Committed a group of %d transactions on index %s", group.size(), resources.getIndexName() );
+				}
+			}
+			catch (RuntimeException e) {
+				failure = e;
+				throw e;
+			}
+			finally {
+				for ( PendingTransaction transaction : group ) {
+					transaction.release( failure );
+				}
+			}
+		}
+
+		private void commit(LuceneBackendResources resources) {
+			Lock modificationLock = resources.getParallelModificationLock();
+			modificationLock.lock();
+			try {
+				resources.getWorkspace().flush();
+			}
+			finally {
+				modificationLock.unlock();
+			}
+		}
+	}
+
+	private static final class PendingTransaction {
+
+		private final List<LuceneWork> workList;
+		private final IndexingMonitor monitor;
+		private final LuceneBackendResources resources;
+		private final CountDownLatch committed = new CountDownLatch( 1 );
+		private volatile Throwable failure;
+
+		PendingTransaction(List<LuceneWork> workList, IndexingMonitor monitor, LuceneBackendResources resources) {
+			this.workList = workList;
+			this.monitor = monitor;
+			this.resources = resources;
+		}
+
+		void release(Throwable failure) {
+			this.failure = failure;
+			committed.countDown();
+		}
+
+		void awaitCommit() {
+			try {
+				committed.await();
+			}
+			catch (InterruptedException e) {
+				log.interruptedWhileWaitingForIndexActivity( e );
+				Thread.currentThread().interrupt();
+				return;
+			}
+			if ( failure != null ) {
+				throw new SearchException( "Error applying updates to the Lucene index", failure );
+			}
+		}
+	}
+
+}
@@ -21,6 +21,7 @@
 package org.hibernate.search.backend.impl.lucene;
 
 import java.io.IOException;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.SimpleAnalyzer;
@@ -32,8 +33,12 @@ import org.apache.lucene.index.LogByteSizeMergePolicy;
 import org.apache.lucene.index.MergeScheduler;
 import org.apache.lucene.index.IndexWriterConfig.OpenMode;
 import org.apache.lucene.search.Similarity;
+import org.apache.lucene.store.AlreadyClosedException;
+import org.apache.lucene.store.Directory;
 
 import org.hibernate.search.Environment;
+import org.hibernate.search.backend.LuceneWork;
+import org.hibernate.search.backend.impl.lucene.works.LuceneWorkVisitor;
 import org.hibernate.search.backend.impl.lucene.overrides.ConcurrentMergeScheduler;
 import org.hibernate.search.backend.spi.LuceneIndexingParameters;
 import org.hibernate.search.backend.spi.LuceneIndexingParameters.ParameterSet;
@@ -65,16 +70,31 @@ class IndexWriterHolder {
 	private final DirectoryProvider directoryProvider;
 	private final String indexName;
 	
+	/**
+	 * Protects the lifecycle of the IndexWriter: opening, closing and forced unlocking.
+	 * Readers of an already open IndexWriter don't need it.
+	 */
+	private final ReentrantLock writerInitializationLock = new ReentrantLock();
+
+	/**
+	 * Serializes commits; acquired after writerInitializationLock when both are needed
+	 * so that a close can't happen in the middle of a commit.
+	 */
+	private final ReentrantLock commitLock = new ReentrantLock();
+
 	// variable state:
 	
 	/**
-	 * Current open IndexWriter, or null when closed. Guarded by synchronization.
+	 * Current open IndexWriter, or null when closed. Written only while holding writerInitializationLock,
+	 * volatile so that an already open IndexWriter can be read without locking.
 	 */
-	private IndexWriter writer;
+	private volatile IndexWriter writer;
 
+	private final DirectoryBasedIndexManager indexManager;
 
 	IndexWriterHolder(ErrorHandler errorHandler, DirectoryBasedIndexManager indexManager) {
 		this.errorHandler = errorHandler;
+		this.indexManager = indexManager;
 		this.indexName = indexManager.getIndexName();
 		this.luceneParameters = indexManager.getIndexingParameters();
 		this.indexParameters = luceneParameters.getIndexParameters();
@@ -95,18 +115,31 @@ class IndexWriterHolder {
 	 *  Is an optional parameter.
 	 * @return a new IndexWriter or one already open.
 	 */
-	public synchronized IndexWriter getIndexWriter(ErrorContextBuilder errorContextBuilder) {
-		if ( writer != null )
-			return writer;
+	public IndexWriter getIndexWriter(ErrorContextBuilder errorContextBuilder) {
+		IndexWriter indexWriter = writer;
+		if ( indexWriter != null ) {
+			return indexWriter;
+		}
+		writerInitializationLock.lock();
 		try {
-			writer = createNewIndexWriter();
-			log.trace( "IndexWriter opened" );
+			indexWriter = writer;
+			if ( indexWriter == null ) {
+				try {
+					indexWriter = createNewIndexWriter();
+					log.trace( "IndexWriter opened" );
+					writer = indexWriter;
+				}
+				catch ( IOException ioe ) {
+					indexWriter = null;
+					writer = null;
+					handleIOException( ioe, errorContextBuilder );
+				}
+			}
 		}
-		catch ( IOException ioe ) {
-			writer = null;
-			handleIOException( ioe, errorContextBuilder );
+		finally {
+			writerInitializationLock.unlock();
 		}
-		return writer;
+		return indexWriter;
 	}
 
 	public IndexWriter getIndexWriter() {
@@ -131,81 +164,252 @@ class IndexWriterHolder {
 	/**
 	 * Commits changes to a previously opened IndexWriter.
 	 * @param errorContextBuilder use it to handle exceptions, as it might contain a reference to the work performed before the commit
+	 * @return false if the commit failed, true otherwise
 	 */
-	//TODO HSEARCH-852 : a commit should not block a getIndexWriter: split the locking
-	public synchronized void commitIndexWriter(ErrorContextBuilder errorContextBuilder) {
-		if ( writer != null ) {
-			try {
-				writer.commit();
-				log.trace( "Index changes commited." );
-			}
-			catch ( IOException ioe ) {
-				handleIOException( ioe, errorContextBuilder );
+	public boolean commitIndexWriter(ErrorContextBuilder errorContextBuilder) {
+		boolean committed = false;
+		boolean failed = false;
+		commitLock.lock();
+		try {
+			// read the writer only after acquiring the commitLock: a concurrent close might have happened
+			IndexWriter indexWriter = writer;
+			if ( indexWriter != null ) {
+				try {
+					indexWriter.commit();
+					committed = true;
+					log.trace( "Index changes commited." );
+				}
+				catch ( IOException ioe ) {
+					failed = true;
+					handleIOException( ioe, errorContextBuilder );
+				}
 			}
 		}
+		finally {
+			commitLock.unlock();
+		}
+		if ( committed ) {
+			// outside of the locks: the listeners open IndexReaders, which must not delay other commits
+			indexManager.notifyIndexChanged();
+		}
+		return ! failed;
 	}
 
 	/**
 	 * @see #commitIndexWriter(ErrorContextBuilder)
 	 */
-	public void commitIndexWriter() {
-		commitIndexWriter( null );
+	public boolean commitIndexWriter() {
+		return commitIndexWriter( null );
 	}
 
 	/**
 	 * Closes a previously opened IndexWriter.
+	 * @return false if committing the changes while closing failed, true otherwise
+	 */
+	public boolean closeIndexWriter() {
+		boolean committed = false;
+		boolean failed = false;
+		writerInitializationLock.lock();
+		try {
+			commitLock.lock();
+			try {
+				IndexWriter toClose = writer;
+				writer = null;
+				if ( toClose != null ) {
+					try {
+						toClose.close();
+						committed = true;
+						log.trace( "IndexWriter closed" );
+					}
+					catch ( IOException ioe ) {
+						failed = true;
+						forceLockRelease();
+						handleIOException( ioe, null );
+					}
+				}
+			}
+			finally {
+				commitLock.unlock();
+			}
+		}
+		finally {
+			writerInitializationLock.unlock();
+		}
+		if ( committed ) {
+			indexManager.notifyIndexChanged();
+		}
+		return ! failed;
+	}
+
+	/**
+	 * Closes a previously opened IndexWriter, discarding the changes applied since the last commit.
+	 */
+	public void rollbackIndexWriter() {
+		writerInitializationLock.lock();
+		try {
+			commitLock.lock();
+			try {
+				IndexWriter toRollback = writer;
+				writer = null;
+				rollback( toRollback );
+				log.trace( "IndexWriter rolled back" );
+			}
+			finally {
+				commitLock.unlock();
+			}
+		}
+		finally {
+			writerInitializationLock.unlock();
+		}
+	}
+
+	/**
+	 * Adds the segments of the source Directories to the index, optionally replacing all
+	 * documents of the index, in a single commit so that readers never see a partially
+	 * imported index. Pending changes are committed first; on failure the import is rolled
+	 * back and the IndexWriter is closed.
+	 *
+	 * @param replaceContent true to delete all documents of the index in the same commit
+	 * @param worksToReapply works applied after the segments were added, in the same commit
+	 * @param visitor the visitor applying the works to reapply
+	 * @param sources the Directories containing the segments to add
 	 */
-	public synchronized void closeIndexWriter() {
-		IndexWriter toClose = writer;
-		writer = null;
-		if ( toClose != null ) {
+	public void addIndexes(boolean replaceContent, Iterable<LuceneWork> worksToReapply, LuceneWorkVisitor visitor,
+			Directory... sources) {
+		boolean committed = false;
+		writerInitializationLock.lock();
+		try {
+			commitLock.lock();
 			try {
-				toClose.close();
-				log.trace( "IndexWriter closed" );
+				IndexWriter indexWriter = writer;
+				try {
+					if ( indexWriter == null ) {
+						indexWriter = createNewIndexWriter();
+						writer = indexWriter;
+					}
+					indexWriter.commit();
+					// the pending changes are visible even if adding the segments fails
+					committed = true;
+					if ( replaceContent ) {
+						indexWriter.deleteAll();
+					}
+					indexWriter.addIndexes( sources );
+					for ( LuceneWork work : worksToReapply ) {
+						work.getWorkDelegate( visitor ).performWork( work, indexWriter, null );
+					}
+					indexWriter.commit();
+					log.trace( "Segments of other directories added to the index" );
+				}
+				catch ( IOException ioe ) {
+					writer = null;
+					rollback( indexWriter );
+					throw log.unableToAddIndexes( indexName, ioe );
+				}
+				catch ( RuntimeException e ) {
+					// failed to reapply a work
+					writer = null;
+					rollback( indexWriter );
+					throw e;
+				}
+			}
+			finally {
+				commitLock.unlock();
+			}
+		}
+		finally {
+			writerInitializationLock.unlock();
+			if ( committed ) {
+				indexManager.notifyIndexChanged();
+			}
+		}
+	}
+
+	/**
+	 * Triggers the merges needed by the merge policy, if an IndexWriter is open: they are
+	 * run in the background by the merge scheduler and committed by the following commits.
+	 * Invoked after adding the segments of other directories, as addIndexes doesn't merge them.
+	 */
+	public void maybeMerge() {
+		IndexWriter indexWriter = writer;
+		if ( indexWriter != null ) {
+			try {
+				indexWriter.maybeMerge();
+			}
+			catch ( AlreadyClosedException ace ) {
+				// closed concurrently: closing the IndexWriter triggers the merges
+				log.trace( "IndexWriter closed before triggering the merges" );
 			}
 			catch ( IOException ioe ) {
-				forceLockRelease();
 				handleIOException( ioe, null );
 			}
 		}
 	}
 
+	private void rollback(IndexWriter indexWriter) {
+		if ( indexWriter != null ) {
+			try {
+				// closes the IndexWriter, discarding the uncommitted changes
+				indexWriter.rollback();
+			}
+			catch ( IOException ioe ) {
+				log.trace( "IndexWriter rollback failed", ioe );
+			}
+		}
+	}
+
 	/**
 	 * Forces release of Directory lock. Should be used only to cleanup as error recovery.
 	 */
-	public synchronized void forceLockRelease() {
+	public void forceLockRelease() {
 		log.forcingReleaseIndexWriterLock();
+		writerInitializationLock.lock();
 		try {
+			commitLock.lock();
 			try {
-				if ( writer != null ) {
-					writer.close();
-					log.trace( "IndexWriter closed" );
+				IndexWriter toClose = writer;
+				try {
+					if ( toClose != null ) {
+						toClose.close();
+						log.trace( "IndexWriter closed" );
+					}
+				}
+				finally {
+					writer = null; //make sure to send a faulty writer into garbage
+					IndexWriter.unlock( directoryProvider.getDirectory() );
 				}
 			}
 			finally {
-				writer = null; //make sure to send a faulty writer into garbage
-				IndexWriter.unlock( directoryProvider.getDirectory() );
+				commitLock.unlock();
 			}
 		}
 		catch (IOException ioe) {
 			handleIOException( ioe, null );
 		}
+		finally {
+			writerInitializationLock.unlock();
+		}
 	}
 
 	/**
 	 * Opens an IndexReader having visibility on uncommitted writes from
 	 * the IndexWriter, if any writer is open, or null if no IndexWriter is open.
+	 * Doesn't need locking: opening an NRT reader is safe during a commit, and if
+	 * the IndexWriter is closed concurrently it behaves as if no IndexWriter was open.
 	 */
-	//TODO HSEARCH-852 : fine grained synchronization
-	public synchronized IndexReader openNRTIndexReader(boolean applyDeletes) {
+	public IndexReader openNRTIndexReader(boolean applyDeletes) {
+		final IndexWriter indexWriter = writer;
 		try {
-			if ( writer != null ) {
-				return IndexReader.open( writer, applyDeletes );
+			if ( indexWriter != null ) {
+				return IndexReader.open( indexWriter, applyDeletes );
 			}
 			else {
 				return null;
 			}
 		}
+		catch ( AlreadyClosedException ace ) {
+			log.trace( "IndexWriter was closed while opening an NRT IndexReader" );
+			return null;
+		}
 		// following exceptions should be propagated as the IndexReader is needed by
 		// the main thread
 		catch ( CorruptIndexException cie ) {
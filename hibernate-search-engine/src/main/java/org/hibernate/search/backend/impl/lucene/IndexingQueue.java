@@ -0,0 +1,509 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.backend.impl.lucene;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hibernate.search.SearchException;
+import org.hibernate.search.backend.DeleteLuceneWork;
+import org.hibernate.search.backend.FlushLuceneWork;
+import org.hibernate.search.backend.IndexingMonitor;
+import org.hibernate.search.backend.LuceneWork;
+import org.hibernate.search.backend.UpdateLuceneWork;
+import org.hibernate.search.batchindexing.impl.Executors;
+import org.hibernate.search.exception.ErrorHandler;
+import org.hibernate.search.indexes.spi.IndexManager;
+import org.hibernate.search.util.logging.impl.Log;
+import org.hibernate.search.util.logging.impl.LoggerFactory;
+
+/**
+ * The queue of changes waiting to be applied to one index.
+ * Besides owning the single threaded executor applying the changes, in async mode it can
+ * coalesce changes to the same entity which are still waiting in the queue, and decides
+ * what to do when the queue is full according to the {@link QueueOverflowPolicy}.
+ * It also keeps statistics about the time spent by changes in the queue.
+ *
+ * @author agent <agent@local>
+ */
+public final class IndexingQueue {
+
+	private static final Log log = LoggerFactory.make();
+
+	private final String indexName;
+	private final IndexManager indexManager;
+	private final ErrorHandler errorHandler;
+	private final QueueOverflowPolicy overflowPolicy;
+	private final boolean coalescing;
+	private final ThreadPoolExecutor executor;
+
+	/**
+	 * Position of the latest queued change for each entity, guarded by this
+	 */
+	private final Map<EntityKey, QueuedWork> latestQueuedWork = new HashMap<EntityKey, QueuedWork>();
+
+	/**
+	 * Tasks which didn't fit in the executor queue, in order; guarded by spillLock
+	 */
+	private final LinkedList<SpilledTask> spilledTasks = new LinkedList<SpilledTask>();
+	private final Object spillLock = new Object();
+
+	/**
+	 * True while a thread is handing the spilled tasks over to the executor: new tasks
+	 * need to be spilled meanwhile to stay behind them. Guarded by spillLock
+	 */
+	private boolean draining = false;
+
+	private final AtomicLong executedTaskCount = new AtomicLong();
+	private final AtomicLong totalWaitNanos = new AtomicLong();
+	private final AtomicLong maxWaitNanos = new AtomicLong();
+	private final AtomicLong coalescedWorkCount = new AtomicLong();
+	private final AtomicLong spilledTaskCount = new AtomicLong();
+
+	IndexingQueue(String indexName, IndexManager indexManager, ErrorHandler errorHandler, int maxQueueLength,
+			QueueOverflowPolicy overflowPolicy, boolean coalescing) {
+		this.indexName = indexName;
+		this.indexManager = indexManager;
+		this.errorHandler = errorHandler;
+		this.overflowPolicy = overflowPolicy;
+		this.coalescing = coalescing;
+		this.executor = Executors.newFixedThreadPool(
+				1,
+				"Index updates queue processor for index " + indexName,
+				maxQueueLength,
+				overflowPolicy == QueueOverflowPolicy.CALLER_RUNS
+						? new ThreadPoolExecutor.CallerRunsPolicy()
+						: new Executors.BlockPolicy()
+		);
+		if ( overflowPolicy == QueueOverflowPolicy.SPILL_TO_DISK ) {
+			// so that every task we hand over goes to the queue, whose capacity we check
+			executor.prestartAllCoreThreads();
+		}
+	}
+
+	/**
+	 * @return the executor processing the changes in order
+	 */
+	public ThreadPoolExecutor getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * Enqueues a list of changes to be applied asynchronously.
+	 *
+	 * @param workList the changes
+	 * @param resources the resources to use to apply them
+	 * @param monitor will be notified of the progress, might be null
+	 */
+	void submitAsync(List<LuceneWork> workList, LuceneBackendResources resources, IndexingMonitor monitor) {
+		QueuedTask task = new QueuedTask( workList, resources, monitor, System.nanoTime() );
+		if ( overflowPolicy == QueueOverflowPolicy.SPILL_TO_DISK ) {
+			enqueueOrSpill( task );
+		}
+		else {
+			enqueue( task );
+		}
+	}
+
+	private void enqueue(QueuedTask task) {
+		if ( coalescing ) {
+			register( task );
+		}
+		executor.execute( task );
+	}
+
+	private void enqueueOrSpill(QueuedTask task) {
+		SpilledTask spilled;
+		synchronized ( spillLock ) {
+			// all spilled tasks need to be enqueued first to preserve ordering
+			if ( !draining && spilledTasks.isEmpty() && executor.getQueue().remainingCapacity() > 0 ) {
+				enqueue( task );
+				return;
+			}
+			spilled = new SpilledTask( task );
+			spilledTasks.addLast( spilled );
+			spilledTaskCount.incrementAndGet();
+		}
+		// the position in the queue is taken: write to disk without blocking the other producers
+		spilled.writeToDisk();
+	}
+
+	/**
+	 * Hands all spilled tasks over to the executor, blocking if needed:
+	 * to be invoked before shutting down the executor.
+	 */
+	void enqueueSpilledTasks() {
+		drainSpilledTasks( true );
+	}
+
+	/**
+	 * Hands the spilled tasks over to the executor in order. The lock is not held while
+	 * reading them from disk nor while waiting for room in the executor queue: the draining
+	 * flag makes the tasks submitted meanwhile wait behind them instead.
+	 *
+	 * @param waitForRoom true to hand all tasks over, blocking when the executor queue is full;
+	 * false to stop as soon as the executor queue is full
+	 */
+	private void drainSpilledTasks(boolean waitForRoom) {
+		synchronized ( spillLock ) {
+			while ( waitForRoom && draining ) {
+				try {
+					spillLock.wait();
+				}
+				catch (InterruptedException e) {
+					log.interruptedWhileWaitingForIndexActivity( e );
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+			if ( draining || spilledTasks.isEmpty() ) {
+				return;
+			}
+			draining = true;
+		}
+		boolean done = false;
+		try {
+			SpilledTask next;
+			while ( ( next = nextSpilledTask( waitForRoom ) ) != null ) {
+				enqueue( next );
+			}
+			done = true;
+		}
+		finally {
+			if ( !done ) {
+				stopDraining();
+			}
+		}
+	}
+
+	/**
+	 * @return the next spilled task to hand over, or null after having stopped draining
+	 */
+	private SpilledTask nextSpilledTask(boolean waitForRoom) {
+		synchronized ( spillLock ) {
+			// only this thread adds to the executor queue while draining, so there's still room after the check
+			if ( spilledTasks.isEmpty() || ( !waitForRoom && executor.getQueue().remainingCapacity() == 0 ) ) {
+				stopDraining();
+				return null;
+			}
+			return spilledTasks.removeFirst();
+		}
+	}
+
+	private void stopDraining() {
+		synchronized ( spillLock ) {
+			draining = false;
+			spillLock.notifyAll();
+		}
+	}
+
+	private void enqueue(SpilledTask spilled) {
+		QueuedTask task;
+		try {
+			task = spilled.reload();
+		}
+		catch (RuntimeException e) {
+			SearchException searchException = log.unableToReadSpilledIndexingWork( indexName, e );
+			errorHandler.handleException( searchException.getMessage(), searchException );
+			return;
+		}
+		enqueue( task );
+	}
+
+	private synchronized void register(QueuedTask task) {
+		List<LuceneWork> works = task.workList;
+		for ( int i = 0; i < works.size(); i++ ) {
+			LuceneWork work = works.get( i );
+			if ( work.getIdInString() == null ) {
+				continue;
+			}
+			EntityKey key = new EntityKey( work.getEntityClass(), work.getIdInString() );
+			QueuedWork previous = latestQueuedWork.put( key, new QueuedWork( task, i ) );
+			if ( previous != null && previous.task != task && supersedes( work ) ) {
+				// an update or a delete overwrites whatever the previous change was
+				previous.task.superseded[previous.index] = true;
+				coalescedWorkCount.incrementAndGet();
+			}
+		}
+	}
+
+	private static boolean supersedes(LuceneWork work) {
+		return work instanceof UpdateLuceneWork || work instanceof DeleteLuceneWork;
+	}
+
+	/**
+	 * Marks the task as started so that no more changes will be coalesced into it.
+	 *
+	 * @return the changes of the task which were not superseded by later ones
+	 */
+	private synchronized List<LuceneWork> start(QueuedTask task) {
+		List<LuceneWork> works = task.workList;
+		List<LuceneWork> effective = new ArrayList<LuceneWork>( works.size() );
+		for ( int i = 0; i < works.size(); i++ ) {
+			LuceneWork work = works.get( i );
+			if ( !task.superseded[i] ) {
+				effective.add( work );
+			}
+			if ( work.getIdInString() != null ) {
+				EntityKey key = new EntityKey( work.getEntityClass(), work.getIdInString() );
+				QueuedWork latest = latestQueuedWork.get( key );
+				if ( latest != null && latest.task == task ) {
+					latestQueuedWork.remove( key );
+				}
+			}
+		}
+		return effective;
+	}
+
+	private void recordWaitTime(long waitNanos) {
+		executedTaskCount.incrementAndGet();
+		totalWaitNanos.addAndGet( waitNanos );
+		long currentMax = maxWaitNanos.get();
+		while ( waitNanos > currentMax && !maxWaitNanos.compareAndSet( currentMax, waitNanos ) ) {
+			currentMax = maxWaitNanos.get();
+		}
+	}
+
+	public String getIndexName() {
+		return indexName;
+	}
+
+	/**
+	 * @return the number of change sets waiting to be applied, including the ones spilled to disk
+	 */
+	public int getDepth() {
+		int spilled;
+		synchronized ( spillLock ) {
+			spilled = spilledTasks.size();
+		}
+		return executor.getQueue().size() + spilled;
+	}
+
+	/**
+	 * @return the number of change sets taken from the queue and applied
+	 */
+	public long getExecutedTaskCount() {
+		return executedTaskCount.get();
+	}
+
+	/**
+	 * @return the total time spent in the queue by the applied change sets, in nanoseconds
+	 */
+	public long getTotalWaitTime() {
+		return totalWaitNanos.get();
+	}
+
+	/**
+	 * @return the longest time spent in the queue by an applied change set, in nanoseconds
+	 */
+	public long getMaxWaitTime() {
+		return maxWaitNanos.get();
+	}
+
+	/**
+	 * @return the number of changes which were not applied as superseded by a later change
+	 */
+	public long getCoalescedWorkCount() {
+		return coalescedWorkCount.get();
+	}
+
+	/**
+	 * @return the number of change sets which didn't fit in the queue and were spilled
+	 */
+	public long getSpilledTaskCount() {
+		return spilledTaskCount.get();
+	}
+
+	private final class QueuedTask implements Runnable {
+
+		private final List<LuceneWork> workList;
+		private final LuceneBackendResources resources;
+		private final IndexingMonitor monitor;
+		private final long enqueueTime;
+		private final boolean[] superseded;
+
+		QueuedTask(List<LuceneWork> workList, LuceneBackendResources resources, IndexingMonitor monitor, long enqueueTime) {
+			this.workList = workList;
+			this.resources = resources;
+			this.monitor = monitor;
+			this.enqueueTime = enqueueTime;
+			this.superseded = new boolean[workList.size()];
+		}
+
+		@Override
+		public void run() {
+			try {
+				recordWaitTime( System.nanoTime() - enqueueTime );
+				List<LuceneWork> effective = coalescing ? start( this ) : workList;
+				if ( !effective.isEmpty() ) {
+					new LuceneBackendQueueTask( effective, resources, monitor ).run();
+				}
+			}
+			finally {
+				if ( overflowPolicy == QueueOverflowPolicy.SPILL_TO_DISK ) {
+					drainSpilledTasks( false );
+				}
+			}
+		}
+	}
+
+	private final class SpilledTask {
+
+		private final LuceneBackendResources resources;
+		private final IndexingMonitor monitor;
+		private final long enqueueTime;
+
+		// guarded by this: the task is kept in memory until written to disk
+		private List<LuceneWork> workList;
+		private File file;
+		private boolean reloaded = false;
+
+		SpilledTask(QueuedTask task) {
+			this.resources = task.resources;
+			this.monitor = task.monitor;
+			this.enqueueTime = task.enqueueTime;
+			this.workList = task.workList;
+		}
+
+		/**
+		 * Writes the changes to disk, unless they were already handed over to the executor;
+		 * if they can't be written they are kept in memory.
+		 */
+		synchronized void writeToDisk() {
+			if ( reloaded ) {
+				return;
+			}
+			for ( LuceneWork work : workList ) {
+				if ( work instanceof FlushLuceneWork ) {
+					// not supported by the serializer
+					return;
+				}
+			}
+			File written = null;
+			try {
+				byte[] data = indexManager.getSerializer().toSerializedModel( workList );
+				written = File.createTempFile( "hsearch-queue-", ".bin" );
+				OutputStream out = new FileOutputStream( written );
+				try {
+					out.write( data );
+				}
+				finally {
+					out.close();
+				}
+				file = written;
+				workList = null;
+				return;
+			}
+			catch (IOException e) {
+				log.unableToSpillIndexingWork( indexName, e );
+			}
+			catch (SearchException e) {
+				log.unableToSpillIndexingWork( indexName, e );
+			}
+			if ( written != null ) {
+				written.delete();
+			}
+		}
+
+		synchronized QueuedTask reload() {
+			reloaded = true;
+			if ( file == null ) {
+				return new QueuedTask( workList, resources, monitor, enqueueTime );
+			}
+			try {
+				byte[] data = new byte[(int) file.length()];
+				InputStream in = new FileInputStream( file );
+				try {
+					int read = 0;
+					while ( read < data.length ) {
+						int count = in.read( data, read, data.length - read );
+						if ( count < 0 ) {
+							throw new IOException( "Unexpected end of file " + file );
+						}
+						read += count;
+					}
+				}
+				finally {
+					in.close();
+				}
+				List<LuceneWork> reloadedWorks = indexManager.getSerializer().toLuceneWorks( data );
+				return new QueuedTask( reloadedWorks, resources, monitor, enqueueTime );
+			}
+			catch (IOException e) {
+				throw new SearchException( e );
+			}
+			finally {
+				file.delete();
+			}
+		}
+	}
+
+	private static final class QueuedWork {
+
+		private final QueuedTask task;
+		private final int index;
+
+		QueuedWork(QueuedTask task, int index) {
+			this.task = task;
+			this.index = index;
+		}
+	}
+
+	private static final class EntityKey {
+
+		private final Class<?> entityClass;
+		private final String id;
+
+		EntityKey(Class<?> entityClass, String id) {
+			this.entityClass = entityClass;
+			this.id = id;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if ( this == obj ) {
+				return true;
+			}
+			if ( !( obj instanceof EntityKey ) ) {
+				return false;
+			}
+			EntityKey other = (EntityKey) obj;
+			return entityClass == other.entityClass && id.equals( other.id );
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * entityClass.hashCode() + id.hashCode();
+		}
+	}
+
+}
@@ -29,11 +29,13 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.locks.Lock;
 
+import org.apache.lucene.store.Directory;
 import org.hibernate.search.SearchException;
 import org.hibernate.search.backend.BackendFactory;
 import org.hibernate.search.backend.IndexingMonitor;
 import org.hibernate.search.backend.LuceneWork;
 import org.hibernate.search.backend.spi.BackendQueueProcessor;
+import org.hibernate.search.indexes.impl.CommonPropertiesParse;
 import org.hibernate.search.indexes.impl.DirectoryBasedIndexManager;
 import org.hibernate.search.spi.WorkerBuildContext;
 import org.hibernate.search.util.logging.impl.Log;
@@ -57,9 +59,18 @@ public class LuceneBackendQueueProcessor implements BackendQueueProcessor {
 	private boolean sync;
 	private AbstractWorkspaceImpl workspaceOverride;
 	private LuceneBackendTaskStreamer streamWorker;
+	private GroupCommitCoordinator groupCommit;
 
 	public void initialize(Properties props, WorkerBuildContext context, DirectoryBasedIndexManager indexManager) {
 		sync = BackendFactory.isConfiguredAsSync( props );
+		if ( sync && CommonPropertiesParse.isGroupCommitEnabled( props ) ) {
+			final String indexName = indexManager.getIndexName();
+			log.debugf( "Enabling group commit for index %s", indexName );
+			groupCommit = new GroupCommitCoordinator(
+					CommonPropertiesParse.extractGroupCommitMaxBatchSize( indexName, props ),
+					CommonPropertiesParse.extractGroupCommitMaxWait( indexName, props )
+			);
+		}
 		if ( workspaceOverride == null ) {
 			workspaceOverride = WorkspaceFactory.createWorkspace(
 					indexManager, context, props
@@ -67,6 +78,7 @@ public class LuceneBackendQueueProcessor implements BackendQueueProcessor {
 		}
 		resources = new LuceneBackendResources( context, indexManager, props, workspaceOverride );
 		streamWorker = new LuceneBackendTaskStreamer( resources );
+		workspaceOverride.startCommitScheduler( resources.getParallelModificationLock() );
 	}
 
 	public void close() {
@@ -86,12 +98,16 @@ public class LuceneBackendQueueProcessor implements BackendQueueProcessor {
 		if ( workList == null ) {
 			throw new IllegalArgumentException( "workList should not be null" );
 		}
-		LuceneBackendQueueTask luceneBackendQueueProcessor = new LuceneBackendQueueTask(
-				workList,
-				resources,
-				monitor
-		);
+		if ( groupCommit != null ) {
+			groupCommit.applyWorkAndWait( workList, monitor, resources );
+			return;
+		}
 		if ( sync ) {
+			LuceneBackendQueueTask luceneBackendQueueProcessor = new LuceneBackendQueueTask(
+					workList,
+					resources,
+					monitor
+			);
 			Future<?> future = resources.getQueueingExecutor().submit( luceneBackendQueueProcessor );
 			try {
 				future.get();
@@ -105,7 +121,7 @@ public class LuceneBackendQueueProcessor implements BackendQueueProcessor {
 			}
 		}
 		else {
-			resources.getQueueingExecutor().execute( luceneBackendQueueProcessor );
+			resources.getIndexingQueue().submitAsync( workList, resources, monitor );
 		}
 	}
 
@@ -114,6 +130,134 @@ public class LuceneBackendQueueProcessor implements BackendQueueProcessor {
 		return resources.getExclusiveModificationLock();
 	}
 
+	/**
+	 * Starts recording the changes applied to the index, to be reapplied by
+	 * {@link #replaceIndexContent(Directory)} on the content being rebuilt.
+	 */
+	public void startRecordingChanges() {
+		resources.getWorkspace().startRecordingAppliedWorks();
+	}
+
+	/**
+	 * Stops recording the changes applied to the index, discarding them.
+	 */
+	public void stopRecordingChanges() {
+		resources.getWorkspace().stopRecordingAppliedWorks();
+	}
+
+	/**
+	 * Atomically replaces the content of the index with the one of the source Directory,
+	 * waiting for other modifications of the index to complete first.
+	 * The changes recorded since {@link #startRecordingChanges()} are applied again
+	 * to the new content in the same commit, so that they are not lost by the swap.
+	 *
+	 * @param source the Directory containing the new index content
+	 * @see AbstractWorkspaceImpl#replaceIndexContent(Directory)
+	 */
+	public void replaceIndexContent(Directory source) {
+		Lock exclusiveLock = resources.getExclusiveModificationLock();
+		exclusiveLock.lock();
+		try {
+			// no change is applied while holding the exclusive lock
+			resources.getWorkspace().replaceIndexContent( source );
+		}
+		finally {
+			exclusiveLock.unlock();
+		}
+		mergeAddedSegments();
+	}
+
+	/**
+	 * Atomically adds the segments of the source Directories to the index,
+	 * waiting for other modifications of the index to complete first.
+	 *
+	 * @param sources the Directories containing the segments to add
+	 * @see AbstractWorkspaceImpl#addIndexes(boolean, Directory...)
+	 */
+	public void addIndexContent(Directory... sources) {
+		Lock exclusiveLock = resources.getExclusiveModificationLock();
+		exclusiveLock.lock();
+		try {
+			resources.getWorkspace().addIndexes( false, sources );
+		}
+		finally {
+			exclusiveLock.unlock();
+		}
+		mergeAddedSegments();
+	}
+
+	/**
+	 * The segments are added without merging them: the merges are triggered after releasing
+	 * the exclusive lock, so that other changes can be applied meanwhile.
+	 */
+	private void mergeAddedSegments() {
+		Lock parallelLock = resources.getParallelModificationLock();
+		parallelLock.lock();
+		try {
+			resources.getWorkspace().maybeMerge();
+		}
+		finally {
+			parallelLock.unlock();
+		}
+	}
+
+	/**
+	 * Starts applying a transaction too large to be held in memory: its works are then applied
+	 * in chunks by {@link #applyUncommittedWork(List, IndexingMonitor)}, and committed all at once by
+	 * {@link #commitUncommittedWork()} or discarded by {@link #rollbackUncommittedWork()}.
+	 * The IndexWriter flushes the applied chunks to the Directory as its buffer fills up, without
+	 * committing them.
+	 * The exclusive modification lock of the index is held until then, so that no other commit
+	 * can make part of the transaction visible; the changes applied before are committed first,
+	 * so that a rollback only discards the ones of this transaction.
+	 */
+	public void beginUncommittedWork() {
+		Lock exclusiveLock = resources.getExclusiveModificationLock();
+		exclusiveLock.lock();
+		try {
+			resources.getWorkspace().commitAppliedChanges();
+		}
+		catch (RuntimeException e) {
+			exclusiveLock.unlock();
+			throw e;
+		}
+	}
+
+	/**
+	 * Applies the works in the current thread without committing them, regardless of the
+	 * backend being synchronous or not. Works failing individually are reported to the
+	 * ErrorHandler as for any other work list.
+	 *
+	 * @see #beginUncommittedWork()
+	 */
+	public void applyUncommittedWork(List<LuceneWork> workList, IndexingMonitor monitor) {
+		new LuceneBackendQueueTask( workList, resources, monitor, false ).run();
+	}
+
+	/**
+	 * Commits the works applied since {@link #beginUncommittedWork()}.
+	 */
+	public void commitUncommittedWork() {
+		try {
+			resources.getWorkspace().flush();
+		}
+		finally {
+			resources.getExclusiveModificationLock().unlock();
+		}
+	}
+
+	/**
+	 * Discards the works applied since {@link #beginUncommittedWork()}.
+	 */
+	public void rollbackUncommittedWork() {
+		try {
+			resources.getWorkspace().rollbackUncommittedChanges();
+		}
+		finally {
+			resources.getExclusiveModificationLock().unlock();
+		}
+	}
+
 	public LuceneBackendResources getIndexResources() {
 		return resources;
 	}
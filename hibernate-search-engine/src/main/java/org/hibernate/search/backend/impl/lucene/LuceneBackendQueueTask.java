@@ -53,11 +53,21 @@ final class LuceneBackendQueueTask implements Runnable {
 	private final LuceneBackendResources resources;
 	private final List<LuceneWork> queue;
 	private final IndexingMonitor monitor;
+	private final boolean commitWhenDone;
 
 	LuceneBackendQueueTask(List<LuceneWork> queue, LuceneBackendResources resources, IndexingMonitor monitor) {
+		this( queue, resources, monitor, true );
+	}
+
+	/**
+	 * @param commitWhenDone set to false when the caller takes responsibility to commit the changes,
+	 * as when several queues are grouped in the same commit.
+	 */
+	LuceneBackendQueueTask(List<LuceneWork> queue, LuceneBackendResources resources, IndexingMonitor monitor, boolean commitWhenDone) {
 		this.queue = queue;
 		this.resources = resources;
 		this.monitor = monitor;
+		this.commitWhenDone = commitWhenDone;
 		this.modificationLock = resources.getParallelModificationLock();
 	}
 
@@ -117,6 +127,8 @@ final class LuceneBackendQueueTask implements Runnable {
 				try {
 					task.get();
 					errorContextBuilder.workCompleted( queue.get( i ) );
+					// recorded in queue order, regardless of the order of execution
+					workspace.workApplied( queue.get( i ) );
 				}
 				catch (ExecutionException e) {
 					if ( failedUpdates == null ) {
@@ -135,7 +147,7 @@ final class LuceneBackendQueueTask implements Runnable {
 			}
 		}
 		finally {
-			workspace.afterTransactionApplied( failedUpdates != null, false );
+			workspace.afterTransactionApplied( failedUpdates != null, ! commitWhenDone );
 		}
 	}
 
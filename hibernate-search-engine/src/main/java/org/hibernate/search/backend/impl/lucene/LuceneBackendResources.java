@@ -23,7 +23,6 @@
  */
 package org.hibernate.search.backend.impl.lucene;
 
-import org.hibernate.search.batchindexing.impl.Executors;
 import org.hibernate.search.spi.WorkerBuildContext;
 import org.hibernate.search.backend.BackendFactory;
 import org.hibernate.search.backend.impl.lucene.works.LuceneWorkVisitor;
@@ -54,7 +53,7 @@ public final class LuceneBackendResources {
 	private final LuceneWorkVisitor visitor;
 	private final AbstractWorkspaceImpl workspace;
 	private final ErrorHandler errorHandler;
-	private final ExecutorService queueingExecutor;
+	private final IndexingQueue indexingQueue;
 	private final ExecutorService workersExecutor;
 	private final int maxQueueLength;
 	private final String indexName;
@@ -68,7 +67,14 @@ public final class LuceneBackendResources {
 		this.workspace = workspace;
 		this.visitor = new LuceneWorkVisitor( workspace );
 		this.maxQueueLength = CommonPropertiesParse.extractMaxQueueSize( indexName, props );
-		this.queueingExecutor = Executors.newFixedThreadPool( 1, "Index updates queue processor for index " + indexName, maxQueueLength );
+		this.indexingQueue = new IndexingQueue(
+				indexName,
+				indexManager,
+				errorHandler,
+				maxQueueLength,
+				CommonPropertiesParse.extractQueueOverflowPolicy( indexName, props ),
+				CommonPropertiesParse.isQueueCoalescingEnabled( props )
+		);
 		this.workersExecutor = BackendFactory.buildWorkersExecutor( props, indexName );
 		ReentrantReadWriteLock readWriteLock = new ReentrantReadWriteLock();
 		readLock = readWriteLock.readLock();
@@ -81,14 +87,18 @@ public final class LuceneBackendResources {
 		this.workspace = previous.workspace;
 		this.visitor = new LuceneWorkVisitor( workspace );
 		this.maxQueueLength = previous.maxQueueLength;
-		this.queueingExecutor = previous.queueingExecutor;
+		this.indexingQueue = previous.indexingQueue;
 		this.workersExecutor = previous.workersExecutor;
 		this.readLock = previous.readLock;
 		this.writeLock = previous.writeLock;
 	}
 
 	public ExecutorService getQueueingExecutor() {
-		return queueingExecutor;
+		return indexingQueue.getExecutor();
+	}
+
+	public IndexingQueue getIndexingQueue() {
+		return indexingQueue;
 	}
 
 	public ExecutorService getWorkersExecutor() {
@@ -114,7 +124,8 @@ public final class LuceneBackendResources {
 	public void shutdown() {
 		//need to close them in this specific order:
 		try {
-			flushCloseExecutor( queueingExecutor );
+			indexingQueue.enqueueSpilledTasks();
+			flushCloseExecutor( indexingQueue.getExecutor() );
 			flushCloseExecutor( workersExecutor );
 		}
 		finally {
@@ -64,6 +64,7 @@ final class LuceneBackendTaskStreamer {
 			boolean errors = true;
 			try {
 				work.getWorkDelegate( workVisitor ).performWork( work, indexWriter, monitor );
+				workspace.workApplied( work );
 				errors = false;
 			}
 			finally {
@@ -30,6 +30,7 @@ import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.index.IndexReader;
 import org.hibernate.search.indexes.impl.DirectoryBasedIndexManager;
 import org.hibernate.search.indexes.spi.DirectoryBasedReaderProvider;
+import org.hibernate.search.indexes.spi.IndexReaderWarmer;
 import org.hibernate.search.spi.WorkerBuildContext;
 import org.hibernate.search.util.logging.impl.Log;
 import org.hibernate.search.util.logging.impl.LoggerFactory;
@@ -46,6 +47,7 @@ import org.hibernate.search.util.logging.impl.LoggerFactory;
  * 
  * Since the backend is forced to create a reference IndexReader after each (skipped) commit,
  * some IndexReaders might be opened without being ever used.
+ * When an {@link IndexReaderWarmer} is configured, the reference Reader is warmed before it's published.
  * 
  * This class implements both Workspace and ReaderProvider.
  * 
@@ -60,6 +62,7 @@ public class NRTWorkspaceImpl extends AbstractWorkspaceImpl implements Directory
 	private final ReadLock readLock = readWriteLock.readLock();
 	private final WriteLock writeLock = readWriteLock.writeLock();
 	private final String indexName;
+	private final IndexReaderWarmer warmer;
 
 	//guardedBy readLock/writeLok
 	private IndexReader currentReferenceReader = null;
@@ -67,6 +70,7 @@ public class NRTWorkspaceImpl extends AbstractWorkspaceImpl implements Directory
 	public NRTWorkspaceImpl(DirectoryBasedIndexManager indexManager, WorkerBuildContext buildContext, Properties cfg) {
 		super( indexManager, buildContext, cfg );
 		indexName = indexManager.getIndexName();
+		warmer = indexManager.getReaderWarmer();
 	}
 
 	@Override
@@ -97,7 +101,9 @@ public class NRTWorkspaceImpl extends AbstractWorkspaceImpl implements Directory
 				try {
 					// check again as we had to release the lock after the first check:
 					if ( currentReferenceReader == null) {
-						currentReferenceReader = writerHolder.openDirectoryIndexReader();
+						IndexReader newIndexReader = writerHolder.openDirectoryIndexReader();
+						warm( newIndexReader );
+						currentReferenceReader = newIndexReader;
 					}
 				}
 				finally {
@@ -132,6 +138,17 @@ public class NRTWorkspaceImpl extends AbstractWorkspaceImpl implements Directory
 		}
 	}
 
+	private void warm(IndexReader indexReader) {
+		if ( warmer != null ) {
+			try {
+				warmer.warm( indexReader );
+			}
+			catch (RuntimeException e) {
+				log.unableToWarmIndexReader( indexName, e );
+			}
+		}
+	}
+
 	@Override
 	public void closeIndexReader(IndexReader reader) {
 		if ( reader == null ) {
@@ -160,9 +177,19 @@ public class NRTWorkspaceImpl extends AbstractWorkspaceImpl implements Directory
 		}
 	}
 
+	/**
+	 * The NRT workspace doesn't commit after transactions, but
+	 * an async commit policy can make the changes durable periodically.
+	 */
+	@Override
+	void commitDeferredChanges() {
+		commitIndexWriter( false );
+	}
+
 	@Override
 	public void flush() {
 		IndexReader newIndexReader = writerHolder.openNRTIndexReader( true );
+		warm( newIndexReader );
 		writeLock.lock();
 		IndexReader oldReader = currentReferenceReader;
 		currentReferenceReader = newIndexReader;
@@ -0,0 +1,77 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.backend.impl.lucene;
+
+import org.hibernate.search.util.logging.impl.Log;
+import org.hibernate.search.util.logging.impl.LoggerFactory;
+
+/**
+ * Defines what happens to new work when the queue of an index using async execution is full.
+ *
+ * @author agent <agent@local>
+ * @see org.hibernate.search.Environment#QUEUE_OVERFLOW_POLICY
+ */
+public enum QueueOverflowPolicy {
+
+	/**
+	 * The producer thread blocks until there is space in the queue.
+	 */
+	BLOCK( "block" ),
+
+	/**
+	 * The producer thread applies the changes itself; these might
+	 * then be applied out of order with the work still in the queue.
+	 */
+	CALLER_RUNS( "caller_runs" ),
+
+	/**
+	 * The changes are serialized to temporary files, and enqueued in order
+	 * as soon as there is space in the queue again.
+	 */
+	SPILL_TO_DISK( "spill_to_disk" );
+
+	private static final Log log = LoggerFactory.make();
+
+	private final String configurationName;
+
+	private QueueOverflowPolicy(String configurationName) {
+		this.configurationName = configurationName;
+	}
+
+	/**
+	 * @param indexName the index being configured, used for error messages
+	 * @param value the configured value, or null
+	 * @return the matching policy, {@link #BLOCK} when value is null
+	 */
+	public static QueueOverflowPolicy interpret(String indexName, String value) {
+		if ( value == null ) {
+			return BLOCK;
+		}
+		String trimmed = value.trim();
+		for ( QueueOverflowPolicy policy : values() ) {
+			if ( policy.configurationName.equalsIgnoreCase( trimmed ) ) {
+				return policy;
+			}
+		}
+		throw log.unknownQueueOverflowPolicy( indexName, value );
+	}
+
+}
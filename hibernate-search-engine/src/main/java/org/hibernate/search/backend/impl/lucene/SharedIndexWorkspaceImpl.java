@@ -49,15 +49,15 @@ public class SharedIndexWorkspaceImpl extends AbstractWorkspaceImpl {
 					writerHolder.forceLockRelease();
 				}
 				else {
-					if ( ! streaming || lastExitCloses ) {
+					if ( ( ! streaming && isCommitRequired() ) || lastExitCloses ) {
 						lastExitCloses = false;
-						writerHolder.closeIndexWriter();
+						commitIndexWriter( true );
 					}
 				}
 			}
 			else {
-				if ( ! someFailureHappened && ! streaming ) {
-					writerHolder.commitIndexWriter();
+				if ( ! someFailureHappened && ! streaming && isCommitRequired() ) {
+					commitIndexWriter( false );
 				}
 			}
 		}
@@ -82,11 +82,11 @@ public class SharedIndexWorkspaceImpl extends AbstractWorkspaceImpl {
 	public void flush() {
 		synchronized ( lock ) {
 			if ( openWriterUsers == 0 ) {
-				writerHolder.closeIndexWriter();
+				commitIndexWriter( true );
 			}
 			else {
 				lastExitCloses = true;
-				writerHolder.commitIndexWriter();
+				commitIndexWriter( false );
 			}
 		}
 	}
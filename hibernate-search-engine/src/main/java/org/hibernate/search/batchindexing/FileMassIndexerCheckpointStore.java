@@ -0,0 +1,128 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.batchindexing;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.hibernate.search.util.logging.impl.Log;
+import org.hibernate.search.util.logging.impl.LoggerFactory;
+
+/**
+ * Stores a {@link MassIndexerCheckpoint} in a file using Java serialization.
+ * The checkpoint is first written to a temporary file which is then renamed,
+ * so that a failure while storing it doesn't lose the previous checkpoint.
+ * Where renaming over an existing file isn't supported the previous checkpoint is deleted first:
+ * if the rename then doesn't happen, the checkpoint is loaded from the temporary file.
+ *
+ * @author agent <agent@local>
+ */
+public class FileMassIndexerCheckpointStore implements MassIndexerCheckpointStore {
+
+	private static final Log log = LoggerFactory.make();
+
+	private final File file;
+	private final File temporaryFile;
+
+	/**
+	 * @param file the file to store the checkpoint in
+	 */
+	public FileMassIndexerCheckpointStore(File file) {
+		this.file = file;
+		this.temporaryFile = new File( file.getPath() + ".tmp" );
+	}
+
+	public synchronized MassIndexerCheckpoint load() {
+		if ( file.exists() ) {
+			try {
+				return read( file );
+			}
+			catch (IOException e) {
+				throw log.unableToLoadMassIndexerCheckpoint( file.getPath(), e );
+			}
+			catch (ClassNotFoundException e) {
+				throw log.unableToLoadMassIndexerCheckpoint( file.getPath(), e );
+			}
+		}
+		if ( temporaryFile.exists() ) {
+			// the previous checkpoint was deleted but the new one wasn't renamed yet
+			try {
+				return read( temporaryFile );
+			}
+			catch (IOException e) {
+				// it was being written when no checkpoint existed yet
+				log.ignoringIncompleteMassIndexerCheckpoint( temporaryFile.getPath(), e );
+			}
+			catch (ClassNotFoundException e) {
+				throw log.unableToLoadMassIndexerCheckpoint( temporaryFile.getPath(), e );
+			}
+		}
+		return null;
+	}
+
+	private static MassIndexerCheckpoint read(File source) throws IOException, ClassNotFoundException {
+		ObjectInputStream in = new ObjectInputStream( new BufferedInputStream( new FileInputStream( source ) ) );
+		try {
+			return (MassIndexerCheckpoint) in.readObject();
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	public synchronized void store(MassIndexerCheckpoint checkpoint) {
+		try {
+			ObjectOutputStream out = new ObjectOutputStream( new BufferedOutputStream( new FileOutputStream( temporaryFile ) ) );
+			try {
+				out.writeObject( checkpoint );
+			}
+			finally {
+				out.close();
+			}
+		}
+		catch (IOException e) {
+			temporaryFile.delete();
+			throw log.unableToStoreMassIndexerCheckpoint( file.getPath(), e );
+		}
+		if ( !temporaryFile.renameTo( file ) ) {
+			// renaming over an existing file is not supported on all platforms
+			file.delete();
+			if ( !temporaryFile.renameTo( file ) ) {
+				throw log.unableToStoreMassIndexerCheckpoint(
+						file.getPath(),
+						new IOException( "Unable to rename " + temporaryFile.getPath() )
+				);
+			}
+		}
+	}
+
+	public synchronized void clear() {
+		file.delete();
+		temporaryFile.delete();
+	}
+
+}
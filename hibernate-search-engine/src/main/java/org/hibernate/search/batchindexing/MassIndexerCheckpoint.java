@@ -0,0 +1,181 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.batchindexing;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The progress of a MassIndexer, as periodically recorded to a {@link MassIndexerCheckpointStore}.
+ * For each indexed root type it holds the ranges its primary keys were split in and, for each range,
+ * the last identifier whose entity was indexed and committed to the index, or if the whole range was indexed.
+ * A MassIndexer resuming from a checkpoint skips the types and ranges which were completed,
+ * and continues the others after the last indexed identifier.
+ * <p/>
+ * Instances are not threadsafe.
+ *
+ * @author agent <agent@local>
+ */
+public final class MassIndexerCheckpoint implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final Map<String, EntityProgress> progress;
+
+	public MassIndexerCheckpoint() {
+		this.progress = new HashMap<String, EntityProgress>();
+	}
+
+	/**
+	 * @param checkpoint the checkpoint to copy the progress from
+	 */
+	public MassIndexerCheckpoint(MassIndexerCheckpoint checkpoint) {
+		this.progress = new HashMap<String, EntityProgress>( checkpoint.progress );
+	}
+
+	/**
+	 * @param type an indexed root type
+	 *
+	 * @return true if some progress was recorded for the type
+	 */
+	public boolean contains(Class<?> type) {
+		return progress.containsKey( type.getName() );
+	}
+
+	/**
+	 * @param type an indexed root type
+	 *
+	 * @return the number of ranges the primary keys of the type were split in, or 0 if unknown
+	 */
+	public int getRangeCount(Class<?> type) {
+		EntityProgress entityProgress = progress.get( type.getName() );
+		return entityProgress == null ? 0 : entityProgress.completedRanges.length;
+	}
+
+	/**
+	 * @param type an indexed root type
+	 *
+	 * @return the lower bound of each range of primary keys but the first one, or null if unknown
+	 */
+	public List<Serializable> getRangeBoundaries(Class<?> type) {
+		EntityProgress entityProgress = progress.get( type.getName() );
+		return entityProgress == null ? null : entityProgress.rangeBoundaries;
+	}
+
+	/**
+	 * @param type an indexed root type
+	 * @param range the index of the range
+	 *
+	 * @return the last identifier of the range which was indexed, or null if none or if not known
+	 */
+	public Serializable getLastIndexedId(Class<?> type, int range) {
+		EntityProgress entityProgress = progress.get( type.getName() );
+		return entityProgress == null ? null : entityProgress.lastIndexedIds[range];
+	}
+
+	/**
+	 * @param type an indexed root type
+	 * @param range the index of the range
+	 *
+	 * @return true if all entities in the range were indexed
+	 */
+	public boolean isCompleted(Class<?> type, int range) {
+		EntityProgress entityProgress = progress.get( type.getName() );
+		return entityProgress != null && entityProgress.completedRanges[range];
+	}
+
+	/**
+	 * @param type an indexed root type
+	 *
+	 * @return true if all entities of the type were indexed
+	 */
+	public boolean isCompleted(Class<?> type) {
+		EntityProgress entityProgress = progress.get( type.getName() );
+		if ( entityProgress == null ) {
+			return false;
+		}
+		for ( boolean completed : entityProgress.completedRanges ) {
+			if ( !completed ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Records the progress of an indexed root type, replacing any previous one.
+	 *
+	 * @param type an indexed root type
+	 * @param rangeBoundaries the lower bound of each range of primary keys but the first one
+	 * @param lastIndexedIds for each range, the last identifier which was indexed or null
+	 * @param completedRanges for each range, whether all entities were indexed
+	 */
+	public void setProgress(Class<?> type, List<Serializable> rangeBoundaries,
+			Serializable[] lastIndexedIds, boolean[] completedRanges) {
+		if ( lastIndexedIds.length != completedRanges.length ) {
+			throw new IllegalArgumentException( "lastIndexedIds and completedRanges must have the same length" );
+		}
+		progress.put(
+				type.getName(),
+				new EntityProgress(
+						Collections.unmodifiableList( new ArrayList<Serializable>( rangeBoundaries ) ),
+						lastIndexedIds.clone(),
+						completedRanges.clone()
+				)
+		);
+	}
+
+	@Override
+	public String toString() {
+		return "MassIndexerCheckpoint" + progress;
+	}
+
+	private static final class EntityProgress implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final List<Serializable> rangeBoundaries;
+		private final Serializable[] lastIndexedIds;
+		private final boolean[] completedRanges;
+
+		EntityProgress(List<Serializable> rangeBoundaries, Serializable[] lastIndexedIds, boolean[] completedRanges) {
+			this.rangeBoundaries = rangeBoundaries;
+			this.lastIndexedIds = lastIndexedIds;
+			this.completedRanges = completedRanges;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder sb = new StringBuilder( "{" );
+			for ( int i = 0; i < completedRanges.length; i++ ) {
+				if ( i > 0 ) {
+					sb.append( ", " );
+				}
+				sb.append( completedRanges[i] ? "completed" : String.valueOf( lastIndexedIds[i] ) );
+			}
+			return sb.append( "}" ).toString();
+		}
+	}
+}
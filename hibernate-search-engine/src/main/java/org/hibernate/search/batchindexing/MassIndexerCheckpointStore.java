@@ -0,0 +1,52 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.batchindexing;
+
+/**
+ * Stores the {@link MassIndexerCheckpoint} periodically taken by a MassIndexer,
+ * so that an interrupted indexing process can be resumed.
+ * See {@link FileMassIndexerCheckpointStore} for the default implementation.
+ * <p/>
+ * Implementations must be threadsafe.
+ *
+ * @author agent <agent@local>
+ */
+public interface MassIndexerCheckpointStore {
+
+	/**
+	 * @return the last stored checkpoint, or null if there is none
+	 */
+	MassIndexerCheckpoint load();
+
+	/**
+	 * Replaces the stored checkpoint. The checkpoint must be fully stored when this method
+	 * returns, and if it fails the previous checkpoint must still be available.
+	 *
+	 * @param checkpoint the checkpoint to store
+	 */
+	void store(MassIndexerCheckpoint checkpoint);
+
+	/**
+	 * Removes the stored checkpoint: invoked when all entities were indexed.
+	 */
+	void clear();
+
+}
@@ -0,0 +1,73 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.batchindexing;
+
+/**
+ * A {@link MassIndexerProgressMonitor} which is also notified of the throughput of each stage of
+ * the indexing pipeline. The threads of the MassIndexer are moved between stages according to
+ * their measured cost, so this allows to see where the time is spent; it is also notified of the
+ * adjustments made to the loading of entities when a target database latency is set.
+ * <p/>
+ * This is invoked periodically and concurrently for all indexed types being processed.
+ *
+ * @author agent <agent@local>
+ */
+public interface MassIndexerStageProgressMonitor extends MassIndexerProgressMonitor {
+
+	/**
+	 * The stages of the indexing pipeline sharing the threads of the MassIndexer.
+	 */
+	enum Stage {
+		/**
+		 * Scrolling the identifiers of the entities to index; it runs on its own threads, so it
+		 * doesn't share the threads of the other stages
+		 */
+		IDENTIFIER_LOADING,
+		/**
+		 * Loading the entities from the database using their identifiers
+		 */
+		ENTITY_LOADING,
+		/**
+		 * Building the Lucene Documents, including the loading of the lazy associations which are indexed
+		 */
+		DOCUMENT_BUILDING
+	}
+
+	/**
+	 * @param indexedType the type being indexed
+	 * @param stage the stage being measured
+	 * @param entitiesPerSecond the entities processed by this stage per second since the previous notification,
+	 * or the identifiers loaded per second for {@link Stage#IDENTIFIER_LOADING}
+	 * @param busyThreads the average number of threads working on this stage since the previous notification
+	 */
+	void stageThroughput(Class<?> indexedType, Stage stage, double entitiesPerSecond, double busyThreads);
+
+	/**
+	 * Invoked when the loading of entities is adapted to keep the database latency close to the
+	 * target set on the MassIndexer: the settings apply to the batches loaded from now on.
+	 *
+	 * @param indexedType the type being indexed
+	 * @param loadingThreads the maximum number of threads loading entities concurrently
+	 * @param batchSize the number of entities loaded by each query
+	 * @param batchLatencyMillis the average time spent loading a batch which motivated the change
+	 */
+	void loadingThrottled(Class<?> indexedType, int loadingThreads, int batchSize, double batchLatencyMillis);
+}
@@ -69,13 +69,25 @@ public class Executors {
      * @return the new ExecutorService
      */
 	public static ThreadPoolExecutor newFixedThreadPool(int threads, String groupname, int queueSize) {
+		return newFixedThreadPool( threads, groupname, queueSize, new BlockPolicy() );
+	}
+
+	/**
+	 * Creates a new fixed size ThreadPoolExecutor
+	 * @param threads the number of threads
+	 * @param groupname a label to identify the threadpool; useful for profiling.
+	 * @param queueSize the size of the queue to store Runnables when all threads are busy
+	 * @param rejectionHandler what to do with new tasks when the queue is full
+	 * @return the new ExecutorService
+	 */
+	public static ThreadPoolExecutor newFixedThreadPool(int threads, String groupname, int queueSize, RejectedExecutionHandler rejectionHandler) {
 		return new ThreadPoolExecutor(
 				threads,
 				threads,
-	            0L, TimeUnit.MILLISECONDS,
-	            new LinkedBlockingQueue<Runnable>( queueSize ),
-	            new SearchThreadFactory( groupname ),
-	            new BlockPolicy() );
+				0L, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<Runnable>( queueSize ),
+				new SearchThreadFactory( groupname ),
+				rejectionHandler );
 	}
 	
 	/**
@@ -130,5 +142,23 @@ public class Executors {
 			}
         }
     }
-	
+
+	/**
+	 * A handler for rejected tasks that runs them in the calling thread.
+	 * Unlike {@link ThreadPoolExecutor.CallerRunsPolicy} it also runs the tasks
+	 * submitted after the executor was shut down, so that a caller waiting
+	 * for their completion is never blocked forever.
+	 */
+	public static class CallerAlwaysRunsPolicy implements RejectedExecutionHandler {
+
+		/**
+		 * Runs the task in the calling thread.
+		 * @param r the runnable task requested to be executed
+		 * @param e the executor attempting to execute this task
+		 */
+		public void rejectedExecution(Runnable r, ThreadPoolExecutor e) {
+			r.run();
+		}
+	}
+
 }
@@ -28,6 +28,7 @@ import org.hibernate.search.SearchException;
 import org.hibernate.search.annotations.Resolution;
 import org.hibernate.search.bridge.ParameterizedBridge;
 import org.hibernate.search.bridge.TwoWayStringBridge;
+import org.hibernate.search.bridge.util.impl.DateEncoder;
 import org.apache.lucene.document.DateTools;
 
 import java.util.Date;
@@ -81,7 +82,7 @@ public class CalendarBridge implements TwoWayStringBridge, ParameterizedBridge {
             return null;
         }
         Calendar calendar = (Calendar)object;
-        return DateTools.dateToString(calendar.getTime(),resolution);
+        return DateEncoder.timeToString( calendar.getTimeInMillis(), resolution );
     }
 
 }
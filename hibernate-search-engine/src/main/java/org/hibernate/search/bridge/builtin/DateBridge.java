@@ -35,6 +35,7 @@ import org.hibernate.search.SearchException;
 import org.hibernate.search.annotations.Resolution;
 import org.hibernate.search.bridge.ParameterizedBridge;
 import org.hibernate.search.bridge.TwoWayStringBridge;
+import org.hibernate.search.bridge.util.impl.DateEncoder;
 
 /**
  * Bridge a {@code java.util.Date} to a {@code String}, truncated to the specified resolution.
@@ -86,7 +87,7 @@ public class DateBridge implements TwoWayStringBridge, ParameterizedBridge {
 
 	public String objectToString(Object object) {
 		return object != null ?
-				DateTools.dateToString( (Date) object, resolution ) :
+				DateEncoder.timeToString( ( (Date) object ).getTime(), resolution ) :
 				null;
 	}
 
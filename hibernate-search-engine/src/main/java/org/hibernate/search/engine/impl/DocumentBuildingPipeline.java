@@ -0,0 +1,72 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.engine.impl;
+
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.search.batchindexing.impl.Executors;
+import org.hibernate.search.engine.spi.DocumentBuilderIndexedEntity;
+import org.hibernate.search.engine.spi.DocumentBuilderIndexedEntity.EntitySnapshot;
+
+/**
+ * Builds Lucene Documents from entity snapshots using a dedicated threadpool,
+ * so that the committing thread only needs to read the entity properties.
+ * When the pool is saturated or already closed the committing thread builds the Document itself.
+ *
+ * @author agent <agent@local>
+ * @see org.hibernate.search.Environment#WORKER_DOCUMENT_BUILDING_THREADPOOL_SIZE
+ */
+public final class DocumentBuildingPipeline {
+
+	private final ThreadPoolExecutor executor;
+
+	public DocumentBuildingPipeline(int threads) {
+		executor = Executors.newFixedThreadPool(
+				threads,
+				"Document builder",
+				Executors.QUEUE_MAX_LENGTH,
+				// transactions in flight might still build Documents after close(): never drop them
+				new Executors.CallerAlwaysRunsPolicy()
+		);
+		// idle threads can go away: a rebuilt SearchFactory replaces this instance
+		executor.setKeepAliveTime( 60, TimeUnit.SECONDS );
+		executor.allowCoreThreadTimeOut( true );
+	}
+
+	/**
+	 * Schedules the creation of the Document for an entity snapshot.
+	 *
+	 * @param builder the DocumentBuilder of the entity type
+	 * @param snapshot the values read from the entity
+	 * @return a handle to the Document being built
+	 */
+	public PendingDocument buildDocument(DocumentBuilderIndexedEntity<?> builder, EntitySnapshot snapshot) {
+		PendingDocument pendingDocument = new PendingDocument( builder, snapshot );
+		executor.execute( pendingDocument );
+		return pendingDocument;
+	}
+
+	public void close() {
+		executor.shutdown();
+	}
+
+}
@@ -0,0 +1,275 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.engine.impl;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.document.Field;
+
+import org.hibernate.annotations.common.reflection.XClass;
+import org.hibernate.annotations.common.reflection.XMember;
+import org.hibernate.search.analyzer.Discriminator;
+import org.hibernate.search.annotations.Store;
+import org.hibernate.search.bridge.FieldBridge;
+import org.hibernate.search.bridge.LuceneOptions;
+import org.hibernate.search.engine.BoostStrategy;
+import org.hibernate.search.engine.spi.AbstractDocumentBuilder.PropertiesMetadata;
+import org.hibernate.search.util.impl.MemberAccessor;
+
+/**
+ * Immutable, flattened form of a {@link PropertiesMetadata}, compiled once per entity type
+ * when its document builder is created. Building a <code>Document</code> iterates over the
+ * steps of the plan, which hold the pre-resolved accessors, bridges, names and {@link LuceneOptions},
+ * instead of looking up the same position in each of the metadata lists for every entity.
+ *
+ * @author agent <agent@local>
+ */
+public final class DocumentPlan {
+
+	public final ClassBridgeStep[] classBridges;
+	public final FieldStep[] fields;
+	public final EmbeddedStep[] embedded;
+	public final Discriminator discriminator;
+	public final XMember discriminatorGetter;
+	/**
+	 * null when the discriminator is not defined on a property
+	 */
+	public final MemberAccessor discriminatorAccessor;
+	/**
+	 * Whether an analyzer discriminator is defined by this plan or any of its embedded plans
+	 */
+	public final boolean usesDiscriminator;
+	/**
+	 * Whether the <code>Document</code> can be built by another thread from a detached snapshot:
+	 * the field bridges of this plan and of its embedded plans only receive immutable or copied values,
+	 * never entities or other objects they could navigate outside of the session.
+	 * Plans using an analyzer discriminator are never detachable.
+	 */
+	public final boolean detachable;
+
+	private DocumentPlan(PropertiesMetadata metadata, Map<XMember, MemberAccessor> accessors) {
+		classBridges = new ClassBridgeStep[metadata.classBridges.size()];
+		for ( int i = 0; i < classBridges.length; i++ ) {
+			classBridges[i] = new ClassBridgeStep(
+					metadata.classNames.get( i ),
+					metadata.classBridges.get( i ),
+					new LuceneOptionsImpl(
+							metadata.classStores.get( i ),
+							metadata.classIndexes.get( i ),
+							metadata.classTermVectors.get( i ),
+							metadata.classBoosts.get( i )
+					)
+			);
+		}
+
+		fields = new FieldStep[metadata.fieldNames.size()];
+		// fieldNullTokens is a LinkedList: iterate it rather than accessing it by position
+		List<String> nullTokens = metadata.fieldNullTokens;
+		int i = 0;
+		for ( String nullToken : nullTokens ) {
+			fields[i] = new FieldStep(
+					metadata, i, accessors, nullToken,
+					i > 0 && metadata.fieldGetters.get( i - 1 ) == metadata.fieldGetters.get( i )
+			);
+			i++;
+		}
+
+		embedded = new EmbeddedStep[metadata.embeddedGetters.size()];
+		for ( int j = 0; j < embedded.length; j++ ) {
+			embedded[j] = new EmbeddedStep( metadata, j, accessors );
+		}
+
+		discriminator = metadata.discriminator;
+		discriminatorGetter = metadata.discriminatorGetter;
+		discriminatorAccessor = discriminatorGetter == null ? null : accessorFor( discriminatorGetter, accessors );
+		boolean discriminatorFound = discriminator != null;
+		for ( EmbeddedStep embeddedStep : embedded ) {
+			discriminatorFound |= embeddedStep.plan.usesDiscriminator;
+		}
+		usesDiscriminator = discriminatorFound;
+
+		boolean allDetachable = !usesDiscriminator;
+		for ( FieldStep field : fields ) {
+			allDetachable &= field.detachable;
+		}
+		for ( EmbeddedStep embeddedStep : embedded ) {
+			allDetachable &= embeddedStep.plan.detachable;
+		}
+		detachable = allDetachable;
+	}
+
+	/**
+	 * @param metadata the fully initialized metadata of an entity type
+	 * @param accessors the accessors resolved for the properties of the type and of its embedded objects
+	 *
+	 * @return the compiled plan for building the <code>Document</code>s of that type
+	 */
+	public static DocumentPlan compile(PropertiesMetadata metadata, Map<XMember, MemberAccessor> accessors) {
+		return new DocumentPlan( metadata, accessors );
+	}
+
+	/**
+	 * @return the accessor resolved for the getter, or one going through the getter itself if there is none
+	 */
+	private static MemberAccessor accessorFor(XMember getter, Map<XMember, MemberAccessor> accessors) {
+		MemberAccessor accessor = accessors.get( getter );
+		return accessor != null ? accessor : MemberAccessor.forMember( getter );
+	}
+
+	/**
+	 * The types of the property values (or of their elements) the field bridges can receive on another thread
+	 */
+	private static final Set<String> DETACHABLE_VALUE_TYPES = new HashSet<String>( Arrays.asList(
+			"boolean", "char", "byte", "short", "int", "long", "float", "double",
+			Boolean.class.getName(), Character.class.getName(), Byte.class.getName(), Short.class.getName(),
+			Integer.class.getName(), Long.class.getName(), Float.class.getName(), Double.class.getName(),
+			String.class.getName(), java.math.BigDecimal.class.getName(), java.math.BigInteger.class.getName(),
+			java.util.Date.class.getName(), java.util.Calendar.class.getName(), java.sql.Date.class.getName(),
+			java.sql.Time.class.getName(), java.sql.Timestamp.class.getName(), Class.class.getName(),
+			java.net.URI.class.getName(), java.net.URL.class.getName(), java.util.UUID.class.getName()
+	) );
+
+	private static boolean isDetachableValue(XMember getter) {
+		XClass type = getter.getClassOrElementClass();
+		return type != null && ( type.isEnum() || DETACHABLE_VALUE_TYPES.contains( type.getName() ) );
+	}
+
+	/**
+	 * Adds the field of a class bridge.
+	 */
+	public static final class ClassBridgeStep {
+
+		public final String fieldName;
+		public final FieldBridge bridge;
+		public final LuceneOptions luceneOptions;
+
+		private ClassBridgeStep(String fieldName, FieldBridge bridge, LuceneOptions luceneOptions) {
+			this.fieldName = fieldName;
+			this.bridge = bridge;
+			this.luceneOptions = luceneOptions;
+		}
+	}
+
+	/**
+	 * Reads a property and adds its field. Several steps read the same property when it is mapped
+	 * to multiple fields: those after the first one reuse the value already read.
+	 */
+	public static final class FieldStep {
+
+		public final XMember getter;
+		public final MemberAccessor accessor;
+		public final boolean sameValueAsPrevious;
+		public final boolean collection;
+		public final String fieldName;
+		public final String propertyName;
+		public final FieldBridge bridge;
+		/**
+		 * Whether the value of the property can be handed to the bridge on another thread once copied
+		 */
+		public final boolean detachable;
+
+		private final Store store;
+		private final Field.Index index;
+		private final Field.TermVector termVector;
+		private final float boost;
+		private final String nullToken;
+		private final int precisionStep;
+		/**
+		 * null when the boost depends on the property value
+		 */
+		private final BoostStrategy dynamicBoost;
+		private final LuceneOptions staticLuceneOptions;
+
+		private FieldStep(PropertiesMetadata metadata, int i, Map<XMember, MemberAccessor> accessors, String nullToken,
+				boolean sameValueAsPrevious) {
+			this.getter = metadata.fieldGetters.get( i );
+			this.accessor = accessorFor( getter, accessors );
+			this.sameValueAsPrevious = sameValueAsPrevious;
+			this.collection = metadata.fieldGetters.get( i ).isCollection();
+			this.fieldName = metadata.fieldNames.get( i );
+			this.propertyName = metadata.fieldGetterNames.get( i );
+			this.bridge = metadata.fieldBridges.get( i );
+			this.detachable = isDetachableValue( getter );
+			this.store = metadata.fieldStore.get( i );
+			this.index = metadata.fieldIndex.get( i );
+			this.termVector = metadata.fieldTermVectors.get( i );
+			this.boost = metadata.fieldBoosts.get( i );
+			this.nullToken = nullToken;
+			this.precisionStep = metadata.precisionSteps.get( i );
+			BoostStrategy boostStrategy = metadata.dynamicFieldBoosts.get( i );
+			if ( boostStrategy instanceof DefaultBoostStrategy ) {
+				this.dynamicBoost = null;
+				this.staticLuceneOptions = new LuceneOptionsImpl( store, index, termVector, boost, nullToken, precisionStep );
+			}
+			else {
+				this.dynamicBoost = boostStrategy;
+				this.staticLuceneOptions = null;
+			}
+		}
+
+		/**
+		 * @param value the value of the property
+		 *
+		 * @return the options to index the value with
+		 */
+		public LuceneOptions getLuceneOptions(Object value) {
+			if ( staticLuceneOptions != null ) {
+				return staticLuceneOptions;
+			}
+			return new LuceneOptionsImpl(
+					store, index, termVector, boost * dynamicBoost.defineBoost( value ), nullToken, precisionStep
+			);
+		}
+	}
+
+	/**
+	 * Reads an embedded property and applies the nested plan to the embedded objects.
+	 */
+	public static final class EmbeddedStep {
+
+		public final XMember getter;
+		public final MemberAccessor accessor;
+		public final String propertyName;
+		public final PropertiesMetadata.Container container;
+		public final DocumentPlan plan;
+		/**
+		 * null unless null embedded values are indexed
+		 */
+		public final String nullToken;
+		public final String nullFieldName;
+		public final FieldBridge nullFieldBridge;
+
+		private EmbeddedStep(PropertiesMetadata metadata, int i, Map<XMember, MemberAccessor> accessors) {
+			this.getter = metadata.embeddedGetters.get( i );
+			this.accessor = accessorFor( getter, accessors );
+			this.propertyName = metadata.embeddedFieldNames.get( i );
+			this.container = metadata.embeddedContainers.get( i );
+			this.plan = new DocumentPlan( metadata.embeddedPropertiesMetadata.get( i ), accessors );
+			this.nullToken = metadata.embeddedNullTokens.get( i );
+			this.nullFieldName = metadata.embeddedNullFields.get( i );
+			this.nullFieldBridge = metadata.embeddedNullFieldBridges.get( i );
+		}
+	}
+}
@@ -0,0 +1,367 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.engine.impl;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map.Entry;
+
+/**
+ * Map from entity identifier to the work planned on it, as used by {@link WorkPlan}.
+ * The type of the first identifier decides the storage: {@code Long}, {@code Integer} and {@code String}
+ * identifiers are kept in open addressing tables, avoiding the {@code Map.Entry} allocations and most of the
+ * indirections of a {@code HashMap}. Identifiers of any other type, or of mixed types, fall back to a {@code HashMap}.
+ * <p>
+ * Null values are not supported. Not thread safe.
+ *
+ * @param <V> the type of the values
+ * @author agent <agent@local>
+ */
+public final class EntityIdMap<V> {
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private static final int EMPTY = 0;
+	private static final int LONG_KEYS = 1;
+	private static final int INT_KEYS = 2;
+	private static final int STRING_KEYS = 3;
+	private static final int GENERIC = 4;
+
+	private int mode = EMPTY;
+
+	/**
+	 * A slot is in use when its value is not null; only the keys array matching the mode is allocated.
+	 */
+	private long[] longKeys;
+	private int[] intKeys;
+	private String[] stringKeys;
+	private Object[] values;
+	private int size;
+	private int resizeThreshold;
+
+	private HashMap<Serializable, V> generic;
+
+	/**
+	 * @param id the entity identifier
+	 *
+	 * @return the value associated to this identifier, or {@code null}
+	 */
+	public V get(Serializable id) {
+		switch ( mode ) {
+			case LONG_KEYS:
+				if ( id instanceof Long ) {
+					return valueAt( slotOf( ( (Long) id ).longValue() ) );
+				}
+				return null;
+			case INT_KEYS:
+				if ( id instanceof Integer ) {
+					return valueAt( slotOf( ( (Integer) id ).intValue() ) );
+				}
+				return null;
+			case STRING_KEYS:
+				if ( id instanceof String ) {
+					return valueAt( slotOf( (String) id ) );
+				}
+				return null;
+			case GENERIC:
+				return generic.get( id );
+			default:
+				return null;
+		}
+	}
+
+	/**
+	 * @param id the entity identifier
+	 * @param value the value to associate to this identifier, replacing the existing one if any
+	 */
+	public void put(Serializable id, V value) {
+		if ( mode == EMPTY ) {
+			initialize( id );
+		}
+		switch ( mode ) {
+			case LONG_KEYS:
+				if ( id instanceof Long ) {
+					long key = ( (Long) id ).longValue();
+					int slot = slotOf( key );
+					if ( values[slot] == null ) {
+						longKeys[slot] = key;
+						occupy( slot, value );
+					}
+					else {
+						values[slot] = value;
+					}
+					return;
+				}
+				break;
+			case INT_KEYS:
+				if ( id instanceof Integer ) {
+					int key = ( (Integer) id ).intValue();
+					int slot = slotOf( key );
+					if ( values[slot] == null ) {
+						intKeys[slot] = key;
+						occupy( slot, value );
+					}
+					else {
+						values[slot] = value;
+					}
+					return;
+				}
+				break;
+			case STRING_KEYS:
+				if ( id instanceof String ) {
+					String key = (String) id;
+					int slot = slotOf( key );
+					if ( values[slot] == null ) {
+						stringKeys[slot] = key;
+						occupy( slot, value );
+					}
+					else {
+						values[slot] = value;
+					}
+					return;
+				}
+				break;
+			case GENERIC:
+				generic.put( id, value );
+				return;
+		}
+		// an identifier of a different type than the previous ones
+		switchToGeneric();
+		generic.put( id, value );
+	}
+
+	public int size() {
+		return mode == GENERIC ? generic.size() : size;
+	}
+
+	public void clear() {
+		mode = EMPTY;
+		longKeys = null;
+		intKeys = null;
+		stringKeys = null;
+		values = null;
+		size = 0;
+		generic = null;
+	}
+
+	/**
+	 * @return a copy of the values, which is not affected by later changes to this map
+	 */
+	public List<V> values() {
+		List<V> list = new ArrayList<V>( size() );
+		Cursor cursor = cursor();
+		while ( cursor.next() ) {
+			list.add( cursor.getValue() );
+		}
+		return list;
+	}
+
+	/**
+	 * @return a cursor over the entries of this map, which must not be modified while the cursor is in use
+	 */
+	public Cursor cursor() {
+		return new Cursor();
+	}
+
+	private void initialize(Serializable id) {
+		if ( id instanceof Long ) {
+			mode = LONG_KEYS;
+			longKeys = new long[INITIAL_CAPACITY];
+		}
+		else if ( id instanceof Integer ) {
+			mode = INT_KEYS;
+			intKeys = new int[INITIAL_CAPACITY];
+		}
+		else if ( id instanceof String ) {
+			mode = STRING_KEYS;
+			stringKeys = new String[INITIAL_CAPACITY];
+		}
+		else {
+			mode = GENERIC;
+			generic = new HashMap<Serializable, V>();
+			return;
+		}
+		values = new Object[INITIAL_CAPACITY];
+		resizeThreshold = thresholdFor( INITIAL_CAPACITY );
+	}
+
+	private void occupy(int slot, V value) {
+		values[slot] = value;
+		if ( ++size > resizeThreshold ) {
+			resize();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private V valueAt(int slot) {
+		return (V) values[slot];
+	}
+
+	private int slotOf(long key) {
+		int mask = values.length - 1;
+		int slot = hash( (int) ( key ^ ( key >>> 32 ) ) ) & mask;
+		while ( values[slot] != null && longKeys[slot] != key ) {
+			slot = ( slot + 1 ) & mask;
+		}
+		return slot;
+	}
+
+	private int slotOf(int key) {
+		int mask = values.length - 1;
+		int slot = hash( key ) & mask;
+		while ( values[slot] != null && intKeys[slot] != key ) {
+			slot = ( slot + 1 ) & mask;
+		}
+		return slot;
+	}
+
+	private int slotOf(String key) {
+		int mask = values.length - 1;
+		int slot = hash( key.hashCode() ) & mask;
+		while ( values[slot] != null && !key.equals( stringKeys[slot] ) ) {
+			slot = ( slot + 1 ) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Multiplicative (Fibonacci) mix: the product spreads every bit of the key over the higher
+	 * bits, which are then folded into the lower ones selecting the slot, so that identifiers
+	 * allocated with a stride (e.g. by a pooled sequence) don't cluster on few slots.
+	 */
+	private static int hash(int h) {
+		final int mixed = h * 0x9E3779B9;
+		return mixed ^ ( mixed >>> 16 );
+	}
+
+	private static int thresholdFor(int capacity) {
+		return capacity - ( capacity >>> 2 );
+	}
+
+	private void resize() {
+		long[] oldLongKeys = longKeys;
+		int[] oldIntKeys = intKeys;
+		String[] oldStringKeys = stringKeys;
+		Object[] oldValues = values;
+		int capacity = oldValues.length << 1;
+		values = new Object[capacity];
+		resizeThreshold = thresholdFor( capacity );
+		switch ( mode ) {
+			case LONG_KEYS:
+				longKeys = new long[capacity];
+				for ( int i = 0; i < oldValues.length; i++ ) {
+					if ( oldValues[i] != null ) {
+						int slot = slotOf( oldLongKeys[i] );
+						longKeys[slot] = oldLongKeys[i];
+						values[slot] = oldValues[i];
+					}
+				}
+				break;
+			case INT_KEYS:
+				intKeys = new int[capacity];
+				for ( int i = 0; i < oldValues.length; i++ ) {
+					if ( oldValues[i] != null ) {
+						int slot = slotOf( oldIntKeys[i] );
+						intKeys[slot] = oldIntKeys[i];
+						values[slot] = oldValues[i];
+					}
+				}
+				break;
+			case STRING_KEYS:
+				stringKeys = new String[capacity];
+				for ( int i = 0; i < oldValues.length; i++ ) {
+					if ( oldValues[i] != null ) {
+						int slot = slotOf( oldStringKeys[i] );
+						stringKeys[slot] = oldStringKeys[i];
+						values[slot] = oldValues[i];
+					}
+				}
+				break;
+		}
+	}
+
+	private void switchToGeneric() {
+		HashMap<Serializable, V> map = new HashMap<Serializable, V>();
+		Cursor cursor = cursor();
+		while ( cursor.next() ) {
+			map.put( cursor.getKey(), cursor.getValue() );
+		}
+		clear();
+		mode = GENERIC;
+		generic = map;
+	}
+
+	/**
+	 * Iterates on the entries of the map; the identifiers are boxed again only when requested.
+	 */
+	public final class Cursor {
+
+		private final Iterator<Entry<Serializable, V>> iterator;
+		private int slot = -1;
+		private Entry<Serializable, V> entry;
+
+		private Cursor() {
+			this.iterator = mode == GENERIC ? generic.entrySet().iterator() : null;
+		}
+
+		/**
+		 * @return {@code true} if the cursor was moved to the next entry, {@code false} if there are no more entries
+		 */
+		public boolean next() {
+			if ( iterator != null ) {
+				if ( iterator.hasNext() ) {
+					entry = iterator.next();
+					return true;
+				}
+				return false;
+			}
+			if ( values == null ) {
+				return false;
+			}
+			while ( ++slot < values.length ) {
+				if ( values[slot] != null ) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		public Serializable getKey() {
+			switch ( mode ) {
+				case LONG_KEYS:
+					return Long.valueOf( longKeys[slot] );
+				case INT_KEYS:
+					return Integer.valueOf( intKeys[slot] );
+				case STRING_KEYS:
+					return stringKeys[slot];
+				default:
+					return entry.getKey();
+			}
+		}
+
+		public V getValue() {
+			return iterator != null ? entry.getValue() : valueAt( slot );
+		}
+	}
+}
@@ -0,0 +1,87 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.engine.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.apache.lucene.document.Document;
+
+import org.hibernate.search.SearchException;
+import org.hibernate.search.bridge.util.impl.ContextualExceptionBridgeHelper;
+import org.hibernate.search.engine.spi.DocumentBuilderIndexedEntity;
+import org.hibernate.search.engine.spi.DocumentBuilderIndexedEntity.EntitySnapshot;
+
+/**
+ * A Document being built by the {@link DocumentBuildingPipeline}.
+ * Reading the Document blocks until it's ready, and rethrows any failure of the bridges.
+ *
+ * @author agent <agent@local>
+ */
+public final class PendingDocument implements Runnable {
+
+	private final Map<String, String> fieldToAnalyzerMap = new HashMap<String, String>();
+	private final FutureTask<Document> document;
+
+	PendingDocument(final DocumentBuilderIndexedEntity<?> builder, final EntitySnapshot snapshot) {
+		this.document = new FutureTask<Document>( new Callable<Document>() {
+			@Override
+			public Document call() {
+				return builder.getDocument( snapshot, fieldToAnalyzerMap, new ContextualExceptionBridgeHelper() );
+			}
+		} );
+	}
+
+	@Override
+	public void run() {
+		document.run();
+	}
+
+	public Document getDocument() {
+		try {
+			return document.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SearchException( "Interrupted while waiting for a Document to be built", e );
+		}
+		catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if ( cause instanceof RuntimeException ) {
+				throw (RuntimeException) cause;
+			}
+			throw new SearchException( "Unable to build Document", cause );
+		}
+	}
+
+	/**
+	 * @return the analyzer overrides defined by the discriminators, or null if there are none
+	 */
+	public Map<String, String> getFieldToAnalyzerMap() {
+		// the map is populated while building the Document
+		getDocument();
+		return fieldToAnalyzerMap.isEmpty() ? null : fieldToAnalyzerMap;
+	}
+
+}
@@ -26,15 +26,16 @@ package org.hibernate.search.engine.impl;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.Map.Entry;
-import java.util.Set;
 
 import org.hibernate.annotations.common.AssertionFailure;
+import org.hibernate.annotations.common.reflection.XMember;
 import org.hibernate.search.Environment;
 import org.hibernate.search.SearchException;
 import org.hibernate.search.backend.LuceneWork;
 import org.hibernate.search.backend.PurgeAllLuceneWork;
+import org.hibernate.search.backend.impl.SpillingLuceneWorkQueue;
 import org.hibernate.search.backend.spi.Work;
 import org.hibernate.search.backend.spi.WorkType;
 import org.hibernate.search.bridge.spi.ConversionContext;
@@ -47,6 +48,8 @@ import org.hibernate.search.engine.spi.SearchFactoryImplementor;
 import org.hibernate.search.indexes.interceptor.EntityIndexingInterceptor;
 import org.hibernate.search.indexes.interceptor.IndexingOverride;
 import org.hibernate.search.spi.InstanceInitializer;
+import org.hibernate.search.stat.Statistics;
+import org.hibernate.search.stat.spi.StatisticsImplementor;
 import org.hibernate.search.util.logging.impl.Log;
 import org.hibernate.search.util.logging.impl.LoggerFactory;
 
@@ -70,9 +73,25 @@ public class WorkPlan {
 
 	private final InstanceInitializer instanceInitializer;
 
+	/**
+	 * Non-indexed entities already traversed by the @ContainedIn recursion in this plan,
+	 * with the remaining depth they were traversed with.
+	 * Indexed entities don't need this as they are tracked by id in the {@code PerClassWork}.
+	 */
+	private final IdentityHashMap<Object, Integer> containedInVisited = new IdentityHashMap<Object, Integer>();
+
+	/**
+	 * {@code null} when statistics are disabled
+	 */
+	private final StatisticsImplementor statistics;
+
 	public WorkPlan(SearchFactoryImplementor searchFactoryImplementor) {
 		this.searchFactoryImplementor = searchFactoryImplementor;
 		this.instanceInitializer = searchFactoryImplementor.getInstanceInitializer();
+		Statistics searchStatistics = searchFactoryImplementor.getStatistics();
+		this.statistics = searchStatistics != null && searchStatistics.isStatisticsEnabled() ?
+				searchFactoryImplementor.getStatisticsImplementor() :
+				null;
 	}
 
 	/**
@@ -99,6 +118,7 @@ public class WorkPlan {
 	 */
 	public void clear() {
 		byClass.clear();
+		containedInVisited.clear();
 		approximateWorkQueueSize = 0;
 	}
 
@@ -156,17 +176,76 @@ public class WorkPlan {
 		classWork.recurseContainedIn( value, depth );
 	}
 
+	/**
+	 * Records that the recursion through a non-indexed entity is about to be performed: the same
+	 * instance is often reachable through several paths, but traversing it again is only useful
+	 * if there is now a deeper level left to explore.
+	 *
+	 * @return {@code false} if the instance was already traversed in this plan with at least the same remaining depth
+	 */
+	private boolean markContainedInTraversal(Object value, DepthValidator depth) {
+		int remainingDepth = depth == null ? Integer.MAX_VALUE : depth.getRemainingDepth();
+		Integer previous = containedInVisited.get( value );
+		if ( previous != null && previous.intValue() >= remainingDepth ) {
+			containedInDuplicateSkipped();
+			return false;
+		}
+		containedInVisited.put( value, Integer.valueOf( remainingDepth ) );
+		return true;
+	}
+
+	/**
+	 * Callback for statistics, invoked after a @ContainedIn property was followed.
+	 *
+	 * @param entityClass the type hosting the @ContainedIn property
+	 * @param member the @ContainedIn property
+	 * @param reachedEntities the number of entities reached through it
+	 */
+	public void containedInRelationTraversed(Class<?> entityClass, XMember member, int reachedEntities) {
+		if ( statistics != null ) {
+			statistics.containedInRelationTraversed( entityClass.getName() + '.' + member.getName(), reachedEntities );
+		}
+	}
+
+	private void containedInDuplicateSkipped() {
+		if ( statistics != null ) {
+			statistics.containedInDuplicateSkipped();
+		}
+	}
+
 	/**
 	 * @return returns the current plan converted as a list of {@code LuceneWork}
 	 */
 	public List<LuceneWork> getPlannedLuceneWork() {
+		return getPlannedLuceneWork( null );
+	}
+
+	/**
+	 * @param pipeline if not null, the Documents are built by the pipeline threads
+	 * @return returns the current plan converted as a list of {@code LuceneWork}
+	 */
+	public List<LuceneWork> getPlannedLuceneWork(DocumentBuildingPipeline pipeline) {
 		List<LuceneWork> luceneQueue = new ArrayList<LuceneWork>();
 		for ( PerClassWork perClassWork : byClass.values() ) {
-			perClassWork.enqueueLuceneWork( luceneQueue );
+			perClassWork.enqueueLuceneWork( luceneQueue, pipeline, null );
 		}
 		return luceneQueue;
 	}
 
+	/**
+	 * Same as {@link #getPlannedLuceneWork(DocumentBuildingPipeline)}, but the {@code LuceneWork} of each entity
+	 * is handed over to the spillingQueue as soon as it's planned.
+	 *
+	 * @param pipeline if not null, the Documents are built by the pipeline threads
+	 * @param spillingQueue the planned {@code LuceneWork} will be appended to this queue
+	 */
+	public void enqueuePlannedLuceneWork(DocumentBuildingPipeline pipeline, SpillingLuceneWorkQueue spillingQueue) {
+		List<LuceneWork> entityWork = new ArrayList<LuceneWork>( 2 );
+		for ( PerClassWork perClassWork : byClass.values() ) {
+			perClassWork.enqueueLuceneWork( entityWork, pipeline, spillingQueue );
+		}
+	}
+
 	/**
 	 * {@code PerClassWork} organizes work per entity type.
 	 */
@@ -178,8 +257,9 @@ public class WorkPlan {
 		 * This map uses as key what we originally received as {@link Work#getId()} if the type
 		 * is annotated with @ProvidedId, otherwise it uses the value pointed to by
 		 * {@link org.hibernate.search.annotations.DocumentId} or as last attempt {@link javax.persistence.Id}.
+		 * Long, Integer and String identifiers are stored without the overhead of a {@code HashMap}.
 		 */
-		private final HashMap<Serializable, PerEntityWork<T>> entityById = new HashMap<Serializable, PerEntityWork<T>>();
+		private final EntityIdMap<PerEntityWork<T>> entityById = new EntityIdMap<PerEntityWork<T>>();
 
 		/**
 		 * When a PurgeAll operation is send on the type, we can remove all previously scheduled work
@@ -266,17 +346,28 @@ public class WorkPlan {
 		 * the LuceneWork queue.
 		 *
 		 * @param luceneQueue work will be appended to this list
+		 * @param pipeline builds the Documents, or null to build them in the current thread
+		 * @param spillingQueue if not null, the work is moved from the luceneQueue to this queue after each entity
 		 */
-		public void enqueueLuceneWork(List<LuceneWork> luceneQueue) {
-			final Set<Entry<Serializable, PerEntityWork<T>>> entityInstances = entityById.entrySet();
+		public void enqueueLuceneWork(List<LuceneWork> luceneQueue, DocumentBuildingPipeline pipeline, SpillingLuceneWorkQueue spillingQueue) {
+			final EntityIdMap<PerEntityWork<T>>.Cursor entityInstances = entityById.cursor();
 			ConversionContext conversionContext = new ContextualExceptionBridgeHelper();
 			if ( purgeAll ) {
 				luceneQueue.add( new PurgeAllLuceneWork( entityClass ) );
+				moveTo( spillingQueue, luceneQueue );
 			}
-			for ( Entry<Serializable, PerEntityWork<T>> entry : entityInstances ) {
-				Serializable indexingId = entry.getKey();
-				PerEntityWork<T> perEntityWork = entry.getValue();
-				perEntityWork.enqueueLuceneWork( entityClass, indexingId, documentBuilder, luceneQueue, conversionContext );
+			while ( entityInstances.next() ) {
+				Serializable indexingId = entityInstances.getKey();
+				PerEntityWork<T> perEntityWork = entityInstances.getValue();
+				perEntityWork.enqueueLuceneWork( entityClass, indexingId, documentBuilder, luceneQueue, conversionContext, pipeline );
+				moveTo( spillingQueue, luceneQueue );
+			}
+		}
+
+		private void moveTo(SpillingLuceneWorkQueue spillingQueue, List<LuceneWork> luceneQueue) {
+			if ( spillingQueue != null ) {
+				spillingQueue.addAll( luceneQueue );
+				luceneQueue.clear();
 			}
 		}
 
@@ -290,10 +381,8 @@ public class WorkPlan {
 		 * whatever is marked as @Id.
 		 */
 		public void processContainedInAndPrepareExecution() {
-			Entry<String, PerEntityWork<T>>[] entityInstancesFrozenView = new Entry[entityById.size()];
-			entityInstancesFrozenView = entityById.entrySet().toArray( entityInstancesFrozenView );
-			for ( Entry<String, PerEntityWork<T>> entry : entityInstancesFrozenView ) {
-				PerEntityWork<T> perEntityWork = entry.getValue();
+			List<PerEntityWork<T>> entityInstancesFrozenView = entityById.values();
+			for ( PerEntityWork<T> perEntityWork : entityInstancesFrozenView ) {
 				perEntityWork.processContainedIn( documentBuilder, WorkPlan.this );
 			}
 		}
@@ -345,9 +434,12 @@ public class WorkPlan {
 						// recursion starts
 						documentBuilder.appendContainedInWorkForInstance( value, WorkPlan.this, depth );
 					}
-					// else nothing to do as it's being processed already
+					else {
+						// nothing to do as it's being processed already
+						containedInDuplicateSkipped();
+					}
 				}
-				else {
+				else if ( markContainedInTraversal( value, depth ) ) {
 					// this branch for @ContainedIn recursive work of non-indexed entities
 					// as they don't have an indexingId
 					documentBuilder.appendContainedInWorkForInstance( value, WorkPlan.this, depth );
@@ -501,11 +593,12 @@ public class WorkPlan {
 		 * @param indexingId identifier of the instance
 		 * @param entityBuilder the DocumentBuilder for this type
 		 * @param luceneQueue the queue collecting all changes
+		 * @param pipeline builds the Documents, or null to build them in the current thread
 		 */
 		public void enqueueLuceneWork(Class<T> entityClass, Serializable indexingId, AbstractDocumentBuilder<T> entityBuilder,
-				List<LuceneWork> luceneQueue, ConversionContext conversionContext) {
+				List<LuceneWork> luceneQueue, ConversionContext conversionContext, DocumentBuildingPipeline pipeline) {
 			if ( add || delete ) {
-				entityBuilder.addWorkToQueue( entityClass, entity, indexingId, delete, add, luceneQueue, conversionContext );
+				entityBuilder.addWorkToQueue( entityClass, entity, indexingId, delete, add, luceneQueue, conversionContext, pipeline );
 			}
 		}
 
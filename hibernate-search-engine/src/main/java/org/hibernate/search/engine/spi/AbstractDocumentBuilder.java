@@ -32,6 +32,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -74,11 +75,13 @@ import org.hibernate.search.bridge.spi.ConversionContext;
 import org.hibernate.search.engine.BoostStrategy;
 import org.hibernate.search.engine.impl.AnnotationProcessingHelper;
 import org.hibernate.search.engine.impl.DefaultBoostStrategy;
+import org.hibernate.search.engine.impl.DocumentBuildingPipeline;
 import org.hibernate.search.engine.impl.FieldMetadata;
 import org.hibernate.search.engine.impl.LuceneOptionsImpl;
 import org.hibernate.search.engine.impl.WorkPlan;
 import org.hibernate.search.impl.ConfigContext;
 import org.hibernate.search.spi.InstanceInitializer;
+import org.hibernate.search.util.impl.MemberAccessor;
 import org.hibernate.search.util.impl.PassThroughAnalyzer;
 import org.hibernate.search.util.impl.ReflectionHelper;
 import org.hibernate.search.util.impl.ScopedAnalyzer;
@@ -116,6 +119,11 @@ public abstract class AbstractDocumentBuilder<T> {
 	protected EntityState entityState;
 	protected ReflectionManager reflectionManager; //available only during initialization and post-initialization
 
+	/**
+	 * The accessors of the properties of the entity and of its embedded objects, resolved while processing the mapping
+	 */
+	private final Map<XMember, MemberAccessor> memberAccessors = new IdentityHashMap<XMember, MemberAccessor>();
+
 	private boolean stateInspectionOptimizationsEnabled = true;
 
 	/**
@@ -160,6 +168,14 @@ public abstract class AbstractDocumentBuilder<T> {
 
 	public abstract void addWorkToQueue(Class<T> entityClass, T entity, Serializable id, boolean delete, boolean add, List<LuceneWork> queue, ConversionContext contextualBridge);
 
+	/**
+	 * Same as {@link #addWorkToQueue(Class, Object, Serializable, boolean, boolean, List, ConversionContext)},
+	 * but when a pipeline is provided the Documents might be built by its threads.
+	 */
+	public void addWorkToQueue(Class<T> entityClass, T entity, Serializable id, boolean delete, boolean add, List<LuceneWork> queue, ConversionContext contextualBridge, DocumentBuildingPipeline pipeline) {
+		addWorkToQueue( entityClass, entity, id, delete, add, queue, contextualBridge );
+	}
+
 	abstract protected void documentBuilderSpecificChecks(XProperty member, PropertiesMetadata propertiesMetadata, boolean isRoot, String prefix, ConfigContext context, PathsContext pathsContext);
 
 	/**
@@ -190,6 +206,13 @@ public abstract class AbstractDocumentBuilder<T> {
 		return metadata;
 	}
 
+	/**
+	 * @return the accessors of the properties processed while reading the mapping, keyed by their getter
+	 */
+	protected Map<XMember, MemberAccessor> getMemberAccessors() {
+		return memberAccessors;
+	}
+
 	public Similarity getSimilarity() {
 		return similarity;
 	}
@@ -268,11 +291,13 @@ public abstract class AbstractDocumentBuilder<T> {
 				continue;
 			}
 
+			int reached = 0;
 			if ( member.isArray() ) {
 				@SuppressWarnings("unchecked")
 				T[] array = (T[]) value;
 				for ( T arrayValue : array ) {
 					processSingleContainedInInstance( workplan, arrayValue, depth );
+					reached++;
 				}
 			}
 			else if ( member.isCollection() ) {
@@ -295,12 +320,15 @@ public abstract class AbstractDocumentBuilder<T> {
 				if ( collection != null ) {
 					for ( T collectionValue : collection ) {
 						processSingleContainedInInstance( workplan, collectionValue, depth );
+						reached++;
 					}
 				}
 			}
 			else {
 				processSingleContainedInInstance( workplan, value, depth );
+				reached++;
 			}
+			workplan.containedInRelationTraversed( beanClass, member, reached );
 		}
 	}
 
@@ -360,10 +388,12 @@ public abstract class AbstractDocumentBuilder<T> {
 
 		// iterate again for the properties and fields
 		for ( XClass currentClass : hierarchy ) {
+			Class<?> currentJavaClass = reflectionManager.toClass( currentClass );
 			// rejecting non properties (ie regular methods) because the object is loaded from Hibernate,
 			// so indexing a non property does not make sense
 			List<XProperty> methods = currentClass.getDeclaredProperties( XClass.ACCESS_PROPERTY );
 			for ( XProperty method : methods ) {
+				memberAccessors.put( method, MemberAccessor.forProperty( method, currentJavaClass, XClass.ACCESS_PROPERTY ) );
 				initializeMemberLevelAnnotations(
 						currentClass,
 						method,
@@ -380,6 +410,7 @@ public abstract class AbstractDocumentBuilder<T> {
 
 			List<XProperty> fields = currentClass.getDeclaredProperties( XClass.ACCESS_FIELD );
 			for ( XProperty field : fields ) {
+				memberAccessors.put( field, MemberAccessor.forProperty( field, currentJavaClass, XClass.ACCESS_FIELD ) );
 				initializeMemberLevelAnnotations(
 						currentClass,
 						field,
@@ -54,6 +54,13 @@ public class DepthValidator {
 		return maxDepth == Integer.MAX_VALUE;
 	}
 
+	/**
+	 * @return the number of levels which can still be traversed before reaching the maximum depth
+	 */
+	public int getRemainingDepth() {
+		return isMaxDepthInfinite() ? Integer.MAX_VALUE : maxDepth - depth;
+	}
+
 	@Override
 	public String toString() {
 		return "[maxDepth=" + maxDepth + ", level=" + depth + "]";
@@ -25,15 +25,26 @@ package org.hibernate.search.engine.spi;
 
 import java.io.Serializable;
 import java.lang.annotation.Annotation;
+import java.lang.reflect.Array;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.document.Document;
@@ -46,9 +57,16 @@ import org.hibernate.search.ProjectionConstants;
 import org.hibernate.search.annotations.Analyze;
 import org.hibernate.search.annotations.Norms;
 import org.hibernate.search.engine.impl.AnnotationProcessingHelper;
+import org.hibernate.search.engine.impl.DocumentBuildingPipeline;
+import org.hibernate.search.engine.impl.DocumentPlan;
+import org.hibernate.search.engine.impl.DocumentPlan.ClassBridgeStep;
+import org.hibernate.search.engine.impl.DocumentPlan.EmbeddedStep;
+import org.hibernate.search.engine.impl.DocumentPlan.FieldStep;
+import org.hibernate.search.engine.impl.PendingDocument;
 import org.hibernate.search.engine.impl.LuceneOptionsImpl;
 import org.hibernate.search.engine.spi.AbstractDocumentBuilder.PathsContext;
 import org.hibernate.search.spi.InstanceInitializer;
+import org.hibernate.search.util.impl.MemberAccessor;
 import org.hibernate.search.util.impl.ReflectionHelper;
 import org.hibernate.search.util.logging.impl.Log;
 
@@ -70,6 +88,8 @@ import org.hibernate.search.backend.AddLuceneWork;
 import org.hibernate.search.backend.DeleteLuceneWork;
 import org.hibernate.search.backend.LuceneWork;
 import org.hibernate.search.backend.UpdateLuceneWork;
+import org.hibernate.search.backend.impl.DeferredAddLuceneWork;
+import org.hibernate.search.backend.impl.DeferredUpdateLuceneWork;
 import org.hibernate.search.bridge.builtin.impl.TwoWayString2FieldBridgeAdaptor;
 import org.hibernate.search.bridge.impl.BridgeFactory;
 import org.hibernate.search.bridge.FieldBridge;
@@ -121,6 +141,21 @@ public class DocumentBuilderIndexedEntity<T> extends AbstractDocumentBuilder<T>
 	 */
 	private XMember idGetter;
 
+	/**
+	 * Reads the document id, null until the builder is initialized or when the id is provided
+	 */
+	private MemberAccessor idAccessor;
+
+	/**
+	 * The metadata of the entity compiled for building its <code>Document</code>s.
+	 */
+	private final DocumentPlan documentPlan;
+
+	/**
+	 * The options used to index the document id.
+	 */
+	private final LuceneOptions idLuceneOptions;
+
 	/**
 	 * Name of the document id field.
 	 */
@@ -211,6 +246,14 @@ public class DocumentBuilderIndexedEntity<T> extends AbstractDocumentBuilder<T>
 		}
 		this.entityState = EntityState.INDEXED;
 		this.identifierName = idProvided ? null : idGetter.getName();
+		this.documentPlan = DocumentPlan.compile( getMetadata(), getMemberAccessors() );
+		this.idAccessor = idProvided ? null : getMemberAccessors().get( idGetter );
+		this.idLuceneOptions = new LuceneOptionsImpl(
+				Store.YES,
+				Field.Index.NOT_ANALYZED_NO_NORMS,
+				Field.TermVector.NO,
+				idBoost
+		);
 	}
 
 	private FieldCacheCollectorFactory figureIdFieldCacheUsage() {
@@ -367,6 +410,24 @@ public class DocumentBuilderIndexedEntity<T> extends AbstractDocumentBuilder<T>
 		}
 	}
 
+	@Override
+	public void addWorkToQueue(Class<T> entityClass, T entity, Serializable id, boolean delete, boolean add, List<LuceneWork> queue, ConversionContext contextualBridge, DocumentBuildingPipeline pipeline) {
+		// analyzer discriminators need the fields created by all bridges as well as the entity,
+		// and bridges receiving entities could navigate them outside of the session
+		if ( pipeline == null || !add || !documentPlan.detachable ) {
+			addWorkToQueue( entityClass, entity, id, delete, add, queue, contextualBridge );
+			return;
+		}
+		String idInString = objectToString( idBridge, idKeywordName, id, contextualBridge );
+		PendingDocument document = pipeline.buildDocument( this, createSnapshot( entity, id, this.instanceInitalizer, contextualBridge ) );
+		if ( delete ) {
+			queue.add( new DeferredUpdateLuceneWork( id, idInString, entityClass, document ) );
+		}
+		else {
+			queue.add( new DeferredAddLuceneWork( id, idInString, entityClass, document ) );
+		}
+	}
+
 	private String objectToString(TwoWayFieldBridge bridge, String fieldName, Object value, ConversionContext conversionContext) {
 		conversionContext.pushProperty( fieldName );
 		String stringValue;
@@ -398,7 +459,7 @@ public class DocumentBuilderIndexedEntity<T> extends AbstractDocumentBuilder<T>
 	}
 
 	public AddLuceneWork createAddWork(Class<T> entityClass, T entity, Serializable id, String idInString, InstanceInitializer sessionInitializer, ConversionContext conversionContext) {
-		Map<String, String> fieldToAnalyzerMap = new HashMap<String, String>();
+		Map<String, String> fieldToAnalyzerMap = createFieldToAnalyzerMap();
 		Document doc = getDocument( entity, id, fieldToAnalyzerMap, sessionInitializer, conversionContext );
 		final AddLuceneWork addWork;
 		if ( fieldToAnalyzerMap.isEmpty() ) {
@@ -411,7 +472,7 @@ public class DocumentBuilderIndexedEntity<T> extends AbstractDocumentBuilder<T>
 	}
 	
 	public UpdateLuceneWork createUpdateWork(Class<T> entityClass, T entity, Serializable id, String idInString, InstanceInitializer sessionInitializer, ConversionContext contextualBridge) {
-		Map<String, String> fieldToAnalyzerMap = new HashMap<String, String>();
+		Map<String, String> fieldToAnalyzerMap = createFieldToAnalyzerMap();
 		Document doc = getDocument( entity, id, fieldToAnalyzerMap, sessionInitializer, contextualBridge );
 		final UpdateLuceneWork addWork;
 		if ( fieldToAnalyzerMap.isEmpty() ) {
@@ -423,6 +484,17 @@ public class DocumentBuilderIndexedEntity<T> extends AbstractDocumentBuilder<T>
 		return addWork;
 	}
 
+	/**
+	 * The map is only written to by analyzer discriminators: without any, share an empty map
+	 * rather than allocating one per document.
+	 */
+	private Map<String, String> createFieldToAnalyzerMap() {
+		if ( documentPlan.usesDiscriminator ) {
+			return new HashMap<String, String>();
+		}
+		return Collections.emptyMap();
+	}
+
 	/**
 	 * Builds the Lucene <code>Document</code> for a given entity <code>instance</code> and its <code>id</code>.
 	 *
@@ -439,11 +511,71 @@ public class DocumentBuilderIndexedEntity<T> extends AbstractDocumentBuilder<T>
 		if ( fieldToAnalyzerMap == null ) {
 			throw new IllegalArgumentException( "fieldToAnalyzerMap cannot be null" );
 		}
+		final Class<?> entityType = objectInitializer.getClass( instance );
+		Document doc = createDocument( entityType, id, getMetadata().getClassBoost( instance ), conversionContext );
 
-		Document doc = new Document();
-		this.instanceInitalizer.getClass( instance );
+		// finally add all other document fields
+		Set<String> processedFieldNames = documentPlan.usesDiscriminator ? new HashSet<String>() : null;
+		buildDocumentFields( instance, documentPlan, doc, fieldToAnalyzerMap, processedFieldNames, conversionContext, objectInitializer );
+		return doc;
+	}
+
+	/**
+	 * Reads the values of all indexed properties of the entity, initializing the collections and proxies
+	 * needed to build its <code>Document</code>: needs to be invoked while the entity is still attached
+	 * to its session. The snapshot is detached from the entity: collections, maps, arrays and dates
+	 * are copied, and the class bridges are applied right away, so that the <code>Document</code>
+	 * can then be built from the snapshot by a different thread.
+	 * Entities using an analyzer discriminator can't be snapshotted, as the discriminator needs both
+	 * the entity and the fields created by all bridges; neither can entities having field bridges
+	 * which receive other entities or objects they could navigate outside of the session.
+	 *
+	 * @param instance The entity for which to build the matching Lucene <code>Document</code>
+	 * @param id the entity id.
+	 * @param objectInitializer used to ensure that all objects are initalized
+	 * @param conversionContext used to report failures of the class bridges
+	 *
+	 * @return the values needed to build the <code>Document</code>
+	 */
+	public EntitySnapshot createSnapshot(T instance, Serializable id, InstanceInitializer objectInitializer, ConversionContext conversionContext) {
+		if ( !documentPlan.detachable ) {
+			throw new AssertionFailure( "Entities using an analyzer discriminator or bridges on non value types can't be snapshotted: " + getBeanClass() );
+		}
 		final Class<?> entityType = objectInitializer.getClass( instance );
-		doc.setBoost( getMetadata().getClassBoost( instance ) );
+		conversionContext.setClass( entityType );
+		return new EntitySnapshot(
+				entityType,
+				id,
+				getMetadata().getClassBoost( instance ),
+				snapshotProperties( instance, documentPlan, objectInitializer, conversionContext )
+		);
+	}
+
+	/**
+	 * Builds the Lucene <code>Document</code> from a snapshot of an entity.
+	 * Field bridges are applied on the values read by
+	 * {@link #createSnapshot(Object, Serializable, InstanceInitializer, ConversionContext)}.
+	 *
+	 * @param snapshot the values read from the entity
+	 * @param fieldToAnalyzerMap this maps gets populated while generating the <code>Document</code>.
+	 * @param conversionContext
+	 *
+	 * @return The Lucene <code>Document</code> for the entity.
+	 */
+	public Document getDocument(EntitySnapshot snapshot, Map<String, String> fieldToAnalyzerMap, ConversionContext conversionContext) {
+		Document doc = createDocument( snapshot.entityType, snapshot.id, snapshot.boost, conversionContext );
+
+		// finally add all other document fields; snapshotted entities never use an analyzer discriminator
+		buildDocumentFields( snapshot.properties, doc, conversionContext );
+		return doc;
+	}
+
+	/**
+	 * @return a new <code>Document</code> containing the class and id fields of the entity
+	 */
+	private Document createDocument(Class<?> entityType, Serializable id, float boost, ConversionContext conversionContext) {
+		Document doc = new Document();
+		doc.setBoost( boost );
 
 		// add the class name of the entity to the document
 		Field classField =
@@ -457,168 +589,295 @@ public class DocumentBuilderIndexedEntity<T> extends AbstractDocumentBuilder<T>
 		doc.add( classField );
 
 		// now add the entity id to the document
-		LuceneOptions luceneOptions = new LuceneOptionsImpl(
-				Store.YES,
-				Field.Index.NOT_ANALYZED_NO_NORMS,
-				Field.TermVector.NO,
-				idBoost
-		);
 		final FieldBridge contextualizedBridge = conversionContext.oneWayConversionContext( idBridge );
 		conversionContext.setClass( entityType );
 		conversionContext.pushProperty( idKeywordName );
 
 		try {
-			contextualizedBridge.set( idKeywordName, id, doc, luceneOptions );
+			contextualizedBridge.set( idKeywordName, id, doc, idLuceneOptions );
 		}
 		finally {
 			conversionContext.popProperty();
 		}
-
-		// finally add all other document fields
-		Set<String> processedFieldNames = new HashSet<String>();
-		buildDocumentFields( instance, doc, getMetadata(), fieldToAnalyzerMap, processedFieldNames, conversionContext, objectInitializer );
 		return doc;
 	}
 
+	/**
+	 * Reads the properties of an entity or embedded object into a snapshot detached from it: property values
+	 * are copied and class bridges applied right away, using the conversion context to report failures.
+	 */
+	@SuppressWarnings("unchecked")
+	private PropertiesSnapshot snapshotProperties(Object instance, DocumentPlan plan, InstanceInitializer objectInitializer,
+			ConversionContext conversionContext) {
+		// needed for field access: I cannot work in the proxied version
+		Object unproxiedInstance = unproxy( instance, objectInitializer );
+
+		// read the indexed fields
+		final FieldStep[] fields = plan.fields;
+		Object[] fieldValues = new Object[fields.length];
+		Object currentFieldValue = null;
+		for ( int i = 0; i < fields.length; i++ ) {
+			final FieldStep field = fields[i];
+			if ( !field.sameValueAsPrevious ) {
+				currentFieldValue = detachedCopy( readFieldValue( unproxiedInstance, field, objectInitializer ) );
+			}
+			fieldValues[i] = currentFieldValue;
+		}
+
+		// recursively read embedded objects
+		final EmbeddedStep[] embeddedSteps = plan.embedded;
+		List<PropertiesSnapshot>[] embedded = new List[embeddedSteps.length];
+		for ( int i = 0; i < embeddedSteps.length; i++ ) {
+			final EmbeddedStep embeddedStep = embeddedSteps[i];
+			Object value = embeddedStep.accessor.getValue( unproxiedInstance );
+			//TODO handle boost at embedded level: already stored in propertiesMedatada.boost
+
+			if ( value == null ) {
+				continue;
+			}
+
+			final DocumentPlan embeddedPlan = embeddedStep.plan;
+			Collection<?> embeddedValues = embeddedValues( embeddedStep, value, objectInitializer );
+			List<PropertiesSnapshot> embeddedSnapshots = new ArrayList<PropertiesSnapshot>( embeddedValues.size() );
+			for ( Object embeddedValue : embeddedValues ) {
+				embeddedSnapshots.add( snapshotProperties( embeddedValue, embeddedPlan, objectInitializer, conversionContext ) );
+			}
+			embedded[i] = embeddedSnapshots;
+		}
+		Document classBridgeFields = new Document();
+		applyClassBridges( plan, unproxiedInstance, classBridgeFields, conversionContext );
+		return new PropertiesSnapshot( plan, classBridgeFields.getFields(), fieldValues, embedded );
+	}
+
+	/**
+	 * Reads the value of a property, initializing it when it's a collection or a map.
+	 */
+	@SuppressWarnings("unchecked")
+	private static Object readFieldValue(Object unproxiedInstance, FieldStep field, InstanceInitializer objectInitializer) {
+		Object value = field.accessor.getValue( unproxiedInstance );
+		if ( field.collection ) {
+			if ( value instanceof Collection ) {
+				objectInitializer.initializeCollection( (Collection) value );
+			}
+			else if ( value instanceof Map ) {
+				objectInitializer.initializeMap( (Map) value );
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * @return the initialized objects contained in the value of an embedded property
+	 */
+	@SuppressWarnings("unchecked")
+	private static Collection<?> embeddedValues(EmbeddedStep embeddedStep, Object value, InstanceInitializer objectInitializer) {
+		switch ( embeddedStep.container ) {
+			case ARRAY:
+				return Arrays.asList( objectInitializer.initializeArray( (Object[]) value ) );
+			case COLLECTION:
+				return objectInitializer.initializeCollection( (Collection) value );
+			case MAP:
+				return objectInitializer.initializeMap( (Map) value ).values();
+			case OBJECT:
+				return Collections.singletonList( value );
+			default:
+				throw new AssertionFailure( "Unknown embedded container: " + embeddedStep.container );
+		}
+	}
+
+	/**
+	 * Adds the fields of an entity, or of an embedded object, reading the property values
+	 * and applying the bridges right away: no snapshot is needed when the <code>Document</code>
+	 * is built by the thread reading the entity.
+	 */
 	private void buildDocumentFields(Object instance,
+									 DocumentPlan plan,
 									 Document doc,
-									 PropertiesMetadata propertiesMetadata,
 									 Map<String, String> fieldToAnalyzerMap,
 									 Set<String> processedFieldNames,
 									 ConversionContext conversionContext,
 									 InstanceInitializer objectInitializer) {
-
 		// needed for field access: I cannot work in the proxied version
 		Object unproxiedInstance = unproxy( instance, objectInitializer );
 
 		// process the class bridges
-		for ( int i = 0; i < propertiesMetadata.classBridges.size(); i++ ) {
-			FieldBridge fb = propertiesMetadata.classBridges.get( i );
-			final String fieldName = propertiesMetadata.classNames.get( i );
-			final FieldBridge oneWayConversionContext = conversionContext.oneWayConversionContext( fb );
-			conversionContext.pushProperty( fieldName );
+		applyClassBridges( plan, unproxiedInstance, doc, conversionContext );
+
+		// process the indexed fields
+		final FieldStep[] fields = plan.fields;
+		Object currentFieldValue = null;
+		for ( int i = 0; i < fields.length; i++ ) {
+			final FieldStep field = fields[i];
+			if ( !field.sameValueAsPrevious ) {
+				currentFieldValue = readFieldValue( unproxiedInstance, field, objectInitializer );
+			}
+			applyFieldBridge( field, currentFieldValue, doc, conversionContext );
+		}
+
+		// allow analyzer override for the fields added by the class and field bridges
+		if ( plan.discriminator != null ) {
+			Object discriminatorValue = plan.discriminatorGetter == null
+					? null
+					: plan.discriminatorAccessor.getValue( unproxiedInstance );
+			allowAnalyzerDiscriminatorOverride(
+					doc, plan.discriminator, fieldToAnalyzerMap, processedFieldNames,
+					unproxiedInstance, discriminatorValue
+			);
+		}
+
+		// recursively process embedded objects
+		final EmbeddedStep[] embeddedSteps = plan.embedded;
+		for ( int i = 0; i < embeddedSteps.length; i++ ) {
+			final EmbeddedStep embeddedStep = embeddedSteps[i];
+			Object value = embeddedStep.accessor.getValue( unproxiedInstance );
+			//TODO handle boost at embedded level: already stored in propertiesMedatada.boost
+			conversionContext.pushProperty( embeddedStep.propertyName );
 			try {
-				oneWayConversionContext.set(
-						fieldName, unproxiedInstance,
-						doc, propertiesMetadata.getClassLuceneOptions( i )
-				);
+				if ( value == null ) {
+					processEmbeddedNullValue( doc, embeddedStep, conversionContext );
+					continue;
+				}
+				for ( Object embeddedValue : embeddedValues( embeddedStep, value, objectInitializer ) ) {
+					buildDocumentFields(
+							embeddedValue,
+							embeddedStep.plan,
+							doc,
+							fieldToAnalyzerMap,
+							processedFieldNames,
+							conversionContext,
+							objectInitializer
+					);
+				}
 			}
 			finally {
 				conversionContext.popProperty();
 			}
 		}
+	}
 
-		// process the indexed fields
-		XMember previousMember = null;
-		Object currentFieldValue = null;
-		for ( int i = 0; i < propertiesMetadata.fieldNames.size(); i++ ) {
-			XMember member = propertiesMetadata.fieldGetters.get( i );
-			if ( previousMember != member ) {
-				currentFieldValue = ReflectionHelper.getMemberValue( unproxiedInstance, member );
-				previousMember = member;
-				if ( member.isCollection() ) {
-					if ( currentFieldValue instanceof Collection ) {
-						objectInitializer.initializeCollection( (Collection) currentFieldValue );
-					}
-					else if ( currentFieldValue instanceof Map ) {
-						objectInitializer.initializeMap( (Map) currentFieldValue );
-					}
-				}
+	/**
+	 * Copies the mutable values which bridges commonly receive, so that they can be read by another thread
+	 * after the entity was modified or detached. Collections and maps are copied into unmodifiable ones
+	 * of the same kind, with their elements copied as well.
+	 */
+	@SuppressWarnings("unchecked")
+	private static Object detachedCopy(Object value) {
+		if ( value == null ) {
+			return null;
+		}
+		else if ( value instanceof Collection ) {
+			Collection<Object> copy;
+			if ( value instanceof SortedSet ) {
+				copy = new TreeSet<Object>( ( (SortedSet<Object>) value ).comparator() );
+			}
+			else if ( value instanceof Set ) {
+				copy = new LinkedHashSet<Object>( ( (Set) value ).size() );
+			}
+			else {
+				copy = new ArrayList<Object>( ( (Collection) value ).size() );
+			}
+			for ( Object element : (Collection) value ) {
+				copy.add( detachedCopy( element ) );
 			}
+			if ( copy instanceof SortedSet ) {
+				return Collections.unmodifiableSortedSet( (SortedSet<Object>) copy );
+			}
+			else if ( copy instanceof Set ) {
+				return Collections.unmodifiableSet( (Set<Object>) copy );
+			}
+			return Collections.unmodifiableList( (List<Object>) copy );
+		}
+		else if ( value instanceof Map ) {
+			Map<Object, Object> copy = value instanceof SortedMap
+					? new TreeMap<Object, Object>( ( (SortedMap<Object, Object>) value ).comparator() )
+					: new LinkedHashMap<Object, Object>( ( (Map) value ).size() );
+			for ( Map.Entry<Object, Object> entry : ( (Map<Object, Object>) value ).entrySet() ) {
+				copy.put( entry.getKey(), detachedCopy( entry.getValue() ) );
+			}
+			return copy instanceof SortedMap
+					? Collections.unmodifiableSortedMap( (SortedMap<Object, Object>) copy )
+					: Collections.unmodifiableMap( copy );
+		}
+		else if ( value instanceof Object[] ) {
+			Object[] copy = ( (Object[]) value ).clone();
+			for ( int i = 0; i < copy.length; i++ ) {
+				copy[i] = detachedCopy( copy[i] );
+			}
+			return copy;
+		}
+		else if ( value.getClass().isArray() ) {
+			int length = Array.getLength( value );
+			Object copy = Array.newInstance( value.getClass().getComponentType(), length );
+			System.arraycopy( value, 0, copy, 0, length );
+			return copy;
+		}
+		else if ( value instanceof Date ) {
+			return ( (Date) value ).clone();
+		}
+		else if ( value instanceof Calendar ) {
+			return ( (Calendar) value ).clone();
+		}
+		return value;
+	}
 
-			final FieldBridge fieldBridge = propertiesMetadata.fieldBridges.get( i );
-			final String fieldName = propertiesMetadata.fieldNames.get( i );
-			final FieldBridge oneWayConversionContext = conversionContext.oneWayConversionContext( fieldBridge );
-			conversionContext.pushProperty( propertiesMetadata.fieldGetterNames.get( i ) );
+	private void applyClassBridges(DocumentPlan plan, Object unproxiedInstance, Document doc, ConversionContext conversionContext) {
+		for ( ClassBridgeStep classBridge : plan.classBridges ) {
+			final FieldBridge oneWayConversionContext = conversionContext.oneWayConversionContext( classBridge.bridge );
+			conversionContext.pushProperty( classBridge.fieldName );
 			try {
 				oneWayConversionContext.set(
-						fieldName, currentFieldValue, doc,
-						propertiesMetadata.getFieldLuceneOptions( i, currentFieldValue )
+						classBridge.fieldName, unproxiedInstance,
+						doc, classBridge.luceneOptions
 				);
 			}
 			finally {
 				conversionContext.popProperty();
 			}
 		}
+	}
 
-		// allow analyzer override for the fields added by the class and field bridges
-		allowAnalyzerDiscriminatorOverride(
-				doc, propertiesMetadata, fieldToAnalyzerMap, processedFieldNames, unproxiedInstance
-		);
+	private void applyFieldBridge(FieldStep field, Object value, Document doc, ConversionContext conversionContext) {
+		final FieldBridge oneWayConversionContext = conversionContext.oneWayConversionContext( field.bridge );
+		conversionContext.pushProperty( field.propertyName );
+		try {
+			oneWayConversionContext.set(
+					field.fieldName, value, doc,
+					field.getLuceneOptions( value )
+			);
+		}
+		finally {
+			conversionContext.popProperty();
+		}
+	}
+
+	private void buildDocumentFields(PropertiesSnapshot snapshot, Document doc, ConversionContext conversionContext) {
+		final DocumentPlan plan = snapshot.plan;
+
+		// the class bridges were applied when taking the snapshot
+		for ( Fieldable classBridgeField : snapshot.classBridgeFields ) {
+			doc.add( classBridgeField );
+		}
+
+		// process the indexed fields
+		final FieldStep[] fields = plan.fields;
+		for ( int i = 0; i < fields.length; i++ ) {
+			final FieldStep field = fields[i];
+			applyFieldBridge( field, snapshot.fieldValues[i], doc, conversionContext );
+		}
 
 		// recursively process embedded objects
-		for ( int i = 0; i < propertiesMetadata.embeddedGetters.size(); i++ ) {
-			XMember member = propertiesMetadata.embeddedGetters.get( i );
-			conversionContext.pushProperty( propertiesMetadata.embeddedFieldNames.get( i ) );
+		final EmbeddedStep[] embeddedSteps = plan.embedded;
+		for ( int i = 0; i < embeddedSteps.length; i++ ) {
+			final EmbeddedStep embeddedStep = embeddedSteps[i];
+			conversionContext.pushProperty( embeddedStep.propertyName );
 			try {
-				Object value = ReflectionHelper.getMemberValue( unproxiedInstance, member );
-				//TODO handle boost at embedded level: already stored in propertiesMedatada.boost
-
-				if ( value == null ) {
-					processEmbeddedNullValue( doc, propertiesMetadata, conversionContext, i, member );
+				List<PropertiesSnapshot> embeddedSnapshots = snapshot.embedded[i];
+				if ( embeddedSnapshots == null ) {
+					processEmbeddedNullValue( doc, embeddedStep, conversionContext );
 					continue;
 				}
-
-				PropertiesMetadata embeddedMetadata = propertiesMetadata.embeddedPropertiesMetadata.get( i );
-				switch ( propertiesMetadata.embeddedContainers.get( i ) ) {
-					case ARRAY:
-						Object[] array = objectInitializer.initializeArray( (Object[]) value );
-						for ( Object arrayValue : array ) {
-							buildDocumentFields(
-									arrayValue,
-									doc,
-									embeddedMetadata,
-									fieldToAnalyzerMap,
-									processedFieldNames,
-									conversionContext,
-									objectInitializer
-							);
-						}
-						break;
-					case COLLECTION:
-						Collection collection = objectInitializer.initializeCollection( (Collection) value );
-						for ( Object collectionValue : collection ) {
-							buildDocumentFields(
-									collectionValue,
-									doc,
-									embeddedMetadata,
-									fieldToAnalyzerMap,
-									processedFieldNames,
-									conversionContext,
-									objectInitializer
-							);
-						}
-						break;
-					case MAP:
-						Map map = objectInitializer.initializeMap( (Map) value );
-						for ( Object collectionValue : map.values() ) {
-							buildDocumentFields(
-									collectionValue,
-									doc,
-									embeddedMetadata,
-									fieldToAnalyzerMap,
-									processedFieldNames,
-									conversionContext,
-									objectInitializer
-							);
-						}
-						break;
-					case OBJECT:
-						buildDocumentFields(
-								value,
-								doc,
-								embeddedMetadata,
-								fieldToAnalyzerMap,
-								processedFieldNames,
-								conversionContext,
-								objectInitializer
-						);
-						break;
-					default:
-						throw new AssertionFailure(
-								"Unknown embedded container: "
-										+ propertiesMetadata.embeddedContainers.get( i )
-						);
+				for ( PropertiesSnapshot embeddedSnapshot : embeddedSnapshots ) {
+					buildDocumentFields( embeddedSnapshot, doc, conversionContext );
 				}
 			}
 			finally {
@@ -627,12 +886,11 @@ public class DocumentBuilderIndexedEntity<T> extends AbstractDocumentBuilder<T>
 		}
 	}
 
-	private void processEmbeddedNullValue(Document doc, PropertiesMetadata propertiesMetadata, ConversionContext conversionContext, int i, XMember member) {
-		final String nullMarker = propertiesMetadata.embeddedNullTokens.get( i );
+	private void processEmbeddedNullValue(Document doc, EmbeddedStep embeddedStep, ConversionContext conversionContext) {
+		final String nullMarker = embeddedStep.nullToken;
 		if ( nullMarker != null ) {
-			String fieldName = propertiesMetadata.embeddedNullFields.get( i );
-			FieldBridge fieldBridge = propertiesMetadata.embeddedNullFieldBridges.get( i );
-			final FieldBridge contextualizedBridge = conversionContext.oneWayConversionContext( fieldBridge );
+			String fieldName = embeddedStep.nullFieldName;
+			final FieldBridge contextualizedBridge = conversionContext.oneWayConversionContext( embeddedStep.nullFieldBridge );
 			conversionContext.pushProperty( fieldName );
 			try {
 				contextualizedBridge.set( fieldName, null, doc, NULL_EMBEDDED_MARKER_OPTIONS );
@@ -654,23 +912,18 @@ public class DocumentBuilderIndexedEntity<T> extends AbstractDocumentBuilder<T>
 	 * Allows a analyzer discriminator to override the analyzer used for any field in the Lucene document.
 	 *
 	 * @param doc The Lucene <code>Document</code> which shall be indexed.
-	 * @param propertiesMetadata The metadata for the entity we currently add to the document.
+	 * @param discriminator The analyzer discriminator of the entity we currently add to the document, if any.
 	 * @param fieldToAnalyzerMap This map contains the actual override data. It is a map between document fields names and
 	 * analyzer definition names. This map will be added to the <code>Work</code> instance and processed at actual indexing time.
 	 * @param processedFieldNames A list of field names we have already processed.
 	 * @param unproxiedInstance The entity we currently "add" to the document.
+	 * @param value The value of the discriminator property, if any.
 	 */
-	private void allowAnalyzerDiscriminatorOverride(Document doc, PropertiesMetadata propertiesMetadata, Map<String, String> fieldToAnalyzerMap, Set<String> processedFieldNames, Object unproxiedInstance) {
-		Discriminator discriminator = propertiesMetadata.discriminator;
+	private void allowAnalyzerDiscriminatorOverride(Document doc, Discriminator discriminator, Map<String, String> fieldToAnalyzerMap, Set<String> processedFieldNames, Object unproxiedInstance, Object value) {
 		if ( discriminator == null ) {
 			return;
 		}
 
-		Object value = null;
-		if ( propertiesMetadata.discriminatorGetter != null ) {
-			value = ReflectionHelper.getMemberValue( unproxiedInstance, propertiesMetadata.discriminatorGetter );
-		}
-
 		// now we give the discriminator the opportunity to specify a analyzer per field level
 		for ( Object o : doc.getFields() ) {
 			Fieldable field = (Fieldable) o;
@@ -726,6 +979,9 @@ public class DocumentBuilderIndexedEntity<T> extends AbstractDocumentBuilder<T>
 			throw new IllegalStateException( "Cannot guess id from entity" );
 		}
 		Object unproxiedEntity = this.instanceInitalizer.unproxy( entity );
+		if ( idAccessor != null ) {
+			return (Serializable) idAccessor.getValue( unproxiedEntity );
+		}
 		return (Serializable) ReflectionHelper.getMemberValue( unproxiedEntity, idGetter );
 	}
 	
@@ -869,4 +1125,46 @@ public class DocumentBuilderIndexedEntity<T> extends AbstractDocumentBuilder<T>
 				( documentIdAnnotatedMember == null || documentIdAnnotatedMember.equals( jpaIdAnnotatedMember ) )
 								);
 	}
+
+	/**
+	 * The values read from an entity instance which are needed to build its <code>Document</code>.
+	 *
+	 * @see DocumentBuilderIndexedEntity#createSnapshot(Object, Serializable, InstanceInitializer, ConversionContext)
+	 */
+	public static final class EntitySnapshot {
+
+		private final Class<?> entityType;
+		private final Serializable id;
+		private final float boost;
+		private final PropertiesSnapshot properties;
+
+		private EntitySnapshot(Class<?> entityType, Serializable id, float boost, PropertiesSnapshot properties) {
+			this.entityType = entityType;
+			this.id = id;
+			this.boost = boost;
+			this.properties = properties;
+		}
+	}
+
+	private static final class PropertiesSnapshot {
+
+		private final DocumentPlan plan;
+		/**
+		 * The fields created by the class bridges while taking the snapshot
+		 */
+		private final List<Fieldable> classBridgeFields;
+		private final Object[] fieldValues;
+		/**
+		 * The snapshots of each embedded property, null if the property value is null
+		 */
+		private final List<PropertiesSnapshot>[] embedded;
+
+		private PropertiesSnapshot(DocumentPlan plan, List<Fieldable> classBridgeFields, Object[] fieldValues,
+				List<PropertiesSnapshot>[] embedded) {
+			this.plan = plan;
+			this.classBridgeFields = classBridgeFields;
+			this.fieldValues = fieldValues;
+			this.embedded = embedded;
+		}
+	}
 }
@@ -27,7 +27,10 @@ import java.io.IOException;
 
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.FilteredDocIdSet;
+import org.apache.lucene.util.OpenBitSetDISI;
 
 import org.hibernate.search.util.impl.SoftLimitMRUCache;
 import org.hibernate.search.util.logging.impl.Log;
@@ -37,6 +40,10 @@ import org.hibernate.search.util.logging.impl.LoggerFactory;
  * A slightly different version of Lucene's original <code>CachingWrapperFilter</code> which
  * uses <code>SoftReferences</code> instead of <code>WeakReferences</code> in order to cache
  * the filter <code>BitSet</code>.
+ * As Lucene applies filters per segment, the results are cached per segment, keyed on the
+ * segment core so that they survive the IndexReader reopening after each commit: only new
+ * segments are computed, while documents deleted after caching are excluded when reading
+ * the cached results.
  *
  * @author Hardy Ferentschik
  * @see org.apache.lucene.search.CachingWrapperFilter
@@ -81,20 +88,47 @@ public class CachingWrapperFilter extends Filter {
 	}
 
 	@Override
-	public DocIdSet getDocIdSet(IndexReader reader) throws IOException {
-		DocIdSet cached = (DocIdSet) cache.get( reader );
-		if ( cached != null ) {
+	public DocIdSet getDocIdSet(final IndexReader reader) throws IOException {
+		// shared by the reopened readers of a segment, even when they have different deletions
+		final Object coreKey = reader.getCoreCacheKey();
+		DocIdSet cached = (DocIdSet) cache.get( coreKey );
+		if ( cached == null ) {
+			synchronized ( cache ) {
+				cached = (DocIdSet) cache.get( coreKey );
+				if ( cached == null ) {
+					cached = toCacheableDocIdSet( filter.getDocIdSet( reader ), reader );
+					cache.put( coreKey, cached );
+				}
+			}
+		}
+		if ( !reader.hasDeletions() || cached == DocIdSet.EMPTY_DOCIDSET ) {
 			return cached;
 		}
-		synchronized ( cache ) {
-			cached = (DocIdSet) cache.get( reader );
-			if ( cached != null ) {
-				return cached;
+		// the cached results might include documents deleted since
+		return new FilteredDocIdSet( cached ) {
+			@Override
+			protected boolean match(int docid) {
+				return !reader.isDeleted( docid );
 			}
-			final DocIdSet docIdSet = filter.getDocIdSet( reader );
-			cache.put( reader, docIdSet );
+		};
+	}
+
+	/**
+	 * Copies the DocIdSet in a bitset if it can't be reused, for example when it
+	 * iterates on the index each time.
+	 */
+	private static DocIdSet toCacheableDocIdSet(DocIdSet docIdSet, IndexReader reader) throws IOException {
+		if ( docIdSet == null ) {
+			return DocIdSet.EMPTY_DOCIDSET;
+		}
+		if ( docIdSet.isCacheable() ) {
 			return docIdSet;
 		}
+		DocIdSetIterator iterator = docIdSet.iterator();
+		if ( iterator == null ) {
+			return DocIdSet.EMPTY_DOCIDSET;
+		}
+		return new OpenBitSetDISI( iterator, reader.maxDoc() );
 	}
 
 	public String toString() {
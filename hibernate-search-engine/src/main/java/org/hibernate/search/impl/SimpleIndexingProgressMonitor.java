@@ -26,7 +26,7 @@ package org.hibernate.search.impl;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
-import org.hibernate.search.batchindexing.MassIndexerProgressMonitor;
+import org.hibernate.search.batchindexing.MassIndexerStageProgressMonitor;
 import org.hibernate.search.util.logging.impl.Log;
 import org.hibernate.search.util.logging.impl.LoggerFactory;
 
@@ -36,7 +36,7 @@ import org.hibernate.search.util.logging.impl.LoggerFactory;
  *
  * @author Sanne Grinovero
  */
-public class SimpleIndexingProgressMonitor implements MassIndexerProgressMonitor {
+public class SimpleIndexingProgressMonitor implements MassIndexerStageProgressMonitor {
 
 	private static final Log log = LoggerFactory.make();
 	private final AtomicLong documentsDoneCounter = new AtomicLong();
@@ -88,6 +88,14 @@ public class SimpleIndexingProgressMonitor implements MassIndexerProgressMonitor
 		log.indexingEntitiesCompleted( totalCounter.get() );
 	}
 
+	public void stageThroughput(Class<?> indexedType, Stage stage, double entitiesPerSecond, double busyThreads) {
+		log.indexingStageThroughput( indexedType.getName(), stage.toString(), entitiesPerSecond, busyThreads );
+	}
+
+	public void loadingThrottled(Class<?> indexedType, int loadingThreads, int batchSize, double batchLatencyMillis) {
+		log.massIndexerLoadingThrottled( indexedType.getName(), loadingThreads, batchSize, batchLatencyMillis );
+	}
+
 	protected int getStatusMessagePeriod() {
 		return logAfterNumberOfDocuments;
 	}
@@ -25,11 +25,13 @@ import java.util.Properties;
 import org.hibernate.annotations.common.util.StringHelper;
 import org.hibernate.search.Environment;
 import org.hibernate.search.SearchException;
+import org.hibernate.search.backend.impl.lucene.QueueOverflowPolicy;
 import org.hibernate.search.backend.spi.LuceneIndexingParameters;
 import org.hibernate.search.batchindexing.impl.Executors;
 import org.hibernate.search.cfg.spi.SearchConfiguration;
 import org.hibernate.search.indexes.spi.DirectoryBasedReaderProvider;
 import org.hibernate.search.indexes.spi.IndexManager;
+import org.hibernate.search.indexes.spi.IndexReaderWarmer;
 import org.hibernate.search.spi.WorkerBuildContext;
 import org.hibernate.search.store.optimization.OptimizerStrategy;
 import org.hibernate.search.store.optimization.impl.IncrementalOptimizerStrategy;
@@ -90,6 +92,79 @@ public class CommonPropertiesParse {
 		}
 	}
 
+	/**
+	 * @param indexName
+	 * @param indexProps MaskedProperties for this IndexManager
+	 * @return what to do with new work when the async queue is full
+	 */
+	public static QueueOverflowPolicy extractQueueOverflowPolicy(String indexName, Properties indexProps) {
+		return QueueOverflowPolicy.interpret( indexName, indexProps.getProperty( Environment.QUEUE_OVERFLOW_POLICY ) );
+	}
+
+	public static boolean isQueueCoalescingEnabled(Properties indexProps) {
+		return ConfigurationParseHelper.getBooleanValue( indexProps, Environment.QUEUE_COALESCING, false );
+	}
+
+	public static boolean isGroupCommitEnabled(Properties indexProps) {
+		return ConfigurationParseHelper.getBooleanValue( indexProps, Environment.GROUP_COMMIT, false );
+	}
+
+	/**
+	 * @param indexName
+	 * @param indexProps MaskedProperties for this IndexManager
+	 * @return the maximum time in milliseconds a group commit waits for more transactions
+	 */
+	public static int extractGroupCommitMaxWait(String indexName, Properties indexProps) {
+		int maxWait = ConfigurationParseHelper.getIntValue( indexProps, Environment.GROUP_COMMIT_MAX_WAIT, 0 );
+		if ( maxWait < 0 ) {
+			throw new SearchException( "Property " + Environment.GROUP_COMMIT_MAX_WAIT + " on index "
+					+ indexName + " must not be negative" );
+		}
+		return maxWait;
+	}
+
+	/**
+	 * @param indexName
+	 * @param indexProps MaskedProperties for this IndexManager
+	 * @return the maximum number of transactions sharing the same commit
+	 */
+	public static int extractGroupCommitMaxBatchSize(String indexName, Properties indexProps) {
+		int maxBatchSize = ConfigurationParseHelper.getIntValue( indexProps, Environment.GROUP_COMMIT_MAX_BATCH_SIZE, 100 );
+		if ( maxBatchSize < 1 ) {
+			throw new SearchException( "Property " + Environment.GROUP_COMMIT_MAX_BATCH_SIZE + " on index "
+					+ indexName + " must be strictly positive" );
+		}
+		return maxBatchSize;
+	}
+
+	/**
+	 * @param indexName
+	 * @param indexProps MaskedProperties for this IndexManager
+	 * @return the interval in milliseconds between commits in async mode, or 0 to commit each transaction
+	 */
+	public static int extractAsyncCommitInterval(String indexName, Properties indexProps) {
+		int interval = ConfigurationParseHelper.getIntValue( indexProps, Environment.ASYNC_COMMIT_INTERVAL, 0 );
+		if ( interval < 0 ) {
+			throw new SearchException( "Property " + Environment.ASYNC_COMMIT_INTERVAL + " on index "
+					+ indexName + " must not be negative" );
+		}
+		return interval;
+	}
+
+	/**
+	 * @param indexName
+	 * @param indexProps MaskedProperties for this IndexManager
+	 * @return the number of operations triggering a commit in async mode, or 0 for no limit
+	 */
+	public static int extractAsyncCommitMaxOperations(String indexName, Properties indexProps) {
+		int maxOperations = ConfigurationParseHelper.getIntValue( indexProps, Environment.ASYNC_COMMIT_MAX_OPERATIONS, 0 );
+		if ( maxOperations < 0 ) {
+			throw new SearchException( "Property " + Environment.ASYNC_COMMIT_MAX_OPERATIONS + " on index "
+					+ indexName + " must not be negative" );
+		}
+		return maxOperations;
+	}
+
 	public static OptimizerStrategy getOptimizerStrategy(IndexManager callback, Properties indexProps) {
 		MaskedProperty optimizerCfg = new MaskedProperty(indexProps, "optimizer" );
 		String customImplementation = optimizerCfg.getProperty( "implementation" );
@@ -160,4 +235,29 @@ public class CommonPropertiesParse {
 		return readerProvider;
 	}
 
+	/**
+	 * @param indexManager the index manager whose IndexReaders are warmed
+	 * @param cfg the index configuration properties
+	 * @return the configured {@link IndexReaderWarmer}, or null if IndexReaders aren't warmed
+	 */
+	public static IndexReaderWarmer createReaderWarmer(DirectoryBasedIndexManager indexManager, Properties cfg) {
+		Properties props = new MaskedProperty( cfg, Environment.READER_PREFIX );
+		String impl = props.getProperty( "warmer" );
+		IndexReaderWarmer warmer;
+		if ( StringHelper.isEmpty( impl ) ) {
+			return null;
+		}
+		else if ( "fieldcache".equalsIgnoreCase( impl ) ) {
+			warmer = new FieldCacheWarmer();
+		}
+		else {
+			warmer = ClassLoaderHelper.instanceFromName(
+					IndexReaderWarmer.class, impl,
+					CommonPropertiesParse.class, "IndexReader warmer"
+			);
+		}
+		warmer.initialize( indexManager, props );
+		return warmer;
+	}
+
 }
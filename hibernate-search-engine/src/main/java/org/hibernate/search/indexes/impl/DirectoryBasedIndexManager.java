@@ -24,6 +24,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.locks.Lock;
 
 import org.apache.lucene.analysis.Analyzer;
@@ -33,17 +34,21 @@ import org.hibernate.search.backend.BackendFactory;
 import org.hibernate.search.backend.IndexingMonitor;
 import org.hibernate.search.backend.LuceneWork;
 import org.hibernate.search.backend.OptimizeLuceneWork;
+import org.hibernate.search.backend.impl.lucene.LuceneBackendQueueProcessor;
 import org.hibernate.search.backend.spi.BackendQueueProcessor;
 import org.hibernate.search.backend.spi.LuceneIndexingParameters;
 import org.hibernate.search.engine.spi.EntityIndexBinder;
 import org.hibernate.search.engine.spi.SearchFactoryImplementor;
 import org.hibernate.search.indexes.serialization.spi.LuceneWorkSerializer;
 import org.hibernate.search.indexes.spi.DirectoryBasedReaderProvider;
+import org.hibernate.search.indexes.spi.IndexChangeListener;
 import org.hibernate.search.indexes.spi.IndexManager;
+import org.hibernate.search.indexes.spi.IndexReaderWarmer;
 import org.hibernate.search.indexes.spi.ReaderProvider;
 import org.hibernate.search.spi.WorkerBuildContext;
 import org.hibernate.search.store.DirectoryProvider;
 import org.hibernate.search.store.impl.DirectoryProviderFactory;
+import org.hibernate.search.store.impl.FSSlaveDirectoryProvider;
 import org.hibernate.search.store.optimization.OptimizerStrategy;
 
 /**
@@ -65,6 +70,9 @@ public class DirectoryBasedIndexManager implements IndexManager {
 	private SearchFactoryImplementor boundSearchFactory = null;
 	private DirectoryBasedReaderProvider readers = null;
 	private IndexWriterConfig writerConfig;
+	private boolean exclusiveIndexUsage;
+	private IndexReaderWarmer readerWarmer;
+	private final List<IndexChangeListener> changeListeners = new CopyOnWriteArrayList<IndexChangeListener>();
 
 	@Override
 	public String getIndexName() {
@@ -89,9 +97,14 @@ public class DirectoryBasedIndexManager implements IndexManager {
 		directoryProvider = createDirectoryProvider( indexName, cfg, buildContext );
 		indexingParameters = CommonPropertiesParse.extractIndexingPerformanceOptions( cfg );
 		optimizer = CommonPropertiesParse.getOptimizerStrategy( this, cfg );
+		exclusiveIndexUsage = CommonPropertiesParse.isExclusiveIndexUsageEnabled( cfg );
+		readerWarmer = CommonPropertiesParse.createReaderWarmer( this, cfg );
 		backend = createBackend( indexName, cfg, buildContext );
 		directoryProvider.start( this );
 		readers = createIndexReader( indexName, cfg, buildContext );
+		if ( readers instanceof IndexChangeListener ) {
+			addIndexChangeListener( (IndexChangeListener) readers );
+		}
 		serializer = BackendFactory.createSerializer( indexName, cfg, buildContext );
 	}
 
@@ -166,6 +179,9 @@ public class DirectoryBasedIndexManager implements IndexManager {
 	
 	//Not exposed on the IndexManager interface
 	public EntityIndexBinder getIndexBindingForEntity(Class<?> entityType) {
+		if ( boundSearchFactory == null ) {
+			return null;
+		}
 		return boundSearchFactory.getIndexBindingForEntity( entityType );
 	}
 	
@@ -189,6 +205,45 @@ public class DirectoryBasedIndexManager implements IndexManager {
 		return indexingParameters;
 	}
 
+	/**
+	 * @return the warmer to apply to new IndexReaders before they are used, or null
+	 */
+	//Not exposed on the interface
+	public IndexReaderWarmer getReaderWarmer() {
+		return readerWarmer;
+	}
+
+	//Not exposed on the interface
+	public void addIndexChangeListener(IndexChangeListener listener) {
+		changeListeners.add( listener );
+	}
+
+	/**
+	 * Notifies the registered {@link IndexChangeListener}s that the index changed.
+	 * Invoked by the components applying the changes: the backend after each commit
+	 * and the DirectoryProvider when it replaces the Directory.
+	 */
+	//Not exposed on the interface
+	public void notifyIndexChanged() {
+		for ( IndexChangeListener listener : changeListeners ) {
+			listener.indexChanged();
+		}
+	}
+
+	/**
+	 * @return true if {@link #notifyIndexChanged()} is invoked for every change to the index,
+	 * which is the case when only the local backend writes to it or when it's a copy
+	 * maintained by {@link FSSlaveDirectoryProvider}. Other nodes or processes might
+	 * change the index without notifications otherwise.
+	 */
+	//Not exposed on the interface
+	public boolean isNotifyingAllIndexChanges() {
+		if ( directoryProvider instanceof FSSlaveDirectoryProvider ) {
+			return true;
+		}
+		return exclusiveIndexUsage && backend instanceof LuceneBackendQueueProcessor;
+	}
+
 	@Override
 	public LuceneWorkSerializer getSerializer() {
 		return serializer;
@@ -0,0 +1,325 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.indexes.impl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.FieldCache;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.util.ReaderUtil;
+import org.hibernate.search.ProjectionConstants;
+import org.hibernate.search.annotations.FieldCacheType;
+import org.hibernate.search.engine.spi.EntityIndexBinder;
+import org.hibernate.search.indexes.spi.IndexManager;
+import org.hibernate.search.indexes.spi.IndexReaderWarmer;
+import org.hibernate.search.query.collector.impl.FieldCacheCollectorFactory;
+import org.hibernate.search.query.dsl.impl.FacetingRequestImpl;
+import org.hibernate.search.query.fieldcache.impl.FieldCacheLoadingType;
+import org.hibernate.search.util.logging.impl.Log;
+import org.hibernate.search.util.logging.impl.LoggerFactory;
+
+/**
+ * The built-in {@link IndexReaderWarmer}, loading on each segment of a new IndexReader
+ * the same FieldCache entries the queries are going to use:
+ * <ul>
+ * <li>the class and id fields of the indexed entities, as enabled by
+ * {@link org.hibernate.search.annotations.CacheFromIndex}</li>
+ * <li>the fields used for sorting and faceting: the mapping doesn't define which fields are used
+ * for it, so the queries record them and they are warmed from the next IndexReader on.</li>
+ * </ul>
+ * Segments shared with a previous IndexReader already have their FieldCache entries loaded,
+ * so only the new segments cost anything.
+ *
+ * @author agent <agent@local>
+ */
+public class FieldCacheWarmer implements IndexReaderWarmer {
+
+	private static final Log log = LoggerFactory.make();
+
+	private final Set<WarmedField> queriedFields = Collections.newSetFromMap( new ConcurrentHashMap<WarmedField, Boolean>() );
+	private DirectoryBasedIndexManager indexManager;
+
+	@Override
+	public void initialize(DirectoryBasedIndexManager indexManager, Properties props) {
+		this.indexManager = indexManager;
+	}
+
+	@Override
+	public void warm(IndexReader reader) {
+		Set<WarmedField> fields = collectWarmedFields();
+		if ( fields.isEmpty() ) {
+			return;
+		}
+		long start = System.nanoTime();
+		List<IndexReader> segments = new ArrayList<IndexReader>();
+		ReaderUtil.gatherSubReaders( segments, reader );
+		try {
+			for ( IndexReader segment : segments ) {
+				for ( WarmedField field : fields ) {
+					field.load( segment );
+				}
+			}
+		}
+		catch (IOException e) {
+			throw log.ioExceptionOnIndex( e, indexManager.getIndexName() );
+		}
+		if ( log.isDebugEnabled() ) {
+			log.debugf( "Warmed %d FieldCaches on %d segments of index %s in %d ms", fields.size(), segments.size(),
+					indexManager.getIndexName(), ( System.nanoTime() - start ) / 1000000 );
+		}
+	}
+
+	private Set<WarmedField> collectWarmedFields() {
+		Set<WarmedField> fields = new HashSet<WarmedField>( queriedFields );
+		Set<Class<?>> containedTypes = indexManager.getContainedTypes();
+		for ( Class<?> type : containedTypes ) {
+			EntityIndexBinder binder = indexManager.getIndexBindingForEntity( type );
+			if ( binder == null ) {
+				// not bound to the SearchFactory yet
+				continue;
+			}
+			// queries need the class field only when targeting several types, which usually share the index
+			if ( containedTypes.size() > 1
+					&& binder.getDocumentBuilder().getFieldCacheOption().contains( FieldCacheType.CLASS ) ) {
+				fields.add( new WarmedField( ProjectionConstants.OBJECT_CLASS, CacheType.STRINGS ) );
+			}
+			FieldCacheCollectorFactory idCollectorFactory = binder.getIdFieldCacheCollectionFactory();
+			if ( idCollectorFactory != null ) {
+				fields.add( new WarmedField(
+						idCollectorFactory.getFieldName(), CacheType.forLoadingType( idCollectorFactory.getLoadingType() )
+				) );
+			}
+		}
+		return fields;
+	}
+
+	private void addQueriedFields(Collection<WarmedField> fields) {
+		if ( !queriedFields.containsAll( fields ) ) {
+			queriedFields.addAll( fields );
+		}
+	}
+
+	/**
+	 * Records the fields a query sorts and facets on, so that the warmers of the targeted
+	 * indexes load them on the next IndexReaders. Returns right away when none of the
+	 * targeted indexes uses a FieldCacheWarmer.
+	 *
+	 * @param indexManagers the indexes targeted by the query
+	 * @param sort the Sort of the query, might be null
+	 * @param facetRequests the faceting requests of the query
+	 */
+	public static void fieldsUsedByQuery(IndexManager[] indexManagers, Sort sort, Collection<FacetingRequestImpl> facetRequests) {
+		List<FieldCacheWarmer> warmers = null;
+		for ( IndexManager indexManager : indexManagers ) {
+			if ( indexManager instanceof DirectoryBasedIndexManager ) {
+				IndexReaderWarmer warmer = ( (DirectoryBasedIndexManager) indexManager ).getReaderWarmer();
+				if ( warmer instanceof FieldCacheWarmer ) {
+					if ( warmers == null ) {
+						warmers = new ArrayList<FieldCacheWarmer>( indexManagers.length );
+					}
+					warmers.add( (FieldCacheWarmer) warmer );
+				}
+			}
+		}
+		if ( warmers == null ) {
+			return;
+		}
+		List<WarmedField> fields = new ArrayList<WarmedField>();
+		if ( sort != null ) {
+			for ( SortField sortField : sort.getSort() ) {
+				CacheType cacheType = CacheType.forSortField( sortField );
+				if ( cacheType != null ) {
+					fields.add( new WarmedField( sortField.getField(), cacheType ) );
+				}
+			}
+		}
+		for ( FacetingRequestImpl facetRequest : facetRequests ) {
+			CacheType cacheType = CacheType.forFacetType( facetRequest.getFieldCacheType() );
+			if ( cacheType != null ) {
+				fields.add( new WarmedField( facetRequest.getFieldName(), cacheType ) );
+			}
+		}
+		if ( fields.isEmpty() ) {
+			return;
+		}
+		for ( FieldCacheWarmer warmer : warmers ) {
+			warmer.addQueriedFields( fields );
+		}
+	}
+
+	/**
+	 * The FieldCache entries to load, using the same methods and parsers as the query time
+	 * collectors and comparators so that they find the entries in the cache.
+	 */
+	enum CacheType {
+		STRINGS {
+			@Override
+			void load(IndexReader segment, String field) throws IOException {
+				FieldCache.DEFAULT.getStrings( segment, field );
+			}
+		},
+		STRING_INDEX {
+			@Override
+			void load(IndexReader segment, String field) throws IOException {
+				FieldCache.DEFAULT.getStringIndex( segment, field );
+			}
+		},
+		INTS {
+			@Override
+			void load(IndexReader segment, String field) throws IOException {
+				FieldCache.DEFAULT.getInts( segment, field );
+			}
+		},
+		LONGS {
+			@Override
+			void load(IndexReader segment, String field) throws IOException {
+				FieldCache.DEFAULT.getLongs( segment, field );
+			}
+		},
+		FLOATS {
+			@Override
+			void load(IndexReader segment, String field) throws IOException {
+				FieldCache.DEFAULT.getFloats( segment, field );
+			}
+		},
+		DOUBLES {
+			@Override
+			void load(IndexReader segment, String field) throws IOException {
+				FieldCache.DEFAULT.getDoubles( segment, field );
+			}
+		};
+
+		abstract void load(IndexReader segment, String field) throws IOException;
+
+		static CacheType forLoadingType(FieldCacheLoadingType loadingType) {
+			switch ( loadingType ) {
+				case STRING:
+					return STRINGS;
+				case INT:
+					return INTS;
+				case LONG:
+					return LONGS;
+				case FLOAT:
+					return FLOATS;
+				case DOUBLE:
+					return DOUBLES;
+				default:
+					throw new IllegalArgumentException( "Unsupported FieldCacheLoadingType " + loadingType );
+			}
+		}
+
+		/**
+		 * @return the CacheType used to sort on the field, or null if it doesn't use a cache we can warm
+		 */
+		static CacheType forSortField(SortField sortField) {
+			if ( sortField.getField() == null || sortField.getParser() != null || sortField.getLocale() != null ) {
+				// custom parsers are part of the cache key, locales need the Collator
+				return null;
+			}
+			switch ( sortField.getType() ) {
+				case SortField.STRING:
+					return STRING_INDEX;
+				case SortField.STRING_VAL:
+					return STRINGS;
+				case SortField.INT:
+					return INTS;
+				case SortField.LONG:
+					return LONGS;
+				case SortField.FLOAT:
+					return FLOATS;
+				case SortField.DOUBLE:
+					return DOUBLES;
+				default:
+					return null;
+			}
+		}
+
+		/**
+		 * @return the CacheType used by faceting on the given type, or null if not supported
+		 */
+		static CacheType forFacetType(Class<?> fieldCacheType) {
+			if ( String.class.equals( fieldCacheType ) ) {
+				return STRINGS;
+			}
+			else if ( Integer.class.equals( fieldCacheType ) ) {
+				return INTS;
+			}
+			else if ( Long.class.equals( fieldCacheType ) ) {
+				return LONGS;
+			}
+			else if ( Float.class.equals( fieldCacheType ) ) {
+				return FLOATS;
+			}
+			else if ( Double.class.equals( fieldCacheType ) ) {
+				return DOUBLES;
+			}
+			return null;
+		}
+	}
+
+	private static final class WarmedField {
+
+		private final String fieldName;
+		private final CacheType cacheType;
+
+		WarmedField(String fieldName, CacheType cacheType) {
+			this.fieldName = fieldName;
+			this.cacheType = cacheType;
+		}
+
+		void load(IndexReader segment) throws IOException {
+			cacheType.load( segment, fieldName );
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if ( this == obj ) {
+				return true;
+			}
+			if ( !( obj instanceof WarmedField ) ) {
+				return false;
+			}
+			WarmedField other = (WarmedField) obj;
+			return fieldName.equals( other.fieldName ) && cacheType == other.cacheType;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * fieldName.hashCode() + cacheType.hashCode();
+		}
+
+		@Override
+		public String toString() {
+			return fieldName + ":" + cacheType;
+		}
+	}
+
+}
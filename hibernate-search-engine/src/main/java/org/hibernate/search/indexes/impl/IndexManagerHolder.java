@@ -39,6 +39,7 @@ import org.hibernate.search.engine.impl.MutableEntityIndexBinding;
 import org.hibernate.search.indexes.spi.IndexManager;
 import org.hibernate.search.indexes.interceptor.DefaultEntityInterceptor;
 import org.hibernate.search.indexes.interceptor.EntityIndexingInterceptor;
+import org.hibernate.search.reader.impl.MultiReaderCache;
 import org.hibernate.search.spi.WorkerBuildContext;
 import org.hibernate.search.spi.internals.SearchFactoryImplementorWithShareableState;
 import org.hibernate.search.store.IndexShardingStrategy;
@@ -80,6 +81,7 @@ public class IndexManagerHolder {
 	}
 
 	private final Map<String, IndexManager> indexManagersRegistry= new ConcurrentHashMap<String, IndexManager>();
+	private final MultiReaderCache multiReaderCache = new MultiReaderCache();
 
 	//I currently think it's easier to not hide sharding implementations in a custom
 	//IndexManager to make it easier to explicitly a)detect duplicates b)start-stop
@@ -239,6 +241,11 @@ public class IndexManagerHolder {
 		}
 		try {
 			manager.initialize( indexName, indexProps, context );
+			if ( manager instanceof DirectoryBasedIndexManager ) {
+				( (DirectoryBasedIndexManager) manager ).addIndexChangeListener(
+						multiReaderCache.evictionListener( manager )
+				);
+			}
 			return manager;
 		} catch (Exception e) {
 			throw log.unableToInitializeIndexManager( indexName, e );
@@ -338,12 +345,20 @@ public class IndexManagerHolder {
 	 * Stops all IndexManager instances
 	 */
 	public synchronized void stop() {
+		multiReaderCache.clear();
 		for ( IndexManager indexManager : getIndexManagers() ) {
 			indexManager.destroy();
 		}
 		indexManagersRegistry.clear();
 	}
 
+	/**
+	 * @return the MultiReaders shared by the queries on these IndexManagers
+	 */
+	public MultiReaderCache getMultiReaderCache() {
+		return multiReaderCache;
+	}
+
 	/**
 	 * @param targetIndexName the name of the IndexManager to look up
 	 * @return the IndexManager, or null if it doesn't exist
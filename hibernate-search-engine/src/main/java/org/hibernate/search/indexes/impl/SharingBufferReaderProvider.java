@@ -23,17 +23,25 @@ package org.hibernate.search.indexes.impl;
 import java.io.IOException;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Timer;
+import java.util.TimerTask;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.store.Directory;
 import org.hibernate.annotations.common.AssertionFailure;
+import org.hibernate.search.Environment;
 import org.hibernate.search.SearchException;
 import org.hibernate.search.indexes.spi.DirectoryBasedReaderProvider;
+import org.hibernate.search.indexes.spi.IndexChangeListener;
+import org.hibernate.search.indexes.spi.IndexReaderWarmer;
 import org.hibernate.search.store.DirectoryProvider;
+import org.hibernate.search.util.configuration.impl.ConfigurationParseHelper;
 import org.hibernate.search.util.logging.impl.Log;
 import org.hibernate.search.util.logging.impl.LoggerFactory;
 
@@ -41,10 +49,18 @@ import org.hibernate.search.util.logging.impl.LoggerFactory;
  * This <code>ReaderProvider</code> shares IndexReaders as long as they are "current";
  * It uses IndexReader.reopen() which should improve performance on larger indexes
  * as it shares buffers with previous IndexReader generation for the segments which didn't change.
+ * By default the index is checked for changes each time an IndexReader is opened; when
+ * {@link Environment#READER_REFRESH_PERIOD} is set the check is done periodically by a background
+ * thread instead, and opening an IndexReader only takes a reference on the current one, without locking.
+ * The same applies when the index manager notifies each change to the index: the IndexReader is then
+ * marked as stale after each commit and refreshed by the background thread, so that the committing thread
+ * doesn't wait for the IndexReader to be reopened and warmed; opening an IndexReader while the current one is
+ * still stale refreshes it first, so that it sees all the notified changes.
+ * When an {@link IndexReaderWarmer} is configured, new IndexReaders are warmed before they replace the current one.
  *
  * @author Sanne Grinovero <sanne@hibernate.org> (C) 2011 Red Hat Inc.
  */
-public class SharingBufferReaderProvider implements DirectoryBasedReaderProvider {
+public class SharingBufferReaderProvider implements DirectoryBasedReaderProvider, IndexChangeListener {
 
 	private static final Log log = LoggerFactory.make();
 
@@ -60,17 +76,76 @@ public class SharingBufferReaderProvider implements DirectoryBasedReaderProvider
 
 	private DirectoryProvider directoryProvider;
 	private String indexName;
-	
+	private int refreshPeriod;
+	private Timer refreshTimer;
+	private boolean notifiedOfAllChanges;
+	private IndexReaderWarmer warmer;
+
+	/**
+	 * Counts the changes notified to the index.
+	 */
+	private final AtomicLong notifiedChanges = new AtomicLong( 0L );
+
+	/**
+	 * Counts the notified changes the current IndexReader is known to see, updated after each successful
+	 * refresh: while lower than {@link #notifiedChanges} the index is checked by each opening.
+	 */
+	private final AtomicLong visibleChanges = new AtomicLong( 0L );
+
+	/**
+	 * Set while a refresh following a change notification is scheduled and not started yet,
+	 * so that consecutive notifications are handled by a single refresh.
+	 */
+	private final AtomicBoolean refreshScheduled = new AtomicBoolean( false );
+
 	@Override
 	public IndexReader openIndexReader() {
 		log.debugf( "Opening IndexReader for directoryProvider %s", indexName );
+		PerDirectoryLatestReader directoryLatestReader = getLatestReader();
+		if ( refreshPeriod > 0 || ( notifiedOfAllChanges && visibleChanges.get() == notifiedChanges.get() ) ) {
+			return directoryLatestReader.acquire();
+		}
+		long changes = notifiedChanges.get();
+		IndexReader reader = directoryLatestReader.refreshAndGet();
+		changesVisible( changes );
+		return reader;
+	}
+
+	@Override
+	public void indexChanged() {
+		notifiedChanges.incrementAndGet();
+		if ( refreshTimer != null && refreshScheduled.compareAndSet( false, true ) ) {
+			try {
+				refreshTimer.schedule( new ChangeRefreshTask(), 0 );
+			}
+			catch (IllegalStateException e) {
+				// the provider was stopped
+				log.trace( "Not refreshing the IndexReader of a stopped ReaderProvider", e );
+			}
+		}
+	}
+
+	/**
+	 * Records that the current IndexReader sees the given number of notified changes,
+	 * unless a concurrent refresh recorded more of them already.
+	 */
+	private void changesVisible(long changes) {
+		while ( true ) {
+			long visible = visibleChanges.get();
+			if ( visible >= changes || visibleChanges.compareAndSet( visible, changes ) ) {
+				return;
+			}
+		}
+	}
+
+	private PerDirectoryLatestReader getLatestReader() {
 		Directory directory = directoryProvider.getDirectory();
 		PerDirectoryLatestReader directoryLatestReader = currentReaders.get( directory );
 		// might eg happen for FSSlaveDirectoryProvider or for mutable SearchFactory
 		if ( directoryLatestReader == null ) {
 			directoryLatestReader = createReader( directory );
 		}
-		return directoryLatestReader.refreshAndGet();
+		return directoryLatestReader;
 	}
 
 	@Override
@@ -87,8 +162,31 @@ public class SharingBufferReaderProvider implements DirectoryBasedReaderProvider
 	public void initialize(DirectoryBasedIndexManager indexManager, Properties props) {
 		this.directoryProvider = indexManager.getDirectoryProvider();
 		this.indexName = indexManager.getIndexName();
+		this.refreshPeriod = extractRefreshPeriod( indexName, props );
+		this.notifiedOfAllChanges = indexManager.isNotifyingAllIndexChanges();
+		this.warmer = indexManager.getReaderWarmer();
 		// Initialize at least one, don't forget directoryProvider might return different Directory later
 		createReader( directoryProvider.getDirectory() );
+		if ( refreshPeriod > 0 || notifiedOfAllChanges ) {
+			refreshTimer = new Timer( "Hibernate Search: IndexReader refresher for index " + indexName, true );
+		}
+		if ( refreshPeriod > 0 ) {
+			log.debugf( "Refreshing the IndexReader of index %s every %d ms", indexName, refreshPeriod );
+			refreshTimer.schedule( new RefreshTask(), refreshPeriod, refreshPeriod );
+		}
+	}
+
+	private static int extractRefreshPeriod(String indexName, Properties props) {
+		if ( props == null ) {
+			return 0;
+		}
+		// props are masked by Environment.READER_PREFIX
+		int period = ConfigurationParseHelper.getIntValue( props, "refresh_period", 0 );
+		if ( period < 0 ) {
+			throw new SearchException( "Property " + Environment.READER_REFRESH_PERIOD + " on index "
+					+ indexName + " must not be negative" );
+		}
+		return period;
 	}
 
 	/**
@@ -116,6 +214,9 @@ public class SharingBufferReaderProvider implements DirectoryBasedReaderProvider
 
 	@Override
 	public void stop() {
+		if ( refreshTimer != null ) {
+			refreshTimer.cancel();
+		}
 		for ( IndexReader reader : allReaders.keySet() ) {
 			ReaderUsagePair usage = allReaders.get( reader );
 			usage.close();
@@ -126,6 +227,17 @@ public class SharingBufferReaderProvider implements DirectoryBasedReaderProvider
 		}
 	}
 
+	private void warm(IndexReader reader) {
+		if ( warmer != null ) {
+			try {
+				warmer.warm( reader );
+			}
+			catch (RuntimeException e) {
+				log.unableToWarmIndexReader( indexName, e );
+			}
+		}
+	}
+
 	//overridable method for testability:
 	protected IndexReader readerFactory(final Directory directory) throws IOException {
 		return IndexReader.open( directory, true );
@@ -150,6 +262,23 @@ public class SharingBufferReaderProvider implements DirectoryBasedReaderProvider
 			reader = r;
 		}
 
+		/**
+		 * Takes a usage token unless the <code>IndexReader</code> was closed already.
+		 *
+		 * @return false if the <code>IndexReader</code> is closed
+		 */
+		boolean tryIncrementUsage() {
+			while ( true ) {
+				int refCount = usageCounter.get();
+				if ( refCount <= 0 ) {
+					return false;
+				}
+				if ( usageCounter.compareAndSet( refCount, refCount + 1 ) ) {
+					return true;
+				}
+			}
+		}
+
 		/**
 		 * Closes the <code>IndexReader</code> if no other resource is using it
 		 * in which case the reference to this container will also be removed.
@@ -191,9 +320,9 @@ public class SharingBufferReaderProvider implements DirectoryBasedReaderProvider
 
 		/**
 		 * Reference to the most current IndexReader for a DirectoryProvider;
-		 * guarded by lockOnReplaceCurrent;
+		 * replaced only while holding lockOnReplaceCurrent, read without locking.
 		 */
-		public ReaderUsagePair current; //guarded by lockOnReplaceCurrent
+		public volatile ReaderUsagePair current;
 		private final Lock lockOnReplaceCurrent = new ReentrantLock();
 
 		/**
@@ -203,12 +332,58 @@ public class SharingBufferReaderProvider implements DirectoryBasedReaderProvider
 		 */
 		public PerDirectoryLatestReader(Directory directory) throws IOException {
 			IndexReader reader = readerFactory( directory );
+			warm( reader );
 			ReaderUsagePair initialPair = new ReaderUsagePair( reader );
 			initialPair.usageCounter.set( 1 ); //a token to mark as active (preventing real close).
-			lockOnReplaceCurrent.lock(); //no harm, just ensuring safe publishing.
-			current = initialPair;
-			lockOnReplaceCurrent.unlock();
 			allReaders.put( reader, initialPair );
+			current = initialPair;
+		}
+
+		/**
+		 * Gets the current IndexReader without checking the index status.
+		 *
+		 * @return the current IndexReader
+		 */
+		public IndexReader acquire() {
+			while ( true ) {
+				ReaderUsagePair pair = current;
+				if ( pair.tryIncrementUsage() ) {
+					return pair.reader;
+				}
+				// it was replaced and closed meanwhile: the next read gets the new current
+			}
+		}
+
+		/**
+		 * Replaces the current IndexReader if it's not in sync with the underlying index.
+		 */
+		public void refresh() {
+			ReaderUsagePair previousCurrent = null;
+			lockOnReplaceCurrent.lock();
+			try {
+				IndexReader beforeUpdateReader = current.reader;
+				IndexReader updatedReader;
+				try {
+					updatedReader = beforeUpdateReader.reopen();
+				}
+				catch ( IOException e ) {
+					throw new SearchException( "Unable to reopen IndexReader", e );
+				}
+				if ( beforeUpdateReader != updatedReader ) {
+					warm( updatedReader );
+					ReaderUsagePair newPair = new ReaderUsagePair( updatedReader );
+					newPair.usageCounter.set( 1 ); //only the token marking it as current
+					allReaders.put( updatedReader, newPair );
+					previousCurrent = current;
+					current = newPair;
+				}
+			}
+			finally {
+				lockOnReplaceCurrent.unlock();
+			}
+			if ( previousCurrent != null ) {
+				previousCurrent.close();// release a token as it's not the current any more.
+			}
 		}
 
 		/**
@@ -234,6 +409,7 @@ public class SharingBufferReaderProvider implements DirectoryBasedReaderProvider
 					current.usageCounter.incrementAndGet();
 				}
 				else {
+					warm( updatedReader );
 					ReaderUsagePair newPair = new ReaderUsagePair( updatedReader );
 					//no need to increment usageCounter in newPair, as it is constructed with correct number 2.
 					assert newPair.usageCounter.get() == 2;
@@ -253,4 +429,39 @@ public class SharingBufferReaderProvider implements DirectoryBasedReaderProvider
 		}
 	}
 
+	private final class RefreshTask extends TimerTask {
+
+		@Override
+		public void run() {
+			try {
+				getLatestReader().refresh();
+			}
+			catch (RuntimeException e) {
+				// don't let an exception kill the Timer: the next run will try again
+				log.unableToRefreshIndexReader( indexName, e );
+			}
+		}
+	}
+
+	/**
+	 * Refreshes the IndexReader after change notifications, off the committing threads.
+	 */
+	private final class ChangeRefreshTask extends TimerTask {
+
+		@Override
+		public void run() {
+			refreshScheduled.set( false );
+			// read before checking the index: a change notified meanwhile might not be visible
+			long changes = notifiedChanges.get();
+			try {
+				getLatestReader().refresh();
+				changesVisible( changes );
+			}
+			catch (RuntimeException e) {
+				// the next opening checks the index again
+				log.unableToRefreshIndexReader( indexName, e );
+			}
+		}
+	}
+
 }
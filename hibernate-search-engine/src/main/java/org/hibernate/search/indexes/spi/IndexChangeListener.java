@@ -0,0 +1,44 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.indexes.spi;
+
+/**
+ * Implemented by a {@link DirectoryBasedReaderProvider} which wants to be told when the
+ * index it reads from changed, so that it can refresh its IndexReaders once per change
+ * instead of checking the index for changes each time a reader is opened.
+ * Implementations are registered automatically on the index manager creating them; other
+ * components caching state derived from the IndexReaders can register additional listeners.
+ *
+ * @author agent <agent@local>
+ */
+public interface IndexChangeListener {
+
+	/**
+	 * Invoked after changes to the index were committed or the Directory was replaced.
+	 * Invoked by the thread which applied the change, after it completed: an IndexReader
+	 * opened after this method returns is expected to see the change. Failures should be handled
+	 * by the listener, as the change was already applied. Expensive work such as reopening and
+	 * warming IndexReaders should be deferred to the next opening or to another thread, as it
+	 * would delay the committing thread.
+	 */
+	void indexChanged();
+
+}
@@ -0,0 +1,55 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.indexes.spi;
+
+import java.util.Properties;
+
+import org.apache.lucene.index.IndexReader;
+import org.hibernate.search.indexes.impl.DirectoryBasedIndexManager;
+
+/**
+ * Prepares a new IndexReader before the {@link ReaderProvider} makes it available
+ * to queries, for example loading the caches the queries will need, so that
+ * the first queries using a refreshed IndexReader don't have to pay for it.
+ * Configured using {@link org.hibernate.search.Environment#READER_WARMER}.
+ *
+ * @author agent <agent@local>
+ */
+public interface IndexReaderWarmer {
+
+	/**
+	 * @param indexManager the index manager the warmed IndexReaders belong to
+	 * @param props the reader configuration properties of this index
+	 */
+	void initialize(DirectoryBasedIndexManager indexManager, Properties props);
+
+	/**
+	 * Invoked with each new IndexReader, before it's used by queries. When an IndexReader
+	 * was reopened the unchanged segments are shared with the previous one, so
+	 * implementations working per segment only need to warm the new segments.
+	 * When the index manager notifies each change to the index this runs on the background
+	 * thread refreshing the IndexReaders, otherwise on the thread of the query opening it.
+	 *
+	 * @param reader the new IndexReader; it must not be closed
+	 */
+	void warm(IndexReader reader);
+
+}
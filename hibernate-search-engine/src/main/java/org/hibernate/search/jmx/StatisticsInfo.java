@@ -103,6 +103,46 @@ public class StatisticsInfo implements StatisticsInfoMBean {
 	public Map<String, Integer> indexedEntitiesCount() {
 		return delegate.indexedEntitiesCount();
 	}
+
+	public Map<String, Integer> indexingQueueDepth() {
+		return delegate.indexingQueueDepth();
+	}
+
+	public long getIndexingQueueTaskCount() {
+		return delegate.getIndexingQueueTaskCount();
+	}
+
+	public long getIndexingQueueWaitAvgTime() {
+		return delegate.getIndexingQueueWaitAvgTime();
+	}
+
+	public long getIndexingQueueWaitMaxTime() {
+		return delegate.getIndexingQueueWaitMaxTime();
+	}
+
+	public long getCoalescedWorkCount() {
+		return delegate.getCoalescedWorkCount();
+	}
+
+	public long getIndexingQueueSpilledTaskCount() {
+		return delegate.getIndexingQueueSpilledTaskCount();
+	}
+
+	public long getSkippedCollectionUpdateCount() {
+		return delegate.getSkippedCollectionUpdateCount();
+	}
+
+	public long getExecutedCollectionUpdateCount() {
+		return delegate.getExecutedCollectionUpdateCount();
+	}
+
+	public Map<String, Long> containedInFanOut() {
+		return delegate.containedInFanOut();
+	}
+
+	public long getContainedInDuplicateCount() {
+		return delegate.getContainedInDuplicateCount();
+	}
 }
 
 
@@ -86,6 +86,14 @@ public class FieldCacheCollectorFactory {
 		}
 	}
 
+	public String getFieldName() {
+		return fieldName;
+	}
+
+	public FieldCacheLoadingType getLoadingType() {
+		return type;
+	}
+
 	/**
 	 * There are two possible implementations of {@code FieldCacheCollector},
 	 * one is more efficient for large and one for small results.
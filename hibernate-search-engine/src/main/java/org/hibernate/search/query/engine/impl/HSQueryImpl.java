@@ -24,6 +24,7 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
@@ -57,14 +58,15 @@ import org.hibernate.search.filter.FullTextFilterImplementor;
 import org.hibernate.search.filter.ShardSensitiveOnlyFilter;
 import org.hibernate.search.filter.impl.CachingWrapperFilter;
 import org.hibernate.search.filter.impl.FullTextFilterImpl;
+import org.hibernate.search.indexes.impl.FieldCacheWarmer;
 import org.hibernate.search.indexes.spi.IndexManager;
 import org.hibernate.search.query.collector.impl.FieldCacheCollectorFactory;
+import org.hibernate.search.query.dsl.impl.FacetingRequestImpl;
 import org.hibernate.search.query.engine.spi.DocumentExtractor;
 import org.hibernate.search.query.engine.spi.EntityInfo;
 import org.hibernate.search.query.engine.spi.HSQuery;
 import org.hibernate.search.query.engine.spi.TimeoutExceptionFactory;
 import org.hibernate.search.query.engine.spi.TimeoutManager;
-import org.hibernate.search.reader.impl.MultiReaderFactory;
 import org.hibernate.search.store.IndexShardingStrategy;
 import org.hibernate.search.util.logging.impl.Log;
 import org.hibernate.search.util.logging.impl.LoggerFactory;
@@ -593,8 +595,13 @@ public class HSQueryImpl implements HSQuery, Serializable {
 		final IndexManager[] indexManagers = targetedIndexes.toArray(
 				new IndexManager[targetedIndexes.size()]
 		);
+		// doesn't create the FacetManager of queries without faceting
+		Collection<FacetingRequestImpl> facetRequests = facetManager == null ?
+				Collections.<FacetingRequestImpl>emptyList() :
+				facetManager.getFacetRequests().values();
+		FieldCacheWarmer.fieldsUsedByQuery( indexManagers, sort, facetRequests );
 		IndexSearcher is = new IndexSearcher(
-				MultiReaderFactory.openReader( indexManagers )
+				searchFactoryImplementor.getAllIndexesManager().getMultiReaderCache().openReader( indexManagers )
 		);
 		is.setSimilarity( searcherSimilarity );
 
@@ -23,24 +23,39 @@
  */
 package org.hibernate.search.reader.impl;
 
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.MultiReader;
 import org.hibernate.search.indexes.spi.ReaderProvider;
+import org.hibernate.search.util.logging.impl.Log;
+import org.hibernate.search.util.logging.impl.LoggerFactory;
 
 /**
  * MultiReader ensuring equals returns true if the underlying readers are the same (and in the same order)
  * Especially useful when using {@link org.apache.lucene.search.CachingWrapperFilter}
  *
+ * Instances can be shared by several queries: a usage counter tracks them, and the MultiReader
+ * is closed, releasing its references on the sub-readers, when the last one is done.
+ *
  * @author Emmanuel Bernard
  * @author Sanne Grinovero <sanne@hibernate.org> (C) 2011 Red Hat Inc.
  */
 public class CacheableMultiReader extends MultiReader {
 
+	private static final Log log = LoggerFactory.make();
+
 	// This is package private as the intention of the Lucene team seems to be to not 
 	// expose this publically (it's a protected member in Lucene 2.3)
 	final IndexReader[] subReaders;
 	final ReaderProvider[] managers;
 
+	/**
+	 * Starts at 1 for the creator; the MultiReader is closed when reaching 0.
+	 */
+	private final AtomicInteger usageCounter = new AtomicInteger( 1 );
+
 	public CacheableMultiReader(IndexReader[] subReaders, ReaderProvider[] managers) {
 		// don't allow sub readers to be closed:
 		super( subReaders, false );
@@ -48,6 +63,54 @@ public class CacheableMultiReader extends MultiReader {
 		this.managers = managers;
 	}
 
+	/**
+	 * Takes a usage token unless this MultiReader was closed already.
+	 *
+	 * @return false if the MultiReader is closed
+	 */
+	boolean tryIncrementUsage() {
+		while ( true ) {
+			int refCount = usageCounter.get();
+			if ( refCount <= 0 ) {
+				return false;
+			}
+			if ( usageCounter.compareAndSet( refCount, refCount + 1 ) ) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Releases a usage token, closing this MultiReader if it was the last one.
+	 * The sub-readers are not closed, only the references this MultiReader holds on them.
+	 */
+	void decrementUsage() {
+		if ( usageCounter.decrementAndGet() == 0 ) {
+			try {
+				close();
+			}
+			catch (IOException e) {
+				log.unableToCLoseLuceneIndexReader( e );
+			}
+		}
+	}
+
+	/**
+	 * @return true if this MultiReader is composed of exactly the given IndexReader instances, in the same order
+	 */
+	boolean isComposedOf(IndexReader[] readers) {
+		int length = this.subReaders.length;
+		if ( length != readers.length ) {
+			return false;
+		}
+		for ( int index = 0; index < length; index++ ) {
+			if ( this.subReaders[index] != readers[index] ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	@Override
 	public boolean equals(Object obj) {
 		// Equality only checks for subReaders as an equal sub-IndexReader is certainly coming from the same ReaderProvider.
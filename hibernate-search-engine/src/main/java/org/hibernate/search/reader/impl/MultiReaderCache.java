@@ -0,0 +1,133 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.reader.impl;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.lucene.index.IndexReader;
+
+import org.hibernate.search.indexes.spi.IndexChangeListener;
+import org.hibernate.search.indexes.spi.IndexManager;
+import org.hibernate.search.indexes.spi.ReaderProvider;
+
+/**
+ * Keeps the latest MultiReader opened by queries for each combination of targeted indexes,
+ * so that the next query targeting the same indexes reuses it, together with the caches keyed
+ * on the MultiReader, as long as the shared IndexReaders didn't change meanwhile.
+ * There is one instance per {@link org.hibernate.search.indexes.impl.IndexManagerHolder}.
+ * The entries including an index are released when it notifies a change, see
+ * {@link #evictionListener(IndexManager)}, so that replaced IndexReaders are not kept open
+ * until the next query, and when the IndexManagers are stopped.
+ *
+ * @author agent <agent@local>
+ */
+public class MultiReaderCache {
+
+	/**
+	 * The latest MultiReader per targeted indexes, in the order they were targeted.
+	 * Each one holds a usage token of its MultiReader, released when replaced or evicted.
+	 */
+	private final ConcurrentMap<List<IndexManager>, CacheableMultiReader> cachedReaders =
+			new ConcurrentHashMap<List<IndexManager>, CacheableMultiReader>();
+
+	/**
+	 * Like {@link MultiReaderFactory#openReader(IndexManager...)}, but the returned MultiReader might be shared
+	 * with other queries: it must not be closed directly, only using {@link MultiReaderFactory#closeReader(IndexReader)}.
+	 */
+	public IndexReader openReader(IndexManager... indexManagers) {
+		final int length = indexManagers.length;
+		IndexReader[] readers = new IndexReader[length];
+		ReaderProvider[] managers = new ReaderProvider[length];
+		boolean cacheable = MultiReaderFactory.openIndexReaders( indexManagers, readers, managers );
+		if ( length == 0 || !cacheable ) {
+			return ReaderProviderHelper.buildMultiReader( length, readers, managers );
+		}
+		List<IndexManager> key = Arrays.asList( indexManagers.clone() );
+		CacheableMultiReader cached = cachedReaders.get( key );
+		if ( cached != null && cached.isComposedOf( readers ) && cached.tryIncrementUsage() ) {
+			return cached;
+		}
+		CacheableMultiReader multiReader = new CacheableMultiReader( readers, managers );
+		multiReader.tryIncrementUsage(); // the token for the cache
+		boolean replaced = cached == null ?
+				cachedReaders.putIfAbsent( key, multiReader ) == null :
+				cachedReaders.replace( key, cached, multiReader );
+		if ( replaced ) {
+			if ( cached != null ) {
+				cached.decrementUsage();
+			}
+		}
+		else {
+			// another query cached a different MultiReader meanwhile
+			multiReader.decrementUsage();
+		}
+		return multiReader;
+	}
+
+	/**
+	 * Releases the cached MultiReaders including the given index.
+	 */
+	public void evict(IndexManager indexManager) {
+		Iterator<Map.Entry<List<IndexManager>, CacheableMultiReader>> iterator = cachedReaders.entrySet().iterator();
+		while ( iterator.hasNext() ) {
+			Map.Entry<List<IndexManager>, CacheableMultiReader> entry = iterator.next();
+			if ( entry.getKey().contains( indexManager ) ) {
+				release( entry );
+			}
+		}
+	}
+
+	/**
+	 * Releases all cached MultiReaders, to be invoked before the IndexManagers are stopped.
+	 */
+	public void clear() {
+		for ( Map.Entry<List<IndexManager>, CacheableMultiReader> entry : cachedReaders.entrySet() ) {
+			release( entry );
+		}
+	}
+
+	private void release(Map.Entry<List<IndexManager>, CacheableMultiReader> entry) {
+		// a concurrent query might have replaced it already, releasing the previous one
+		if ( cachedReaders.remove( entry.getKey(), entry.getValue() ) ) {
+			entry.getValue().decrementUsage();
+		}
+	}
+
+	/**
+	 * @param indexManager the index to listen to
+	 * @return a listener evicting the MultiReaders including the given index when it changes,
+	 * as their IndexReader of that index is replaced once the change is visible
+	 */
+	public IndexChangeListener evictionListener(final IndexManager indexManager) {
+		return new IndexChangeListener() {
+			@Override
+			public void indexChanged() {
+				evict( indexManager );
+			}
+		};
+	}
+
+}
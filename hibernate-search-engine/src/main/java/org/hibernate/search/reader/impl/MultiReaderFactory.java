@@ -26,6 +26,7 @@ package org.hibernate.search.reader.impl;
 import org.apache.lucene.index.IndexReader;
 
 import org.hibernate.annotations.common.AssertionFailure;
+import org.hibernate.search.indexes.impl.SharingBufferReaderProvider;
 import org.hibernate.search.indexes.spi.IndexManager;
 import org.hibernate.search.indexes.spi.ReaderProvider;
 import org.hibernate.search.util.logging.impl.Log;
@@ -33,6 +34,9 @@ import org.hibernate.search.util.logging.impl.LoggerFactory;
 
 /**
  * Creates and closes the IndexReaders encompassing multiple indexes.
+ * Queries get them through the {@link MultiReaderCache} of their SearchFactory, which reuses the
+ * MultiReader of the previous query targeting the same indexes when the shared IndexReaders
+ * didn't change meanwhile, so that the caches keyed on the MultiReader are reused too.
  * 
  * @author Sanne Grinovero <sanne@hibernate.org> (C) 2011 Red Hat Inc.
  */
@@ -40,17 +44,30 @@ public class MultiReaderFactory {
 	
 	private static final Log log = LoggerFactory.make();
 
+	/**
+	 * Opens a new MultiReader on the given indexes; it must be closed using {@link #closeReader(IndexReader)}.
+	 */
 	public static IndexReader openReader(IndexManager... indexManagers) {
 		final int length = indexManagers.length;
 		IndexReader[] readers = new IndexReader[length];
 		ReaderProvider[] managers = new ReaderProvider[length];
-		for (int index = 0; index < length; index++) {
+		openIndexReaders( indexManagers, readers, managers );
+		return ReaderProviderHelper.buildMultiReader( length, readers, managers );
+	}
+
+	/**
+	 * @return true if all IndexReaders are shared by their ReaderProvider, so a MultiReader on them can be reused
+	 */
+	static boolean openIndexReaders(IndexManager[] indexManagers, IndexReader[] readers, ReaderProvider[] managers) {
+		boolean shared = true;
+		for (int index = 0; index < indexManagers.length; index++) {
 			ReaderProvider indexReaderManager = indexManagers[index].getReaderProvider();
 			IndexReader openIndexReader = indexReaderManager.openIndexReader();
 			readers[index] = openIndexReader;
 			managers[index] = indexReaderManager;
+			shared = shared && indexReaderManager instanceof SharingBufferReaderProvider;
 		}
-		return ReaderProviderHelper.buildMultiReader( length, readers, managers );
+		return shared;
 	}
 
 	public static void closeReader(IndexReader multiReader) {
@@ -72,6 +89,7 @@ public class MultiReaderFactory {
 			ReaderProvider container = managers[i];
 			container.closeIndexReader( readers[i] ); // might be virtual
 		}
+		( (CacheableMultiReader) multiReader ).decrementUsage();
 		log.trace( "IndexReader closed." );
 	}
 
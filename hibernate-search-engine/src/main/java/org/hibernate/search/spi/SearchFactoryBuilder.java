@@ -232,7 +232,9 @@ public class SearchFactoryBuilder {
 		}
 		fillSimilarityMapping();
 
-		QueueingProcessor queueingProcessor = new BatchedQueueingProcessor( documentBuildersIndexedEntities, cfg.getProperties() );
+		QueueingProcessor queueingProcessor = new BatchedQueueingProcessor(
+				documentBuildersIndexedEntities, cfg.getProperties(), factoryState.getErrorHandler()
+		);
 		//build worker and back end components
 		factoryState.setWorker( WorkerFactory.createWorker( cfg, buildContext, queueingProcessor) );
 		factoryState.setFilterCachingStrategy( buildFilterCachingStrategy( cfg.getProperties() ) );
@@ -127,6 +127,64 @@ public interface Statistics {
 	 *         the map value is the document count.
 	 */
 	Map<String, Integer> indexedEntitiesCount();
+
+	/**
+	 * Returns the number of change sets waiting to be applied for each index using the Lucene backend,
+	 * including the ones spilled to disk.
+	 *
+	 * @return a map of index names and their queue depth
+	 */
+	Map<String, Integer> indexingQueueDepth();
+
+	/**
+	 * Get the number of change sets applied from the async indexing queues.
+	 */
+	long getIndexingQueueTaskCount();
+
+	/**
+	 * Get the average time in nanoseconds a change set waited in the async indexing queues.
+	 */
+	long getIndexingQueueWaitAvgTime();
+
+	/**
+	 * Get the longest time in nanoseconds a change set waited in the async indexing queues.
+	 */
+	long getIndexingQueueWaitMaxTime();
+
+	/**
+	 * Get the number of changes not applied as they were superseded by later changes to the same entity
+	 * while still waiting in the async indexing queues.
+	 */
+	long getCoalescedWorkCount();
+
+	/**
+	 * Get the number of change sets which didn't fit in the async indexing queues and were spilled to disk.
+	 */
+	long getIndexingQueueSpilledTaskCount();
+
+	/**
+	 * Get the number of collection change events on indexed or contained entities which did not trigger
+	 * reindexing, as the changed collection is not part of any indexed field, embedded object
+	 * or <code>@ContainedIn</code> path, or was never initialized.
+	 */
+	long getSkippedCollectionUpdateCount();
+
+	/**
+	 * Get the number of collection change events which triggered the reindexing of the owning entity.
+	 */
+	long getExecutedCollectionUpdateCount();
+
+	/**
+	 * Get the number of entities reached through each <code>@ContainedIn</code> property while propagating
+	 * changes to the containing entities. Keys are of the form {@code fully.qualified.EntityName.propertyName}.
+	 */
+	Map<String, Long> containedInFanOut();
+
+	/**
+	 * Get the number of entities reached through <code>@ContainedIn</code> which were not processed again,
+	 * as they were already part of the same unit of work.
+	 */
+	long getContainedInDuplicateCount();
 }
 
 
@@ -24,10 +24,13 @@
 package org.hibernate.search.stat.impl;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
@@ -46,7 +49,12 @@ import org.hibernate.annotations.common.util.ReflectHelper;
 import org.hibernate.search.ProjectionConstants;
 import org.hibernate.search.SearchException;
 import org.hibernate.search.Version;
+import org.hibernate.search.backend.impl.lucene.IndexingQueue;
+import org.hibernate.search.backend.impl.lucene.LuceneBackendQueueProcessor;
+import org.hibernate.search.backend.spi.BackendQueueProcessor;
 import org.hibernate.search.engine.spi.SearchFactoryImplementor;
+import org.hibernate.search.indexes.impl.DirectoryBasedIndexManager;
+import org.hibernate.search.indexes.spi.IndexManager;
 import org.hibernate.search.stat.Statistics;
 import org.hibernate.search.stat.spi.StatisticsImplementor;
 
@@ -66,6 +74,12 @@ public class StatisticsImpl implements Statistics, StatisticsImplementor {
 	private AtomicLong objectLoadTotalTime = new AtomicLong();
 	private AtomicLong objectLoadMaxTime = new AtomicLong();
 
+	private AtomicLong skippedCollectionUpdateCount = new AtomicLong();
+	private AtomicLong executedCollectionUpdateCount = new AtomicLong();
+
+	private final ConcurrentHashMap<String, AtomicLong> containedInFanOut = new ConcurrentHashMap<String, AtomicLong>();
+	private AtomicLong containedInDuplicateCount = new AtomicLong();
+
 	private volatile boolean isStatisticsEnabled;
 
 	private final Lock readLock;
@@ -90,6 +104,12 @@ public class StatisticsImpl implements Statistics, StatisticsImplementor {
 		objectLoadedCount.set( 0 );
 		objectLoadMaxTime.set( 0 );
 		objectLoadTotalTime.set( 0 );
+
+		skippedCollectionUpdateCount.set( 0 );
+		executedCollectionUpdateCount.set( 0 );
+
+		containedInFanOut.clear();
+		containedInDuplicateCount.set( 0 );
 	}
 
 	public long getSearchQueryExecutionCount() {
@@ -184,6 +204,51 @@ public class StatisticsImpl implements Statistics, StatisticsImplementor {
 		}
 	}
 
+	public long getSkippedCollectionUpdateCount() {
+		return skippedCollectionUpdateCount.get();
+	}
+
+	public long getExecutedCollectionUpdateCount() {
+		return executedCollectionUpdateCount.get();
+	}
+
+	public void collectionUpdateProcessed(boolean reindexed) {
+		if ( reindexed ) {
+			executedCollectionUpdateCount.incrementAndGet();
+		}
+		else {
+			skippedCollectionUpdateCount.incrementAndGet();
+		}
+	}
+
+	public Map<String, Long> containedInFanOut() {
+		Map<String, Long> map = new HashMap<String, Long>();
+		for ( Map.Entry<String, AtomicLong> entry : containedInFanOut.entrySet() ) {
+			map.put( entry.getKey(), entry.getValue().get() );
+		}
+		return map;
+	}
+
+	public long getContainedInDuplicateCount() {
+		return containedInDuplicateCount.get();
+	}
+
+	public void containedInRelationTraversed(String relation, int reachedEntities) {
+		AtomicLong counter = containedInFanOut.get( relation );
+		if ( counter == null ) {
+			counter = new AtomicLong();
+			AtomicLong existing = containedInFanOut.putIfAbsent( relation, counter );
+			if ( existing != null ) {
+				counter = existing;
+			}
+		}
+		counter.addAndGet( reachedEntities );
+	}
+
+	public void containedInDuplicateSkipped() {
+		containedInDuplicateCount.incrementAndGet();
+	}
+
 	public boolean isStatisticsEnabled() {
 		return isStatisticsEnabled;
 	}
@@ -235,6 +300,69 @@ public class StatisticsImpl implements Statistics, StatisticsImplementor {
 		return countPerEntity;
 	}
 
+	public Map<String, Integer> indexingQueueDepth() {
+		Map<String, Integer> depthPerIndex = new HashMap<String, Integer>();
+		for ( IndexingQueue queue : getIndexingQueues() ) {
+			depthPerIndex.put( queue.getIndexName(), queue.getDepth() );
+		}
+		return depthPerIndex;
+	}
+
+	public long getIndexingQueueTaskCount() {
+		long count = 0;
+		for ( IndexingQueue queue : getIndexingQueues() ) {
+			count += queue.getExecutedTaskCount();
+		}
+		return count;
+	}
+
+	public long getIndexingQueueWaitAvgTime() {
+		long count = 0;
+		long totalTime = 0;
+		for ( IndexingQueue queue : getIndexingQueues() ) {
+			count += queue.getExecutedTaskCount();
+			totalTime += queue.getTotalWaitTime();
+		}
+		return count == 0 ? 0 : totalTime / count;
+	}
+
+	public long getIndexingQueueWaitMaxTime() {
+		long maxTime = 0;
+		for ( IndexingQueue queue : getIndexingQueues() ) {
+			maxTime = Math.max( maxTime, queue.getMaxWaitTime() );
+		}
+		return maxTime;
+	}
+
+	public long getCoalescedWorkCount() {
+		long count = 0;
+		for ( IndexingQueue queue : getIndexingQueues() ) {
+			count += queue.getCoalescedWorkCount();
+		}
+		return count;
+	}
+
+	public long getIndexingQueueSpilledTaskCount() {
+		long count = 0;
+		for ( IndexingQueue queue : getIndexingQueues() ) {
+			count += queue.getSpilledTaskCount();
+		}
+		return count;
+	}
+
+	private List<IndexingQueue> getIndexingQueues() {
+		List<IndexingQueue> queues = new ArrayList<IndexingQueue>();
+		for ( IndexManager indexManager : searchFactoryImplementor.getAllIndexesManager().getIndexManagers() ) {
+			if ( indexManager instanceof DirectoryBasedIndexManager ) {
+				BackendQueueProcessor backend = ( (DirectoryBasedIndexManager) indexManager ).getBackendQueueProcessor();
+				if ( backend instanceof LuceneBackendQueueProcessor ) {
+					queues.add( ( (LuceneBackendQueueProcessor) backend ).getIndexResources().getIndexingQueue() );
+				}
+			}
+		}
+		return queues;
+	}
+
 	private Class<?> getEntityClass(String entity) {
 		Class<?> clazz;
 		try {
@@ -46,4 +46,26 @@ public interface StatisticsImplementor {
 	 * @param time time in nanoseconds to execute the search
 	 */	
 	void searchExecuted(String searchString, long time);
+
+	/**
+	 * Callback for a collection change event on an indexed or contained entity.
+	 *
+	 * @param reindexed {@code true} if the owning entity is reindexed, {@code false} if the change
+	 * could not affect the index and was skipped
+	 */
+	void collectionUpdateProcessed(boolean reindexed);
+
+	/**
+	 * Callback for a <code>@ContainedIn</code> property followed while propagating changes to the containing entities.
+	 *
+	 * @param relation the property, as {@code fully.qualified.EntityName.propertyName}
+	 * @param reachedEntities the number of entities reached through the property
+	 */
+	void containedInRelationTraversed(String relation, int reachedEntities);
+
+	/**
+	 * Callback for an entity reached through <code>@ContainedIn</code> which was not processed again,
+	 * as it is already part of the same unit of work.
+	 */
+	void containedInDuplicateSkipped();
 }
@@ -85,6 +85,7 @@ public class FSSlaveDirectoryProvider implements DirectoryProvider<Directory> {
 	private String directoryProviderName;
 	private Properties properties;
 	private UpdateTask updateTask;
+	private volatile DirectoryBasedIndexManager indexManager;
 
 	@Override
 	public void initialize(String directoryProviderName, Properties properties, BuildContext context) {
@@ -135,6 +136,7 @@ public class FSSlaveDirectoryProvider implements DirectoryProvider<Directory> {
 
 	@Override
 	public void start(DirectoryBasedIndexManager indexManager) {
+		this.indexManager = indexManager;
 		if ( ! attemptInitializeAndStart() ) {
 			// if we failed to initialize and/or start, we'll try again later: setup a timer
 			long period = DirectoryProviderHelper.getRetryInitializePeriod( properties, directoryProviderName );
@@ -204,6 +206,15 @@ public class FSSlaveDirectoryProvider implements DirectoryProvider<Directory> {
 		scheduleTask( updateTask, period );
 		this.current = currentToBe;
 		started = true;
+		// when started by the InitTask the readers were opened on the dummy Directory
+		notifyDirectoryChanged();
+	}
+
+	private void notifyDirectoryChanged() {
+		DirectoryBasedIndexManager manager = indexManager;
+		if ( manager != null ) {
+			manager.notifyIndexChanged();
+		}
 	}
 
 	public Directory getDirectory() {
@@ -363,6 +374,7 @@ public class FSSlaveDirectoryProvider implements DirectoryProvider<Directory> {
 					log.tracef( "Copying %s into %s", sourceFile, destinationFile );
 					FileHelper.synchronize( sourceFile, destinationFile, true, copyChunkSize );
 					current = index;
+					notifyDirectoryChanged();
 					log.tracef( "Copy for %s took %d ms", indexName, TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start ) );
 				}
 				catch ( IOException e ) {
@@ -0,0 +1,209 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.util.impl;
+
+import java.beans.Introspector;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import org.hibernate.annotations.common.reflection.XClass;
+import org.hibernate.annotations.common.reflection.XMember;
+
+/**
+ * Reads the value of a property of an entity. Accessors are resolved once per property at bootstrap:
+ * the {@link Field} or getter {@link Method} backing the property is looked up on the class declaring it
+ * and made accessible, so that reading the property while building a <code>Document</code> skips the
+ * dispatch, type checks and varargs allocation of {@link XMember#invoke(Object, Object...)}.
+ * When the Java member can't be resolved unambiguously, or can't be made accessible under the current
+ * security policy, the property is read through {@link XMember#invoke(Object, Object...)}.
+ *
+ * @author agent <agent@local>
+ */
+public abstract class MemberAccessor {
+
+	private static final Object[] NO_ARGUMENTS = new Object[0];
+
+	private MemberAccessor() {
+	}
+
+	/**
+	 * @param bean the instance to read the property from
+	 *
+	 * @return the value of the property
+	 */
+	public abstract Object getValue(Object bean);
+
+	/**
+	 * @param member the property to read
+	 *
+	 * @return an accessor reading the property through {@link XMember#invoke(Object, Object...)}
+	 */
+	public static MemberAccessor forMember(XMember member) {
+		return new XMemberAccessor( member );
+	}
+
+	/**
+	 * Creates the accessor for a property as listed by {@link XClass#getDeclaredProperties(String)}.
+	 *
+	 * @param member the property to read
+	 * @param declaringClass the class declaring the property
+	 * @param accessType either {@link XClass#ACCESS_FIELD} or {@link XClass#ACCESS_PROPERTY}
+	 *
+	 * @return an accessor reading <code>member</code>
+	 */
+	public static MemberAccessor forProperty(XMember member, Class<?> declaringClass, String accessType) {
+		if ( XClass.ACCESS_FIELD.equals( accessType ) ) {
+			Field field = findField( declaringClass, member.getName() );
+			if ( field != null && makeAccessible( field ) ) {
+				return new FieldAccessor( field );
+			}
+		}
+		else if ( XClass.ACCESS_PROPERTY.equals( accessType ) ) {
+			Method getter = findGetter( declaringClass, member.getName() );
+			if ( getter != null && makeAccessible( getter ) ) {
+				return new MethodAccessor( getter );
+			}
+		}
+		return forMember( member );
+	}
+
+	private static Field findField(Class<?> declaringClass, String name) {
+		try {
+			return declaringClass.getDeclaredField( name );
+		}
+		catch (NoSuchFieldException e) {
+			return null;
+		}
+		catch (SecurityException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return the getter of the property, or null if there is none or more than one candidate
+	 */
+	private static Method findGetter(Class<?> declaringClass, String propertyName) {
+		Method[] methods;
+		try {
+			methods = declaringClass.getDeclaredMethods();
+		}
+		catch (SecurityException e) {
+			return null;
+		}
+		Method getter = null;
+		for ( Method method : methods ) {
+			if ( method.isBridge() || method.isSynthetic() || method.getParameterTypes().length != 0
+					|| method.getReturnType() == void.class ) {
+				continue;
+			}
+			// same naming rules as the property names of XClass#getDeclaredProperties
+			String methodName = method.getName();
+			String name;
+			if ( methodName.startsWith( "get" ) ) {
+				name = Introspector.decapitalize( methodName.substring( 3 ) );
+			}
+			else if ( methodName.startsWith( "is" ) ) {
+				name = Introspector.decapitalize( methodName.substring( 2 ) );
+			}
+			else {
+				continue;
+			}
+			if ( propertyName.equals( name ) ) {
+				if ( getter != null ) {
+					return null;
+				}
+				getter = method;
+			}
+		}
+		return getter;
+	}
+
+	private static boolean makeAccessible(AccessibleObject member) {
+		try {
+			ReflectionHelper.setAccessible( member );
+			return member.isAccessible();
+		}
+		catch (SecurityException e) {
+			return false;
+		}
+	}
+
+	private static IllegalStateException unableToReadValue(Throwable cause) {
+		return new IllegalStateException( "Could not get property value", cause );
+	}
+
+	private static final class FieldAccessor extends MemberAccessor {
+
+		private final Field field;
+
+		FieldAccessor(Field field) {
+			this.field = field;
+		}
+
+		@Override
+		public Object getValue(Object bean) {
+			try {
+				return field.get( bean );
+			}
+			catch (Exception e) {
+				throw unableToReadValue( e );
+			}
+		}
+	}
+
+	private static final class MethodAccessor extends MemberAccessor {
+
+		private final Method method;
+
+		MethodAccessor(Method method) {
+			this.method = method;
+		}
+
+		@Override
+		public Object getValue(Object bean) {
+			try {
+				return method.invoke( bean, NO_ARGUMENTS );
+			}
+			catch (InvocationTargetException e) {
+				throw unableToReadValue( e.getCause() );
+			}
+			catch (Exception e) {
+				throw unableToReadValue( e );
+			}
+		}
+	}
+
+	private static final class XMemberAccessor extends MemberAccessor {
+
+		private final XMember member;
+
+		XMemberAccessor(XMember member) {
+			this.member = member;
+		}
+
+		@Override
+		public Object getValue(Object bean) {
+			return ReflectionHelper.getMemberValue( bean, member );
+		}
+	}
+}
@@ -550,4 +550,77 @@ public interface Log extends BasicLogger {
 	@Message(id = 130, value = "JGroups channel configuration should be specified in the global section [hibernate.search.services.jgroups.], " +
 			"not as an IndexManager property for index '%1$s'. See http://docs.jboss.org/hibernate/search/4.1/reference/en-US/html_single/#jgroups-backend")
 	SearchException legacyJGroupsConfigurationDefined(String indexName);
+
+	@Message(id = 131, value = "Unknown queue overflow policy '%2$s' configured for index '%1$s': use one of 'block', 'caller_runs' or 'spill_to_disk'")
+	SearchException unknownQueueOverflowPolicy(String indexName, String policy);
+
+	@LogMessage(level = WARN)
+	@Message(id = 132, value = "Unable to spill indexing work to disk for index '%1$s', keeping it in memory")
+	void unableToSpillIndexingWork(String indexName, @Cause Exception e);
+
+	@Message(id = 133, value = "Unable to read back indexing work spilled to disk for index '%1$s'")
+	SearchException unableToReadSpilledIndexingWork(String indexName, @Cause Throwable e);
+
+	@LogMessage(level = WARN)
+	@Message(id = 134, value = "Unable to spill the indexing work of a transaction to disk, keeping it in memory")
+	void unableToSpillTransactionWork(@Cause Exception e);
+
+	@Message(id = 135, value = "Unable to read back the indexing work of a transaction spilled to file '%1$s'")
+	SearchException unableToReadSpilledTransactionWork(String fileName, @Cause Throwable e);
+
+	@LogMessage(level = INFO)
+	@Message(id = 136, value = "Mass indexing of %1$s, %2$s: %3$.1f entities/second using %4$.1f threads")
+	void indexingStageThroughput(String indexedType, String stage, double entitiesPerSecond, double busyThreads);
+
+	@Message(id = 137, value = "Unable to store the MassIndexer checkpoint to file '%1$s'")
+	SearchException unableToStoreMassIndexerCheckpoint(String fileName, @Cause Exception e);
+
+	@Message(id = 138, value = "Unable to load the MassIndexer checkpoint from file '%1$s'")
+	SearchException unableToLoadMassIndexerCheckpoint(String fileName, @Cause Exception e);
+
+	@LogMessage(level = INFO)
+	@Message(id = 139, value = "Resuming mass indexing of %1$s from checkpoint")
+	void resumingMassIndexing(String indexedType);
+
+	@Message(id = 140, value = "Unable to add the segments of other directories to index '%1$s'")
+	SearchException unableToAddIndexes(String indexName, @Cause Exception e);
+
+	@Message(id = 141, value = "Index '%1$s' can't be rebuilt in a side directory: only local Lucene indexes support it")
+	SearchException sideDirectoryNotSupported(String indexName);
+
+	@Message(id = 142, value = "Index '%1$s' can't be rebuilt in a side directory as it also contains entities of type %2$s which are not being rebuilt")
+	SearchException sideDirectoryIndexSharedWithOtherTypes(String indexName, String entityType);
+
+	@Message(id = 143, value = "Unable to write side directory '%2$s' of index '%1$s'")
+	SearchException unableToWriteSideDirectory(String indexName, String directory, @Cause Exception e);
+
+	@LogMessage(level = INFO)
+	@Message(id = 144, value = "Replaced the content of index '%1$s' with the index rebuilt in side directory '%2$s'")
+	void indexSwappedFromSideDirectory(String indexName, String directory);
+
+	@Message(id = 145, value = "Index '%1$s' can't be built with parallel IndexWriters: only local Lucene indexes support it")
+	SearchException parallelIndexWritersNotSupported(String indexName);
+
+	@LogMessage(level = INFO)
+	@Message(id = 146, value = "Mass indexing of %1$s: loading with up to %2$d threads and batches of %3$d entities, as batches took %4$.1f ms on average")
+	void massIndexerLoadingThrottled(String indexedType, int loadingThreads, int batchSize, double batchLatencyMillis);
+
+	@LogMessage(level = WARN)
+	@Message(id = 147, value = "Unable to refresh the IndexReader of index '%1$s'")
+	void unableToRefreshIndexReader(String indexName, @Cause Exception e);
+
+	@LogMessage(level = WARN)
+	@Message(id = 148, value = "Unable to warm the new IndexReader of index '%1$s': it will be used anyway")
+	void unableToWarmIndexReader(String indexName, @Cause Exception e);
+
+	@LogMessage(level = WARN)
+	@Message(id = 149, value = "Ignoring the incomplete MassIndexer checkpoint in temporary file '%1$s'")
+	void ignoringIncompleteMassIndexerCheckpoint(String fileName, @Cause Exception e);
+
+	@LogMessage(level = WARN)
+	@Message(id = 150, value = "Mass indexing reported %1$d errors: the live indexes are kept, discarding the indexes rebuilt in side directories")
+	void sideDirectoriesDiscardedAfterErrors(int errorCount);
+
+	@Message(id = 151, value = "Rebuilding in side directories can't be combined with MassIndexer checkpoints: a resumed rebuild would lose the changes applied to the live indexes before it was interrupted")
+	SearchException sideDirectoryRebuildWithCheckpoints();
 }
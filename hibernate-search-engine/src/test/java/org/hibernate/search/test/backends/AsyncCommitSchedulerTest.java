@@ -0,0 +1,201 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.test.backends;
+
+import java.io.File;
+import java.util.concurrent.Callable;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.hibernate.search.Environment;
+import org.hibernate.search.annotations.DocumentId;
+import org.hibernate.search.annotations.Field;
+import org.hibernate.search.annotations.Indexed;
+import org.hibernate.search.backend.impl.lucene.LuceneBackendQueueProcessor;
+import org.hibernate.search.backend.spi.Work;
+import org.hibernate.search.backend.spi.WorkType;
+import org.hibernate.search.engine.spi.SearchFactoryImplementor;
+import org.hibernate.search.indexes.impl.DirectoryBasedIndexManager;
+import org.hibernate.search.spi.SearchFactoryBuilder;
+import org.hibernate.search.test.TestConstants;
+import org.hibernate.search.test.util.ManualConfiguration;
+import org.hibernate.search.test.util.ManualTransactionContext;
+import org.hibernate.search.util.impl.FileHelper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Verifies when the async commit policy commits the changes applied to the index:
+ * after {@link Environment#ASYNC_COMMIT_MAX_OPERATIONS} operations, after
+ * {@link Environment#ASYNC_COMMIT_INTERVAL} and when the index is closed.
+ * Each commit is detected as a new generation of the segments file.
+ *
+ * @author agent <agent@local>
+ */
+public class AsyncCommitSchedulerTest {
+
+	private static final String NEVER = "600000";
+
+	private File indexBase;
+	private SearchFactoryImplementor searchFactory;
+
+	@Before
+	public void setUp() {
+		indexBase = new File( TestConstants.getIndexDirectory(), "AsyncCommitSchedulerTest" );
+		FileHelper.delete( indexBase );
+		indexBase.mkdirs();
+	}
+
+	@After
+	public void tearDown() {
+		if ( searchFactory != null ) {
+			searchFactory.close();
+		}
+		FileHelper.delete( indexBase );
+	}
+
+	@Test
+	public void commitsWhenMaxOperationsAreApplied() throws Exception {
+		searchFactory = buildSearchFactory( NEVER, "5" );
+		long initialGeneration = lastCommitGeneration();
+
+		index( 1, 4 );
+		assertEquals( initialGeneration, lastCommitGeneration() );
+
+		index( 5, 5 );
+		assertEquals( initialGeneration + 1, lastCommitGeneration() );
+
+		index( 6, 9 );
+		assertEquals( initialGeneration + 1, lastCommitGeneration() );
+
+		index( 10, 12 );
+		assertEquals( initialGeneration + 2, lastCommitGeneration() );
+	}
+
+	@Test
+	public void commitsAtTheInterval() throws Exception {
+		searchFactory = buildSearchFactory( "100", "0" );
+		long initialGeneration = lastCommitGeneration();
+
+		index( 1, 3 );
+		// nothing but the timer commits with no limit on the number of operations
+		long deadline = System.currentTimeMillis() + 10000;
+		while ( lastCommitGeneration() == initialGeneration && System.currentTimeMillis() < deadline ) {
+			Thread.sleep( 20 );
+		}
+		assertEquals( initialGeneration + 1, lastCommitGeneration() );
+
+		// no commit when nothing changed
+		Thread.sleep( 300 );
+		assertEquals( initialGeneration + 1, lastCommitGeneration() );
+	}
+
+	@Test
+	public void commitsBeforeClosing() throws Exception {
+		searchFactory = buildSearchFactory( NEVER, "0" );
+		long initialGeneration = lastCommitGeneration();
+
+		index( 1, 3 );
+		assertEquals( initialGeneration, lastCommitGeneration() );
+
+		searchFactory.close();
+		searchFactory = null;
+		Directory directory = FSDirectory.open( new File( indexBase, "books" ) );
+		try {
+			assertTrue( SegmentInfos.getLastCommitGeneration( directory ) > initialGeneration );
+			IndexReader reader = IndexReader.open( directory );
+			try {
+				assertEquals( 3, reader.numDocs() );
+			}
+			finally {
+				reader.close();
+			}
+		}
+		finally {
+			directory.close();
+		}
+	}
+
+	/**
+	 * Indexes a Book per transaction, returning once all of them were applied to the index.
+	 */
+	private void index(long fromId, long toId) throws Exception {
+		for ( long id = fromId; id <= toId; id++ ) {
+			ManualTransactionContext transaction = new ManualTransactionContext();
+			Book book = new Book( id, "title" );
+			searchFactory.getWorker().performWork( new Work<Book>( book, book.id, WorkType.ADD ), transaction );
+			transaction.end();
+		}
+		// the changes are applied in order by a single thread
+		getBackend().getIndexResources().getQueueingExecutor().submit( new Callable<Void>() {
+			@Override
+			public Void call() {
+				return null;
+			}
+		} ).get();
+	}
+
+	private long lastCommitGeneration() throws Exception {
+		return SegmentInfos.getLastCommitGeneration( getIndexManager().getDirectoryProvider().getDirectory() );
+	}
+
+	private LuceneBackendQueueProcessor getBackend() {
+		return (LuceneBackendQueueProcessor) getIndexManager().getBackendQueueProcessor();
+	}
+
+	private DirectoryBasedIndexManager getIndexManager() {
+		return (DirectoryBasedIndexManager) searchFactory.getAllIndexesManager().getIndexManager( "books" );
+	}
+
+	private SearchFactoryImplementor buildSearchFactory(String interval, String maxOperations) {
+		ManualConfiguration cfg = new ManualConfiguration();
+		cfg.addClass( Book.class );
+		cfg.addProperty( "hibernate.search.default.directory_provider", "filesystem" );
+		cfg.addProperty( "hibernate.search.default.indexBase", indexBase.getAbsolutePath() );
+		cfg.addProperty( Environment.WORKER_EXECUTION, "async" );
+		cfg.addProperty( "hibernate.search.default." + Environment.ASYNC_COMMIT_INTERVAL, interval );
+		cfg.addProperty( "hibernate.search.default." + Environment.ASYNC_COMMIT_MAX_OPERATIONS, maxOperations );
+		return new SearchFactoryBuilder().configuration( cfg ).buildSearchFactory();
+	}
+
+	@Indexed(index = "books")
+	public static final class Book {
+
+		@DocumentId
+		final long id;
+
+		@Field
+		final String title;
+
+		Book(long id, String title) {
+			this.id = id;
+			this.title = title;
+		}
+	}
+
+}
@@ -0,0 +1,147 @@
+/*
+ * Hibernate, Relational Persistence for Idiomatic Java
+ *
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.test.backends;
+
+import java.util.Properties;
+
+import org.apache.lucene.index.IndexReader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.hibernate.search.Environment;
+import org.hibernate.search.annotations.DocumentId;
+import org.hibernate.search.annotations.Field;
+import org.hibernate.search.annotations.Indexed;
+import org.hibernate.search.backend.impl.BatchedQueueingProcessor;
+import org.hibernate.search.backend.impl.WorkQueue;
+import org.hibernate.search.backend.spi.Work;
+import org.hibernate.search.backend.spi.WorkType;
+import org.hibernate.search.engine.spi.SearchFactoryImplementor;
+import org.hibernate.search.spi.SearchFactoryBuilder;
+import org.hibernate.search.test.util.ManualConfiguration;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Verifies the changes of a transaction are applied when dispatched to multiple indexes
+ * in parallel, also by a BatchedQueueingProcessor already closed as the SearchFactory
+ * was rebuilt while the transaction was in flight.
+ *
+ * @author agent <agent@local>
+ */
+public class ParallelDispatchTest {
+
+	private SearchFactoryImplementor searchFactory;
+
+	@Before
+	public void setUp() {
+		ManualConfiguration cfg = new ManualConfiguration();
+		cfg.addClass( Book.class );
+		cfg.addClass( Magazine.class );
+		searchFactory = new SearchFactoryBuilder().configuration( cfg ).buildSearchFactory();
+	}
+
+	@After
+	public void tearDown() {
+		searchFactory.close();
+	}
+
+	@Test(timeout = 30000)
+	public void changesAreDispatched() {
+		BatchedQueueingProcessor processor = createQueueingProcessor();
+		try {
+			dispatch( processor, 1 );
+		}
+		finally {
+			processor.close();
+		}
+		assertEquals( 1, count( Book.class ) );
+		assertEquals( 1, count( Magazine.class ) );
+	}
+
+	@Test(timeout = 30000)
+	public void changesAreDispatchedAfterClose() {
+		BatchedQueueingProcessor processor = createQueueingProcessor();
+		processor.close();
+		dispatch( processor, 1 );
+		dispatch( processor, 2 );
+		assertEquals( 2, count( Book.class ) );
+		assertEquals( 2, count( Magazine.class ) );
+	}
+
+	private BatchedQueueingProcessor createQueueingProcessor() {
+		Properties properties = new Properties();
+		properties.setProperty( Environment.WORKER_DISPATCH_THREADPOOL_SIZE, "2" );
+		return new BatchedQueueingProcessor( searchFactory.getIndexBindingForEntity(), properties, searchFactory.getErrorHandler() );
+	}
+
+	private void dispatch(BatchedQueueingProcessor processor, long id) {
+		WorkQueue queue = new WorkQueue( searchFactory );
+		Book book = new Book( id, "title" );
+		queue.add( new Work<Book>( book, book.id, WorkType.ADD ) );
+		Magazine magazine = new Magazine( id, "title" );
+		queue.add( new Work<Magazine>( magazine, magazine.id, WorkType.ADD ) );
+		processor.prepareWorks( queue );
+		processor.performWorks( queue );
+	}
+
+	private int count(Class<?> type) {
+		IndexReader reader = searchFactory.getIndexReaderAccessor().open( type );
+		try {
+			return reader.numDocs();
+		}
+		finally {
+			searchFactory.getIndexReaderAccessor().close( reader );
+		}
+	}
+
+	@Indexed(index = "books")
+	public static final class Book {
+
+		@DocumentId
+		final long id;
+
+		@Field
+		final String title;
+
+		Book(long id, String title) {
+			this.id = id;
+			this.title = title;
+		}
+	}
+
+	@Indexed(index = "magazines")
+	public static final class Magazine {
+
+		@DocumentId
+		final long id;
+
+		@Field
+		final String title;
+
+		Magazine(long id, String title) {
+			this.id = id;
+			this.title = title;
+		}
+	}
+
+}
@@ -0,0 +1,366 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.test.backends;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.transaction.Synchronization;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.hibernate.search.Environment;
+import org.hibernate.search.SearchException;
+import org.hibernate.search.annotations.DocumentId;
+import org.hibernate.search.annotations.Field;
+import org.hibernate.search.annotations.Indexed;
+import org.hibernate.search.backend.DeleteLuceneWork;
+import org.hibernate.search.backend.LuceneWork;
+import org.hibernate.search.backend.impl.BatchedQueueingProcessor;
+import org.hibernate.search.backend.impl.SpillingLuceneWorkQueue;
+import org.hibernate.search.backend.impl.WorkQueue;
+import org.hibernate.search.backend.spi.Work;
+import org.hibernate.search.backend.spi.WorkType;
+import org.hibernate.search.engine.spi.SearchFactoryImplementor;
+import org.hibernate.search.exception.ErrorContext;
+import org.hibernate.search.exception.ErrorHandler;
+import org.hibernate.search.indexes.impl.DirectoryBasedIndexManager;
+import org.hibernate.search.indexes.spi.IndexManager;
+import org.hibernate.search.spi.SearchFactoryBuilder;
+import org.hibernate.search.store.impl.NotShardedStrategy;
+import org.hibernate.search.test.util.ManualConfiguration;
+import org.hibernate.search.test.util.ManualTransactionContext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Verifies the changes of a transaction exceeding {@link Environment#WORKER_SPILL_THRESHOLD}
+ * are written to disk and applied correctly, committed at once and rolled back when a chunk fails.
+ *
+ * @author agent <agent@local>
+ */
+public class SpillingTransactionWorkTest {
+
+	private static final int SPILL_THRESHOLD = 3;
+
+	private SearchFactoryImplementor searchFactory;
+
+	@Before
+	public void setUp() {
+		searchFactory = buildSearchFactory( 0 );
+	}
+
+	@After
+	public void tearDown() {
+		searchFactory.close();
+	}
+
+	@Test
+	public void spilledChangesAreApplied() throws Exception {
+		applyChanges();
+	}
+
+	@Test
+	public void spilledChangesBuiltByThePipelineAreApplied() throws Exception {
+		searchFactory.close();
+		searchFactory = buildSearchFactory( 2 );
+		applyChanges();
+	}
+
+	@Test
+	public void temporaryFileIsDeletedOnRollback() {
+		Set<String> existingFiles = spillFiles();
+		ManualTransactionContext transaction = new ManualTransactionContext();
+		for ( long id = 1; id <= 10; id++ ) {
+			Book book = new Book( id, "original" );
+			searchFactory.getWorker().performWork( new Work<Book>( book, book.id, WorkType.ADD ), transaction );
+		}
+		final Set<String> spilledFiles = new HashSet<String>();
+		// registered after the worker, so it runs once the changes are prepared
+		transaction.registerSynchronization( new Synchronization() {
+			@Override
+			public void beforeCompletion() {
+				spilledFiles.addAll( spillFiles() );
+			}
+
+			@Override
+			public void afterCompletion(int status) {
+			}
+		} );
+		transaction.rollback();
+
+		spilledFiles.removeAll( existingFiles );
+		assertEquals( 1, spilledFiles.size() );
+		Set<String> remainingFiles = spillFiles();
+		remainingFiles.retainAll( spilledFiles );
+		assertTrue( remainingFiles.isEmpty() );
+	}
+
+	private void applyChanges() throws Exception {
+		ManualTransactionContext transaction = new ManualTransactionContext();
+		for ( long id = 1; id <= 10; id++ ) {
+			Book book = new Book( id, "original" );
+			searchFactory.getWorker().performWork( new Work<Book>( book, book.id, WorkType.ADD ), transaction );
+		}
+		transaction.end();
+		assertEquals( 10, count( "original" ) );
+
+		transaction = new ManualTransactionContext();
+		for ( long id = 1; id <= 4; id++ ) {
+			searchFactory.getWorker().performWork( new Work<Book>( Book.class, id, WorkType.DELETE ), transaction );
+		}
+		for ( long id = 5; id <= 6; id++ ) {
+			Book book = new Book( id, "updated" );
+			searchFactory.getWorker().performWork( new Work<Book>( book, book.id, WorkType.UPDATE ), transaction );
+		}
+		transaction.end();
+		assertEquals( 4, count( "original" ) );
+		assertEquals( 2, count( "updated" ) );
+	}
+
+	@Test
+	public void spilledChangesAreCommittedAtOnce() throws Exception {
+		searchFactory.close();
+		searchFactory = buildSearchFactory( CommitObservingShardingStrategy.class );
+		CommitObservingShardingStrategy.committedDocuments.set( -1 );
+
+		ManualTransactionContext transaction = new ManualTransactionContext();
+		for ( long id = 1; id <= 10; id++ ) {
+			Book book = new Book( id, "original" );
+			searchFactory.getWorker().performWork( new Work<Book>( book, book.id, WorkType.ADD ), transaction );
+		}
+		transaction.end();
+
+		// the first chunk was applied but not committed when the second one was routed
+		assertEquals( 0, CommitObservingShardingStrategy.committedDocuments.get() );
+		assertEquals( 10, count( "original" ) );
+	}
+
+	@Test
+	public void spilledChangesAreRolledBackWhenAChunkFails() throws Exception {
+		searchFactory.close();
+		searchFactory = buildSearchFactory( FailingShardingStrategy.class );
+
+		Properties properties = new Properties();
+		properties.setProperty( Environment.WORKER_SPILL_THRESHOLD, String.valueOf( SPILL_THRESHOLD ) );
+		RecordingErrorHandler errorHandler = new RecordingErrorHandler();
+		BatchedQueueingProcessor processor = new BatchedQueueingProcessor(
+				searchFactory.getIndexBindingForEntity(), properties, errorHandler
+		);
+		try {
+			WorkQueue queue = new WorkQueue( searchFactory );
+			for ( long id = 1; id <= 10; id++ ) {
+				Book book = new Book( id, "original" );
+				queue.add( new Work<Book>( book, book.id, WorkType.ADD ) );
+			}
+			processor.prepareWorks( queue );
+			try {
+				processor.performWorks( queue );
+				fail( "The second chunk should have failed" );
+			}
+			catch (SearchException e) {
+				// expected
+			}
+		}
+		finally {
+			processor.close();
+		}
+
+		// the first chunk was rolled back: nothing was applied, so there's nothing to report
+		assertEquals( 0, count( "original" ) );
+		assertNull( errorHandler.context );
+
+		// the index is usable again
+		ManualTransactionContext transaction = new ManualTransactionContext();
+		Book book = new Book( 11L, "original" );
+		searchFactory.getWorker().performWork( new Work<Book>( book, book.id, WorkType.ADD ), transaction );
+		transaction.end();
+		assertEquals( 1, count( "original" ) );
+	}
+
+	@Test
+	public void worksAreReadBackInChunks() {
+		SpillingLuceneWorkQueue list = new SpillingLuceneWorkQueue( 2, searchFactory.getIndexBindingForEntity() );
+		for ( long id = 1; id <= 5; id++ ) {
+			list.add( new DeleteLuceneWork( id, String.valueOf( id ), Book.class ) );
+		}
+		assertTrue( list.isSpilled() );
+		assertEquals( 5, list.size() );
+
+		List<Integer> chunkSizes = new ArrayList<Integer>();
+		List<String> ids = new ArrayList<String>();
+		Iterator<List<LuceneWork>> chunks = list.chunks();
+		while ( chunks.hasNext() ) {
+			List<LuceneWork> chunk = chunks.next();
+			chunkSizes.add( chunk.size() );
+			for ( LuceneWork work : chunk ) {
+				ids.add( work.getIdInString() );
+			}
+		}
+		assertEquals( "[2, 2, 1]", chunkSizes.toString() );
+		assertEquals( "[1, 2, 3, 4, 5]", ids.toString() );
+
+		List<String> iterated = new ArrayList<String>();
+		for ( LuceneWork work : list ) {
+			iterated.add( work.getIdInString() );
+		}
+		assertEquals( ids, iterated );
+
+		list.clear();
+		assertFalse( list.isSpilled() );
+		assertEquals( 0, list.size() );
+	}
+
+	private static SearchFactoryImplementor buildSearchFactory(int documentBuildingThreads) {
+		ManualConfiguration cfg = new ManualConfiguration();
+		cfg.addClass( Book.class );
+		cfg.addProperty( "hibernate.search.default.directory_provider", "ram" );
+		cfg.addProperty( Environment.WORKER_SPILL_THRESHOLD, String.valueOf( SPILL_THRESHOLD ) );
+		cfg.addProperty( Environment.WORKER_DOCUMENT_BUILDING_THREADPOOL_SIZE, String.valueOf( documentBuildingThreads ) );
+		return new SearchFactoryBuilder().configuration( cfg ).buildSearchFactory();
+	}
+
+	private static SearchFactoryImplementor buildSearchFactory(Class<?> shardingStrategy) {
+		ManualConfiguration cfg = new ManualConfiguration();
+		cfg.addClass( Book.class );
+		cfg.addProperty( "hibernate.search.default.directory_provider", "ram" );
+		cfg.addProperty( "hibernate.search.default.sharding_strategy", shardingStrategy.getName() );
+		cfg.addProperty( Environment.WORKER_SPILL_THRESHOLD, String.valueOf( SPILL_THRESHOLD ) );
+		return new SearchFactoryBuilder().configuration( cfg ).buildSearchFactory();
+	}
+
+	private static Set<String> spillFiles() {
+		String[] names = new File( System.getProperty( "java.io.tmpdir" ) ).list( new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.startsWith( "hsearch-transaction-" );
+			}
+		} );
+		return new HashSet<String>( Arrays.asList( names ) );
+	}
+
+	private int count(String title) throws Exception {
+		IndexReader reader = searchFactory.getIndexReaderAccessor().open( Book.class );
+		try {
+			IndexSearcher searcher = new IndexSearcher( reader );
+			return searcher.search( new TermQuery( new Term( "title", title ) ), 100 ).totalHits;
+		}
+		finally {
+			searchFactory.getIndexReaderAccessor().close( reader );
+		}
+	}
+
+	@Indexed
+	public static final class Book {
+
+		@DocumentId
+		final long id;
+
+		@Field
+		final String title;
+
+		Book(long id, String title) {
+			this.id = id;
+			this.title = title;
+		}
+	}
+
+	/**
+	 * Fails routing the second work of the second chunk
+	 */
+	public static final class FailingShardingStrategy extends NotShardedStrategy {
+
+		private final AtomicInteger additions = new AtomicInteger();
+
+		@Override
+		public IndexManager getIndexManagerForAddition(Class<?> entity, Serializable id, String idInString, Document document) {
+			if ( additions.incrementAndGet() == SPILL_THRESHOLD + 2 ) {
+				throw new SearchException( "Simulated failure routing Book #" + idInString );
+			}
+			return super.getIndexManagerForAddition( entity, id, idInString, document );
+		}
+	}
+
+	/**
+	 * Records the number of committed documents when routing the second work of the second chunk
+	 */
+	public static final class CommitObservingShardingStrategy extends NotShardedStrategy {
+
+		static final AtomicInteger committedDocuments = new AtomicInteger();
+
+		private final AtomicInteger additions = new AtomicInteger();
+
+		@Override
+		public IndexManager getIndexManagerForAddition(Class<?> entity, Serializable id, String idInString, Document document) {
+			IndexManager indexManager = super.getIndexManagerForAddition( entity, id, idInString, document );
+			if ( additions.incrementAndGet() == SPILL_THRESHOLD + 2 ) {
+				try {
+					IndexReader reader = IndexReader.open( ( (DirectoryBasedIndexManager) indexManager ).getDirectoryProvider().getDirectory() );
+					try {
+						committedDocuments.set( reader.numDocs() );
+					}
+					finally {
+						reader.close();
+					}
+				}
+				catch (IOException e) {
+					throw new SearchException( e );
+				}
+			}
+			return indexManager;
+		}
+	}
+
+	private static final class RecordingErrorHandler implements ErrorHandler {
+
+		private volatile ErrorContext context;
+
+		@Override
+		public void handle(ErrorContext context) {
+			this.context = context;
+		}
+
+		@Override
+		public void handleException(String errorMsg, Throwable exception) {
+			throw new AssertionError( errorMsg );
+		}
+	}
+}
@@ -0,0 +1,135 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.test.batchindexing;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.hibernate.search.batchindexing.FileMassIndexerCheckpointStore;
+import org.hibernate.search.batchindexing.MassIndexerCheckpoint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Verifies a {@link MassIndexerCheckpoint} is stored and loaded back
+ * by {@link FileMassIndexerCheckpointStore}.
+ *
+ * @author agent <agent@local>
+ */
+public class FileMassIndexerCheckpointStoreTest {
+
+	private File file;
+	private FileMassIndexerCheckpointStore store;
+
+	@Before
+	public void setUp() throws Exception {
+		file = File.createTempFile( "hsearch-checkpoint-", ".bin" );
+		file.delete();
+		store = new FileMassIndexerCheckpointStore( file );
+	}
+
+	@After
+	public void tearDown() {
+		store.clear();
+	}
+
+	@Test
+	public void noCheckpointStored() {
+		assertNull( store.load() );
+	}
+
+	@Test
+	public void checkpointRoundTrip() {
+		MassIndexerCheckpoint checkpoint = new MassIndexerCheckpoint();
+		checkpoint.setProgress(
+				String.class,
+				Arrays.<Serializable>asList( 100L ),
+				new Serializable[] { 42L, null },
+				new boolean[] { false, false }
+		);
+		checkpoint.setProgress(
+				Integer.class,
+				Collections.<Serializable>emptyList(),
+				new Serializable[] { null },
+				new boolean[] { true }
+		);
+		store.store( checkpoint );
+		// replacing an existing checkpoint
+		store.store( checkpoint );
+
+		MassIndexerCheckpoint loaded = store.load();
+		assertEquals( 2, loaded.getRangeCount( String.class ) );
+		assertEquals( Arrays.<Serializable>asList( 100L ), loaded.getRangeBoundaries( String.class ) );
+		assertEquals( 42L, loaded.getLastIndexedId( String.class, 0 ) );
+		assertNull( loaded.getLastIndexedId( String.class, 1 ) );
+		assertFalse( loaded.isCompleted( String.class ) );
+		assertTrue( loaded.isCompleted( Integer.class ) );
+		assertFalse( loaded.contains( Long.class ) );
+		assertFalse( loaded.isCompleted( Long.class ) );
+		assertEquals( 0, loaded.getRangeCount( Long.class ) );
+	}
+
+	@Test
+	public void checkpointLoadedFromTemporaryFileWhenRenameWasInterrupted() {
+		MassIndexerCheckpoint checkpoint = new MassIndexerCheckpoint();
+		checkpoint.setProgress( String.class, Collections.<Serializable>emptyList(), new Serializable[] { 42L }, new boolean[] { false } );
+		store.store( checkpoint );
+		// as if the previous checkpoint was deleted, and the process stopped before renaming the new one
+		File temporaryFile = new File( file.getPath() + ".tmp" );
+		assertTrue( file.renameTo( temporaryFile ) );
+
+		MassIndexerCheckpoint loaded = store.load();
+		assertEquals( 42L, loaded.getLastIndexedId( String.class, 0 ) );
+	}
+
+	@Test
+	public void incompleteTemporaryFileIsIgnored() throws Exception {
+		File temporaryFile = new File( file.getPath() + ".tmp" );
+		FileOutputStream out = new FileOutputStream( temporaryFile );
+		try {
+			out.write( new byte[] { 1, 2, 3 } );
+		}
+		finally {
+			out.close();
+		}
+		assertNull( store.load() );
+	}
+
+	@Test
+	public void clearRemovesCheckpoint() {
+		store.store( new MassIndexerCheckpoint() );
+		assertTrue( file.exists() );
+		store.clear();
+		assertFalse( file.exists() );
+		assertNull( store.load() );
+	}
+
+}
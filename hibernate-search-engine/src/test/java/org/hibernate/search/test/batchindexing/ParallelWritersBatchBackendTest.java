@@ -0,0 +1,233 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.test.batchindexing;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.hibernate.search.annotations.DocumentId;
+import org.hibernate.search.annotations.Field;
+import org.hibernate.search.annotations.Indexed;
+import org.hibernate.search.backend.impl.batch.BatchBackend;
+import org.hibernate.search.backend.impl.batch.ParallelWritersBatchBackend;
+import org.hibernate.search.backend.impl.batch.SideDirectoryBatchBackend;
+import org.hibernate.search.backend.spi.Work;
+import org.hibernate.search.backend.spi.WorkType;
+import org.hibernate.search.batchindexing.MassIndexerProgressMonitor;
+import org.hibernate.search.bridge.util.impl.ContextualExceptionBridgeHelper;
+import org.hibernate.search.engine.spi.DocumentBuilderIndexedEntity;
+import org.hibernate.search.engine.spi.SearchFactoryImplementor;
+import org.hibernate.search.impl.SimpleInitializer;
+import org.hibernate.search.spi.SearchFactoryBuilder;
+import org.hibernate.search.test.TestConstants;
+import org.hibernate.search.test.util.ManualConfiguration;
+import org.hibernate.search.test.util.ManualTransactionContext;
+import org.hibernate.search.util.impl.FileHelper;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Verifies the segments built by the private IndexWriter of each thread are added
+ * to the target index when flushing.
+ *
+ * @author agent <agent@local>
+ */
+public class ParallelWritersBatchBackendTest {
+
+	private static final Set<Class<?>> INDEXED_TYPES = Collections.<Class<?>>singleton( Book.class );
+	private static final int THREADS = 4;
+	private static final int BOOKS_PER_THREAD = 50;
+
+	private File indexBase;
+	private SearchFactoryImplementor searchFactory;
+
+	@Before
+	public void setUp() {
+		indexBase = new File( TestConstants.getIndexDirectory(), "ParallelWritersBatchBackendTest" );
+		FileHelper.delete( indexBase );
+		indexBase.mkdirs();
+		ManualConfiguration cfg = new ManualConfiguration();
+		cfg.addClass( Book.class );
+		cfg.addProperty( "hibernate.search.default.directory_provider", "filesystem" );
+		cfg.addProperty( "hibernate.search.default.indexBase", indexBase.getAbsolutePath() );
+		searchFactory = new SearchFactoryBuilder().configuration( cfg ).buildSearchFactory();
+	}
+
+	@After
+	public void tearDown() {
+		searchFactory.close();
+		FileHelper.delete( indexBase );
+	}
+
+	@Test
+	public void segmentsAreAddedToLiveIndex() throws Exception {
+		indexLive( "old" );
+		ParallelWritersBatchBackend backend = new ParallelWritersBatchBackend(
+				searchFactory, new NoopMonitor(), INDEXED_TYPES, searchFactory.makeBatchBackend( new NoopMonitor() ), THREADS
+		);
+		try {
+			indexInParallel( backend, "new" );
+			assertEquals( 0, count( "new" ) );
+			backend.flush( INDEXED_TYPES );
+			assertEquals( THREADS * BOOKS_PER_THREAD, count( "new" ) );
+
+			// segments are emptied once added: flushing again doesn't duplicate them
+			indexInParallel( backend, "newer" );
+			backend.optimize( INDEXED_TYPES );
+			backend.flush( INDEXED_TYPES );
+		}
+		finally {
+			backend.close();
+		}
+		assertEquals( 1, count( "old" ) );
+		assertEquals( THREADS * BOOKS_PER_THREAD, count( "new" ) );
+		assertEquals( THREADS * BOOKS_PER_THREAD, count( "newer" ) );
+	}
+
+	@Test
+	public void segmentsAreAddedToSideDirectory() throws Exception {
+		indexLive( "old" );
+		SideDirectoryBatchBackend sideDirectoryBackend = new SideDirectoryBatchBackend(
+				searchFactory, new NoopMonitor(), INDEXED_TYPES
+		);
+		ParallelWritersBatchBackend backend = new ParallelWritersBatchBackend(
+				searchFactory, new NoopMonitor(), INDEXED_TYPES, sideDirectoryBackend, THREADS
+		);
+		try {
+			indexInParallel( backend, "new" );
+			backend.flush( INDEXED_TYPES );
+			assertEquals( 1, count( "old" ) );
+			assertEquals( 0, count( "new" ) );
+			sideDirectoryBackend.swapIndexes();
+		}
+		finally {
+			backend.close();
+			sideDirectoryBackend.close();
+		}
+		assertEquals( 0, count( "old" ) );
+		assertEquals( THREADS * BOOKS_PER_THREAD, count( "new" ) );
+	}
+
+	private void indexLive(String title) {
+		ManualTransactionContext transaction = new ManualTransactionContext();
+		Book book = new Book( -1L, title );
+		searchFactory.getWorker().performWork( new Work<Book>( book, book.id, WorkType.ADD ), transaction );
+		transaction.end();
+	}
+
+	@SuppressWarnings("unchecked")
+	private void indexInParallel(final BatchBackend backend, final String title) throws Exception {
+		final DocumentBuilderIndexedEntity<Book> builder = (DocumentBuilderIndexedEntity<Book>) searchFactory
+				.getIndexBindingForEntity()
+				.get( Book.class )
+				.getDocumentBuilder();
+		ExecutorService executor = Executors.newFixedThreadPool( THREADS );
+		try {
+			List<Future<Void>> futures = new ArrayList<Future<Void>>();
+			for ( int t = 0; t < THREADS; t++ ) {
+				final long firstId = t * BOOKS_PER_THREAD;
+				futures.add( executor.submit( new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						for ( long id = firstId; id < firstId + BOOKS_PER_THREAD; id++ ) {
+							Book book = new Book( id, title );
+							backend.enqueueAsyncWork( builder.createAddWork(
+									Book.class, book, book.id, String.valueOf( id ), SimpleInitializer.INSTANCE,
+									new ContextualExceptionBridgeHelper()
+							) );
+						}
+						return null;
+					}
+				} ) );
+			}
+			for ( Future<Void> future : futures ) {
+				future.get();
+			}
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	private int count(String title) throws Exception {
+		IndexReader reader = searchFactory.getIndexReaderAccessor().open( Book.class );
+		try {
+			IndexSearcher searcher = new IndexSearcher( reader );
+			return searcher.search( new TermQuery( new Term( "title", title ) ), 1000 ).totalHits;
+		}
+		finally {
+			searchFactory.getIndexReaderAccessor().close( reader );
+		}
+	}
+
+	@Indexed(index = "books")
+	public static final class Book {
+
+		@DocumentId
+		final long id;
+
+		@Field
+		final String title;
+
+		Book(long id, String title) {
+			this.id = id;
+			this.title = title;
+		}
+	}
+
+	private static final class NoopMonitor implements MassIndexerProgressMonitor {
+
+		@Override
+		public void documentsAdded(long increment) {
+		}
+
+		@Override
+		public void documentsBuilt(int number) {
+		}
+
+		@Override
+		public void entitiesLoaded(int size) {
+		}
+
+		@Override
+		public void addToTotalCount(long count) {
+		}
+
+		@Override
+		public void indexingCompleted() {
+		}
+	}
+}
@@ -0,0 +1,367 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.test.batchindexing;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Set;
+
+import org.apache.lucene.analysis.SimpleAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Index;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.FSDirectory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.hibernate.search.Environment;
+import org.hibernate.search.SearchException;
+import org.hibernate.search.annotations.DocumentId;
+import org.hibernate.search.annotations.Field;
+import org.hibernate.search.annotations.Indexed;
+import org.hibernate.search.backend.impl.batch.SideDirectoryBatchBackend;
+import org.hibernate.search.backend.impl.lucene.LuceneBackendQueueProcessor;
+import org.hibernate.search.backend.spi.Work;
+import org.hibernate.search.backend.spi.WorkType;
+import org.hibernate.search.batchindexing.MassIndexerProgressMonitor;
+import org.hibernate.search.bridge.util.impl.ContextualExceptionBridgeHelper;
+import org.hibernate.search.engine.spi.DocumentBuilderIndexedEntity;
+import org.hibernate.search.engine.spi.SearchFactoryImplementor;
+import org.hibernate.search.impl.SimpleInitializer;
+import org.hibernate.search.indexes.impl.DirectoryBasedIndexManager;
+import org.hibernate.search.spi.SearchFactoryBuilder;
+import org.hibernate.search.test.TestConstants;
+import org.hibernate.search.test.util.ManualConfiguration;
+import org.hibernate.search.test.util.ManualTransactionContext;
+import org.hibernate.search.util.impl.FileHelper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Verifies indexes rebuilt in a side directory replace the content of the live index
+ * only when swapped.
+ *
+ * @author agent <agent@local>
+ */
+public class SideDirectoryBatchBackendTest {
+
+	private static final Set<Class<?>> REBUILT_TYPES = Collections.<Class<?>>singleton( Book.class );
+
+	private File indexBase;
+	private File sideDirectory;
+	private SearchFactoryImplementor searchFactory;
+
+	@Before
+	public void setUp() {
+		indexBase = new File( TestConstants.getIndexDirectory(), "SideDirectoryBatchBackendTest" );
+		FileHelper.delete( indexBase );
+		indexBase.mkdirs();
+		sideDirectory = new File( indexBase, "books.rebuild" );
+		ManualConfiguration cfg = new ManualConfiguration();
+		cfg.addClass( Book.class );
+		cfg.addClass( Magazine.class );
+		cfg.addClass( Newspaper.class );
+		cfg.addProperty( "hibernate.search.default.directory_provider", "filesystem" );
+		cfg.addProperty( "hibernate.search.default.indexBase", indexBase.getAbsolutePath() );
+		searchFactory = new SearchFactoryBuilder().configuration( cfg ).buildSearchFactory();
+	}
+
+	@After
+	public void tearDown() {
+		searchFactory.close();
+		FileHelper.delete( indexBase );
+	}
+
+	@Test
+	public void liveIndexIsReplacedOnSwap() throws Exception {
+		indexLive( 1, 3, "old" );
+
+		SideDirectoryBatchBackend backend = new SideDirectoryBatchBackend( searchFactory, new NoopMonitor(), REBUILT_TYPES );
+		try {
+			rebuild( backend, 1, 5, "new" );
+			backend.flush( REBUILT_TYPES );
+			assertTrue( sideDirectory.exists() );
+			assertEquals( 3, count( "old" ) );
+			assertEquals( 0, count( "new" ) );
+
+			backend.optimize( REBUILT_TYPES );
+			backend.swapIndexes();
+		}
+		finally {
+			backend.close();
+		}
+		assertEquals( 0, count( "old" ) );
+		assertEquals( 5, count( "new" ) );
+		assertFalse( sideDirectory.exists() );
+
+		// the live index keeps working after the swap
+		indexLive( 6, 6, "new" );
+		assertEquals( 6, count( "new" ) );
+	}
+
+	@Test
+	public void liveChangesDuringRebuildSurviveSwap() throws Exception {
+		indexLive( 1, 3, "old" );
+
+		SideDirectoryBatchBackend backend = new SideDirectoryBatchBackend( searchFactory, new NoopMonitor(), REBUILT_TYPES );
+		try {
+			rebuild( backend, 1, 5, "new" );
+			backend.flush( REBUILT_TYPES );
+			// the rebuild loaded these entities before they were changed
+			ManualTransactionContext transaction = new ManualTransactionContext();
+			Book updated = new Book( 2, "live" );
+			searchFactory.getWorker().performWork( new Work<Book>( updated, updated.id, WorkType.UPDATE ), transaction );
+			Book deleted = new Book( 3, "old" );
+			searchFactory.getWorker().performWork( new Work<Book>( deleted, deleted.id, WorkType.DELETE ), transaction );
+			Book added = new Book( 6, "live" );
+			searchFactory.getWorker().performWork( new Work<Book>( added, added.id, WorkType.ADD ), transaction );
+			transaction.end();
+			assertEquals( 1, count( "old" ) );
+
+			backend.swapIndexes();
+		}
+		finally {
+			backend.close();
+		}
+		assertEquals( 0, count( "old" ) );
+		assertEquals( 3, count( "new" ) );
+		assertEquals( 2, count( "live" ) );
+		assertEquals( 0, count( "new", 2 ) );
+		assertEquals( 0, count( "new", 3 ) );
+	}
+
+	@Test
+	public void failedSwapDeletesSideDirectory() throws Exception {
+		indexLive( 1, 3, "old" );
+
+		SideDirectoryBatchBackend backend = new SideDirectoryBatchBackend( searchFactory, new NoopMonitor(), REBUILT_TYPES );
+		IndexWriter lockHolder = null;
+		try {
+			rebuild( backend, 1, 5, "new" );
+			backend.flush( REBUILT_TYPES );
+			// another IndexWriter holding the lock of the live index makes the swap fail
+			DirectoryBasedIndexManager indexManager = (DirectoryBasedIndexManager) searchFactory.getAllIndexesManager()
+					.getIndexManager( "books" );
+			LuceneBackendQueueProcessor liveBackend = (LuceneBackendQueueProcessor) indexManager.getBackendQueueProcessor();
+			liveBackend.getIndexResources().getWorkspace().shutDownNow();
+			lockHolder = new IndexWriter(
+					indexManager.getDirectoryProvider().getDirectory(),
+					new IndexWriterConfig( Environment.DEFAULT_LUCENE_MATCH_VERSION, new SimpleAnalyzer( Environment.DEFAULT_LUCENE_MATCH_VERSION ) )
+			);
+			backend.swapIndexes();
+			fail( "The live index is locked" );
+		}
+		catch (SearchException e) {
+			// expected
+		}
+		finally {
+			if ( lockHolder != null ) {
+				lockHolder.close();
+			}
+			backend.close();
+		}
+		assertFalse( sideDirectory.exists() );
+		assertEquals( 3, count( "old" ) );
+		assertEquals( 0, count( "new" ) );
+	}
+
+	@Test
+	public void leftoverSideDirectoryIsDiscarded() throws Exception {
+		indexLive( 1, 3, "old" );
+		// as left by a rebuild which was interrupted by a crash
+		FSDirectory leftoverDirectory = FSDirectory.open( sideDirectory );
+		IndexWriter leftover = new IndexWriter(
+				leftoverDirectory,
+				new IndexWriterConfig( Environment.DEFAULT_LUCENE_MATCH_VERSION, new SimpleAnalyzer( Environment.DEFAULT_LUCENE_MATCH_VERSION ) )
+		);
+		Document stale = new Document();
+		stale.add( new org.apache.lucene.document.Field( "title", "stale", Store.NO, Index.NOT_ANALYZED ) );
+		leftover.addDocument( stale );
+		leftover.close();
+		leftoverDirectory.close();
+
+		SideDirectoryBatchBackend backend = new SideDirectoryBatchBackend( searchFactory, new NoopMonitor(), REBUILT_TYPES );
+		try {
+			rebuild( backend, 1, 2, "new" );
+			backend.flush( REBUILT_TYPES );
+			backend.swapIndexes();
+		}
+		finally {
+			backend.close();
+		}
+		assertEquals( 0, count( "old" ) );
+		assertEquals( 0, count( "stale" ) );
+		assertEquals( 2, count( "new" ) );
+	}
+
+	@Test
+	public void manyLiveChangesDuringRebuildSurviveSwap() throws Exception {
+		SideDirectoryBatchBackend backend = new SideDirectoryBatchBackend( searchFactory, new NoopMonitor(), REBUILT_TYPES );
+		try {
+			rebuild( backend, 1, 5, "new" );
+			backend.flush( REBUILT_TYPES );
+			// more than the journal keeps in memory, the others are read back from disk
+			indexLive( 6, 2505, "live" );
+			backend.swapIndexes();
+		}
+		finally {
+			backend.close();
+		}
+		assertEquals( 5, count( "new" ) );
+		assertEquals( 2500, count( "live" ) );
+	}
+
+	@Test
+	public void discardedRebuildLeavesLiveIndexUntouched() throws Exception {
+		indexLive( 1, 3, "old" );
+
+		SideDirectoryBatchBackend backend = new SideDirectoryBatchBackend( searchFactory, new NoopMonitor(), REBUILT_TYPES );
+		rebuild( backend, 1, 5, "new" );
+		backend.flush( REBUILT_TYPES );
+		backend.close();
+
+		assertFalse( sideDirectory.exists() );
+		assertEquals( 3, count( "old" ) );
+		assertEquals( 0, count( "new" ) );
+	}
+
+	@Test
+	public void indexSharedWithOtherTypesIsRejected() {
+		try {
+			new SideDirectoryBatchBackend( searchFactory, new NoopMonitor(), Collections.<Class<?>>singleton( Magazine.class ) );
+			fail( "The index also contains Newspapers, which are not being rebuilt" );
+		}
+		catch (SearchException e) {
+			assertTrue( e.getMessage().contains( Newspaper.class.getName() ) );
+		}
+	}
+
+	private void indexLive(long fromId, long toId, String title) {
+		ManualTransactionContext transaction = new ManualTransactionContext();
+		for ( long id = fromId; id <= toId; id++ ) {
+			Book book = new Book( id, title );
+			searchFactory.getWorker().performWork( new Work<Book>( book, book.id, WorkType.ADD ), transaction );
+		}
+		transaction.end();
+	}
+
+	@SuppressWarnings("unchecked")
+	private void rebuild(SideDirectoryBatchBackend backend, long fromId, long toId, String title) throws InterruptedException {
+		DocumentBuilderIndexedEntity<Book> builder = (DocumentBuilderIndexedEntity<Book>) searchFactory
+				.getIndexBindingForEntity()
+				.get( Book.class )
+				.getDocumentBuilder();
+		for ( long id = fromId; id <= toId; id++ ) {
+			Book book = new Book( id, title );
+			backend.enqueueAsyncWork( builder.createAddWork(
+					Book.class, book, book.id, String.valueOf( id ), SimpleInitializer.INSTANCE, new ContextualExceptionBridgeHelper()
+			) );
+		}
+	}
+
+	private int count(String title) throws Exception {
+		return count( new TermQuery( new Term( "title", title ) ) );
+	}
+
+	private int count(String title, long id) throws Exception {
+		BooleanQuery query = new BooleanQuery();
+		query.add( new TermQuery( new Term( "title", title ) ), Occur.MUST );
+		query.add( new TermQuery( new Term( "id", String.valueOf( id ) ) ), Occur.MUST );
+		return count( query );
+	}
+
+	private int count(Query query) throws Exception {
+		IndexReader reader = searchFactory.getIndexReaderAccessor().open( Book.class );
+		try {
+			IndexSearcher searcher = new IndexSearcher( reader );
+			return searcher.search( query, 100 ).totalHits;
+		}
+		finally {
+			searchFactory.getIndexReaderAccessor().close( reader );
+		}
+	}
+
+	@Indexed(index = "books")
+	public static final class Book {
+
+		@DocumentId
+		final long id;
+
+		@Field
+		final String title;
+
+		Book(long id, String title) {
+			this.id = id;
+			this.title = title;
+		}
+	}
+
+	@Indexed(index = "periodicals")
+	public static final class Magazine {
+
+		@DocumentId
+		long id;
+	}
+
+	@Indexed(index = "periodicals")
+	public static final class Newspaper {
+
+		@DocumentId
+		long id;
+	}
+
+	private static final class NoopMonitor implements MassIndexerProgressMonitor {
+
+		@Override
+		public void documentsAdded(long increment) {
+		}
+
+		@Override
+		public void documentsBuilt(int number) {
+		}
+
+		@Override
+		public void entitiesLoaded(int size) {
+		}
+
+		@Override
+		public void addToTotalCount(long count) {
+		}
+
+		@Override
+		public void indexingCompleted() {
+		}
+	}
+}
@@ -0,0 +1,72 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.test.bridge;
+
+import java.util.Random;
+
+import org.apache.lucene.document.DateTools;
+import org.apache.lucene.document.DateTools.Resolution;
+import org.junit.Test;
+
+import org.hibernate.search.bridge.util.impl.DateEncoder;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Verifies that {@link DateEncoder} produces the same strings as Lucene's {@link DateTools}.
+ *
+ * @author agent <agent@local>
+ */
+public class DateEncoderTest {
+
+	private static final Resolution[] RESOLUTIONS = {
+			Resolution.YEAR, Resolution.MONTH, Resolution.DAY, Resolution.HOUR,
+			Resolution.MINUTE, Resolution.SECOND, Resolution.MILLISECOND
+	};
+
+	@Test
+	public void encodesLikeDateTools() {
+		assertSameEncoding( 0L );
+		assertSameEncoding( 1L );
+		assertSameEncoding( -1L );
+		assertSameEncoding( 1330000000123L );
+		// before the Gregorian cutover
+		assertSameEncoding( -12219292800001L );
+		// year 5, before Christ and beyond 9999
+		assertSameEncoding( -61999999999999L );
+		assertSameEncoding( -62200000000000L );
+		assertSameEncoding( 253402300800000L );
+		Random random = new Random( 42 );
+		for ( int i = 0; i < 10000; i++ ) {
+			assertSameEncoding( random.nextLong() % 253402300800000L );
+		}
+	}
+
+	private static void assertSameEncoding(long time) {
+		for ( Resolution resolution : RESOLUTIONS ) {
+			assertEquals(
+					"time " + time + " at resolution " + resolution,
+					DateTools.timeToString( time, resolution ),
+					DateEncoder.timeToString( time, resolution )
+			);
+		}
+	}
+}
@@ -0,0 +1,160 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.test.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.hibernate.search.annotations.ContainedIn;
+import org.hibernate.search.annotations.DocumentId;
+import org.hibernate.search.annotations.Field;
+import org.hibernate.search.annotations.Indexed;
+import org.hibernate.search.backend.LuceneWork;
+import org.hibernate.search.backend.UpdateLuceneWork;
+import org.hibernate.search.backend.spi.Work;
+import org.hibernate.search.backend.spi.WorkType;
+import org.hibernate.search.engine.impl.WorkPlan;
+import org.hibernate.search.engine.spi.SearchFactoryImplementor;
+import org.hibernate.search.spi.SearchFactoryBuilder;
+import org.hibernate.search.stat.Statistics;
+import org.hibernate.search.test.util.ManualConfiguration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Verifies that the @ContainedIn recursion through non-indexed entities terminates on
+ * cyclic graphs and doesn't traverse the same instance again when it's reachable
+ * through several paths.
+ *
+ * @author agent <agent@local>
+ */
+public class ContainedInTraversalTest {
+
+	private SearchFactoryImplementor searchFactory;
+
+	@Before
+	public void setUp() {
+		ManualConfiguration cfg = new ManualConfiguration();
+		cfg.addClass( Library.class );
+		cfg.addClass( Shelf.class );
+		cfg.addProperty( "hibernate.search.default.directory_provider", "ram" );
+		cfg.addProperty( "hibernate.search.generate_statistics", "true" );
+		searchFactory = (SearchFactoryImplementor) new SearchFactoryBuilder().configuration( cfg ).buildSearchFactory();
+	}
+
+	@After
+	public void tearDown() {
+		searchFactory.close();
+	}
+
+	@Test
+	public void cyclicGraphIsTraversedOnce() {
+		Library library = new Library( 1L );
+		Shelf first = new Shelf( 1L, library );
+		Shelf second = new Shelf( 2L, library );
+		first.adjacent.add( second );
+		second.adjacent.add( first );
+
+		List<LuceneWork> works = planUpdateOf( first );
+
+		assertSingleLibraryUpdate( works );
+		Statistics statistics = searchFactory.getStatistics();
+		// first is traversed once more when reached back from second, as it was the starting point:
+		// the library is then reached three times and second once again through the cycle
+		assertEquals( 3, statistics.getContainedInDuplicateCount() );
+		assertEquals( Long.valueOf( 3 ), statistics.containedInFanOut().get( Shelf.class.getName() + ".library" ) );
+		assertEquals( Long.valueOf( 3 ), statistics.containedInFanOut().get( Shelf.class.getName() + ".adjacent" ) );
+	}
+
+	@Test
+	public void instanceReachableThroughSeveralPathsIsTraversedOnce() {
+		Library library = new Library( 1L );
+		Shelf top = new Shelf( 1L, library );
+		Shelf left = new Shelf( 2L, library );
+		Shelf right = new Shelf( 3L, library );
+		Shelf bottom = new Shelf( 4L, library );
+		top.adjacent.addAll( Arrays.asList( left, right ) );
+		left.adjacent.add( bottom );
+		right.adjacent.add( bottom );
+
+		List<LuceneWork> works = planUpdateOf( top );
+
+		assertSingleLibraryUpdate( works );
+		Statistics statistics = searchFactory.getStatistics();
+		// one traversal per shelf: the library is reached four times and bottom twice
+		assertEquals( 4, statistics.getContainedInDuplicateCount() );
+		assertEquals( Long.valueOf( 4 ), statistics.containedInFanOut().get( Shelf.class.getName() + ".library" ) );
+		assertEquals( Long.valueOf( 4 ), statistics.containedInFanOut().get( Shelf.class.getName() + ".adjacent" ) );
+	}
+
+	private List<LuceneWork> planUpdateOf(Shelf shelf) {
+		WorkPlan plan = new WorkPlan( searchFactory );
+		plan.addWork( new Work<Shelf>( shelf, shelf.id, WorkType.UPDATE ) );
+		plan.processContainedInAndPrepareExecution();
+		return plan.getPlannedLuceneWork();
+	}
+
+	private static void assertSingleLibraryUpdate(List<LuceneWork> works) {
+		assertEquals( 1, works.size() );
+		LuceneWork work = works.get( 0 );
+		assertTrue( work instanceof UpdateLuceneWork );
+		assertEquals( Library.class, work.getEntityClass() );
+		assertEquals( Long.valueOf( 1L ), work.getId() );
+	}
+
+	@Indexed
+	public static final class Library {
+
+		@DocumentId
+		final Long id;
+
+		Library(Long id) {
+			this.id = id;
+		}
+	}
+
+	public static final class Shelf {
+
+		final Long id;
+
+		@Field
+		final String label;
+
+		@ContainedIn
+		final Library library;
+
+		@ContainedIn
+		final List<Shelf> adjacent = new ArrayList<Shelf>();
+
+		Shelf(Long id, Library library) {
+			this.id = id;
+			this.label = "shelf " + id;
+			this.library = library;
+		}
+	}
+
+}
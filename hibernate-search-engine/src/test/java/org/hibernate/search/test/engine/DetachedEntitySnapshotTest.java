@@ -0,0 +1,210 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.test.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+
+import org.apache.lucene.document.Document;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.hibernate.annotations.common.AssertionFailure;
+import org.hibernate.search.annotations.Analyze;
+import org.hibernate.search.annotations.ClassBridge;
+import org.hibernate.search.annotations.DateBridge;
+import org.hibernate.search.annotations.DocumentId;
+import org.hibernate.search.annotations.Field;
+import org.hibernate.search.annotations.Indexed;
+import org.hibernate.search.annotations.IndexedEmbedded;
+import org.hibernate.search.annotations.Resolution;
+import org.hibernate.search.annotations.Store;
+import org.hibernate.search.backend.AddLuceneWork;
+import org.hibernate.search.backend.LuceneWork;
+import org.hibernate.search.bridge.FieldBridge;
+import org.hibernate.search.bridge.LuceneOptions;
+import org.hibernate.search.bridge.util.impl.ContextualExceptionBridgeHelper;
+import org.hibernate.search.engine.impl.DocumentBuildingPipeline;
+import org.hibernate.search.engine.spi.DocumentBuilderIndexedEntity;
+import org.hibernate.search.engine.spi.DocumentBuilderIndexedEntity.EntitySnapshot;
+import org.hibernate.search.engine.spi.SearchFactoryImplementor;
+import org.hibernate.search.impl.SimpleInitializer;
+import org.hibernate.search.spi.SearchFactoryBuilder;
+import org.hibernate.search.test.util.ManualConfiguration;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Verifies that changes applied to an entity after its snapshot was taken
+ * don't affect the Document built from the snapshot, and that entities whose
+ * field bridges receive other entities are never snapshotted.
+ *
+ * @author agent <agent@local>
+ */
+public class DetachedEntitySnapshotTest {
+
+	private SearchFactoryImplementor searchFactory;
+
+	@Before
+	public void setUp() {
+		ManualConfiguration cfg = new ManualConfiguration();
+		cfg.addClass( Event.class );
+		cfg.addClass( Performance.class );
+		cfg.addProperty( "hibernate.search.default.directory_provider", "ram" );
+		searchFactory = (SearchFactoryImplementor) new SearchFactoryBuilder().configuration( cfg ).buildSearchFactory();
+	}
+
+	@After
+	public void tearDown() {
+		searchFactory.close();
+	}
+
+	@Test
+	public void documentReflectsTheEntityWhenSnapshotted() {
+		Event event = new Event( 1L, "opening", new Date( 0L ), "first" );
+		@SuppressWarnings("unchecked")
+		DocumentBuilderIndexedEntity<Event> builder = (DocumentBuilderIndexedEntity<Event>)
+				searchFactory.getIndexBindingForEntity( Event.class ).getDocumentBuilder();
+		EntitySnapshot snapshot = builder.createSnapshot(
+				event, event.id, SimpleInitializer.INSTANCE, new ContextualExceptionBridgeHelper()
+		);
+
+		event.name = "closing";
+		event.date.setTime( 1000L * 60 * 60 * 24 * 365 );
+		event.tags.set( 0, "changed" );
+		event.tags.add( "second" );
+
+		Document document = builder.getDocument(
+				snapshot, new HashMap<String, String>(), new ContextualExceptionBridgeHelper()
+		);
+		assertEquals( "opening", document.get( "label" ) );
+		assertEquals( "19700101", document.get( "date" ) );
+		assertArrayEquals( new String[] { "first" }, document.getValues( "tags" ) );
+	}
+
+	@Test(expected = AssertionFailure.class)
+	public void entitiesAreNotSnapshottedWhenBridgesReceiveOtherEntities() {
+		Performance performance = new Performance( 1L, new Venue( "Royal Albert Hall" ) );
+		getBuilder( Performance.class ).createSnapshot(
+				performance, performance.id, SimpleInitializer.INSTANCE, new ContextualExceptionBridgeHelper()
+		);
+	}
+
+	@Test
+	public void pipelineBuildsDocumentsInlineWhenBridgesReceiveOtherEntities() {
+		Performance performance = new Performance( 1L, new Venue( "Royal Albert Hall" ) );
+		List<LuceneWork> queue = new ArrayList<LuceneWork>();
+		DocumentBuildingPipeline pipeline = new DocumentBuildingPipeline( 1 );
+		try {
+			getBuilder( Performance.class ).addWorkToQueue(
+					Performance.class, performance, performance.id, false, true, queue,
+					new ContextualExceptionBridgeHelper(), pipeline
+			);
+		}
+		finally {
+			pipeline.close();
+		}
+		performance.venue.name = "Carnegie Hall";
+
+		assertEquals( 1, queue.size() );
+		// not a deferred work: the Document was built by the committing thread
+		assertSame( AddLuceneWork.class, queue.get( 0 ).getClass() );
+		assertEquals( "Royal Albert Hall", queue.get( 0 ).getDocument().get( "venue" ) );
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> DocumentBuilderIndexedEntity<T> getBuilder(Class<T> type) {
+		return (DocumentBuilderIndexedEntity<T>) searchFactory.getIndexBindingForEntity( type ).getDocumentBuilder();
+	}
+
+	@Indexed
+	@ClassBridge(name = "label", impl = EventLabelBridge.class, analyze = Analyze.NO, store = Store.YES)
+	public static final class Event {
+
+		@DocumentId
+		final Long id;
+
+		String name;
+
+		@Field(store = Store.YES, analyze = Analyze.NO)
+		@DateBridge(resolution = Resolution.DAY)
+		final Date date;
+
+		@Field(store = Store.YES, analyze = Analyze.NO)
+		@IndexedEmbedded
+		final List<String> tags;
+
+		Event(Long id, String name, Date date, String... tags) {
+			this.id = id;
+			this.name = name;
+			this.date = date;
+			this.tags = new ArrayList<String>( Arrays.asList( tags ) );
+		}
+	}
+
+	public static final class EventLabelBridge implements FieldBridge {
+
+		@Override
+		public void set(String name, Object value, Document document, LuceneOptions luceneOptions) {
+			luceneOptions.addFieldToDocument( name, ( (Event) value ).name, document );
+		}
+	}
+
+	@Indexed
+	public static final class Performance {
+
+		@DocumentId
+		final Long id;
+
+		@Field(store = Store.YES, analyze = Analyze.NO)
+		@org.hibernate.search.annotations.FieldBridge(impl = VenueBridge.class)
+		final Venue venue;
+
+		Performance(Long id, Venue venue) {
+			this.id = id;
+			this.venue = venue;
+		}
+	}
+
+	public static final class Venue {
+
+		String name;
+
+		Venue(String name) {
+			this.name = name;
+		}
+	}
+
+	public static final class VenueBridge implements FieldBridge {
+
+		@Override
+		public void set(String name, Object value, Document document, LuceneOptions luceneOptions) {
+			luceneOptions.addFieldToDocument( name, ( (Venue) value ).name, document );
+		}
+	}
+
+}
@@ -0,0 +1,138 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.test.engine;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import org.hibernate.search.engine.impl.EntityIdMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Verifies {@link EntityIdMap} behaves as a {@code HashMap} for all kinds of identifiers.
+ *
+ * @author agent <agent@local>
+ */
+public class EntityIdMapTest {
+
+	@Test
+	public void longIdentifiers() {
+		Serializable[] ids = new Serializable[1000];
+		for ( int i = 0; i < ids.length; i++ ) {
+			ids[i] = Long.valueOf( i * 31L - 500L + ( (long) i << 40 ) );
+		}
+		verify( ids );
+	}
+
+	@Test
+	public void intIdentifiers() {
+		Serializable[] ids = new Serializable[1000];
+		for ( int i = 0; i < ids.length; i++ ) {
+			ids[i] = Integer.valueOf( i * 16 - 500 );
+		}
+		verify( ids );
+	}
+
+	@Test
+	public void stridedIdentifiers() {
+		Serializable[] ids = new Serializable[1000];
+		for ( int i = 0; i < ids.length; i++ ) {
+			// as allocated by pooled sequences, or shared among several nodes
+			ids[i] = Long.valueOf( (long) i << 16 );
+		}
+		verify( ids );
+	}
+
+	@Test
+	public void stringIdentifiers() {
+		Serializable[] ids = new Serializable[1000];
+		for ( int i = 0; i < ids.length; i++ ) {
+			ids[i] = "id" + i;
+		}
+		verify( ids );
+	}
+
+	@Test
+	public void otherIdentifiers() {
+		Serializable[] ids = new Serializable[1000];
+		for ( int i = 0; i < ids.length; i++ ) {
+			ids[i] = Short.valueOf( (short) i );
+		}
+		verify( ids );
+	}
+
+	@Test
+	public void mixedIdentifiers() {
+		Serializable[] ids = new Serializable[1000];
+		for ( int i = 0; i < ids.length; i++ ) {
+			// same numeric values as different types must be different keys
+			if ( i < 500 ) {
+				ids[i] = Long.valueOf( i );
+			}
+			else {
+				ids[i] = Integer.valueOf( i - 500 );
+			}
+		}
+		verify( ids );
+	}
+
+	@Test
+	public void clear() {
+		EntityIdMap<Object> map = new EntityIdMap<Object>();
+		map.put( 1L, "a" );
+		map.clear();
+		assertEquals( 0, map.size() );
+		assertNull( map.get( 1L ) );
+		map.put( "1", "b" );
+		assertEquals( "b", map.get( "1" ) );
+		assertEquals( 1, map.values().size() );
+	}
+
+	private void verify(Serializable[] ids) {
+		EntityIdMap<Object> map = new EntityIdMap<Object>();
+		Map<Serializable, Object> expected = new HashMap<Serializable, Object>();
+		for ( Serializable id : ids ) {
+			assertNull( map.get( id ) );
+			map.put( id, "first" + id );
+			expected.put( id, "first" + id );
+		}
+		for ( int i = 0; i < ids.length; i += 2 ) {
+			map.put( ids[i], "second" + ids[i] );
+			expected.put( ids[i], "second" + ids[i] );
+		}
+		assertEquals( expected.size(), map.size() );
+		for ( Serializable id : ids ) {
+			assertEquals( expected.get( id ), map.get( id ) );
+		}
+		Map<Serializable, Object> iterated = new HashMap<Serializable, Object>();
+		EntityIdMap<Object>.Cursor cursor = map.cursor();
+		while ( cursor.next() ) {
+			iterated.put( cursor.getKey(), cursor.getValue() );
+		}
+		assertEquals( expected, iterated );
+		assertEquals( expected.size(), map.values().size() );
+	}
+}
@@ -0,0 +1,131 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.test.filter;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.lucene.analysis.SimpleAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.QueryWrapperFilter;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.RAMDirectory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.hibernate.search.Environment;
+import org.hibernate.search.filter.impl.CachingWrapperFilter;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Verifies the cached filter results are reused for the segments which didn't change
+ * when reopening the IndexReader, and that deletions are applied to them.
+ *
+ * @author agent <agent@local>
+ */
+public class CachingWrapperFilterTest {
+
+	private RAMDirectory directory;
+	private IndexWriter writer;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = new RAMDirectory();
+		writer = new IndexWriter( directory, new IndexWriterConfig(
+				Environment.DEFAULT_LUCENE_MATCH_VERSION, new SimpleAnalyzer( Environment.DEFAULT_LUCENE_MATCH_VERSION )
+		) );
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		writer.close();
+		directory.close();
+	}
+
+	@Test
+	public void onlyNewSegmentsAreFiltered() throws IOException {
+		addDocument( "1", "red" );
+		addDocument( "2", "red" );
+		addDocument( "3", "blue" );
+		writer.commit();
+		CountingFilter countingFilter = new CountingFilter( new QueryWrapperFilter( new TermQuery( new Term( "color", "red" ) ) ) );
+		CachingWrapperFilter filter = new CachingWrapperFilter( countingFilter );
+
+		IndexReader reader = IndexReader.open( directory, true );
+		assertEquals( 2, count( reader, filter ) );
+		assertEquals( 2, count( reader, filter ) );
+		assertEquals( 1, countingFilter.invocations.get() );
+
+		addDocument( "4", "red" );
+		writer.deleteDocuments( new Term( "id", "1" ) );
+		writer.commit();
+		IndexReader reopened = reader.reopen();
+		reader.close();
+		assertEquals( "the deletion should be applied to the cached results", 2, count( reopened, filter ) );
+		assertEquals( "only the new segment should be filtered", 2, countingFilter.invocations.get() );
+		reopened.close();
+	}
+
+	private int count(IndexReader reader, Filter filter) throws IOException {
+		IndexSearcher searcher = new IndexSearcher( reader );
+		try {
+			return searcher.search( new MatchAllDocsQuery(), filter, 100 ).totalHits;
+		}
+		finally {
+			searcher.close();
+		}
+	}
+
+	private void addDocument(String id, String color) throws IOException {
+		Document document = new Document();
+		document.add( new Field( "id", id, Field.Store.NO, Field.Index.NOT_ANALYZED ) );
+		document.add( new Field( "color", color, Field.Store.NO, Field.Index.NOT_ANALYZED ) );
+		writer.addDocument( document );
+	}
+
+	private static final class CountingFilter extends Filter {
+
+		private final Filter delegate;
+		private final AtomicInteger invocations = new AtomicInteger();
+
+		CountingFilter(Filter delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public DocIdSet getDocIdSet(IndexReader reader) throws IOException {
+			invocations.incrementAndGet();
+			return delegate.getDocIdSet( reader );
+		}
+	}
+
+}
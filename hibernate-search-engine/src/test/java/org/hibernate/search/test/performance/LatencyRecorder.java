@@ -0,0 +1,76 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.test.performance;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects latency samples from a single thread; instances from different
+ * threads can be merged to print percentiles at the end of a benchmark.
+ *
+ * @author agent <agent@local>
+ */
+public final class LatencyRecorder {
+
+	private long[] samples = new long[1024];
+	private int size = 0;
+
+	public void record(long nanos) {
+		if ( size == samples.length ) {
+			samples = Arrays.copyOf( samples, size * 2 );
+		}
+		samples[size++] = nanos;
+	}
+
+	public LatencyRecorder merge(LatencyRecorder other) {
+		for ( int i = 0; i < other.size; i++ ) {
+			record( other.samples[i] );
+		}
+		return this;
+	}
+
+	public int count() {
+		return size;
+	}
+
+	/**
+	 * @param percentile between 0 and 100
+	 * @return the latency in microseconds at the given percentile
+	 */
+	public long percentileMicros(double percentile) {
+		if ( size == 0 ) {
+			return 0;
+		}
+		long[] sorted = Arrays.copyOf( samples, size );
+		Arrays.sort( sorted );
+		int index = (int) Math.ceil( percentile / 100d * size ) - 1;
+		index = Math.max( 0, Math.min( size - 1, index ) );
+		return TimeUnit.NANOSECONDS.toMicros( sorted[index] );
+	}
+
+	public String summary(String label) {
+		return label + ": " + size + " samples, p50=" + percentileMicros( 50 ) + "us p90=" + percentileMicros( 90 )
+				+ "us p99=" + percentileMicros( 99 ) + "us p99.9=" + percentileMicros( 99.9 )
+				+ "us max=" + percentileMicros( 100 ) + "us";
+	}
+
+}
@@ -0,0 +1,225 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.test.performance.backend;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.hibernate.search.backend.impl.lucene.ExclusiveIndexWorkspaceImpl;
+import org.hibernate.search.indexes.impl.DirectoryBasedIndexManager;
+import org.hibernate.search.test.TestConstants;
+import org.hibernate.search.test.performance.LatencyRecorder;
+import org.hibernate.search.test.util.EmptyWorkerBuildContext;
+import org.hibernate.search.util.impl.FileHelper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * Multi-threaded stress benchmark of the IndexWriter lifecycle: indexing threads add documents
+ * while a committer thread keeps committing to a filesystem index and other threads keep
+ * opening NRT readers from the same IndexWriter.
+ * Prints latency percentiles of each activity; commits should not inflate the tail latencies
+ * of the other activities.
+ *
+ * @author agent <agent@local>
+ */
+public class IndexWriterConcurrencyPerfTest {
+
+	private static final int INDEXING_THREADS = 8;
+	private static final int NRT_THREADS = 2;
+	private static final int DOCUMENTS_PER_THREAD = 20000;
+
+	private File indexBase;
+	private DirectoryBasedIndexManager indexManager;
+	private ExclusiveIndexWorkspaceImpl workspace;
+
+	@Before
+	public void setUp() {
+		indexBase = new File( TestConstants.getIndexDirectory(), "IndexWriterConcurrencyPerfTest" );
+		FileHelper.delete( indexBase );
+		indexBase.mkdirs();
+		Properties cfg = new Properties();
+		cfg.setProperty( "directory_provider", "filesystem" );
+		cfg.setProperty( "indexBase", indexBase.getAbsolutePath() );
+		EmptyWorkerBuildContext context = new EmptyWorkerBuildContext() {
+			@Override
+			public String getIndexingStrategy() {
+				// the filesystem DirectoryProvider needs to know the indexing strategy
+				return "event";
+			}
+		};
+		indexManager = new DirectoryBasedIndexManager();
+		indexManager.initialize( "perfIndex", cfg, context );
+		workspace = new ExclusiveIndexWorkspaceImpl( indexManager, context, cfg );
+	}
+
+	@After
+	public void tearDown() {
+		workspace.shutDownNow();
+		indexManager.destroy();
+		FileHelper.delete( indexBase );
+	}
+
+	@Test
+	public void writersCommitsAndNrtReaders() throws InterruptedException {
+		final AtomicBoolean indexingDone = new AtomicBoolean( false );
+		final CountDownLatch startSignal = new CountDownLatch( 1 );
+		final List<LatencyRecorder> indexingLatencies = new ArrayList<LatencyRecorder>();
+		final List<Thread> indexingThreads = new ArrayList<Thread>();
+		for ( int i = 0; i < INDEXING_THREADS; i++ ) {
+			final LatencyRecorder recorder = new LatencyRecorder();
+			indexingLatencies.add( recorder );
+			final int threadId = i;
+			indexingThreads.add( new Thread( "indexer-" + i ) {
+				@Override
+				public void run() {
+					awaitQuietly( startSignal );
+					for ( int d = 0; d < DOCUMENTS_PER_THREAD; d++ ) {
+						Document document = new Document();
+						document.add( new Field( "id", threadId + "-" + d, Field.Store.YES, Field.Index.NOT_ANALYZED ) );
+						document.add( new Field( "text", "some text to analyze " + d, Field.Store.NO, Field.Index.ANALYZED ) );
+						long start = System.nanoTime();
+						IndexWriter writer = workspace.getIndexWriter();
+						try {
+							writer.addDocument( document );
+						}
+						catch (Exception e) {
+							throw new RuntimeException( e );
+						}
+						recorder.record( System.nanoTime() - start );
+					}
+				}
+			} );
+		}
+		final LatencyRecorder commitLatencies = new LatencyRecorder();
+		Thread committer = new Thread( "committer" ) {
+			@Override
+			public void run() {
+				awaitQuietly( startSignal );
+				while ( ! indexingDone.get() ) {
+					long start = System.nanoTime();
+					workspace.flush();
+					commitLatencies.record( System.nanoTime() - start );
+				}
+			}
+		};
+		final List<LatencyRecorder> nrtLatencies = new ArrayList<LatencyRecorder>();
+		final List<Thread> nrtThreads = new ArrayList<Thread>();
+		for ( int i = 0; i < NRT_THREADS; i++ ) {
+			final LatencyRecorder recorder = new LatencyRecorder();
+			nrtLatencies.add( recorder );
+			nrtThreads.add( new Thread( "nrt-reader-" + i ) {
+				@Override
+				public void run() {
+					awaitQuietly( startSignal );
+					while ( ! indexingDone.get() ) {
+						long start = System.nanoTime();
+						IndexReader reader = workspace.openNRTIndexReader( true );
+						if ( reader != null ) {
+							recorder.record( System.nanoTime() - start );
+							closeReader( reader );
+						}
+					}
+				}
+			} );
+		}
+		startAll( indexingThreads );
+		startAll( nrtThreads );
+		committer.start();
+		long start = System.nanoTime();
+		startSignal.countDown();
+		joinAll( indexingThreads );
+		long indexingMillis = TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start );
+		indexingDone.set( true );
+		joinAll( nrtThreads );
+		committer.join();
+
+		workspace.flush();
+		IndexReader reader = workspace.openNRTIndexReader( true );
+		assertNotNull( reader );
+		try {
+			assertEquals( INDEXING_THREADS * DOCUMENTS_PER_THREAD, reader.numDocs() );
+		}
+		finally {
+			closeReader( reader );
+		}
+		LatencyRecorder allIndexing = merge( indexingLatencies );
+		assertEquals( INDEXING_THREADS * DOCUMENTS_PER_THREAD, allIndexing.count() );
+		System.out.println( "Indexed " + allIndexing.count() + " documents in " + indexingMillis + " ms" );
+		System.out.println( allIndexing.summary( "addDocument" ) );
+		System.out.println( commitLatencies.summary( "commit" ) );
+		System.out.println( merge( nrtLatencies ).summary( "NRT reopen" ) );
+	}
+
+	private static void closeReader(IndexReader reader) {
+		try {
+			reader.close();
+		}
+		catch (IOException e) {
+			throw new RuntimeException( e );
+		}
+	}
+
+	private static LatencyRecorder merge(List<LatencyRecorder> recorders) {
+		LatencyRecorder merged = new LatencyRecorder();
+		for ( LatencyRecorder recorder : recorders ) {
+			merged.merge( recorder );
+		}
+		return merged;
+	}
+
+	private static void startAll(List<Thread> threads) {
+		for ( Thread thread : threads ) {
+			thread.start();
+		}
+	}
+
+	private static void joinAll(List<Thread> threads) throws InterruptedException {
+		for ( Thread thread : threads ) {
+			thread.join();
+		}
+	}
+
+	private static void awaitQuietly(CountDownLatch latch) {
+		try {
+			latch.await();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+}
@@ -0,0 +1,145 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.test.performance.backend;
+
+import java.io.File;
+
+import org.apache.lucene.index.IndexReader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.hibernate.search.Environment;
+import org.hibernate.search.annotations.DocumentId;
+import org.hibernate.search.annotations.Field;
+import org.hibernate.search.annotations.Indexed;
+import org.hibernate.search.backend.spi.Work;
+import org.hibernate.search.backend.spi.WorkType;
+import org.hibernate.search.engine.spi.SearchFactoryImplementor;
+import org.hibernate.search.spi.SearchFactoryBuilder;
+import org.hibernate.search.test.TestConstants;
+import org.hibernate.search.test.performance.LatencyRecorder;
+import org.hibernate.search.test.util.ManualConfiguration;
+import org.hibernate.search.test.util.ManualTransactionContext;
+import org.hibernate.search.util.impl.FileHelper;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Measures the commit latency of synchronous transactions spanning all shards of an index,
+ * with 1, 4 and 16 shards, dispatching the changes to the shards sequentially and in parallel.
+ * With parallel dispatch the latency should follow the slowest shard rather than the sum of all shards.
+ *
+ * @author agent <agent@local>
+ */
+public class ShardedDispatchPerfTest {
+
+	private static final int TRANSACTIONS = 200;
+	private static final int ENTITIES_PER_TRANSACTION = 64;
+
+	private File indexBase;
+
+	@Before
+	public void setUp() {
+		indexBase = new File( TestConstants.getIndexDirectory(), "ShardedDispatchPerfTest" );
+		FileHelper.delete( indexBase );
+		indexBase.mkdirs();
+	}
+
+	@After
+	public void tearDown() {
+		FileHelper.delete( indexBase );
+	}
+
+	@Test
+	public void oneShard() {
+		runBenchmark( 1 );
+	}
+
+	@Test
+	public void fourShards() {
+		runBenchmark( 4 );
+	}
+
+	@Test
+	public void sixteenShards() {
+		runBenchmark( 16 );
+	}
+
+	private void runBenchmark(int shards) {
+		LatencyRecorder sequential = measure( "sequential", shards, 1 );
+		LatencyRecorder parallel = measure( "parallel", shards, shards );
+		System.out.println( sequential.summary( shards + " shards, sequential dispatch" ) );
+		System.out.println( parallel.summary( shards + " shards, parallel dispatch" ) );
+	}
+
+	private LatencyRecorder measure(String label, int shards, int dispatchThreads) {
+		File directory = new File( indexBase, label + "-" + shards );
+		ManualConfiguration cfg = new ManualConfiguration();
+		cfg.addClass( Book.class );
+		cfg.addProperty( "hibernate.search.default.directory_provider", "filesystem" );
+		cfg.addProperty( "hibernate.search.default.indexBase", directory.getAbsolutePath() );
+		cfg.addProperty( "hibernate.search.default.sharding_strategy.nbr_of_shards", String.valueOf( shards ) );
+		cfg.addProperty( Environment.WORKER_DISPATCH_THREADPOOL_SIZE, String.valueOf( dispatchThreads ) );
+		SearchFactoryImplementor searchFactory = new SearchFactoryBuilder().configuration( cfg ).buildSearchFactory();
+		LatencyRecorder recorder = new LatencyRecorder();
+		try {
+			long id = 0;
+			for ( int t = 0; t < TRANSACTIONS; t++ ) {
+				ManualTransactionContext transaction = new ManualTransactionContext();
+				for ( int i = 0; i < ENTITIES_PER_TRANSACTION; i++ ) {
+					Book book = new Book( ++id, "Some title to analyze number " + id );
+					searchFactory.getWorker().performWork( new Work<Book>( book, book.id, WorkType.ADD ), transaction );
+				}
+				long start = System.nanoTime();
+				transaction.end();
+				recorder.record( System.nanoTime() - start );
+			}
+			IndexReader reader = searchFactory.getIndexReaderAccessor().open( Book.class );
+			try {
+				assertEquals( TRANSACTIONS * ENTITIES_PER_TRANSACTION, reader.numDocs() );
+			}
+			finally {
+				searchFactory.getIndexReaderAccessor().close( reader );
+			}
+		}
+		finally {
+			searchFactory.close();
+		}
+		return recorder;
+	}
+
+	@Indexed(index = "books")
+	public static final class Book {
+
+		@DocumentId
+		final long id;
+
+		@Field
+		final String title;
+
+		Book(long id, String title) {
+			this.id = id;
+			this.title = title;
+		}
+	}
+
+}
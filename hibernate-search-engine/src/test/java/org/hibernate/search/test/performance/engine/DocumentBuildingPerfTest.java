@@ -0,0 +1,245 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.test.performance.engine;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+
+import org.apache.lucene.document.Document;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.hibernate.annotations.common.reflection.XClass;
+import org.hibernate.annotations.common.reflection.XProperty;
+import org.hibernate.annotations.common.reflection.java.JavaReflectionManager;
+import org.hibernate.search.annotations.DateBridge;
+import org.hibernate.search.annotations.DocumentId;
+import org.hibernate.search.annotations.Field;
+import org.hibernate.search.annotations.Indexed;
+import org.hibernate.search.annotations.IndexedEmbedded;
+import org.hibernate.search.annotations.NumericField;
+import org.hibernate.search.annotations.Resolution;
+import org.hibernate.search.bridge.util.impl.ContextualExceptionBridgeHelper;
+import org.hibernate.search.engine.spi.DocumentBuilderIndexedEntity;
+import org.hibernate.search.engine.spi.SearchFactoryImplementor;
+import org.hibernate.search.impl.SimpleInitializer;
+import org.hibernate.search.spi.SearchFactoryBuilder;
+import org.hibernate.search.test.util.ManualConfiguration;
+import org.hibernate.search.util.impl.MemberAccessor;
+import org.hibernate.search.util.impl.ReflectionHelper;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Measures the time and the memory allocated to build Lucene <code>Document</code>s for an entity graph
+ * with embedded objects and collections, using the same path as the MassIndexer, and compares reading the indexed properties
+ * through {@link MemberAccessor} with reading them through <code>XMember#invoke</code>.
+ *
+ * @author agent <agent@local>
+ */
+public class DocumentBuildingPerfTest {
+
+	private static final int WARMUP_ITERATIONS = 20000;
+	private static final int MEASURED_ITERATIONS = 200000;
+	private static final int BOOKS_PER_AUTHOR = 5;
+
+	private SearchFactoryImplementor searchFactory;
+
+	@Before
+	public void setUp() {
+		ManualConfiguration cfg = new ManualConfiguration();
+		cfg.addClass( Author.class );
+		cfg.addProperty( "hibernate.search.default.directory_provider", "ram" );
+		searchFactory = new SearchFactoryBuilder().configuration( cfg ).buildSearchFactory();
+	}
+
+	@After
+	public void tearDown() {
+		searchFactory.close();
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void buildDocuments() {
+		DocumentBuilderIndexedEntity<Author> builder = (DocumentBuilderIndexedEntity<Author>) searchFactory
+				.getIndexBindingForEntity()
+				.get( Author.class )
+				.getDocumentBuilder();
+		Author author = createAuthor( 1L );
+		ContextualExceptionBridgeHelper conversionContext = new ContextualExceptionBridgeHelper();
+		Document document = builder.getDocument(
+				author, author.id, new HashMap<String, String>(), SimpleInitializer.INSTANCE, conversionContext
+		);
+		// id, class, name, birthYear, address.city, address.street and title, year, published for each book
+		assertEquals( 6 + 3 * BOOKS_PER_AUTHOR, document.getFields().size() );
+
+		long fields = 0;
+		for ( int i = 0; i < WARMUP_ITERATIONS; i++ ) {
+			fields += builder.createAddWork(
+					Author.class, author, author.id, "1", SimpleInitializer.INSTANCE, conversionContext
+			).getDocument().getFields().size();
+		}
+		long allocatedBefore = allocatedBytes();
+		long start = System.nanoTime();
+		for ( int i = 0; i < MEASURED_ITERATIONS; i++ ) {
+			fields += builder.createAddWork(
+					Author.class, author, author.id, "1", SimpleInitializer.INSTANCE, conversionContext
+			).getDocument().getFields().size();
+		}
+		long elapsed = System.nanoTime() - start;
+		long allocated = allocatedBytes() - allocatedBefore;
+		System.out.println( "createAddWork: " + ( elapsed / MEASURED_ITERATIONS ) + " ns/document (" + fields + " fields)" );
+		if ( allocatedBefore >= 0 ) {
+			System.out.println( "createAddWork: " + ( allocated / MEASURED_ITERATIONS ) + " bytes allocated/document" );
+		}
+	}
+
+	/**
+	 * @return the bytes allocated so far by the current thread, or -1 if the JVM can't tell
+	 */
+	private static long allocatedBytes() {
+		ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+		if ( threadMXBean instanceof com.sun.management.ThreadMXBean ) {
+			return ( (com.sun.management.ThreadMXBean) threadMXBean ).getThreadAllocatedBytes( Thread.currentThread().getId() );
+		}
+		return -1;
+	}
+
+	@Test
+	public void readProperties() {
+		XClass authorClass = new JavaReflectionManager().toXClass( Author.class );
+		List<XProperty> properties = authorClass.getDeclaredProperties( XClass.ACCESS_FIELD );
+		List<MemberAccessor> accessors = new ArrayList<MemberAccessor>( properties.size() );
+		for ( XProperty property : properties ) {
+			ReflectionHelper.setAccessible( property );
+			accessors.add( MemberAccessor.forProperty( property, Author.class, XClass.ACCESS_FIELD ) );
+		}
+		Author author = createAuthor( 1L );
+		for ( int i = 0; i < properties.size(); i++ ) {
+			assertEquals(
+					ReflectionHelper.getMemberValue( author, properties.get( i ) ),
+					accessors.get( i ).getValue( author )
+			);
+		}
+
+		readThroughXMember( author, properties, WARMUP_ITERATIONS );
+		readThroughAccessors( author, accessors, WARMUP_ITERATIONS );
+		long start = System.nanoTime();
+		int nonNull = readThroughXMember( author, properties, MEASURED_ITERATIONS );
+		long xmemberElapsed = System.nanoTime() - start;
+		start = System.nanoTime();
+		nonNull += readThroughAccessors( author, accessors, MEASURED_ITERATIONS );
+		long accessorElapsed = System.nanoTime() - start;
+		System.out.println( "XMember#invoke: " + ( xmemberElapsed / MEASURED_ITERATIONS ) + " ns/entity" );
+		System.out.println( "MemberAccessor: " + ( accessorElapsed / MEASURED_ITERATIONS ) + " ns/entity (" + nonNull + " values read)" );
+	}
+
+	private static int readThroughXMember(Author author, List<XProperty> properties, int iterations) {
+		int nonNull = 0;
+		for ( int i = 0; i < iterations; i++ ) {
+			for ( XProperty property : properties ) {
+				if ( ReflectionHelper.getMemberValue( author, property ) != null ) {
+					nonNull++;
+				}
+			}
+		}
+		return nonNull;
+	}
+
+	private static int readThroughAccessors(Author author, List<MemberAccessor> accessors, int iterations) {
+		int nonNull = 0;
+		for ( int i = 0; i < iterations; i++ ) {
+			for ( MemberAccessor accessor : accessors ) {
+				if ( accessor.getValue( author ) != null ) {
+					nonNull++;
+				}
+			}
+		}
+		return nonNull;
+	}
+
+	private static Author createAuthor(long id) {
+		Author author = new Author();
+		author.id = id;
+		author.name = "Author number " + id;
+		author.birthYear = 1900 + (int) ( id % 100 );
+		author.address = new Address();
+		author.address.city = "Some city";
+		author.address.street = "Some long street name";
+		for ( int i = 0; i < BOOKS_PER_AUTHOR; i++ ) {
+			Book book = new Book();
+			book.title = "Title of book " + i + " written by " + author.name;
+			book.year = 1950 + i;
+			book.published = new Date( -631152000000L + i * 86400000L );
+			author.books.add( book );
+		}
+		return author;
+	}
+
+	@Indexed
+	public static final class Author {
+
+		@DocumentId
+		private long id;
+
+		@Field
+		private String name;
+
+		@Field
+		@NumericField
+		private int birthYear;
+
+		@IndexedEmbedded
+		private Address address;
+
+		@IndexedEmbedded
+		private List<Book> books = new ArrayList<Book>();
+	}
+
+	public static final class Address {
+
+		@Field
+		private String city;
+
+		@Field
+		private String street;
+	}
+
+	public static final class Book {
+
+		@Field
+		private String title;
+
+		@Field
+		@NumericField
+		private int year;
+
+		@Field
+		@DateBridge(resolution = Resolution.DAY)
+		private Date published;
+	}
+
+}
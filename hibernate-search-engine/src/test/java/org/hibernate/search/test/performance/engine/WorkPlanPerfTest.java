@@ -0,0 +1,201 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.test.performance.engine;
+
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.hibernate.search.annotations.DocumentId;
+import org.hibernate.search.annotations.Field;
+import org.hibernate.search.annotations.Indexed;
+import org.hibernate.search.backend.LuceneWork;
+import org.hibernate.search.backend.spi.Work;
+import org.hibernate.search.backend.spi.WorkType;
+import org.hibernate.search.engine.impl.EntityIdMap;
+import org.hibernate.search.engine.impl.WorkPlan;
+import org.hibernate.search.engine.spi.SearchFactoryImplementor;
+import org.hibernate.search.spi.SearchFactoryBuilder;
+import org.hibernate.search.test.util.ManualConfiguration;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Measures the cost of collecting large amounts of work in a {@link WorkPlan}, as happens for batch jobs
+ * changing many entities in a single transaction, and compares {@link EntityIdMap} with the {@code HashMap}
+ * it replaces.
+ *
+ * @author agent <agent@local>
+ */
+public class WorkPlanPerfTest {
+
+	private static final int[] SIZES = { 10000, 100000, 1000000 };
+	private static final int WARMUP_ITERATIONS = 5;
+	private static final int MEASURED_ROUNDS = 5;
+
+	private SearchFactoryImplementor searchFactory;
+
+	@Before
+	public void setUp() {
+		ManualConfiguration cfg = new ManualConfiguration();
+		cfg.addClass( Entity.class );
+		cfg.addProperty( "hibernate.search.default.directory_provider", "ram" );
+		searchFactory = new SearchFactoryBuilder().configuration( cfg ).buildSearchFactory();
+	}
+
+	@After
+	public void tearDown() {
+		searchFactory.close();
+	}
+
+	@Test
+	public void planWork() {
+		for ( int i = 0; i < WARMUP_ITERATIONS; i++ ) {
+			plan( createEntities( SIZES[1] ) ).getPlannedLuceneWork();
+		}
+		for ( int size : SIZES ) {
+			Entity[] entities = createEntities( size );
+			long addWorkTime = Long.MAX_VALUE;
+			long plannedLuceneWorkTime = Long.MAX_VALUE;
+			for ( int round = 0; round < MEASURED_ROUNDS; round++ ) {
+				long start = System.nanoTime();
+				WorkPlan plan = plan( entities );
+				long planned = System.nanoTime();
+				List<LuceneWork> luceneWork = plan.getPlannedLuceneWork();
+				long end = System.nanoTime();
+				assertEquals( size, luceneWork.size() );
+				addWorkTime = Math.min( addWorkTime, planned - start );
+				plannedLuceneWorkTime = Math.min( plannedLuceneWorkTime, end - planned );
+			}
+			System.out.println(
+					"WorkPlan with " + size + " works: addWork " + ( addWorkTime / size ) + " ns/work, "
+							+ "getPlannedLuceneWork " + ( plannedLuceneWorkTime / size ) + " ns/work"
+			);
+		}
+	}
+
+	@Test
+	public void idMaps() {
+		for ( int i = 0; i < WARMUP_ITERATIONS; i++ ) {
+			fillHashMap( SIZES[1] );
+			fillEntityIdMap( SIZES[1] );
+		}
+		for ( int size : SIZES ) {
+			long hashMapTime = Long.MAX_VALUE;
+			long entityIdMapTime = Long.MAX_VALUE;
+			long hashMapAllocated = 0;
+			long entityIdMapAllocated = 0;
+			for ( int round = 0; round < MEASURED_ROUNDS; round++ ) {
+				long allocatedBefore = allocatedBytes();
+				long start = System.nanoTime();
+				long hashMapSize = fillHashMap( size );
+				hashMapTime = Math.min( hashMapTime, System.nanoTime() - start );
+				hashMapAllocated = allocatedBytes() - allocatedBefore;
+				allocatedBefore = allocatedBytes();
+				start = System.nanoTime();
+				long entityIdMapSize = fillEntityIdMap( size );
+				entityIdMapTime = Math.min( entityIdMapTime, System.nanoTime() - start );
+				entityIdMapAllocated = allocatedBytes() - allocatedBefore;
+				assertEquals( hashMapSize, entityIdMapSize );
+			}
+			System.out.println(
+					"get and put of " + size + " Long ids: HashMap " + ( hashMapTime / size ) + " ns/id, "
+							+ "EntityIdMap " + ( entityIdMapTime / size ) + " ns/id"
+			);
+			if ( hashMapAllocated >= 0 ) {
+				System.out.println(
+						"get and put of " + size + " Long ids: HashMap " + ( hashMapAllocated / size ) + " bytes allocated/id, "
+								+ "EntityIdMap " + ( entityIdMapAllocated / size ) + " bytes allocated/id"
+				);
+			}
+		}
+	}
+
+	/**
+	 * @return the bytes allocated so far by the current thread, or -1 if the JVM can't tell
+	 */
+	private static long allocatedBytes() {
+		ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+		if ( threadMXBean instanceof com.sun.management.ThreadMXBean ) {
+			return ( (com.sun.management.ThreadMXBean) threadMXBean ).getThreadAllocatedBytes( Thread.currentThread().getId() );
+		}
+		return -1;
+	}
+
+	private WorkPlan plan(Entity[] entities) {
+		WorkPlan plan = new WorkPlan( searchFactory );
+		for ( Entity entity : entities ) {
+			// deletes don't build Documents, so the measure is dominated by the plan itself
+			plan.addWork( new Work<Entity>( entity, entity.id, WorkType.DELETE ) );
+		}
+		return plan;
+	}
+
+	private static Entity[] createEntities(int size) {
+		Entity[] entities = new Entity[size];
+		for ( int i = 0; i < size; i++ ) {
+			entities[i] = new Entity( Long.valueOf( i ) );
+		}
+		return entities;
+	}
+
+	private static long fillHashMap(int size) {
+		HashMap<Serializable, Object> map = new HashMap<Serializable, Object>();
+		for ( long i = 0; i < size; i++ ) {
+			Long id = Long.valueOf( i );
+			if ( map.get( id ) == null ) {
+				map.put( id, id );
+			}
+		}
+		return map.size();
+	}
+
+	private static long fillEntityIdMap(int size) {
+		EntityIdMap<Object> map = new EntityIdMap<Object>();
+		for ( long i = 0; i < size; i++ ) {
+			Long id = Long.valueOf( i );
+			if ( map.get( id ) == null ) {
+				map.put( id, id );
+			}
+		}
+		return map.size();
+	}
+
+	@Indexed
+	public static class Entity {
+
+		@DocumentId
+		Long id;
+
+		@Field
+		String name = "name";
+
+		Entity(Long id) {
+			this.id = id;
+		}
+	}
+}
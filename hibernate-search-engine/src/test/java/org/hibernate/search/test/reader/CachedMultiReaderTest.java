@@ -0,0 +1,160 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.test.reader;
+
+import org.apache.lucene.index.IndexReader;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.hibernate.search.annotations.DocumentId;
+import org.hibernate.search.annotations.Field;
+import org.hibernate.search.annotations.Indexed;
+import org.hibernate.search.backend.spi.Work;
+import org.hibernate.search.backend.spi.WorkType;
+import org.hibernate.search.engine.spi.SearchFactoryImplementor;
+import org.hibernate.search.indexes.spi.IndexManager;
+import org.hibernate.search.reader.impl.MultiReaderCache;
+import org.hibernate.search.reader.impl.MultiReaderFactory;
+import org.hibernate.search.spi.SearchFactoryBuilder;
+import org.hibernate.search.test.util.ManualConfiguration;
+import org.hibernate.search.test.util.ManualTransactionContext;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Verifies the MultiReaders opened for queries are reused while the IndexReaders
+ * of the targeted indexes don't change, and closed once replaced or evicted and released.
+ *
+ * @author agent <agent@local>
+ */
+public class CachedMultiReaderTest {
+
+	private SearchFactoryImplementor searchFactory;
+	private MultiReaderCache cache;
+	private IndexManager[] indexManagers;
+
+	@Before
+	public void setUp() {
+		ManualConfiguration cfg = new ManualConfiguration();
+		cfg.addClass( Book.class );
+		cfg.addClass( Author.class );
+		cfg.addProperty( "hibernate.search.default.directory_provider", "ram" );
+		searchFactory = new SearchFactoryBuilder().configuration( cfg ).buildSearchFactory();
+		indexManagers = new IndexManager[] {
+				searchFactory.getIndexBindingForEntity( Book.class ).getIndexManagers()[0],
+				searchFactory.getIndexBindingForEntity( Author.class ).getIndexManagers()[0]
+		};
+		cache = searchFactory.getAllIndexesManager().getMultiReaderCache();
+	}
+
+	@After
+	public void tearDown() {
+		if ( searchFactory != null ) {
+			searchFactory.close();
+		}
+	}
+
+	@Test
+	public void multiReaderIsReusedUntilAnIndexChanges() {
+		IndexReader first = cache.openReader( indexManagers );
+		IndexReader second = cache.openReader( indexManagers );
+		assertSame( first, second );
+		MultiReaderFactory.closeReader( second );
+		MultiReaderFactory.closeReader( first );
+		IndexReader third = cache.openReader( indexManagers );
+		assertSame( "the cache keeps the MultiReader open", first, third );
+		assertTrue( first.getRefCount() > 0 );
+
+		indexBook( 1L, "changed" );
+		IndexReader afterChange = cache.openReader( indexManagers );
+		assertNotSame( first, afterChange );
+		assertTrue( "still used by a query", first.getRefCount() > 0 );
+		MultiReaderFactory.closeReader( third );
+		assertEquals( "replaced and released", 0, first.getRefCount() );
+		MultiReaderFactory.closeReader( afterChange );
+	}
+
+	@Test
+	public void uncachedMultiReaderIsClosed() {
+		IndexReader reader = MultiReaderFactory.openReader( indexManagers );
+		IndexReader cached = cache.openReader( indexManagers );
+		assertNotSame( reader, cached );
+		MultiReaderFactory.closeReader( reader );
+		assertEquals( 0, reader.getRefCount() );
+		MultiReaderFactory.closeReader( cached );
+	}
+
+	@Test
+	public void changeReleasesCachedMultiReader() {
+		IndexReader cached = cache.openReader( indexManagers );
+		indexBook( 1L, "changed" );
+		assertTrue( "still used by a query", cached.getRefCount() > 0 );
+		MultiReaderFactory.closeReader( cached );
+		assertEquals( "evicted when the index changed", 0, cached.getRefCount() );
+	}
+
+	@Test
+	public void closingTheSearchFactoryReleasesCachedMultiReader() {
+		IndexReader cached = cache.openReader( indexManagers );
+		MultiReaderFactory.closeReader( cached );
+		assertTrue( cached.getRefCount() > 0 );
+		searchFactory.close();
+		assertEquals( 0, cached.getRefCount() );
+		searchFactory = null;
+	}
+
+	private void indexBook(long id, String title) {
+		ManualTransactionContext transaction = new ManualTransactionContext();
+		Book book = new Book( id, title );
+		searchFactory.getWorker().performWork( new Work<Book>( book, book.id, WorkType.ADD ), transaction );
+		transaction.end();
+	}
+
+	@Indexed
+	public static final class Book {
+
+		@DocumentId
+		final Long id;
+
+		@Field
+		final String title;
+
+		Book(Long id, String title) {
+			this.id = id;
+			this.title = title;
+		}
+	}
+
+	@Indexed
+	public static final class Author {
+
+		@DocumentId
+		Long id;
+
+		@Field
+		String name;
+	}
+
+}
@@ -0,0 +1,153 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.test.reader;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.FieldCache;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.util.ReaderUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.hibernate.search.Environment;
+import org.hibernate.search.annotations.Analyze;
+import org.hibernate.search.annotations.CacheFromIndex;
+import org.hibernate.search.annotations.DocumentId;
+import org.hibernate.search.annotations.Field;
+import org.hibernate.search.annotations.FieldCacheType;
+import org.hibernate.search.annotations.Indexed;
+import org.hibernate.search.backend.spi.Work;
+import org.hibernate.search.backend.spi.WorkType;
+import org.hibernate.search.spi.SearchFactoryBuilder;
+import org.hibernate.search.spi.SearchFactoryIntegrator;
+import org.hibernate.search.test.util.ManualConfiguration;
+import org.hibernate.search.test.util.ManualTransactionContext;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Verifies the built-in FieldCache warmer loads the FieldCaches needed by queries
+ * on the new segments, before the refreshed IndexReader is used.
+ *
+ * @author agent <agent@local>
+ */
+public class FieldCacheWarmerTest {
+
+	private SearchFactoryIntegrator searchFactory;
+
+	@Before
+	public void setUp() {
+		ManualConfiguration cfg = new ManualConfiguration();
+		cfg.addClass( Book.class );
+		cfg.addProperty( "hibernate.search.default.directory_provider", "ram" );
+		cfg.addProperty( "hibernate.search.default." + Environment.READER_WARMER, "fieldcache" );
+		searchFactory = new SearchFactoryBuilder().configuration( cfg ).buildSearchFactory();
+	}
+
+	@After
+	public void tearDown() {
+		searchFactory.close();
+	}
+
+	@Test
+	public void sortFieldsAreWarmedOnceUsedByQueries() {
+		index( 1L, "first" );
+		index( 2L, "second" );
+		assertFalse( allSegmentsCached( "title", FieldCache.StringIndex.class ) );
+
+		// loads the current segments and records the sort field
+		searchFactory.createHSQuery()
+				.luceneQuery( new MatchAllDocsQuery() )
+				.targetedEntities( Arrays.<Class<?>>asList( Book.class ) )
+				.sort( new Sort( new SortField( "title", SortField.STRING ) ) )
+				.queryEntityInfos();
+		index( 3L, "third" );
+		assertTrue( allSegmentsCached( "title", FieldCache.StringIndex.class ) );
+	}
+
+	@Test
+	public void idFieldIsWarmedWhenCachedFromIndex() {
+		index( 1L, "first" );
+		index( 2L, "second" );
+		assertTrue( allSegmentsCached( "id", String.class ) );
+	}
+
+	private boolean allSegmentsCached(String fieldName, Class<?> cacheType) {
+		IndexReader reader = searchFactory.getIndexReaderAccessor().open( Book.class );
+		try {
+			List<IndexReader> segments = new ArrayList<IndexReader>();
+			ReaderUtil.gatherSubReaders( segments, reader );
+			assertTrue( "each commit should add a segment", segments.size() > 1 );
+			for ( IndexReader segment : segments ) {
+				if ( !isCached( segment, fieldName, cacheType ) ) {
+					return false;
+				}
+			}
+			return true;
+		}
+		finally {
+			searchFactory.getIndexReaderAccessor().close( reader );
+		}
+	}
+
+	private static boolean isCached(IndexReader segment, String fieldName, Class<?> cacheType) {
+		for ( FieldCache.CacheEntry entry : FieldCache.DEFAULT.getCacheEntries() ) {
+			if ( entry.getReaderKey() == segment.getCoreCacheKey()
+					&& fieldName.equals( entry.getFieldName() )
+					&& cacheType.equals( entry.getCacheType() ) ) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void index(long id, String title) {
+		ManualTransactionContext transaction = new ManualTransactionContext();
+		Book book = new Book( id, title );
+		searchFactory.getWorker().performWork( new Work<Book>( book, book.id, WorkType.ADD ), transaction );
+		transaction.end();
+	}
+
+	@Indexed
+	@CacheFromIndex({ FieldCacheType.CLASS, FieldCacheType.ID })
+	public static final class Book {
+
+		@DocumentId
+		final Long id;
+
+		@Field(analyze = Analyze.NO)
+		final String title;
+
+		Book(Long id, String title) {
+			this.id = id;
+			this.title = title;
+		}
+	}
+
+}
@@ -59,4 +59,18 @@ public class ManualTransactionContext implements TransactionContext {
 			sync.afterCompletion( Status.STATUS_COMMITTED );
 		}
 	}
+
+	/**
+	 * Rolls back the transaction after the beforeCompletion phase, as when the commit fails.
+	 */
+	public void rollback() {
+		this.progress = false;
+		for (Synchronization sync : syncs) {
+			sync.beforeCompletion();
+		}
+
+		for (Synchronization sync : syncs) {
+			sync.afterCompletion( Status.STATUS_ROLLEDBACK );
+		}
+	}
 }
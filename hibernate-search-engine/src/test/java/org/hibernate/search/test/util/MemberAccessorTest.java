@@ -0,0 +1,118 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.test.util;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import org.hibernate.annotations.common.reflection.XClass;
+import org.hibernate.annotations.common.reflection.XProperty;
+import org.hibernate.annotations.common.reflection.java.JavaReflectionManager;
+import org.hibernate.search.util.impl.MemberAccessor;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Verifies that {@link MemberAccessor} reads the same member as <code>XMember#invoke</code>,
+ * also when a field and a getter share the property name.
+ *
+ * @author agent <agent@local>
+ */
+public class MemberAccessorTest {
+
+	@Test
+	public void fieldAccessReadsTheField() {
+		Person person = new Person( "Emmanuel", true );
+		assertEquals( "Emmanuel", read( person, XClass.ACCESS_FIELD, "name" ) );
+		assertEquals( Boolean.TRUE, read( person, XClass.ACCESS_FIELD, "active" ) );
+	}
+
+	@Test
+	public void propertyAccessReadsTheGetter() {
+		Person person = new Person( "Emmanuel", true );
+		assertEquals( "EMMANUEL", read( person, XClass.ACCESS_PROPERTY, "name" ) );
+		assertEquals( Boolean.FALSE, read( person, XClass.ACCESS_PROPERTY, "active" ) );
+	}
+
+	@Test
+	public void getterOfTheSuperclassIsResolvedOnTheDeclaringClass() {
+		Employee employee = new Employee( "Sanne", true );
+		XClass personClass = new JavaReflectionManager().toXClass( Person.class );
+		XProperty property = findProperty( personClass, XClass.ACCESS_PROPERTY, "name" );
+		MemberAccessor accessor = MemberAccessor.forProperty( property, Person.class, XClass.ACCESS_PROPERTY );
+		// the getter is invoked virtually, as XMember#invoke does
+		assertEquals( "Employee SANNE", accessor.getValue( employee ) );
+		assertEquals( property.invoke( employee ), accessor.getValue( employee ) );
+	}
+
+	private static Object read(Person person, String accessType, String propertyName) {
+		XClass personClass = new JavaReflectionManager().toXClass( Person.class );
+		XProperty property = findProperty( personClass, accessType, propertyName );
+		property.setAccessible( true );
+		MemberAccessor accessor = MemberAccessor.forProperty( property, Person.class, accessType );
+		Object value = accessor.getValue( person );
+		assertEquals( property.invoke( person ), value );
+		return value;
+	}
+
+	private static XProperty findProperty(XClass xClass, String accessType, String propertyName) {
+		List<XProperty> properties = xClass.getDeclaredProperties( accessType );
+		for ( XProperty property : properties ) {
+			if ( property.getName().equals( propertyName ) ) {
+				return property;
+			}
+		}
+		throw new AssertionError( "No property " + propertyName + " with access type " + accessType );
+	}
+
+	public static class Person {
+
+		private String name;
+		private boolean active;
+
+		Person(String name, boolean active) {
+			this.name = name;
+			this.active = active;
+		}
+
+		public String getName() {
+			return name.toUpperCase();
+		}
+
+		public boolean isActive() {
+			return !active;
+		}
+	}
+
+	public static class Employee extends Person {
+
+		Employee(String name, boolean active) {
+			super( name, active );
+		}
+
+		@Override
+		public String getName() {
+			return "Employee " + super.getName();
+		}
+	}
+
+}
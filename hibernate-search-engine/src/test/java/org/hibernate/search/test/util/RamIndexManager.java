@@ -22,23 +22,13 @@ package org.hibernate.search.test.util;
 
 import java.util.Properties;
 
-import org.hibernate.search.engine.spi.SearchFactoryImplementor;
-import org.hibernate.search.exception.ErrorHandler;
-import org.hibernate.search.exception.impl.LogErrorHandler;
-import org.hibernate.search.impl.SimpleInitializer;
 import org.hibernate.search.indexes.impl.DirectoryBasedIndexManager;
-import org.hibernate.search.indexes.impl.IndexManagerHolder;
-import org.hibernate.search.spi.InstanceInitializer;
-import org.hibernate.search.spi.ServiceProvider;
-import org.hibernate.search.spi.WorkerBuildContext;
 
 /**
  * At this point mainly used for tests
  * @author Sanne Grinovero <sanne@hibernate.org> (C) 2011 Red Hat Inc.
  */
 public class RamIndexManager extends DirectoryBasedIndexManager {
-	
-	private static final LogErrorHandler logErrorHandler = new LogErrorHandler();
 
 	public static RamIndexManager makeRamDirectory() {
 		RamIndexManager ramIndexManager = new RamIndexManager();
@@ -47,52 +37,5 @@ public class RamIndexManager extends DirectoryBasedIndexManager {
 		ramIndexManager.initialize( "testIndex", properties, new EmptyWorkerBuildContext() );
 		return ramIndexManager;
 	}
-	
-	private static class EmptyWorkerBuildContext implements WorkerBuildContext {
-
-		@Override
-		public SearchFactoryImplementor getUninitializedSearchFactory() {
-			return null;
-		}
-
-		@Override
-		public String getIndexingStrategy() {
-			return null;
-		}
-
-		@Override
-		public <T> T requestService(Class<? extends ServiceProvider<T>> provider) {
-			return null;
-		}
-
-		@Override
-		public void releaseService(Class<? extends ServiceProvider<?>> provider) {
-		}
-
-		@Override
-		public IndexManagerHolder getAllIndexesManager() {
-			return null;
-		}
-
-		@Override
-		public ErrorHandler getErrorHandler() {
-			return logErrorHandler;
-		}
-
-		@Override
-		public boolean isTransactionManagerExpected() {
-			return false;
-		}
-
-		@Override
-		public InstanceInitializer getInstanceInitializer() {
-			return SimpleInitializer.INSTANCE;
-		}
-
-		@Override
-		public boolean isIndexMetadataComplete() {
-			return true;
-		}
-	}
 
 }
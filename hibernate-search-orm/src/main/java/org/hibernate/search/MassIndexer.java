@@ -26,6 +26,8 @@ package org.hibernate.search;
 import java.util.concurrent.Future;
 
 import org.hibernate.CacheMode;
+import org.hibernate.search.batchindexing.MassIndexerCheckpoint;
+import org.hibernate.search.batchindexing.MassIndexerCheckpointStore;
 import org.hibernate.search.batchindexing.MassIndexerProgressMonitor;
 
 /**
@@ -41,21 +43,61 @@ public interface MassIndexer {
 	/**
 	 * Set the number of threads to be used to load
 	 * the root entities.
+	 * These threads and the ones set by {@link #threadsForSubsequentFetching(int)}
+	 * form a single pool: this is only the initial split, as idle threads move to
+	 * the slowest stage while indexing.
 	 * @param numberOfThreads
 	 * @return <tt>this</tt> for method chaining
 	 */
 	MassIndexer threadsToLoadObjects(int numberOfThreads);
 	
+	/**
+	 * Set the number of threads to be used to scroll the primary keys
+	 * of each root entity. When more than one thread is used, the primary
+	 * keys are split in contiguous ranges scrolled concurrently: integral keys
+	 * are split between their minimum and maximum value, other keys on boundaries
+	 * sampled from the database. Composite keys are never split.
+	 * Defaults to 1, which scrolls all primary keys in a single transaction.
+	 * @param numberOfThreads
+	 * @return <tt>this</tt> for method chaining
+	 */
+	MassIndexer threadsToLoadIdentifiers(int numberOfThreads);
+	
 	/**
 	 * Sets the batch size used to load the root entities.
 	 * @param batchSize
 	 * @return <tt>this</tt> for method chaining
 	 */
 	MassIndexer batchSizeToLoadObjects(int batchSize);
+
+	/**
+	 * Sets the smallest batch size used to load the root entities when
+	 * {@link #targetLoadingLatency(long)} is set. Defaults to 1.
+	 * @param batchSize
+	 * @return <tt>this</tt> for method chaining
+	 */
+	MassIndexer minBatchSizeToLoadObjects(int batchSize);
+
+	/**
+	 * Adapts the loading of the root entities to keep the time the database takes to load
+	 * each batch close to the given target, so that indexing doesn't starve other applications
+	 * using the database. Loading starts with one thread and the batch size set by
+	 * {@link #minBatchSizeToLoadObjects(int)}, and grows up to the values set by
+	 * {@link #threadsToLoadObjects(int)} and {@link #batchSizeToLoadObjects(int)} while the
+	 * latency is below the target; fewer threads load entities when the indexing can't keep up.
+	 * Adjustments are notified to the progress monitor if it implements
+	 * {@link org.hibernate.search.batchindexing.MassIndexerStageProgressMonitor}.
+	 * Defaults to 0, which keeps the configured settings fixed.
+	 * @param milliseconds the target time to load a batch of entities
+	 * @return <tt>this</tt> for method chaining
+	 */
+	MassIndexer targetLoadingLatency(long milliseconds);
 	
 	/**
 	 * Sets the number of threads used to load the lazy collections
 	 * related to the indexed entities.
+	 * This is the initial number of threads building Documents, see
+	 * {@link #threadsToLoadObjects(int)}.
 	 * @param numberOfThreads
 	 * @return <tt>this</tt> for method chaining
 	 */
@@ -150,4 +192,66 @@ public interface MassIndexer {
 	 */
 	public MassIndexer idFetchSize(int idFetchSize);
 
+	/**
+	 * Enables checkpoints: the indexes are periodically committed and the progress
+	 * of each entity type is stored, so that an interrupted indexing process
+	 * can continue with {@link #resumeFrom(MassIndexerCheckpoint)}.
+	 * Primary keys are loaded in ascending order to define the progress, except for
+	 * composite keys: the progress of such types is only recorded when completed.
+	 * The checkpoint is removed from the store when all entities are indexed.
+	 * @param checkpointStore where checkpoints are stored, for example a
+	 * {@link org.hibernate.search.batchindexing.FileMassIndexerCheckpointStore}
+	 * @return <tt>this</tt> for method chaining
+	 */
+	MassIndexer checkpointStore(MassIndexerCheckpointStore checkpointStore);
+
+	/**
+	 * Sets the interval between checkpoints, when a checkpoint store is set.
+	 * Each checkpoint commits the indexes. Defaults to 60 seconds.
+	 * @param milliseconds
+	 * @return <tt>this</tt> for method chaining
+	 */
+	MassIndexer checkpointInterval(long milliseconds);
+
+	/**
+	 * Continues an interrupted indexing process: entity types and ranges of primary keys
+	 * completed in the checkpoint are skipped, the others continue after the last indexed
+	 * primary key. Entities are updated rather than added, as they might have been indexed
+	 * after the checkpoint was taken. <tt>purgeAllOnStart</tt> is ignored, and primary keys
+	 * are split in the same ranges as recorded in the checkpoint.
+	 * @param checkpoint the checkpoint to resume from, for example as loaded from a
+	 * {@link MassIndexerCheckpointStore}; if null the indexing starts from scratch
+	 * @return <tt>this</tt> for method chaining
+	 */
+	MassIndexer resumeFrom(MassIndexerCheckpoint checkpoint);
+
+	/**
+	 * Rebuilds the indexes in side directories, tuned for bulk loading, rather than in the
+	 * live indexes: queries keep using the old index content during the whole process, until
+	 * the content of each index is atomically replaced by the rebuilt one at the end.
+	 * <tt>purgeAllOnStart</tt> and <tt>optimizeAfterPurge</tt> are ignored. Changes applied to
+	 * the live indexes while rebuilding are recorded, spilling them to disk beyond a threshold,
+	 * and applied again to the rebuilt content by the swap. When errors are reported
+	 * while rebuilding, the live indexes are kept and the side directories are discarded.
+	 * Only local Lucene indexes are supported, and each index must only contain
+	 * entity types being rebuilt. It can't be combined with {@link #checkpointStore(MassIndexerCheckpointStore)}
+	 * or {@link #resumeFrom(MassIndexerCheckpoint)}: the changes applied to the live indexes before
+	 * an interruption would be lost, so an interrupted rebuild needs to start over. Disabled by default.
+	 * @param enabled
+	 * @return <tt>this</tt> for method chaining
+	 */
+	MassIndexer rebuildInSideDirectory(boolean enabled);
+
+	/**
+	 * Gives each thread building documents its own IndexWriter, writing segments to a
+	 * private temporary directory, rather than sharing the IndexWriter of each index.
+	 * The segments are added to the indexes at each checkpoint and at the end, so
+	 * indexing scales better with the number of threads at the cost of temporary disk space.
+	 * The RAM buffer used to bulk load each index is divided among the threads.
+	 * Only local Lucene indexes are supported. Disabled by default.
+	 * @param enabled
+	 * @return <tt>this</tt> for method chaining
+	 */
+	MassIndexer parallelIndexWriters(boolean enabled);
+
 }
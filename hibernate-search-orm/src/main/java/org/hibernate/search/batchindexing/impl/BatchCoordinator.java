@@ -23,18 +23,25 @@
  */
 package org.hibernate.search.batchindexing.impl;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.hibernate.search.engine.spi.SearchFactoryImplementor;
-import org.hibernate.search.exception.ErrorHandler;
 import org.hibernate.search.util.logging.impl.Log;
 
 import org.hibernate.CacheMode;
 import org.hibernate.SessionFactory;
+import org.hibernate.search.SearchException;
 import org.hibernate.search.backend.PurgeAllLuceneWork;
 import org.hibernate.search.backend.impl.batch.BatchBackend;
+import org.hibernate.search.backend.impl.batch.ParallelWritersBatchBackend;
+import org.hibernate.search.backend.impl.batch.SideDirectoryBatchBackend;
+import org.hibernate.search.batchindexing.MassIndexerCheckpoint;
+import org.hibernate.search.batchindexing.MassIndexerCheckpointStore;
 import org.hibernate.search.batchindexing.MassIndexerProgressMonitor;
 import org.hibernate.search.util.logging.impl.LoggerFactory;
 
@@ -42,6 +49,10 @@ import org.hibernate.search.util.logging.impl.LoggerFactory;
  * Makes sure that several different BatchIndexingWorkspace(s)
  * can be started concurrently, sharing the same batch-backend
  * and IndexWriters.
+ * When a {@link MassIndexerCheckpointStore} is set, it also periodically
+ * commits the indexes and records the progress of each type in a checkpoint.
+ * When rebuilding in side directories, the live indexes are only modified
+ * at the end, replacing their content with the rebuilt one.
  *
  * @author Sanne Grinovero
  */
@@ -52,62 +63,138 @@ public class BatchCoordinator implements Runnable {
 	private final Class<?>[] rootEntities; //entity types to reindex excluding all subtypes of each-other
 	private final SearchFactoryImplementor searchFactoryImplementor;
 	private final SessionFactory sessionFactory;
+	private final int identifierLoadingThreads;
 	private final int objectLoadingThreads;
 	private final int collectionLoadingThreads;
 	private final CacheMode cacheMode;
 	private final int objectLoadingBatchSize;
+	private final int minObjectLoadingBatchSize;
+	private final long targetLoadingLatency;
 	private final boolean optimizeAtEnd;
 	private final boolean purgeAtStart;
 	private final boolean optimizeAfterPurge;
 	private final CountDownLatch endAllSignal;
 	private final MassIndexerProgressMonitor monitor;
 	private final long objectsLimit;
-	private final ErrorHandler errorHandler;
+	private final CountingErrorHandler errorHandler;
 	private final int idFetchSize;
+	private final MassIndexerCheckpointStore checkpointStore;
+	private final long checkpointInterval;
+	private final MassIndexerCheckpoint resumeFrom;
+	private final boolean rebuildInSideDirectory;
+	private final boolean parallelIndexWriters;
+	private final Map<Class<?>, IndexingProgressTracker> trackers = new HashMap<Class<?>, IndexingProgressTracker>();
 
 	public BatchCoordinator(Set<Class<?>> rootEntities,
 							SearchFactoryImplementor searchFactoryImplementor,
 							SessionFactory sessionFactory,
+							int identifierLoadingThreads,
 							int objectLoadingThreads,
 							int collectionLoadingThreads,
 							CacheMode cacheMode,
 							int objectLoadingBatchSize,
+							int minObjectLoadingBatchSize,
+							long targetLoadingLatency,
 							long objectsLimit,
 							boolean optimizeAtEnd,
 							boolean purgeAtStart,
 							boolean optimizeAfterPurge,
 							MassIndexerProgressMonitor monitor,
-							int idFetchSize) {
+							int idFetchSize,
+							MassIndexerCheckpointStore checkpointStore,
+							long checkpointInterval,
+							MassIndexerCheckpoint resumeFrom,
+							boolean rebuildInSideDirectory,
+							boolean parallelIndexWriters) {
 		this.idFetchSize = idFetchSize;
+		this.checkpointStore = checkpointStore;
+		this.checkpointInterval = checkpointInterval;
+		this.resumeFrom = resumeFrom;
+		this.rebuildInSideDirectory = rebuildInSideDirectory;
+		this.parallelIndexWriters = parallelIndexWriters;
 		this.rootEntities = rootEntities.toArray( new Class<?>[rootEntities.size()] );
 		this.searchFactoryImplementor = searchFactoryImplementor;
 		this.sessionFactory = sessionFactory;
+		this.identifierLoadingThreads = identifierLoadingThreads;
 		this.objectLoadingThreads = objectLoadingThreads;
 		this.collectionLoadingThreads = collectionLoadingThreads;
 		this.cacheMode = cacheMode;
 		this.objectLoadingBatchSize = objectLoadingBatchSize;
+		this.minObjectLoadingBatchSize = minObjectLoadingBatchSize;
+		this.targetLoadingLatency = targetLoadingLatency;
 		this.optimizeAtEnd = optimizeAtEnd;
 		this.purgeAtStart = purgeAtStart;
 		this.optimizeAfterPurge = optimizeAfterPurge;
 		this.monitor = monitor;
 		this.objectsLimit = objectsLimit;
-		this.endAllSignal = new CountDownLatch( rootEntities.size() );
-		this.errorHandler = searchFactoryImplementor.getErrorHandler();
+		for ( Class<?> type : rootEntities ) {
+			if ( resumeFrom != null && resumeFrom.isCompleted( type ) ) {
+				continue;
+			}
+			int partitions = identifierLoadingThreads;
+			if ( resumeFrom != null && resumeFrom.contains( type ) ) {
+				log.resumingMassIndexing( type.getName() );
+				// the ranges of identifiers must not change when resuming
+				partitions = resumeFrom.getRangeCount( type );
+			}
+			trackers.put( type, new IndexingProgressTracker( type, partitions, checkpointStore != null, resumeFrom ) );
+		}
+		this.endAllSignal = new CountDownLatch( trackers.size() );
+		this.errorHandler = new CountingErrorHandler( searchFactoryImplementor.getErrorHandler() );
 	}
 
 	public void run() {
 		try {
-			final BatchBackend backend = searchFactoryImplementor.makeBatchBackend( monitor );
+			final Set<Class<?>> targetedClasses = searchFactoryImplementor.getIndexedTypesPolymorphic( rootEntities );
+			BatchBackend backend;
+			SideDirectoryBatchBackend sideDirectoryBackend = null;
+			ParallelWritersBatchBackend parallelWritersBackend = null;
+			if ( rebuildInSideDirectory ) {
+				// never combined with checkpoints: see MassIndexerImpl
+				sideDirectoryBackend = new SideDirectoryBatchBackend( searchFactoryImplementor, monitor, targetedClasses );
+				backend = sideDirectoryBackend;
+			}
+			else {
+				backend = searchFactoryImplementor.makeBatchBackend( monitor );
+			}
 			try {
+				if ( parallelIndexWriters ) {
+					// each type is indexed concurrently by its own threads
+					int writerThreads = trackers.size() * ( objectLoadingThreads + collectionLoadingThreads );
+					parallelWritersBackend = new ParallelWritersBatchBackend(
+							searchFactoryImplementor, monitor, targetedClasses, backend, writerThreads
+					);
+					backend = parallelWritersBackend;
+				}
 				beforeBatch( backend ); // purgeAll and pre-optimize activities
 				doBatchWork( backend );
 				afterBatch( backend );
+				if ( sideDirectoryBackend != null ) {
+					int errorCount = errorHandler.getErrorCount();
+					if ( errorCount == 0 ) {
+						sideDirectoryBackend.swapIndexes();
+					}
+					else {
+						// some entities are missing from the rebuilt indexes
+						log.sideDirectoriesDiscardedAfterErrors( errorCount );
+					}
+				}
+				if ( checkpointStore != null ) {
+					completeCheckpoint(); // the indexes were committed by afterBatch
+				}
 			}
 			catch ( InterruptedException e ) {
 				log.interruptedBatchIndexing();
 				Thread.currentThread().interrupt();
 			}
 			finally {
+				if ( parallelWritersBackend != null ) {
+					parallelWritersBackend.close();
+				}
+				if ( sideDirectoryBackend != null ) {
+					// deletes the side directories not swapped
+					sideDirectoryBackend.close();
+				}
 				monitor.indexingCompleted();
 			}
 		} catch (RuntimeException re) {
@@ -126,19 +213,77 @@ public class BatchCoordinator implements Runnable {
 	 * @throws InterruptedException if interrupted while waiting for endAllSignal.
 	 */
 	private void doBatchWork(BatchBackend backend) throws InterruptedException {
-		ExecutorService executor = Executors.newFixedThreadPool( rootEntities.length, "BatchIndexingWorkspace" );
-		for ( Class<?> type : rootEntities ) {
+		if ( trackers.isEmpty() ) {
+			return;
+		}
+		ExecutorService executor = Executors.newFixedThreadPool( trackers.size(), "BatchIndexingWorkspace" );
+		for ( Map.Entry<Class<?>, IndexingProgressTracker> entry : trackers.entrySet() ) {
+			IndexingProgressTracker tracker = entry.getValue();
 			executor.execute(
 					new BatchIndexingWorkspace(
-							searchFactoryImplementor, sessionFactory, type,
-							objectLoadingThreads, collectionLoadingThreads,
-							cacheMode, objectLoadingBatchSize, endAllSignal,
-							monitor, backend, objectsLimit, idFetchSize
+							searchFactoryImplementor, sessionFactory, entry.getKey(),
+							tracker.getPartitions(), objectLoadingThreads, collectionLoadingThreads,
+							cacheMode, objectLoadingBatchSize, minObjectLoadingBatchSize,
+							targetLoadingLatency, endAllSignal,
+							monitor, backend, errorHandler, objectsLimit, idFetchSize, tracker
 					)
 			);
 		}
 		executor.shutdown();
-		endAllSignal.await(); //waits for the executor to finish
+		if ( checkpointStore == null ) {
+			endAllSignal.await(); //waits for the executor to finish
+		}
+		else {
+			while ( !endAllSignal.await( checkpointInterval, TimeUnit.MILLISECONDS ) ) {
+				storeCheckpoint( backend );
+			}
+		}
+	}
+
+	/**
+	 * Records the progress of all types and commits the indexes before storing it,
+	 * so that the checkpoint never includes entities not committed to the index.
+	 * @param backend
+	 */
+	private void storeCheckpoint(BatchBackend backend) {
+		MassIndexerCheckpoint checkpoint = createCheckpoint();
+		backend.flush( searchFactoryImplementor.getIndexedTypesPolymorphic( rootEntities ) );
+		try {
+			checkpointStore.store( checkpoint );
+			log.debugf( "Stored MassIndexer checkpoint %s", checkpoint );
+		}
+		catch (SearchException e) {
+			errorHandler.handleException( e.getMessage(), e );
+		}
+	}
+
+	/**
+	 * Stores the final checkpoint, or removes it if all types were indexed.
+	 */
+	private void completeCheckpoint() {
+		MassIndexerCheckpoint checkpoint = createCheckpoint();
+		try {
+			for ( Class<?> type : rootEntities ) {
+				if ( !checkpoint.isCompleted( type ) ) {
+					checkpointStore.store( checkpoint );
+					return;
+				}
+			}
+			checkpointStore.clear();
+		}
+		catch (SearchException e) {
+			errorHandler.handleException( e.getMessage(), e );
+		}
+	}
+
+	private MassIndexerCheckpoint createCheckpoint() {
+		MassIndexerCheckpoint checkpoint = resumeFrom == null ?
+				new MassIndexerCheckpoint() :
+				new MassIndexerCheckpoint( resumeFrom );
+		for ( IndexingProgressTracker tracker : trackers.values() ) {
+			tracker.recordProgress( checkpoint );
+		}
+		return checkpoint;
 	}
 
 	/**
@@ -158,7 +303,7 @@ public class BatchCoordinator implements Runnable {
 	 * @param backend
 	 */
 	private void beforeBatch(BatchBackend backend) {
-		if ( this.purgeAtStart ) {
+		if ( this.purgeAtStart && resumeFrom == null && !rebuildInSideDirectory ) {
 			//purgeAll for affected entities
 			Set<Class<?>> targetedClasses = searchFactoryImplementor.getIndexedTypesPolymorphic( rootEntities );
 			for ( Class<?> clazz : targetedClasses ) {
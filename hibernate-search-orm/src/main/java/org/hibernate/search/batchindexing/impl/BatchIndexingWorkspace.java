@@ -33,6 +33,7 @@ import org.hibernate.SessionFactory;
 import org.hibernate.search.SearchException;
 import org.hibernate.search.backend.impl.batch.BatchBackend;
 import org.hibernate.search.batchindexing.MassIndexerProgressMonitor;
+import org.hibernate.search.engine.spi.DocumentBuilderIndexedEntity;
 import org.hibernate.search.engine.spi.SearchFactoryImplementor;
 import org.hibernate.search.exception.ErrorHandler;
 import org.hibernate.search.util.logging.impl.Log;
@@ -40,7 +41,9 @@ import org.hibernate.search.util.logging.impl.LoggerFactory;
 
 /**
  * This runnable will prepare a pipeline for batch indexing
- * of entities, managing the lifecycle of several ThreadPools.
+ * of entities, managing the lifecycle of its ThreadPools.
+ * Entity loading and Document building share the same pool of workers,
+ * which a {@link StageScheduler} assigns to the slowest stage.
  *
  * @author Sanne Grinovero
  */
@@ -51,17 +54,17 @@ public class BatchIndexingWorkspace implements Runnable {
 	private final SearchFactoryImplementor searchFactory;
 	private final SessionFactory sessionFactory;
 
-	//following order shows the 4 stages of an entity flowing to the index:
+	//following order shows the stages of an entity flowing to the index:
 	private final ThreadPoolExecutor execIdentifiersLoader;
 	private final ProducerConsumerQueue<List<Serializable>> fromIdentifierListToEntities;
-	private final ThreadPoolExecutor execFirstLoader;
-	private final ProducerConsumerQueue<List<?>> fromEntityToAddwork;
-	private final ThreadPoolExecutor execDocBuilding;
+	private final ThreadPoolExecutor execIndexingWorkers;
 
+	private final int identifierLoadingThreadNum;
 	private final int objectLoadingThreadNum;
 	private final int luceneWorkerBuildingThreadNum;
 	private final Class<?> indexedType;
 	private final String idNameOfIndexedType;
+	private final EntityFetchPlan fetchPlan;
 
 	// status control
 	private final CountDownLatch producerEndSignal; //released when we stop adding Documents to Index 
@@ -72,98 +75,120 @@ public class BatchIndexingWorkspace implements Runnable {
 
 	// loading options
 	private final CacheMode cacheMode;
-	private final int objectLoadingBatchSize;
+	private final LoadingThrottle throttle;
 
 	private final BatchBackend backend;
 
+	private final ErrorHandler errorHandler;
+
 	private final long objectsLimit;
 
 	private final int idFetchSize;
 
+	private final IndexingProgressTracker tracker;
+
 	public BatchIndexingWorkspace(SearchFactoryImplementor searchFactoryImplementor,
 								  SessionFactory sessionFactory,
 								  Class<?> entityType,
+								  int identifierLoadingThreads,
 								  int objectLoadingThreads,
 								  int collectionLoadingThreads,
 								  CacheMode cacheMode,
 								  int objectLoadingBatchSize,
+								  int minObjectLoadingBatchSize,
+								  long targetLoadingLatency,
 								  CountDownLatch endAllSignal,
 								  MassIndexerProgressMonitor monitor,
 								  BatchBackend backend,
+								  ErrorHandler errorHandler,
 								  long objectsLimit,
-								  int idFetchSize) {
+								  int idFetchSize,
+								  IndexingProgressTracker tracker) {
 
 		this.indexedType = entityType;
 		this.idFetchSize = idFetchSize;
-		this.idNameOfIndexedType = searchFactoryImplementor.getIndexBindingForEntity( entityType )
-				.getDocumentBuilder()
-				.getIdentifierName();
+		this.tracker = tracker;
+		DocumentBuilderIndexedEntity<?> documentBuilder = searchFactoryImplementor.getIndexBindingForEntity( entityType )
+				.getDocumentBuilder();
+		this.idNameOfIndexedType = documentBuilder.getIdentifierName();
+		this.fetchPlan = EntityFetchPlan.forIndexedType(
+				sessionFactory, entityType, idNameOfIndexedType, documentBuilder.getMetadata()
+		);
 		this.searchFactory = searchFactoryImplementor;
 		this.sessionFactory = sessionFactory;
 
 		//thread pool sizing:
+		this.identifierLoadingThreadNum = identifierLoadingThreads;
 		this.objectLoadingThreadNum = objectLoadingThreads;
 		this.luceneWorkerBuildingThreadNum = collectionLoadingThreads;//collections are loaded as needed by building the document
 
 		//loading options:
 		this.cacheMode = cacheMode;
-		this.objectLoadingBatchSize = objectLoadingBatchSize;
+		this.throttle = new LoadingThrottle(
+				entityType, monitor, targetLoadingLatency,
+				objectLoadingThreads, minObjectLoadingBatchSize, objectLoadingBatchSize
+		);
 		this.backend = backend;
+		this.errorHandler = errorHandler;
 
 		//executors: (quite expensive constructor)
-		//execIdentifiersLoader has size 1 and is not configurable: ensures the list is consistent as produced by one transaction
-		this.execIdentifiersLoader = Executors.newFixedThreadPool( 1, "identifierloader" );
-		this.execFirstLoader = Executors.newFixedThreadPool( objectLoadingThreadNum, "entityloader" );
-		this.execDocBuilding = Executors.newFixedThreadPool( luceneWorkerBuildingThreadNum, "collectionsloader" );
+		//execIdentifiersLoader has size 1 by default: ensures the list is consistent as produced by one transaction
+		this.execIdentifiersLoader = Executors.newFixedThreadPool( identifierLoadingThreadNum, "identifierloader" );
+		this.execIndexingWorkers = Executors.newFixedThreadPool( objectLoadingThreadNum + luceneWorkerBuildingThreadNum, "entityindexer" );
 
-		//pipelining queues:
-		this.fromIdentifierListToEntities = new ProducerConsumerQueue<List<Serializable>>( 1 );
-		this.fromEntityToAddwork = new ProducerConsumerQueue<List<?>>( objectLoadingThreadNum );
+		//pipelining queue:
+		this.fromIdentifierListToEntities = new ProducerConsumerQueue<List<Serializable>>( identifierLoadingThreadNum );
 
 		//end signal shared with other instances:
 		this.endAllSignal = endAllSignal;
-		this.producerEndSignal = new CountDownLatch( luceneWorkerBuildingThreadNum );
+		this.producerEndSignal = new CountDownLatch( objectLoadingThreadNum + luceneWorkerBuildingThreadNum );
 
 		this.monitor = monitor;
 		this.objectsLimit = objectsLimit;
 	}
 
 	public void run() {
-		ErrorHandler errorHandler = searchFactory.getErrorHandler();
 		try {
 
-			//first start the consumers, then the producers (reverse order):
-			for ( int i = 0; i < luceneWorkerBuildingThreadNum; i++ ) {
-				//from entity to LuceneWork:
-				final EntityConsumerLuceneWorkProducer producer = new EntityConsumerLuceneWorkProducer(
-						fromEntityToAddwork, monitor,
+			//first start the consumers, then the producer (reverse order):
+			final int workers = objectLoadingThreadNum + luceneWorkerBuildingThreadNum;
+			final StageScheduler scheduler = new StageScheduler(
+					indexedType, fromIdentifierListToEntities, monitor,
+					workers, luceneWorkerBuildingThreadNum, throttle
+			);
+			for ( int i = 0; i < workers; i++ ) {
+				//from primary key to loaded entity to LuceneWork:
+				final EntityIndexingWorker worker = new EntityIndexingWorker(
+						scheduler, monitor,
 						sessionFactory, producerEndSignal, searchFactory,
-						cacheMode, backend, errorHandler
+						cacheMode, indexedType, idNameOfIndexedType, fetchPlan,
+						backend, errorHandler, tracker
 				);
-				execDocBuilding.execute( new OptionallyWrapInJTATransaction( sessionFactory, errorHandler, producer ) );
+				execIndexingWorkers.execute( new OptionallyWrapInJTATransaction( sessionFactory, errorHandler, worker ) );
 			}
-			for ( int i = 0; i < objectLoadingThreadNum; i++ ) {
-				//from primary key to loaded entity:
-				final IdentifierConsumerEntityProducer producer = new IdentifierConsumerEntityProducer(
-						fromIdentifierListToEntities, fromEntityToAddwork, monitor,
-						sessionFactory, cacheMode, indexedType, idNameOfIndexedType, errorHandler
+			//from class definition to all primary keys, split in ranges:
+			final IdentifierRanges ranges = new IdentifierRanges(
+					sessionFactory, indexedType, idNameOfIndexedType,
+					identifierLoadingThreadNum, objectsLimit, idFetchSize,
+					tracker.getResumedBoundaries()
+			);
+			tracker.trackRanges( ranges );
+			for ( int i = 0; i < identifierLoadingThreadNum; i++ ) {
+				final IdentifierProducer producer = new IdentifierProducer(
+						fromIdentifierListToEntities, sessionFactory,
+						throttle, indexedType, monitor,
+						objectsLimit, errorHandler, idFetchSize,
+						ranges, i, tracker, scheduler
 				);
-				execFirstLoader.execute( new OptionallyWrapInJTATransaction( sessionFactory, errorHandler, producer ) );
+				execIdentifiersLoader.execute( new OptionallyWrapInJTATransaction( sessionFactory, errorHandler, producer ) );
 			}
-			//from class definition to all primary keys:
-			final IdentifierProducer producer = new IdentifierProducer(
-					fromIdentifierListToEntities, sessionFactory,
-					objectLoadingBatchSize, indexedType, monitor,
-					objectsLimit, errorHandler, idFetchSize
-			);
-			execIdentifiersLoader.execute( new OptionallyWrapInJTATransaction( sessionFactory, errorHandler, producer ) );
 
 			//shutdown all executors:
 			execIdentifiersLoader.shutdown();
-			execFirstLoader.shutdown();
-			execDocBuilding.shutdown();
+			execIndexingWorkers.shutdown();
 			try {
 				producerEndSignal.await(); //await for all work being sent to the backend
+				scheduler.workCompleted();
 				log.debugf( "All work for type %s has been produced", indexedType.getName() );
 			}
 			catch ( InterruptedException e ) {
@@ -0,0 +1,62 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.batchindexing.impl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hibernate.search.exception.ErrorContext;
+import org.hibernate.search.exception.ErrorHandler;
+
+/**
+ * Counts the errors reported during mass indexing, delegating their handling
+ * to the ErrorHandler of the SearchFactory.
+ *
+ * @author agent <agent@local>
+ */
+public class CountingErrorHandler implements ErrorHandler {
+
+	private final ErrorHandler delegate;
+	private final AtomicInteger errorCount = new AtomicInteger();
+
+	public CountingErrorHandler(ErrorHandler delegate) {
+		this.delegate = delegate;
+	}
+
+	@Override
+	public void handle(ErrorContext context) {
+		errorCount.incrementAndGet();
+		delegate.handle( context );
+	}
+
+	@Override
+	public void handleException(String errorMsg, Throwable exception) {
+		errorCount.incrementAndGet();
+		delegate.handleException( errorMsg, exception );
+	}
+
+	/**
+	 * @return the number of errors reported so far
+	 */
+	public int getErrorCount() {
+		return errorCount.get();
+	}
+
+}
@@ -0,0 +1,385 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.batchindexing.impl;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.hibernate.Criteria;
+import org.hibernate.FetchMode;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.criterion.CriteriaSpecification;
+import org.hibernate.criterion.Restrictions;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.metadata.ClassMetadata;
+import org.hibernate.search.engine.BoostStrategy;
+import org.hibernate.search.engine.impl.DefaultBoostStrategy;
+import org.hibernate.search.engine.spi.AbstractDocumentBuilder.PropertiesMetadata;
+import org.hibernate.search.util.impl.HibernateHelper;
+import org.hibernate.search.util.logging.impl.Log;
+import org.hibernate.search.util.logging.impl.LoggerFactory;
+import org.hibernate.type.CollectionType;
+import org.hibernate.type.CompositeType;
+import org.hibernate.type.EntityType;
+import org.hibernate.type.Type;
+
+/**
+ * The associations to fetch together with each batch of entities loaded by the MassIndexer,
+ * derived from the {@code @IndexedEmbedded} metadata of the indexed type. Without it each
+ * embedded association is loaded lazily while building the Document, one query per entity
+ * and association.
+ * To-one associations are fetched by outer joins in the query loading the entities;
+ * each collection is then initialized by one query per batch joining only that collection,
+ * to avoid cartesian products among collections. Collections of the elements of a collection
+ * are initialized the same way by querying the elements.
+ * As loaded entities are detached from the Session, and only the indexed entity is attached
+ * again to build its Document, an association is fetched only when the index metadata
+ * describes all the state needed to index it: associations using class bridges, discriminators,
+ * dynamic boosts or fields not mapped as basic Hibernate properties are still loaded lazily.
+ *
+ * @author agent <agent@local>
+ */
+public class EntityFetchPlan {
+
+	private static final Log log = LoggerFactory.make();
+
+	/**
+	 * Maximum number of identifiers in the IN clause of a query initializing a collection
+	 */
+	private static final int MAX_IDS_PER_QUERY = 500;
+
+	private final SessionFactoryImplementor factory;
+	private final String entityName;
+	private final String idName;
+	private final List<String> joinPaths = new ArrayList<String>();
+	private final List<CollectionFetch> collectionFetches = new ArrayList<CollectionFetch>();
+
+	private EntityFetchPlan(SessionFactoryImplementor factory, String entityName, String idName) {
+		this.factory = factory;
+		this.entityName = entityName;
+		this.idName = idName;
+	}
+
+	/**
+	 * @param sessionFactory the SessionFactory loading the entities
+	 * @param indexedType the type of the loaded entities
+	 * @param idName the name of the identifier property used to load the entities
+	 * @param metadata the index metadata of the indexed type
+	 *
+	 * @return the plan to fetch the embedded associations of the indexed type
+	 */
+	public static EntityFetchPlan forIndexedType(SessionFactory sessionFactory, Class<?> indexedType,
+			String idName, PropertiesMetadata metadata) {
+		SessionFactoryImplementor factory = (SessionFactoryImplementor) sessionFactory;
+		ClassMetadata classMetadata = factory.getClassMetadata( indexedType );
+		EntityFetchPlan plan = new EntityFetchPlan( factory, classMetadata.getEntityName(), idName );
+		Map<String, Type> properties = propertyTypes( classMetadata );
+		// the indexed entity is attached to the Session while building its Document:
+		// associations which can't be fetched are lazily loaded as before
+		for ( int i = 0; i < metadata.embeddedGetters.size(); i++ ) {
+			plan.addEmbedded(
+					metadata.embeddedGetters.get( i ).getName(),
+					metadata.embeddedPropertiesMetadata.get( i ),
+					properties
+			);
+		}
+		log.debugf( "MassIndexer fetch plan for %s: %s", indexedType.getName(), plan );
+		return plan;
+	}
+
+	/**
+	 * @return the to-one association paths to fetch by joins in the query loading the entities
+	 */
+	public List<String> getJoinPaths() {
+		return joinPaths;
+	}
+
+	/**
+	 * Initializes the embedded collections of a batch of entities, and recursively the
+	 * collections of their elements. Must be invoked before the entities are detached.
+	 *
+	 * @param session the Session which loaded the entities
+	 * @param entities the loaded entities
+	 */
+	public void initializeCollections(Session session, List<?> entities) {
+		if ( collectionFetches.isEmpty() || entities.isEmpty() ) {
+			return;
+		}
+		List<Serializable> ids = new ArrayList<Serializable>( entities.size() );
+		for ( Object entity : entities ) {
+			ids.add( session.getIdentifier( entity ) );
+		}
+		for ( CollectionFetch fetch : collectionFetches ) {
+			for ( int from = 0; from < ids.size(); from += MAX_IDS_PER_QUERY ) {
+				List<Serializable> chunk = ids.subList( from, Math.min( from + MAX_IDS_PER_QUERY, ids.size() ) );
+				Criteria criteria = session
+						.createCriteria( entityName )
+						.setResultTransformer( CriteriaSpecification.DISTINCT_ROOT_ENTITY )
+						.add( Restrictions.in( idName, chunk ) );
+				for ( String path : fetch.fetchPaths ) {
+					criteria.setFetchMode( path, FetchMode.JOIN );
+				}
+				criteria.list();
+			}
+			if ( fetch.elementPlan != null ) {
+				fetch.elementPlan.initializeCollections( session, elementsOf( entities, fetch.path ) );
+			}
+		}
+	}
+
+	/**
+	 * Adds the fetches needed to index an embedded property of the entity.
+	 *
+	 * @return false if the property can't be fetched
+	 */
+	private boolean addEmbedded(String name, PropertiesMetadata metadata, Map<String, Type> properties) {
+		Type type = properties.get( name );
+		if ( type == null ) {
+			return false;
+		}
+		if ( type.isComponentType() ) {
+			return isSelfContained( (CompositeType) type, metadata );
+		}
+		if ( type.isEntityType() ) {
+			EntityFetchPlan target = detachedPlan( factory, ( (EntityType) type ).getAssociatedEntityName(), metadata );
+			if ( target == null ) {
+				return false;
+			}
+			joinPaths.add( name );
+			for ( String path : target.joinPaths ) {
+				joinPaths.add( name + '.' + path );
+			}
+			for ( CollectionFetch fetch : target.collectionFetches ) {
+				collectionFetches.add( fetch.under( name ) );
+			}
+			return true;
+		}
+		if ( type.isCollectionType() ) {
+			Type elementType = ( (CollectionType) type ).getElementType( factory );
+			List<String> fetchPaths = new ArrayList<String>();
+			fetchPaths.add( name );
+			EntityFetchPlan elementPlan = null;
+			if ( elementType.isEntityType() ) {
+				elementPlan = detachedPlan( factory, ( (EntityType) elementType ).getAssociatedEntityName(), metadata );
+				if ( elementPlan == null ) {
+					return false;
+				}
+				for ( String path : elementPlan.joinPaths ) {
+					fetchPaths.add( name + '.' + path );
+				}
+				if ( elementPlan.collectionFetches.isEmpty() ) {
+					elementPlan = null;
+				}
+				else if ( elementPlan.idName == null ) {
+					// the collections of the elements are initialized by a query on their identifiers
+					return false;
+				}
+			}
+			else if ( elementType.isAssociationType()
+					|| ( elementType.isComponentType() && !isSelfContained( (CompositeType) elementType, metadata ) ) ) {
+				return false;
+			}
+			collectionFetches.add( new CollectionFetch( name, fetchPaths, elementPlan ) );
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return the plan to fetch all the state needed to index an entity while detached from the
+	 * Session, or null if the index metadata doesn't describe all of it
+	 */
+	private static EntityFetchPlan detachedPlan(SessionFactoryImplementor factory, String entityName,
+			PropertiesMetadata metadata) {
+		ClassMetadata classMetadata = factory.getClassMetadata( entityName );
+		if ( classMetadata == null ) {
+			return null;
+		}
+		Map<String, Type> properties = propertyTypes( classMetadata );
+		if ( !hasOnlyBasicState( metadata, properties ) ) {
+			return null;
+		}
+		EntityFetchPlan plan = new EntityFetchPlan( factory, entityName, classMetadata.getIdentifierPropertyName() );
+		for ( int i = 0; i < metadata.embeddedGetters.size(); i++ ) {
+			boolean fetched = plan.addEmbedded(
+					metadata.embeddedGetters.get( i ).getName(),
+					metadata.embeddedPropertiesMetadata.get( i ),
+					properties
+			);
+			if ( !fetched ) {
+				return null;
+			}
+		}
+		return plan;
+	}
+
+	/**
+	 * Components are fetched with their owner, as long as they don't refer to other entities.
+	 */
+	private static boolean isSelfContained(CompositeType type, PropertiesMetadata metadata) {
+		Map<String, Type> properties = propertyTypes( type );
+		if ( !hasOnlyBasicState( metadata, properties ) ) {
+			return false;
+		}
+		for ( int i = 0; i < metadata.embeddedGetters.size(); i++ ) {
+			Type embeddedType = properties.get( metadata.embeddedGetters.get( i ).getName() );
+			if ( embeddedType == null || !embeddedType.isComponentType()
+					|| !isSelfContained( (CompositeType) embeddedType, metadata.embeddedPropertiesMetadata.get( i ) ) ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return true if the fields of the metadata only read properties which are not associations,
+	 * and no bridge or boost strategy might navigate the object graph
+	 */
+	private static boolean hasOnlyBasicState(PropertiesMetadata metadata, Map<String, Type> properties) {
+		if ( !metadata.classBridges.isEmpty() || metadata.discriminatorGetter != null
+				|| isDynamic( metadata.classBoostStrategy ) ) {
+			return false;
+		}
+		for ( BoostStrategy boostStrategy : metadata.dynamicFieldBoosts ) {
+			if ( isDynamic( boostStrategy ) ) {
+				return false;
+			}
+		}
+		for ( String name : metadata.fieldGetterNames ) {
+			Type type = properties.get( name );
+			if ( type == null || type.isAssociationType() ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isDynamic(BoostStrategy boostStrategy) {
+		return boostStrategy != null && !( boostStrategy instanceof DefaultBoostStrategy );
+	}
+
+	private static Map<String, Type> propertyTypes(ClassMetadata classMetadata) {
+		Map<String, Type> properties = new HashMap<String, Type>();
+		String[] names = classMetadata.getPropertyNames();
+		Type[] types = classMetadata.getPropertyTypes();
+		for ( int i = 0; i < names.length; i++ ) {
+			properties.put( names[i], types[i] );
+		}
+		if ( classMetadata.getIdentifierPropertyName() != null ) {
+			properties.put( classMetadata.getIdentifierPropertyName(), classMetadata.getIdentifierType() );
+		}
+		return properties;
+	}
+
+	private static Map<String, Type> propertyTypes(CompositeType type) {
+		Map<String, Type> properties = new HashMap<String, Type>();
+		String[] names = type.getPropertyNames();
+		Type[] types = type.getSubtypes();
+		for ( int i = 0; i < names.length; i++ ) {
+			properties.put( names[i], types[i] );
+		}
+		return properties;
+	}
+
+	/**
+	 * @return the distinct entities found navigating the given property path from the owners
+	 */
+	private List<Object> elementsOf(List<?> owners, String path) {
+		Collection<?> values = owners;
+		for ( String property : path.split( "\\." ) ) {
+			Set<Object> next = Collections.newSetFromMap( new IdentityHashMap<Object, Boolean>() );
+			for ( Object owner : values ) {
+				if ( owner == null ) {
+					continue;
+				}
+				Object entity = HibernateHelper.unproxy( owner );
+				Object value = factory.getClassMetadata( HibernateHelper.getClass( entity ) )
+						.getPropertyValue( entity, property );
+				if ( value instanceof Collection ) {
+					next.addAll( (Collection<?>) value );
+				}
+				else if ( value instanceof Map ) {
+					next.addAll( ( (Map<?, ?>) value ).values() );
+				}
+				else if ( value instanceof Object[] ) {
+					next.addAll( Arrays.asList( (Object[]) value ) );
+				}
+				else if ( value != null ) {
+					next.add( value );
+				}
+			}
+			values = next;
+		}
+		return new ArrayList<Object>( values );
+	}
+
+	@Override
+	public String toString() {
+		return "EntityFetchPlan{joins=" + joinPaths + ", collections=" + collectionFetches + '}';
+	}
+
+	/**
+	 * The initialization of a collection reachable from the queried entity through to-one associations.
+	 */
+	private static final class CollectionFetch {
+
+		private final String path;
+		private final List<String> fetchPaths;
+		private final EntityFetchPlan elementPlan;
+
+		/**
+		 * @param path the property path from the queried entity to the collection
+		 * @param fetchPaths the association paths to fetch by joins, including the collection
+		 * @param elementPlan the plan to initialize the collections of the elements, or null
+		 */
+		CollectionFetch(String path, List<String> fetchPaths, EntityFetchPlan elementPlan) {
+			this.path = path;
+			this.fetchPaths = fetchPaths;
+			this.elementPlan = elementPlan;
+		}
+
+		/**
+		 * @return the same fetch, from an entity referring to the queried entity by the given property
+		 */
+		CollectionFetch under(String property) {
+			List<String> paths = new ArrayList<String>( fetchPaths.size() + 1 );
+			paths.add( property );
+			for ( String fetchPath : fetchPaths ) {
+				paths.add( property + '.' + fetchPath );
+			}
+			return new CollectionFetch( property + '.' + path, paths, elementPlan );
+		}
+
+		@Override
+		public String toString() {
+			return path + ( elementPlan == null ? "" : elementPlan.collectionFetches.toString() );
+		}
+	}
+}
@@ -0,0 +1,269 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.batchindexing.impl;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import org.hibernate.CacheMode;
+import org.hibernate.Criteria;
+import org.hibernate.FetchMode;
+import org.hibernate.FlushMode;
+import org.hibernate.LockMode;
+import org.hibernate.LockOptions;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.criterion.CriteriaSpecification;
+import org.hibernate.criterion.Restrictions;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.search.backend.AddLuceneWork;
+import org.hibernate.search.backend.LuceneWork;
+import org.hibernate.search.backend.UpdateLuceneWork;
+import org.hibernate.search.backend.impl.batch.BatchBackend;
+import org.hibernate.search.batchindexing.MassIndexerProgressMonitor;
+import org.hibernate.search.bridge.TwoWayFieldBridge;
+import org.hibernate.search.bridge.spi.ConversionContext;
+import org.hibernate.search.bridge.util.impl.ContextualExceptionBridgeHelper;
+import org.hibernate.search.engine.impl.HibernateSessionLoadingInitializer;
+import org.hibernate.search.engine.spi.DocumentBuilderIndexedEntity;
+import org.hibernate.search.engine.spi.EntityIndexBinder;
+import org.hibernate.search.engine.spi.SearchFactoryImplementor;
+import org.hibernate.search.exception.ErrorHandler;
+import org.hibernate.search.spi.InstanceInitializer;
+import org.hibernate.search.util.impl.HibernateHelper;
+import org.hibernate.search.util.logging.impl.Log;
+import org.hibernate.search.util.logging.impl.LoggerFactory;
+
+/**
+ * Component of the batch-indexing pipeline: this {@code Runnable} loads entities from batches
+ * of identifiers and produces an AddLuceneWork for each of them, switching between the two
+ * stages as decided by the {@link StageScheduler}.
+ * It will finish when all identifiers were loaded and all loaded entities were indexed.
+ * When resuming from a checkpoint, entities are updated rather than added as they might
+ * have been indexed after the checkpoint was taken.
+ * The embedded associations described by the {@link EntityFetchPlan} are fetched together
+ * with each batch of entities.
+ *
+ * @author Sanne Grinovero
+ */
+public class EntityIndexingWorker implements SessionAwareRunnable {
+
+	private static final Log log = LoggerFactory.make();
+
+	private final StageScheduler scheduler;
+	private final SessionFactory sessionFactory;
+	private final Map<Class<?>, EntityIndexBinder> entityIndexBinders;
+	private final MassIndexerProgressMonitor monitor;
+	private final CacheMode cacheMode;
+	private final Class<?> type;
+	private final String idName;
+	private final EntityFetchPlan fetchPlan;
+	private final CountDownLatch producerEndSignal;
+	private final BatchBackend backend;
+	private final ErrorHandler errorHandler;
+	private final IndexingProgressTracker tracker;
+
+	public EntityIndexingWorker(
+			StageScheduler scheduler,
+			MassIndexerProgressMonitor monitor,
+			SessionFactory sessionFactory,
+			CountDownLatch producerEndSignal,
+			SearchFactoryImplementor searchFactory,
+			CacheMode cacheMode, Class<?> type, String idName, EntityFetchPlan fetchPlan,
+			BatchBackend backend, ErrorHandler errorHandler,
+			IndexingProgressTracker tracker) {
+		this.scheduler = scheduler;
+		this.monitor = monitor;
+		this.sessionFactory = sessionFactory;
+		this.producerEndSignal = producerEndSignal;
+		this.cacheMode = cacheMode;
+		this.type = type;
+		this.idName = idName;
+		this.fetchPlan = fetchPlan;
+		this.backend = backend;
+		this.errorHandler = errorHandler;
+		this.tracker = tracker;
+		this.entityIndexBinders = searchFactory.getIndexBindingForEntity();
+	}
+
+	public void run(Session upperSession) {
+		log.trace( "started" );
+		Session session = upperSession;
+		if ( upperSession == null ) {
+			session = sessionFactory.openSession();
+		}
+		session.setFlushMode( FlushMode.MANUAL );
+		session.setCacheMode( cacheMode );
+		session.setDefaultReadOnly( true );
+		try {
+			Transaction transaction = Helper.getTransactionAndMarkForJoin( session );
+			transaction.begin();
+			processAll( session );
+			transaction.commit();
+		}
+		catch (Throwable e) {
+			errorHandler.handleException( log.massIndexerUnexpectedErrorMessage(), e );
+		}
+		finally {
+			producerEndSignal.countDown();
+			if ( upperSession == null ) {
+				session.close();
+			}
+		}
+		log.debug( "finished" );
+	}
+
+	private void processAll(Session session) {
+		final InstanceInitializer sessionInitializer = new HibernateSessionLoadingInitializer(
+				(SessionImplementor) session );
+		ConversionContext contextualBridge = new ContextualExceptionBridgeHelper();
+		try {
+			while ( true ) {
+				List<?> entities = scheduler.pollEntitiesToBuild();
+				if ( entities != null ) {
+					indexList( entities, session, sessionInitializer, contextualBridge );
+					continue;
+				}
+				List<Serializable> listIds = scheduler.pollIdentifiers();
+				if ( listIds != null ) {
+					log.tracef( "received list of ids %s", listIds );
+					List<?> loaded = null;
+					long start = System.nanoTime();
+					try {
+						loaded = loadList( listIds, session );
+						tracker.batchLoaded( listIds, loaded );
+					}
+					finally {
+						scheduler.entitiesLoaded( loaded, System.nanoTime() - start );
+					}
+					continue;
+				}
+				entities = scheduler.pollEntities();
+				if ( entities != null ) {
+					indexList( entities, session, sessionInitializer, contextualBridge );
+				}
+				else if ( scheduler.isDone() ) {
+					break;
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			// just quit
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Loads a list of entities of defined type using their identifiers.
+	 *
+	 * @param listIds the list of entity identifiers (of type
+	 * @param session the session to be used
+	 *
+	 * @return the loaded entities, detached from the session
+	 */
+	private List<?> loadList(List<Serializable> listIds, Session session) {
+		//TODO investigate if I should use ObjectLoaderHelper.initializeObjects instead
+		Criteria criteria = session
+				.createCriteria( type )
+				.setCacheMode( cacheMode )
+				.setLockMode( LockMode.NONE )
+				.setCacheable( false )
+				.setFlushMode( FlushMode.MANUAL )
+				.setResultTransformer( CriteriaSpecification.DISTINCT_ROOT_ENTITY )
+				.add( Restrictions.in( idName, listIds ) );
+		for ( String path : fetchPlan.getJoinPaths() ) {
+			criteria.setFetchMode( path, FetchMode.JOIN );
+		}
+		List<?> list = criteria.list();
+		fetchPlan.initializeCollections( session, list );
+		monitor.entitiesLoaded( list.size() );
+		session.clear();
+		return list;
+	}
+
+	private void indexList(List<?> entities, Session session, InstanceInitializer sessionInitializer,
+			ConversionContext contextualBridge) throws InterruptedException {
+		log.tracef( "received a list of objects to index: %s", entities );
+		int built = 0;
+		long start = System.nanoTime();
+		try {
+			for ( Object entity : entities ) {
+				//trick to attach the objects to session:
+				session.buildLockRequest( LockOptions.NONE ).lock( entity );
+				index( entity, session, sessionInitializer, contextualBridge );
+				monitor.documentsBuilt( 1 );
+				built++;
+				session.clear();
+			}
+			tracker.batchIndexed( entities );
+		}
+		finally {
+			scheduler.documentsBuilt( built, System.nanoTime() - start );
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void index(Object entity, Session session, InstanceInitializer sessionInitializer, ConversionContext conversionContext)
+			throws InterruptedException {
+		Serializable id = session.getIdentifier( entity );
+		Class<?> clazz = HibernateHelper.getClass( entity );
+		EntityIndexBinder entityIndexBinding = entityIndexBinders.get( clazz );
+		if ( entityIndexBinding == null ) {
+			// it might be possible to receive not-indexes subclasses of the currently indexed type;
+			// being not-indexed, we skip them.
+			// FIXME for improved performance: avoid loading them in an early phase.
+			return;
+		}
+		DocumentBuilderIndexedEntity docBuilder = entityIndexBinding.getDocumentBuilder();
+		TwoWayFieldBridge idBridge = docBuilder.getIdBridge();
+		conversionContext.pushProperty( docBuilder.getIdKeywordName() );
+		String idInString = null;
+		try {
+			idInString = conversionContext
+					.setClass( clazz )
+					.twoWayConversionContext( idBridge )
+					.objectToString( id );
+		}
+		finally {
+			conversionContext.popProperty();
+		}
+		//depending on the complexity of the object graph going to be indexed it's possible
+		//that we hit the database several times during work construction.
+		AddLuceneWork addWork = docBuilder.createAddWork(
+				clazz,
+				entity,
+				id,
+				idInString,
+				sessionInitializer,
+				conversionContext
+		);
+		LuceneWork work = addWork;
+		if ( tracker.isResuming() ) {
+			work = new UpdateLuceneWork(
+					id, idInString, clazz, addWork.getDocument(), addWork.getFieldToAnalyzerMap()
+			);
+		}
+		backend.enqueueAsyncWork( work );
+	}
+}
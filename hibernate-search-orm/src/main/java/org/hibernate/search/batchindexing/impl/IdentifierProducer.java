@@ -33,6 +33,8 @@ import org.hibernate.ScrollableResults;
 import org.hibernate.SessionFactory;
 import org.hibernate.StatelessSession;
 import org.hibernate.Transaction;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Projections;
 import org.hibernate.search.batchindexing.MassIndexerProgressMonitor;
 import org.hibernate.search.exception.ErrorHandler;
@@ -42,12 +44,18 @@ import org.hibernate.search.util.logging.impl.Log;
 /**
  * This Runnable is going to feed the indexing queue
  * with the identifiers of all the entities going to be indexed.
- * This step in the indexing process is not parallel (should be
+ * By default this step in the indexing process is not parallel (it is
  * done by one thread per type) so that a single transaction is used
- * to define the group of entities to be indexed.
+ * to define the group of entities to be indexed; when several threads
+ * are used each of them scrolls a different range of identifiers,
+ * as defined by {@link IdentifierRanges}.
+ * When checkpoints are taken the identifiers are produced in ascending order,
+ * so that the progress of each range is defined by its last indexed identifier.
  * Produced identifiers are put in the destination queue grouped in List
  * instances: the reason for this is to load them in batches
- * in the next step and reduce contention on the queue.
+ * in the next step and reduce contention on the queue; the size of each
+ * List is defined by the {@link LoadingThrottle}. The time spent loading each List
+ * is reported to the {@link StageScheduler}.
  * 
  * @author Sanne Grinovero
  */
@@ -57,36 +65,51 @@ public class IdentifierProducer implements StatelessSessionAwareRunnable {
 
 	private final ProducerConsumerQueue<List<Serializable>> destination;
 	private final SessionFactory sessionFactory;
-	private final int batchSize;
+	private final LoadingThrottle throttle;
 	private final Class<?> indexedType;
 	private final MassIndexerProgressMonitor monitor;
 	private final long objectsLimit;
 	private final ErrorHandler errorHandler;
 	private final int idFetchSize;
+	private final IdentifierRanges ranges;
+	private final int partition;
+	private final IndexingProgressTracker tracker;
+	private final StageScheduler scheduler;
 
 	/**
 	 * @param fromIdentifierListToEntities the target queue where the produced identifiers are sent to
 	 * @param sessionFactory the Hibernate SessionFactory to use to load entities
-	 * @param objectLoadingBatchSize affects mostly the next consumer: IdentifierConsumerEntityProducer
+	 * @param throttle defines the number of identifiers in each List, affects mostly the next consumer: EntityIndexingWorker
 	 * @param indexedType the entity type to be loaded
 	 * @param monitor to monitor indexing progress
 	 * @param objectsLimit if not zero
 	 * @param errorHandler how to handle unexpected errors
+	 * @param idFetchSize the JDBC fetch size used to scroll the identifiers
+	 * @param ranges the ranges of identifiers to be loaded concurrently
+	 * @param partition the index of the range loaded by this producer
+	 * @param tracker tracks the progress of the produced identifiers
+	 * @param scheduler notified of the time spent loading each batch of identifiers
 	 */
 	public IdentifierProducer(
 			ProducerConsumerQueue<List<Serializable>> fromIdentifierListToEntities,
 			SessionFactory sessionFactory,
-			int objectLoadingBatchSize,
+			LoadingThrottle throttle,
 			Class<?> indexedType, MassIndexerProgressMonitor monitor,
-			long objectsLimit, ErrorHandler errorHandler, int idFetchSize) {
+			long objectsLimit, ErrorHandler errorHandler, int idFetchSize,
+			IdentifierRanges ranges, int partition, IndexingProgressTracker tracker,
+			StageScheduler scheduler) {
 				this.destination = fromIdentifierListToEntities;
 				this.sessionFactory = sessionFactory;
-				this.batchSize = objectLoadingBatchSize;
+				this.throttle = throttle;
 				this.indexedType = indexedType;
 				this.monitor = monitor;
 				this.objectsLimit = objectsLimit;
 				this.errorHandler = errorHandler;
 				this.idFetchSize = idFetchSize;
+				this.ranges = ranges;
+				this.partition = partition;
+				this.tracker = tracker;
+				this.scheduler = scheduler;
 				log.trace( "created" );
 	}
 	
@@ -126,13 +149,26 @@ public class IdentifierProducer implements StatelessSessionAwareRunnable {
 	}
 
 	private void loadAllIdentifiers(final StatelessSession session) throws InterruptedException {
-		Number countAsNumber = (Number) session
+		if ( tracker.isCompleted( partition ) ) {
+			return;
+		}
+		if ( ranges.isEmpty( session, partition ) ) {
+			tracker.rangeProduced( partition );
+			return;
+		}
+		final boolean ordered = tracker.isCheckpointing() && ranges.isComparable();
+		final Criterion range = ranges.restriction( session, partition, tracker.getLastIndexedId( partition ) );
+		Criteria countCriteria = session
 			.createCriteria( indexedType )
 			.setProjection( Projections.rowCount() )
-			.setCacheable( false )
-			.uniqueResult();
+			.setCacheable( false );
+		if ( range != null ) {
+			countCriteria.add( range );
+		}
+		Number countAsNumber = (Number) countCriteria.uniqueResult();
 		long totalCount = countAsNumber.longValue(); 
-		if ( objectsLimit != 0 && objectsLimit < totalCount ) {
+		final boolean limited = objectsLimit != 0 && objectsLimit < totalCount;
+		if ( limited ) {
 			totalCount = objectsLimit;
 		}
 		if ( log.isDebugEnabled() )
@@ -144,8 +180,17 @@ public class IdentifierProducer implements StatelessSessionAwareRunnable {
 			.setProjection( Projections.id() )
 			.setCacheable( false )
 			.setFetchSize( idFetchSize );
+		if ( range != null ) {
+			criteria.add( range );
+		}
+		if ( ordered ) {
+			criteria.addOrder( Order.asc( ranges.getIdName() ) );
+		}
 		
+		// the first batch accounts for opening the scroll as well
+		long batchStart = System.nanoTime();
 		ScrollableResults results = criteria.scroll( ScrollMode.FORWARD_ONLY );
+		int batchSize = throttle.getBatchSize();
 		ArrayList<Serializable> destinationList = new ArrayList<Serializable>( batchSize );
 		long counter = 0;
 		try {
@@ -153,8 +198,11 @@ public class IdentifierProducer implements StatelessSessionAwareRunnable {
 				Serializable id = (Serializable) results.get( 0 );
 				destinationList.add( id );
 				if ( destinationList.size() == batchSize ) {
-					enqueueList( destinationList );
-					destinationList = new ArrayList<Serializable>( batchSize ); 
+					scheduler.identifiersLoaded( batchSize, System.nanoTime() - batchStart );
+					enqueueList( destinationList, ordered );
+					batchSize = throttle.getBatchSize();
+					destinationList = new ArrayList<Serializable>( batchSize );
+					batchStart = System.nanoTime();
 				}
 				counter++;
 				if ( counter == totalCount ) {
@@ -165,11 +213,18 @@ public class IdentifierProducer implements StatelessSessionAwareRunnable {
 		finally {
 			results.close();
 		}
-		enqueueList( destinationList );
+		if ( !destinationList.isEmpty() ) {
+			scheduler.identifiersLoaded( destinationList.size(), System.nanoTime() - batchStart );
+		}
+		enqueueList( destinationList, ordered );
+		if ( !limited ) {
+			tracker.rangeProduced( partition );
+		}
 	}
 	
-	private void enqueueList(final List<Serializable> idsList) throws InterruptedException {
+	private void enqueueList(final List<Serializable> idsList, boolean ordered) throws InterruptedException {
 		if ( ! idsList.isEmpty() ) {
+			tracker.batchProduced( partition, idsList, ordered ? idsList.get( idsList.size() - 1 ) : null );
 			destination.put( idsList );
 			log.tracef( "produced a list of ids %s", idsList );
 		}
@@ -0,0 +1,285 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.batchindexing.impl;
+
+import java.io.Serializable;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
+import org.hibernate.metadata.ClassMetadata;
+import org.hibernate.search.util.logging.impl.Log;
+import org.hibernate.search.util.logging.impl.LoggerFactory;
+
+/**
+ * Splits the primary keys of an indexed type in contiguous ranges, so that
+ * several {@link IdentifierProducer}s can scroll them concurrently.
+ * Integral identifiers are split evenly between their minimum and maximum value,
+ * other comparable identifiers are split on boundaries picked while scrolling the sorted keys once.
+ * Composite identifiers and limited indexing runs are not split.
+ * The boundaries are computed once, by the first producer asking for its range,
+ * unless they are restored from a checkpoint.
+ *
+ * @author agent <agent@local>
+ */
+public class IdentifierRanges {
+
+	private static final Log log = LoggerFactory.make();
+
+	private final SessionFactory sessionFactory;
+	private final Class<?> indexedType;
+	private final String idName;
+	private final int requestedPartitions;
+	private final long objectsLimit;
+	private final int idFetchSize;
+
+	private final boolean comparable;
+
+	// the lower bound of each range but the first one, null until computed
+	private List<Object> boundaries;
+
+	/**
+	 * @param sessionFactory the Hibernate SessionFactory
+	 * @param indexedType the entity type to be loaded
+	 * @param idName the name of the identifier property
+	 * @param partitions the number of ranges to split the identifiers in
+	 * @param objectsLimit if not zero, the identifiers are not split
+	 * @param idFetchSize the JDBC fetch size used to scroll the identifiers when sampling the boundaries
+	 * @param boundaries the boundaries of the ranges if already known, or null to compute them
+	 */
+	public IdentifierRanges(SessionFactory sessionFactory, Class<?> indexedType, String idName,
+			int partitions, long objectsLimit, int idFetchSize, List<Serializable> boundaries) {
+		this.sessionFactory = sessionFactory;
+		this.indexedType = indexedType;
+		this.idName = idName;
+		this.requestedPartitions = partitions;
+		this.objectsLimit = objectsLimit;
+		this.idFetchSize = idFetchSize;
+		if ( boundaries != null ) {
+			this.boundaries = new ArrayList<Object>( boundaries );
+		}
+		ClassMetadata metadata = sessionFactory.getClassMetadata( indexedType );
+		this.comparable = metadata != null
+				&& !metadata.getIdentifierType().isComponentType()
+				&& Comparable.class.isAssignableFrom( metadata.getIdentifierType().getReturnedClass() );
+	}
+
+	/**
+	 * @return true if the identifiers can be sorted and compared in queries
+	 */
+	public boolean isComparable() {
+		return comparable;
+	}
+
+	/**
+	 * @return the name of the identifier property
+	 */
+	public String getIdName() {
+		return idName;
+	}
+
+	/**
+	 * @return the lower bound of each range but the first one, or null if not computed yet
+	 */
+	public synchronized List<Object> getBoundaries() {
+		return boundaries;
+	}
+
+	/**
+	 * Returns the restriction selecting the identifiers of a partition which follow a given identifier.
+	 *
+	 * @param session the session to use to compute the range boundaries, if not done yet
+	 * @param partition the index of the partition
+	 * @param after if not null, only identifiers greater than this one are selected
+	 *
+	 * @return the restriction to add to the identifiers criteria, or null to select all identifiers
+	 */
+	public Criterion restriction(StatelessSession session, int partition, Serializable after) {
+		Criterion range = restriction( session, partition );
+		if ( after == null ) {
+			return range;
+		}
+		Criterion following = Restrictions.gt( idName, after );
+		return range == null ? following : Restrictions.and( range, following );
+	}
+
+	/**
+	 * Returns the restriction selecting the identifiers of a partition.
+	 *
+	 * @param session the session to use to compute the range boundaries, if not done yet
+	 * @param partition the index of the partition, from 0 to the number of requested partitions (excluded)
+	 *
+	 * @return the restriction to add to the identifiers criteria, or null when the partition
+	 * is the only one and includes all identifiers
+	 *
+	 * @see #isEmpty(StatelessSession, int)
+	 */
+	public synchronized Criterion restriction(StatelessSession session, int partition) {
+		List<Object> cuts = getBoundaries( session );
+		if ( cuts.isEmpty() ) {
+			return null;
+		}
+		if ( partition == 0 ) {
+			return Restrictions.lt( idName, cuts.get( 0 ) );
+		}
+		else if ( partition == cuts.size() ) {
+			return Restrictions.ge( idName, cuts.get( partition - 1 ) );
+		}
+		else {
+			return Restrictions.and(
+					Restrictions.ge( idName, cuts.get( partition - 1 ) ),
+					Restrictions.lt( idName, cuts.get( partition ) )
+			);
+		}
+	}
+
+	/**
+	 * @param session the session to use to compute the range boundaries, if not done yet
+	 * @param partition the index of the partition
+	 *
+	 * @return true if no range was assigned to the partition, as there are fewer ranges than requested
+	 */
+	public synchronized boolean isEmpty(StatelessSession session, int partition) {
+		return partition > getBoundaries( session ).size();
+	}
+
+	private List<Object> getBoundaries(StatelessSession session) {
+		if ( boundaries == null ) {
+			boundaries = computeBoundaries( session );
+			log.debugf( "identifiers of %s split in %d ranges", indexedType.getName(), boundaries.size() + 1 );
+		}
+		return boundaries;
+	}
+
+	private List<Object> computeBoundaries(StatelessSession session) {
+		List<Object> cuts = new ArrayList<Object>( requestedPartitions );
+		if ( requestedPartitions < 2 || objectsLimit != 0 ) {
+			return cuts;
+		}
+		if ( !comparable ) {
+			return cuts;
+		}
+		Class<?> idType = sessionFactory.getClassMetadata( indexedType ).getIdentifierType().getReturnedClass();
+		if ( isIntegral( idType ) ) {
+			Object[] minMax = (Object[]) session
+					.createCriteria( indexedType )
+					.setProjection( Projections.projectionList()
+							.add( Projections.min( idName ) )
+							.add( Projections.max( idName ) ) )
+					.setCacheable( false )
+					.uniqueResult();
+			if ( minMax == null || minMax[0] == null ) {
+				return cuts;
+			}
+			BigInteger min = toBigInteger( minMax[0] );
+			BigInteger span = toBigInteger( minMax[1] ).subtract( min ).add( BigInteger.ONE );
+			BigInteger partitions = BigInteger.valueOf( requestedPartitions );
+			for ( int i = 1; i < requestedPartitions; i++ ) {
+				BigInteger cut = min.add( span.multiply( BigInteger.valueOf( i ) ).divide( partitions ) );
+				addCut( cuts, fromBigInteger( cut, idType ) );
+			}
+		}
+		else {
+			Number countAsNumber = (Number) session
+					.createCriteria( indexedType )
+					.setProjection( Projections.rowCount() )
+					.setCacheable( false )
+					.uniqueResult();
+			long count = countAsNumber.longValue();
+			if ( count < requestedPartitions ) {
+				return cuts;
+			}
+			// a single scan picking every count/partitions-th key, rather than an OFFSET query per boundary
+			ScrollableResults results = session
+					.createCriteria( indexedType )
+					.setProjection( Projections.id() )
+					.addOrder( Order.asc( idName ) )
+					.setCacheable( false )
+					.setFetchSize( idFetchSize )
+					.scroll( ScrollMode.FORWARD_ONLY );
+			try {
+				int nextCut = 1;
+				long nextCutPosition = cutPosition( count, nextCut );
+				long position = 0;
+				while ( nextCut < requestedPartitions && results.next() ) {
+					if ( position == nextCutPosition ) {
+						addCut( cuts, results.get( 0 ) );
+						nextCut++;
+						nextCutPosition = cutPosition( count, nextCut );
+					}
+					position++;
+				}
+			}
+			finally {
+				results.close();
+			}
+		}
+		return cuts;
+	}
+
+	/**
+	 * @return the position of the lower bound of the given range in the sorted keys
+	 */
+	private long cutPosition(long count, int range) {
+		// count * range might overflow, count / requestedPartitions is the same for all ranges
+		long rangeSize = count / requestedPartitions;
+		long remainder = count % requestedPartitions;
+		return rangeSize * range + remainder * range / requestedPartitions;
+	}
+
+	private static void addCut(List<Object> cuts, Object cut) {
+		if ( cuts.isEmpty() || !cuts.get( cuts.size() - 1 ).equals( cut ) ) {
+			cuts.add( cut );
+		}
+	}
+
+	private static boolean isIntegral(Class<?> idType) {
+		return idType == Long.class || idType == Integer.class || idType == Short.class || idType == BigInteger.class;
+	}
+
+	private static BigInteger toBigInteger(Object value) {
+		if ( value instanceof BigInteger ) {
+			return (BigInteger) value;
+		}
+		return BigInteger.valueOf( ( (Number) value ).longValue() );
+	}
+
+	private static Object fromBigInteger(BigInteger value, Class<?> idType) {
+		if ( idType == Long.class ) {
+			return Long.valueOf( value.longValue() );
+		}
+		else if ( idType == Integer.class ) {
+			return Integer.valueOf( value.intValue() );
+		}
+		else if ( idType == Short.class ) {
+			return Short.valueOf( value.shortValue() );
+		}
+		return value;
+	}
+}
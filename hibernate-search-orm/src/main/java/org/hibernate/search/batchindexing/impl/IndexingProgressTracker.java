@@ -0,0 +1,230 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.batchindexing.impl;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.hibernate.search.batchindexing.MassIndexerCheckpoint;
+
+/**
+ * Tracks which batches of identifiers of an indexed type went through the whole
+ * indexing pipeline, to define the progress recorded by a {@link MassIndexerCheckpoint}.
+ * Each range of identifiers progresses up to the last identifier of its oldest batch
+ * such that all batches produced before it were indexed too.
+ * Batches are identified by the list instances flowing through the pipeline: the list
+ * of identifiers first, then the list of entities loaded from it.
+ *
+ * @author agent <agent@local>
+ */
+public class IndexingProgressTracker {
+
+	private final Class<?> indexedType;
+	private final boolean checkpointing;
+	private final boolean resuming;
+	private final List<Serializable> resumedBoundaries;
+	private final Serializable[] lastIndexedIds;
+	private final boolean[] produced;
+	private final List<LinkedList<Batch>> pendingBatches;
+	private final IdentityHashMap<Object, Batch> batches = new IdentityHashMap<Object, Batch>();
+	private IdentifierRanges ranges;
+
+	/**
+	 * @param indexedType the indexed root type
+	 * @param partitions the number of ranges of identifiers
+	 * @param checkpointing true if the progress is recorded in checkpoints
+	 * @param resumeFrom the checkpoint to resume the indexing from, or null
+	 */
+	public IndexingProgressTracker(Class<?> indexedType, int partitions, boolean checkpointing,
+			MassIndexerCheckpoint resumeFrom) {
+		this.indexedType = indexedType;
+		this.checkpointing = checkpointing;
+		this.resuming = resumeFrom != null && resumeFrom.contains( indexedType );
+		this.lastIndexedIds = new Serializable[partitions];
+		this.produced = new boolean[partitions];
+		this.pendingBatches = new ArrayList<LinkedList<Batch>>( partitions );
+		for ( int i = 0; i < partitions; i++ ) {
+			pendingBatches.add( new LinkedList<Batch>() );
+		}
+		if ( resuming ) {
+			this.resumedBoundaries = resumeFrom.getRangeBoundaries( indexedType );
+			for ( int i = 0; i < partitions; i++ ) {
+				lastIndexedIds[i] = resumeFrom.getLastIndexedId( indexedType, i );
+				produced[i] = resumeFrom.isCompleted( indexedType, i );
+			}
+		}
+		else {
+			this.resumedBoundaries = null;
+		}
+	}
+
+	/**
+	 * @return the number of ranges of identifiers
+	 */
+	public int getPartitions() {
+		return produced.length;
+	}
+
+	/**
+	 * @return true if the progress is recorded in checkpoints, in which case identifiers should be produced in order
+	 */
+	public boolean isCheckpointing() {
+		return checkpointing;
+	}
+
+	/**
+	 * @return true if some entities might be in the index already as the indexing was resumed
+	 */
+	public boolean isResuming() {
+		return resuming;
+	}
+
+	/**
+	 * @return the boundaries of the identifier ranges when resuming, or null to compute them
+	 */
+	public List<Serializable> getResumedBoundaries() {
+		return resumedBoundaries;
+	}
+
+	/**
+	 * @param ranges the ranges the identifiers are split in
+	 */
+	public synchronized void trackRanges(IdentifierRanges ranges) {
+		this.ranges = ranges;
+	}
+
+	/**
+	 * @param partition the index of the range
+	 *
+	 * @return the last identifier of the range which was indexed, or null
+	 */
+	public synchronized Serializable getLastIndexedId(int partition) {
+		return lastIndexedIds[partition];
+	}
+
+	/**
+	 * @param partition the index of the range
+	 *
+	 * @return true if all identifiers of the range were indexed
+	 */
+	public synchronized boolean isCompleted(int partition) {
+		return produced[partition] && pendingBatches.get( partition ).isEmpty();
+	}
+
+	/**
+	 * To be invoked before sending a batch of identifiers to the next stage.
+	 *
+	 * @param partition the index of the range the identifiers belong to
+	 * @param ids the identifiers
+	 * @param lastId the greatest identifier of the batch if identifiers are produced in order, null otherwise
+	 */
+	public synchronized void batchProduced(int partition, List<Serializable> ids, Serializable lastId) {
+		Batch batch = new Batch( partition, lastId );
+		pendingBatches.get( partition ).add( batch );
+		batches.put( ids, batch );
+	}
+
+	/**
+	 * To be invoked when all identifiers of a range were produced.
+	 *
+	 * @param partition the index of the range
+	 */
+	public synchronized void rangeProduced(int partition) {
+		produced[partition] = true;
+	}
+
+	/**
+	 * To be invoked before sending the loaded entities to the next stage.
+	 *
+	 * @param ids the identifiers of the batch
+	 * @param entities the entities loaded for them
+	 */
+	public synchronized void batchLoaded(List<Serializable> ids, List<?> entities) {
+		Batch batch = batches.remove( ids );
+		if ( batch == null ) {
+			return;
+		}
+		if ( entities.isEmpty() ) {
+			batchIndexed( batch );
+		}
+		else {
+			batches.put( entities, batch );
+		}
+	}
+
+	/**
+	 * To be invoked when all entities of the batch were sent to the backend.
+	 *
+	 * @param entities the entities of the batch
+	 */
+	public synchronized void batchIndexed(List<?> entities) {
+		Batch batch = batches.remove( entities );
+		if ( batch != null ) {
+			batchIndexed( batch );
+		}
+	}
+
+	private void batchIndexed(Batch batch) {
+		batch.indexed = true;
+		LinkedList<Batch> pending = pendingBatches.get( batch.partition );
+		while ( !pending.isEmpty() && pending.getFirst().indexed ) {
+			Batch first = pending.removeFirst();
+			if ( first.lastId != null ) {
+				lastIndexedIds[batch.partition] = first.lastId;
+			}
+		}
+	}
+
+	/**
+	 * Records the current progress in a checkpoint; to make it valid,
+	 * the index must be committed before the checkpoint is stored.
+	 *
+	 * @param checkpoint the checkpoint to update
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized void recordProgress(MassIndexerCheckpoint checkpoint) {
+		List<?> boundaries = ranges == null ? resumedBoundaries : ranges.getBoundaries();
+		if ( boundaries == null ) {
+			// no identifier was produced yet
+			return;
+		}
+		boolean[] completed = new boolean[produced.length];
+		for ( int i = 0; i < completed.length; i++ ) {
+			completed[i] = isCompleted( i );
+		}
+		checkpoint.setProgress( indexedType, (List<Serializable>) boundaries, lastIndexedIds, completed );
+	}
+
+	private static final class Batch {
+
+		private final int partition;
+		private final Serializable lastId;
+		private boolean indexed;
+
+		Batch(int partition, Serializable lastId) {
+			this.partition = partition;
+			this.lastId = lastId;
+		}
+	}
+}
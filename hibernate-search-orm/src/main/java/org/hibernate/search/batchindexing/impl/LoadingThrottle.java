@@ -0,0 +1,175 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.batchindexing.impl;
+
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.search.batchindexing.MassIndexerProgressMonitor;
+import org.hibernate.search.batchindexing.MassIndexerStageProgressMonitor;
+import org.hibernate.search.util.logging.impl.Log;
+import org.hibernate.search.util.logging.impl.LoggerFactory;
+
+/**
+ * Adapts the number of threads loading entities and the size of the batches they load, so that
+ * the time the database takes to load a batch stays close to a target latency: the MassIndexer
+ * then uses the available database capacity without starving the other applications using it.
+ * Every few batches the average latency is compared to the target: above it the number of
+ * loading threads is lowered first, then the batch size; below it the batch size grows first,
+ * then the number of threads. Loading threads are also lowered when loaded entities pile up
+ * waiting for their Documents, as the indexing side can't keep up anyway.
+ * The thread count and batch size configured on the MassIndexer are the upper bounds; loading
+ * starts from a single thread and the minimum batch size. Without a target latency the
+ * configured settings are used as they are.
+ *
+ * @author agent <agent@local>
+ */
+public class LoadingThrottle {
+
+	private static final Log log = LoggerFactory.make();
+
+	/**
+	 * Latencies within this ratio of the target don't trigger any change
+	 */
+	private static final double TOLERANCE = 0.2;
+	private static final int MIN_WINDOW_BATCHES = 4;
+
+	private final Class<?> indexedType;
+	private final MassIndexerProgressMonitor monitor;
+	private final long targetNanos;
+	private final int maxThreads;
+	private final int minBatchSize;
+	private final int maxBatchSize;
+
+	private volatile int threads;
+	private volatile int batchSize;
+
+	// guarded by this
+	private int windowBatches;
+	private long windowNanos;
+
+	/**
+	 * @param indexedType the type being indexed
+	 * @param monitor notified of the adjustments if it's a {@link MassIndexerStageProgressMonitor}
+	 * @param targetLatencyMillis the target time to load a batch, or 0 to keep the settings fixed
+	 * @param maxThreads the maximum number of threads loading entities concurrently
+	 * @param minBatchSize the minimum number of entities loaded by a query
+	 * @param maxBatchSize the maximum number of entities loaded by a query
+	 */
+	public LoadingThrottle(Class<?> indexedType, MassIndexerProgressMonitor monitor, long targetLatencyMillis,
+			int maxThreads, int minBatchSize, int maxBatchSize) {
+		this.indexedType = indexedType;
+		this.monitor = monitor;
+		this.targetNanos = TimeUnit.MILLISECONDS.toNanos( targetLatencyMillis );
+		this.maxThreads = maxThreads;
+		this.minBatchSize = Math.min( minBatchSize, maxBatchSize );
+		this.maxBatchSize = maxBatchSize;
+		if ( isEnabled() ) {
+			this.threads = 1;
+			this.batchSize = this.minBatchSize;
+		}
+		else {
+			this.threads = Integer.MAX_VALUE;
+			this.batchSize = maxBatchSize;
+		}
+	}
+
+	/**
+	 * @return the maximum number of threads which should be loading entities concurrently
+	 */
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * @return the number of identifiers to group in a batch of entities to load
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * @param nanos the time spent loading a batch of entities
+	 * @param indexingBehind true if the loaded entities are piling up waiting for their Documents
+	 */
+	public void batchLoaded(long nanos, boolean indexingBehind) {
+		if ( !isEnabled() ) {
+			return;
+		}
+		long averageNanos;
+		synchronized ( this ) {
+			windowBatches++;
+			windowNanos += nanos;
+			if ( windowBatches < Math.max( MIN_WINDOW_BATCHES, 2 * threads ) ) {
+				return;
+			}
+			averageNanos = windowNanos / windowBatches;
+			windowBatches = 0;
+			windowNanos = 0;
+			if ( !adjust( averageNanos, indexingBehind ) ) {
+				return;
+			}
+		}
+		double averageMillis = (double) averageNanos / TimeUnit.MILLISECONDS.toNanos( 1 );
+		log.debugf(
+				"Loading %s with up to %d threads and batches of %d entities, as batches took %.1f ms on average",
+				indexedType.getName(), threads, batchSize, averageMillis
+		);
+		if ( monitor instanceof MassIndexerStageProgressMonitor ) {
+			( (MassIndexerStageProgressMonitor) monitor ).loadingThrottled( indexedType, threads, batchSize, averageMillis );
+		}
+	}
+
+	/**
+	 * @return true if the settings were changed
+	 */
+	private boolean adjust(long averageNanos, boolean indexingBehind) {
+		int previousThreads = threads;
+		int previousBatchSize = batchSize;
+		if ( averageNanos > targetNanos * ( 1 + TOLERANCE ) ) {
+			// back off quickly, the database is struggling
+			if ( threads > 1 ) {
+				threads = threads - Math.max( 1, threads / 4 );
+			}
+			else {
+				batchSize = Math.max( minBatchSize, batchSize / 2 );
+			}
+		}
+		else if ( indexingBehind ) {
+			if ( threads > 1 ) {
+				threads--;
+			}
+		}
+		else if ( averageNanos < targetNanos * ( 1 - TOLERANCE ) ) {
+			// larger batches save round trips, more threads only add load
+			if ( batchSize < maxBatchSize ) {
+				batchSize = Math.min( maxBatchSize, batchSize * 2 );
+			}
+			else if ( threads < maxThreads ) {
+				threads++;
+			}
+		}
+		return threads != previousThreads || batchSize != previousBatchSize;
+	}
+
+	private boolean isEnabled() {
+		return targetNanos > 0;
+	}
+}
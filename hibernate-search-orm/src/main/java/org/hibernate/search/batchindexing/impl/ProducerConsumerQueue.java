@@ -25,6 +25,7 @@ package org.hibernate.search.batchindexing.impl;
 
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -76,6 +77,34 @@ public class ProducerConsumerQueue<T> {
 		}
 	}
 	
+	/**
+	 * Waits up to the specified time for an object to be available.
+	 * @param timeout how long to wait
+	 * @param unit the unit of the timeout
+	 * @return the next object in the queue, or null if none was available
+	 * in time or if all objects were consumed: see {@link #isDone()}
+	 * @throws InterruptedException
+	 */
+	@SuppressWarnings("unchecked")
+	public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+		Object obj = queue.poll( timeout, unit );
+		if ( obj == exitToken ) {
+			//restore exit signal for other threads
+			queue.put( exitToken );
+			return null;
+		}
+		else {
+			return (T)obj;
+		}
+	}
+
+	/**
+	 * @return true when all producers stopped and all objects were consumed
+	 */
+	public boolean isDone() {
+		return queue.peek() == exitToken;
+	}
+
 	/**
 	 * Adds a new object to the queue, blocking if no space is
 	 * available.
@@ -0,0 +1,267 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.batchindexing.impl;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hibernate.search.batchindexing.MassIndexerProgressMonitor;
+import org.hibernate.search.batchindexing.MassIndexerStageProgressMonitor;
+import org.hibernate.search.batchindexing.MassIndexerStageProgressMonitor.Stage;
+
+/**
+ * Shares the threads of a {@link BatchIndexingWorkspace} between loading entities and building their Documents.
+ * Each {@link EntityIndexingWorker} asks which stage to work on after each batch: the number of threads
+ * building Documents follows the measured cost of the two stages, so that a slow stage gets more threads
+ * while the other one doesn't sit idle. Loaded entities waiting for a Document are kept in a short backlog,
+ * which is drained first when it grows; it is bounded, as threads stop loading entities when it's full.
+ * The number of threads loading entities concurrently is capped by the {@link LoadingThrottle}.
+ * The {@link IdentifierProducer}s run on their own threads: their throughput is only measured and reported.
+ *
+ * @author agent <agent@local>
+ */
+public class StageScheduler {
+
+	private static final long REPORT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos( 10 );
+	private static final long IDLE_WAIT_MILLIS = 10;
+	private static final int MIN_SAMPLES = 100;
+
+	private final Class<?> indexedType;
+	private final ProducerConsumerQueue<List<Serializable>> identifiers;
+	private final BlockingQueue<List<?>> entities;
+	/**
+	 * A slot in the entities backlog is reserved before loading a batch, so that adding it never blocks:
+	 * a blocked thread couldn't help building the Documents
+	 */
+	private final Semaphore backlogSlots;
+	private final MassIndexerProgressMonitor monitor;
+	private final LoadingThrottle throttle;
+	private final int threads;
+	private final int initialBuildingThreads;
+	private final int maxBacklog;
+
+	private final AtomicInteger loadingThreads = new AtomicInteger();
+	private final AtomicInteger buildingThreads = new AtomicInteger();
+	private final StageCounter identifierLoading = new StageCounter( Stage.IDENTIFIER_LOADING );
+	private final StageCounter loading = new StageCounter( Stage.ENTITY_LOADING );
+	private final StageCounter building = new StageCounter( Stage.DOCUMENT_BUILDING );
+	private final AtomicLong lastReport = new AtomicLong( System.nanoTime() );
+
+	/**
+	 * @param indexedType the type being indexed
+	 * @param identifiers the batches of identifiers to load
+	 * @param monitor notified of the stage throughput if it's a {@link MassIndexerStageProgressMonitor}
+	 * @param threads the total number of worker threads
+	 * @param initialBuildingThreads the number of threads building Documents until the stage costs are known
+	 * @param throttle limits the number of threads loading entities
+	 */
+	public StageScheduler(Class<?> indexedType, ProducerConsumerQueue<List<Serializable>> identifiers,
+			MassIndexerProgressMonitor monitor, int threads, int initialBuildingThreads, LoadingThrottle throttle) {
+		this.indexedType = indexedType;
+		this.identifiers = identifiers;
+		this.monitor = monitor;
+		this.throttle = throttle;
+		this.threads = threads;
+		this.initialBuildingThreads = initialBuildingThreads;
+		this.maxBacklog = 2 * threads;
+		// room for each thread to complete the batch it's loading when the backlog is full
+		int backlogCapacity = maxBacklog + threads;
+		this.entities = new ArrayBlockingQueue<List<?>>( backlogCapacity );
+		this.backlogSlots = new Semaphore( backlogCapacity );
+	}
+
+	/**
+	 * @return the next batch of entities to build Documents for, if building Documents is the most useful
+	 * thing to do right now; if not null, {@link #documentsBuilt(int, long)} must be invoked afterwards
+	 */
+	public List<?> pollEntitiesToBuild() {
+		int backlog = entities.size();
+		if ( backlog == 0 ) {
+			return null;
+		}
+		if ( backlog < maxBacklog && !identifiers.isDone() && buildingThreads.get() >= targetBuildingThreads() ) {
+			return null;
+		}
+		return pollEntities();
+	}
+
+	/**
+	 * @return the next batch of entities to build Documents for, if any;
+	 * if not null, {@link #documentsBuilt(int, long)} must be invoked afterwards
+	 */
+	public List<?> pollEntities() {
+		buildingThreads.incrementAndGet();
+		List<?> batch = entities.poll();
+		if ( batch == null ) {
+			buildingThreads.decrementAndGet();
+		}
+		else {
+			backlogSlots.release();
+		}
+		return batch;
+	}
+
+	/**
+	 * Waits a short time for a batch of identifiers.
+	 *
+	 * @return the next batch of identifiers to load, or null, also when enough threads are loading already
+	 * or when the backlog of loaded entities is full; if not null, {@link #entitiesLoaded(List, long)} must
+	 * be invoked afterwards
+	 * @throws InterruptedException
+	 */
+	public List<Serializable> pollIdentifiers() throws InterruptedException {
+		if ( !backlogSlots.tryAcquire() ) {
+			return null;
+		}
+		// counted before polling, so that the workspace is never seen as done while a batch is being handed over
+		if ( loadingThreads.incrementAndGet() > throttle.getThreads() ) {
+			loadingThreads.decrementAndGet();
+			backlogSlots.release();
+			Thread.sleep( IDLE_WAIT_MILLIS );
+			return null;
+		}
+		List<Serializable> batch = identifiers.poll( IDLE_WAIT_MILLIS, TimeUnit.MILLISECONDS );
+		if ( batch == null ) {
+			loadingThreads.decrementAndGet();
+			backlogSlots.release();
+		}
+		return batch;
+	}
+
+	/**
+	 * @param count the number of identifiers loaded
+	 * @param nanos the time spent loading them, not including the time waiting for room in the queue
+	 */
+	public void identifiersLoaded(int count, long nanos) {
+		identifierLoading.add( count, nanos );
+		reportIfDue();
+	}
+
+	/**
+	 * @param loaded the loaded entities, or null if the loading failed
+	 * @param nanos the time spent loading them
+	 */
+	public void entitiesLoaded(List<?> loaded, long nanos) {
+		if ( loaded != null && !loaded.isEmpty() ) {
+			// can't fail, the slot was reserved by pollIdentifiers
+			entities.add( loaded );
+		}
+		else {
+			backlogSlots.release();
+		}
+		if ( loaded != null ) {
+			loading.add( loaded.size(), nanos );
+			throttle.batchLoaded( nanos, entities.size() >= maxBacklog );
+		}
+		loadingThreads.decrementAndGet();
+		reportIfDue();
+	}
+
+	/**
+	 * @param count the number of Documents built
+	 * @param nanos the time spent building them
+	 */
+	public void documentsBuilt(int count, long nanos) {
+		building.add( count, nanos );
+		buildingThreads.decrementAndGet();
+		reportIfDue();
+	}
+
+	/**
+	 * @return true when all identifiers were loaded and all loaded entities were processed
+	 */
+	public boolean isDone() {
+		return identifiers.isDone() && loadingThreads.get() == 0 && entities.isEmpty();
+	}
+
+	/**
+	 * Notifies the throughput of the last period, to be invoked when all work is done.
+	 */
+	public void workCompleted() {
+		report( System.nanoTime() );
+	}
+
+	private int targetBuildingThreads() {
+		long loaded = loading.entities.get();
+		long built = building.entities.get();
+		if ( loaded < MIN_SAMPLES || built < MIN_SAMPLES ) {
+			return initialBuildingThreads;
+		}
+		double loadingCost = (double) loading.nanos.get() / loaded;
+		double buildingCost = (double) building.nanos.get() / built;
+		int target = (int) Math.round( threads * buildingCost / ( loadingCost + buildingCost ) );
+		return Math.max( 1, Math.min( threads - 1, target ) );
+	}
+
+	private void reportIfDue() {
+		long now = System.nanoTime();
+		if ( now - lastReport.get() >= REPORT_INTERVAL_NANOS ) {
+			report( now );
+		}
+	}
+
+	private void report(long now) {
+		long last = lastReport.get();
+		if ( !( monitor instanceof MassIndexerStageProgressMonitor ) || now <= last || !lastReport.compareAndSet( last, now ) ) {
+			return;
+		}
+		MassIndexerStageProgressMonitor stageMonitor = (MassIndexerStageProgressMonitor) monitor;
+		identifierLoading.report( stageMonitor, now - last );
+		loading.report( stageMonitor, now - last );
+		building.report( stageMonitor, now - last );
+	}
+
+	private final class StageCounter {
+
+		private final Stage stage;
+		private final AtomicLong entities = new AtomicLong();
+		private final AtomicLong nanos = new AtomicLong();
+		private final AtomicLong reportedEntities = new AtomicLong();
+		private final AtomicLong reportedNanos = new AtomicLong();
+
+		StageCounter(Stage stage) {
+			this.stage = stage;
+		}
+
+		void add(int count, long time) {
+			entities.addAndGet( count );
+			nanos.addAndGet( time );
+		}
+
+		void report(MassIndexerStageProgressMonitor stageMonitor, long elapsedNanos) {
+			long currentEntities = entities.get();
+			long currentNanos = nanos.get();
+			long periodEntities = currentEntities - reportedEntities.getAndSet( currentEntities );
+			long periodNanos = currentNanos - reportedNanos.getAndSet( currentNanos );
+			stageMonitor.stageThroughput(
+					indexedType, stage,
+					periodEntities * (double) TimeUnit.SECONDS.toNanos( 1 ) / elapsedNanos,
+					(double) periodNanos / elapsedNanos
+			);
+		}
+	}
+}
@@ -259,12 +259,17 @@ public class FullTextIndexEventListener implements PostDeleteEventListener,
 				//Should log really but we don't know if we're interested in this collection for indexing
 				return;
 			}
+			AbstractDocumentBuilder<?> documentBuilder = getDocumentBuilder( entity );
+			if ( documentBuilder == null ) {
+				return;
+			}
 			PersistentCollection persistentCollection = event.getCollection();
 			final String collectionRole;
 			if ( persistentCollection != null ) {
 				if ( ! persistentCollection.wasInitialized() ) {
 					// non-initialized collections will still trigger events, but we want to skip them
 					// as they won't contain new values affecting the index state
+					collectionUpdateProcessed( false );
 					return;
 				}
 				collectionRole = persistentCollection.getRole();
@@ -272,16 +277,24 @@ public class FullTextIndexEventListener implements PostDeleteEventListener,
 			else {
 				collectionRole = null;
 			}
-			AbstractDocumentBuilder<?> documentBuilder = getDocumentBuilder( entity );
-			
-			if ( documentBuilder != null && ! documentBuilder.isCollectionRoleExcluded( collectionRole ) ) {
-				Serializable id = getId( entity, event );
-				if ( id == null ) {
-					log.idCannotBeExtracted( event.getAffectedOwnerEntityName() );
-					return;
-				}
-				processWork( entity, id, WorkType.COLLECTION, event, false );
+
+			if ( documentBuilder.isCollectionRoleExcluded( collectionRole ) ) {
+				collectionUpdateProcessed( false );
+				return;
+			}
+			Serializable id = getId( entity, event );
+			if ( id == null ) {
+				log.idCannotBeExtracted( event.getAffectedOwnerEntityName() );
+				return;
 			}
+			collectionUpdateProcessed( true );
+			processWork( entity, id, WorkType.COLLECTION, event, false );
+		}
+	}
+
+	private void collectionUpdateProcessed(boolean reindexed) {
+		if ( searchFactoryImplementor.getStatistics().isStatisticsEnabled() ) {
+			searchFactoryImplementor.getStatisticsImplementor().collectionUpdateProcessed( reindexed );
 		}
 	}
 
@@ -36,6 +36,8 @@ import org.hibernate.SessionFactory;
 import org.hibernate.search.MassIndexer;
 import org.hibernate.search.batchindexing.impl.BatchCoordinator;
 import org.hibernate.search.batchindexing.impl.Executors;
+import org.hibernate.search.batchindexing.MassIndexerCheckpoint;
+import org.hibernate.search.batchindexing.MassIndexerCheckpointStore;
 import org.hibernate.search.batchindexing.MassIndexerProgressMonitor;
 import org.hibernate.search.jmx.IndexingProgressMonitor;
 import org.hibernate.search.util.logging.impl.LoggerFactory;
@@ -58,9 +60,12 @@ public class MassIndexerImpl implements MassIndexer {
 	protected Set<Class<?>> rootEntities = new HashSet<Class<?>>();
 
 	// default settings defined here:
+	private int identifierLoadingThreads = 1; //scrolling the primary keys
 	private int objectLoadingThreads = 2; //loading the main entity
 	private int collectionLoadingThreads = 4; //also responsible for loading of lazy @IndexedEmbedded collections
 	private int objectLoadingBatchSize = 10;
+	private int minObjectLoadingBatchSize = 1;
+	private long targetLoadingLatency = 0; //means no throttling
 	private long objectsLimit = 0; //means no limit at all
 	private CacheMode cacheMode = CacheMode.IGNORE;
 	private boolean optimizeAtEnd = true;
@@ -68,6 +73,11 @@ public class MassIndexerImpl implements MassIndexer {
 	private boolean optimizeAfterPurge = true;
 	private MassIndexerProgressMonitor monitor;
 	private int idFetchSize = 100; //reasonable default as we only load IDs
+	private MassIndexerCheckpointStore checkpointStore; //no checkpoints by default
+	private long checkpointInterval = 60000;
+	private MassIndexerCheckpoint resumeFrom;
+	private boolean rebuildInSideDirectory = false;
+	private boolean parallelIndexWriters = false;
 
 	protected MassIndexerImpl(SearchFactoryImplementor searchFactory, SessionFactory sessionFactory, Class<?>... entities) {
 		this.searchFactoryImplementor = searchFactory;
@@ -143,6 +153,14 @@ public class MassIndexerImpl implements MassIndexer {
 		return this;
 	}
 
+	public MassIndexer threadsToLoadIdentifiers(int numberOfThreads) {
+		if ( numberOfThreads < 1 ) {
+			throw new IllegalArgumentException( "numberOfThreads must be at least 1" );
+		}
+		this.identifierLoadingThreads = numberOfThreads;
+		return this;
+	}
+
 	public MassIndexer batchSizeToLoadObjects(int batchSize) {
 		if ( batchSize < 1 ) {
 			throw new IllegalArgumentException( "batchSize must be at least 1" );
@@ -151,6 +169,24 @@ public class MassIndexerImpl implements MassIndexer {
 		return this;
 	}
 
+	@Override
+	public MassIndexer minBatchSizeToLoadObjects(int batchSize) {
+		if ( batchSize < 1 ) {
+			throw new IllegalArgumentException( "batchSize must be at least 1" );
+		}
+		this.minObjectLoadingBatchSize = batchSize;
+		return this;
+	}
+
+	@Override
+	public MassIndexer targetLoadingLatency(long milliseconds) {
+		if ( milliseconds < 0 ) {
+			throw new IllegalArgumentException( "target latency must not be negative" );
+		}
+		this.targetLoadingLatency = milliseconds;
+		return this;
+	}
+
 	public MassIndexer threadsForSubsequentFetching(int numberOfThreads) {
 		if ( numberOfThreads < 1 ) {
 			throw new IllegalArgumentException( "numberOfThreads must be at least 1" );
@@ -206,12 +242,18 @@ public class MassIndexerImpl implements MassIndexer {
 	}
 
 	protected BatchCoordinator createCoordinator() {
+		if ( rebuildInSideDirectory && ( checkpointStore != null || resumeFrom != null ) ) {
+			throw log.sideDirectoryRebuildWithCheckpoints();
+		}
 		return new BatchCoordinator(
 				rootEntities, searchFactoryImplementor, sessionFactory,
-				objectLoadingThreads, collectionLoadingThreads,
-				cacheMode, objectLoadingBatchSize, objectsLimit,
+				identifierLoadingThreads, objectLoadingThreads, collectionLoadingThreads,
+				cacheMode, objectLoadingBatchSize, minObjectLoadingBatchSize,
+				targetLoadingLatency, objectsLimit,
 				optimizeAtEnd, purgeAtStart, optimizeAfterPurge,
-				monitor, idFetchSize
+				monitor, idFetchSize,
+				checkpointStore, checkpointInterval, resumeFrom,
+				rebuildInSideDirectory, parallelIndexWriters
 		);
 	}
 
@@ -227,4 +269,37 @@ public class MassIndexerImpl implements MassIndexer {
 		this.idFetchSize = idFetchSize;
 		return this;
 	}
+
+	@Override
+	public MassIndexer checkpointStore(MassIndexerCheckpointStore checkpointStore) {
+		this.checkpointStore = checkpointStore;
+		return this;
+	}
+
+	@Override
+	public MassIndexer checkpointInterval(long milliseconds) {
+		if ( milliseconds < 1 ) {
+			throw new IllegalArgumentException( "checkpoint interval must be at least 1 millisecond" );
+		}
+		this.checkpointInterval = milliseconds;
+		return this;
+	}
+
+	@Override
+	public MassIndexer resumeFrom(MassIndexerCheckpoint checkpoint) {
+		this.resumeFrom = checkpoint;
+		return this;
+	}
+
+	@Override
+	public MassIndexer rebuildInSideDirectory(boolean enabled) {
+		this.rebuildInSideDirectory = enabled;
+		return this;
+	}
+
+	@Override
+	public MassIndexer parallelIndexWriters(boolean enabled) {
+		this.parallelIndexWriters = enabled;
+		return this;
+	}
 }
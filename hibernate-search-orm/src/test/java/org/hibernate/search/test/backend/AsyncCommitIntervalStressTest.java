@@ -0,0 +1,41 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.test.backend;
+
+import org.hibernate.search.Environment;
+
+/**
+ * Same as {@link AsyncBackendLongWorklistsStressTest}, but the changes are committed by the
+ * async commit policy: the interval is long enough that changes are committed only every
+ * few operations, the last ones being committed at shutdown.
+ * The commits themselves are verified by {@code AsyncCommitSchedulerTest}.
+ *
+ * @author agent <agent@local>
+ */
+public class AsyncCommitIntervalStressTest extends AsyncBackendLongWorklistsStressTest {
+
+	protected void configure(org.hibernate.cfg.Configuration cfg) {
+		super.configure( cfg );
+		cfg.setProperty( "hibernate.search.default." + Environment.ASYNC_COMMIT_INTERVAL, "600000" );
+		cfg.setProperty( "hibernate.search.default." + Environment.ASYNC_COMMIT_MAX_OPERATIONS, "15" );
+	}
+
+}
@@ -0,0 +1,142 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.test.backend;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.hibernate.search.FullTextSession;
+import org.hibernate.search.Search;
+import org.hibernate.search.test.Clock;
+import org.hibernate.search.test.SearchTestCase;
+
+/**
+ * Verifies that with group commit enabled concurrent transactions are all applied,
+ * that they share IndexWriter commits, and that each transaction's changes are
+ * visible as soon as its commit returns.
+ *
+ * @author agent <agent@local>
+ */
+public class GroupCommitTest extends SearchTestCase {
+
+	private static final int THREADS = 8;
+	private static final int TRANSACTIONS_PER_THREAD = 25;
+
+	public void testConcurrentTransactionsShareCommits() throws Exception {
+		final AtomicInteger idGenerator = new AtomicInteger();
+		final AtomicInteger notVisibleAfterCommit = new AtomicInteger();
+		// have all threads commit at the same time, so that there are transactions to group
+		final CyclicBarrier barrier = new CyclicBarrier( THREADS );
+		final List<Throwable> failures = new ArrayList<Throwable>();
+		List<Thread> threads = new ArrayList<Thread>();
+		for ( int t = 0; t < THREADS; t++ ) {
+			threads.add( new Thread() {
+				@Override
+				public void run() {
+					try {
+						for ( int i = 0; i < TRANSACTIONS_PER_THREAD; i++ ) {
+							int id = idGenerator.incrementAndGet();
+							// a failed thread breaks the barrier for the others by not showing up
+							barrier.await( 30, TimeUnit.SECONDS );
+							Session s = openSession();
+							Transaction tx = s.beginTransaction();
+							s.persist( new Clock( id, "brand num° " + id ) );
+							tx.commit();
+							s.close();
+							if ( countIndexedClocks( new TermQuery( new Term( "id", String.valueOf( id ) ) ) ) != 1 ) {
+								notVisibleAfterCommit.incrementAndGet();
+							}
+						}
+					}
+					catch (Throwable e) {
+						synchronized ( failures ) {
+							failures.add( e );
+						}
+					}
+				}
+			} );
+		}
+		long initialCommitGeneration = lastCommitGeneration();
+		for ( Thread thread : threads ) {
+			thread.start();
+		}
+		for ( Thread thread : threads ) {
+			thread.join();
+		}
+		if ( ! failures.isEmpty() ) {
+			Throwable failure = failures.get( 0 );
+			if ( failure instanceof Exception ) {
+				throw (Exception) failure;
+			}
+			throw (Error) failure;
+		}
+		assertEquals( 0, notVisibleAfterCommit.get() );
+		final int transactions = THREADS * TRANSACTIONS_PER_THREAD;
+		assertEquals( transactions, countIndexedClocks( new MatchAllDocsQuery() ) );
+		// each IndexWriter commit writes a new segments_N file
+		long commits = lastCommitGeneration() - initialCommitGeneration;
+		assertTrue( "Expected less than " + transactions + " commits, got " + commits, commits < transactions );
+		assertTrue( "Expected at least one commit", commits > 0 );
+	}
+
+	private long lastCommitGeneration() throws IOException {
+		return SegmentInfos.getLastCommitGeneration( getDirectory( Clock.class ) );
+	}
+
+	private int countIndexedClocks(Query query) {
+		FullTextSession s = Search.getFullTextSession( openSession() );
+		try {
+			Transaction tx = s.beginTransaction();
+			int count = s.createFullTextQuery( query, Clock.class ).getResultSize();
+			tx.commit();
+			return count;
+		}
+		finally {
+			s.close();
+		}
+	}
+
+	@Override
+	protected Class<?>[] getAnnotatedClasses() {
+		return new Class[] { Clock.class };
+	}
+
+	@Override
+	protected void configure(org.hibernate.cfg.Configuration cfg) {
+		super.configure( cfg );
+		cfg.setProperty( "hibernate.search.default.group_commit", "true" );
+		cfg.setProperty( "hibernate.search.default.group_commit.max_wait", "5" );
+		cfg.setProperty( "hibernate.search.default.group_commit.max_batch_size", "4" );
+	}
+
+}
@@ -0,0 +1,135 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.test.backend;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.TermQuery;
+
+import org.hibernate.Transaction;
+import org.hibernate.search.Environment;
+import org.hibernate.search.FullTextSession;
+import org.hibernate.search.Search;
+import org.hibernate.search.backend.impl.lucene.LuceneBackendQueueProcessor;
+import org.hibernate.search.indexes.impl.DirectoryBasedIndexManager;
+import org.hibernate.search.indexes.spi.IndexManager;
+import org.hibernate.search.stat.Statistics;
+import org.hibernate.search.test.Clock;
+import org.hibernate.search.test.SearchTestCase;
+
+/**
+ * Verifies that with queue coalescing enabled repeated updates to the same entity
+ * waiting in the queue are merged, leaving the index in the state of the last update.
+ *
+ * @author agent <agent@local>
+ */
+public class IndexingQueueCoalescingTest extends SearchTestCase {
+
+	private static final int UPDATES = 30;
+
+	public void testRepeatedUpdatesApplyLastState() throws Exception {
+		FullTextSession s = Search.getFullTextSession( openSession() );
+		Transaction tx = s.beginTransaction();
+		s.persist( new Clock( 1, "brand0" ) );
+		tx.commit();
+		s.clear();
+
+		// keeps the queue processor busy so that all updates wait in the queue
+		IndexManager indexManager = getSearchFactoryImpl().getAllIndexesManager().getIndexManager( Clock.class.getName() );
+		CountDownLatch release = blockQueue( indexManager );
+		for ( int i = 1; i <= UPDATES; i++ ) {
+			tx = s.beginTransaction();
+			Clock clock = (Clock) s.get( Clock.class, 1 );
+			clock.setBrand( "brand" + i );
+			tx.commit();
+			s.clear();
+		}
+		Statistics statistics = s.getSearchFactory().getStatistics();
+		assertEquals( UPDATES, statistics.indexingQueueDepth().get( Clock.class.getName() ).intValue() );
+		release.countDown();
+		awaitExecutedTasks( statistics, UPDATES + 1 );
+
+		// the persist plus one change set per update were taken from the queue
+		assertEquals( UPDATES + 1, statistics.getIndexingQueueTaskCount() );
+		// each update superseded the previous one: only the last one was applied
+		assertEquals( UPDATES - 1, statistics.getCoalescedWorkCount() );
+		assertEquals( 0, statistics.getIndexingQueueSpilledTaskCount() );
+		s.close();
+
+		//we need to close the SessionFactory to wait for all async work to be flushed
+		closeSessionFactory();
+		openSessionFactory();
+
+		s = Search.getFullTextSession( openSession() );
+		tx = s.beginTransaction();
+		assertEquals( 1, s.createFullTextQuery( new MatchAllDocsQuery(), Clock.class ).getResultSize() );
+		assertEquals( 1, s.createFullTextQuery( new TermQuery( new Term( "brand", "brand" + UPDATES ) ), Clock.class ).getResultSize() );
+		tx.commit();
+		s.close();
+	}
+
+	/**
+	 * Runs a task on the queue processor of the index which blocks until the returned latch is released.
+	 */
+	static CountDownLatch blockQueue(IndexManager indexManager) throws InterruptedException {
+		LuceneBackendQueueProcessor backend = (LuceneBackendQueueProcessor) ( (DirectoryBasedIndexManager) indexManager ).getBackendQueueProcessor();
+		final CountDownLatch started = new CountDownLatch( 1 );
+		final CountDownLatch release = new CountDownLatch( 1 );
+		backend.getIndexResources().getQueueingExecutor().execute( new Runnable() {
+			@Override
+			public void run() {
+				started.countDown();
+				try {
+					release.await();
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		} );
+		assertTrue( "queue processor didn't start", started.await( 10, TimeUnit.SECONDS ) );
+		return release;
+	}
+
+	static void awaitExecutedTasks(Statistics statistics, long expectedTasks) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis( 10 );
+		while ( statistics.getIndexingQueueTaskCount() < expectedTasks && System.currentTimeMillis() < deadline ) {
+			Thread.sleep( 10 );
+		}
+	}
+
+	@Override
+	protected Class<?>[] getAnnotatedClasses() {
+		return new Class[] { Clock.class };
+	}
+
+	@Override
+	protected void configure(org.hibernate.cfg.Configuration cfg) {
+		super.configure( cfg );
+		cfg.setProperty( Environment.WORKER_EXECUTION, "async" );
+		cfg.setProperty( "hibernate.search.default." + Environment.MAX_QUEUE_LENGTH, String.valueOf( UPDATES + 10 ) );
+		cfg.setProperty( "hibernate.search.default." + Environment.QUEUE_COALESCING, "true" );
+	}
+
+}
@@ -0,0 +1,102 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.test.backend;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.TermQuery;
+
+import org.hibernate.Transaction;
+import org.hibernate.search.Environment;
+import org.hibernate.search.FullTextSession;
+import org.hibernate.search.Search;
+import org.hibernate.search.indexes.spi.IndexManager;
+import org.hibernate.search.stat.Statistics;
+import org.hibernate.search.test.Clock;
+import org.hibernate.search.test.SearchTestCase;
+
+import static org.hibernate.search.test.backend.IndexingQueueCoalescingTest.awaitExecutedTasks;
+import static org.hibernate.search.test.backend.IndexingQueueCoalescingTest.blockQueue;
+
+/**
+ * Verifies that change sets not fitting in the queue are spilled to disk
+ * and applied in order once there is space again.
+ *
+ * @author agent <agent@local>
+ */
+public class IndexingQueueSpillingTest extends SearchTestCase {
+
+	private static final int UPDATES = 10;
+
+	public void testSpilledChangesAreAppliedInOrder() throws Exception {
+		FullTextSession s = Search.getFullTextSession( openSession() );
+		Transaction tx = s.beginTransaction();
+		s.persist( new Clock( 1, "brand0" ) );
+		tx.commit();
+		s.clear();
+
+		IndexManager indexManager = getSearchFactoryImpl().getAllIndexesManager().getIndexManager( Clock.class.getName() );
+		CountDownLatch release = blockQueue( indexManager );
+		for ( int i = 1; i <= UPDATES; i++ ) {
+			tx = s.beginTransaction();
+			Clock clock = (Clock) s.get( Clock.class, 1 );
+			clock.setBrand( "brand" + i );
+			tx.commit();
+			s.clear();
+		}
+		Statistics statistics = s.getSearchFactory().getStatistics();
+		// the first update fills the queue, all the others are spilled
+		assertEquals( UPDATES - 1, statistics.getIndexingQueueSpilledTaskCount() );
+		assertEquals( UPDATES, statistics.indexingQueueDepth().get( Clock.class.getName() ).intValue() );
+		release.countDown();
+		awaitExecutedTasks( statistics, UPDATES + 1 );
+
+		assertEquals( UPDATES + 1, statistics.getIndexingQueueTaskCount() );
+		s.close();
+
+		//we need to close the SessionFactory to wait for all async work to be flushed
+		closeSessionFactory();
+		openSessionFactory();
+
+		s = Search.getFullTextSession( openSession() );
+		tx = s.beginTransaction();
+		assertEquals( 1, s.createFullTextQuery( new MatchAllDocsQuery(), Clock.class ).getResultSize() );
+		assertEquals( 1, s.createFullTextQuery( new TermQuery( new Term( "brand", "brand" + UPDATES ) ), Clock.class ).getResultSize() );
+		tx.commit();
+		s.close();
+	}
+
+	@Override
+	protected Class<?>[] getAnnotatedClasses() {
+		return new Class[] { Clock.class };
+	}
+
+	@Override
+	protected void configure(org.hibernate.cfg.Configuration cfg) {
+		super.configure( cfg );
+		cfg.setProperty( Environment.WORKER_EXECUTION, "async" );
+		cfg.setProperty( "hibernate.search.default." + Environment.MAX_QUEUE_LENGTH, "1" );
+		cfg.setProperty( "hibernate.search.default." + Environment.QUEUE_OVERFLOW_POLICY, "spill_to_disk" );
+	}
+
+}
@@ -156,12 +156,25 @@ public class IndexingGeneratedCorpusTest {
 		verifyIndexIsLocked( true, Book.class ); //exclusive index enabled
 	}
 
+	@Test
+	public void testBatchIndexingWithPartitionedIdentifiers() throws InterruptedException {
+		purgeAll();
+		verifyIsEmpty();
+		reindexAll( 3 ); // each type scrolls its primary keys in 3 ranges
+		verifyResultNumbers();
+	}
+
 	private void reindexAll() throws InterruptedException {
+		reindexAll( 1 );
+	}
+
+	private void reindexAll(int identifierLoadingThreads) throws InterruptedException {
 		FullTextSession fullTextSession = builder.openFullTextSession();
 		SilentProgressMonitor progressMonitor = new SilentProgressMonitor();
 		Assert.assertFalse( progressMonitor.finished );
 		try {
 			fullTextSession.createIndexer( Object.class )
+					.threadsToLoadIdentifiers( identifierLoadingThreads )
 					.threadsForSubsequentFetching( 8 )
 					.threadsToLoadObjects( 4 )
 					.batchSizeToLoadObjects( 30 )
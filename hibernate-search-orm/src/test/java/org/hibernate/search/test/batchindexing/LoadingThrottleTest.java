@@ -0,0 +1,98 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.test.batchindexing;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import org.hibernate.search.batchindexing.impl.LoadingThrottle;
+import org.hibernate.search.impl.SimpleIndexingProgressMonitor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Verifies the adjustments of the loading of entities to the target latency.
+ *
+ * @author agent <agent@local>
+ */
+public class LoadingThrottleTest {
+
+	private static final long FAST = TimeUnit.MILLISECONDS.toNanos( 10 );
+	private static final long SLOW = TimeUnit.MILLISECONDS.toNanos( 1000 );
+
+	@Test
+	public void testFixedSettingsWithoutTarget() {
+		LoadingThrottle throttle = newThrottle( 0 );
+		assertEquals( 50, throttle.getBatchSize() );
+		assertEquals( Integer.MAX_VALUE, throttle.getThreads() );
+		loadBatches( throttle, 100, SLOW, false );
+		assertEquals( 50, throttle.getBatchSize() );
+		assertEquals( Integer.MAX_VALUE, throttle.getThreads() );
+	}
+
+	@Test
+	public void testGrowsUpToConfiguredSettings() {
+		LoadingThrottle throttle = newThrottle( 100 );
+		assertEquals( 5, throttle.getBatchSize() );
+		assertEquals( 1, throttle.getThreads() );
+		loadBatches( throttle, 4, FAST, false );
+		assertEquals( "batch size grows first", 10, throttle.getBatchSize() );
+		assertEquals( 1, throttle.getThreads() );
+		loadBatches( throttle, 1000, FAST, false );
+		assertEquals( 50, throttle.getBatchSize() );
+		assertEquals( 4, throttle.getThreads() );
+	}
+
+	@Test
+	public void testBacksOffWhenSlow() {
+		LoadingThrottle throttle = newThrottle( 100 );
+		loadBatches( throttle, 1000, FAST, false );
+		assertEquals( 4, throttle.getThreads() );
+		loadBatches( throttle, 8, SLOW, false );
+		assertEquals( "threads are lowered first", 3, throttle.getThreads() );
+		assertEquals( 50, throttle.getBatchSize() );
+		loadBatches( throttle, 1000, SLOW, false );
+		assertEquals( 1, throttle.getThreads() );
+		assertEquals( 5, throttle.getBatchSize() );
+	}
+
+	@Test
+	public void testFewerThreadsWhenIndexingIsBehind() {
+		LoadingThrottle throttle = newThrottle( 100 );
+		loadBatches( throttle, 1000, FAST, false );
+		assertEquals( 4, throttle.getThreads() );
+		loadBatches( throttle, 1000, FAST, true );
+		assertEquals( 1, throttle.getThreads() );
+		assertTrue( throttle.getBatchSize() <= 50 );
+	}
+
+	private static LoadingThrottle newThrottle(long targetMillis) {
+		return new LoadingThrottle( Object.class, new SimpleIndexingProgressMonitor(), targetMillis, 4, 5, 50 );
+	}
+
+	private static void loadBatches(LoadingThrottle throttle, int batches, long nanos, boolean indexingBehind) {
+		for ( int i = 0; i < batches; i++ ) {
+			throttle.batchLoaded( nanos, indexingBehind );
+		}
+	}
+}
@@ -0,0 +1,205 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.test.batchindexing;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.lucene.search.MatchAllDocsQuery;
+
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projections;
+import org.hibernate.search.FullTextSession;
+import org.hibernate.search.Search;
+import org.hibernate.search.SearchException;
+import org.hibernate.search.batchindexing.FileMassIndexerCheckpointStore;
+import org.hibernate.search.batchindexing.MassIndexerCheckpoint;
+import org.hibernate.search.test.SearchTestCase;
+
+/**
+ * Verifies the MassIndexer stores checkpoints and resumes from them.
+ *
+ * @author agent <agent@local>
+ */
+public class MassIndexerCheckpointTest extends SearchTestCase {
+
+	private static final int BOOK_NUM = 10;
+
+	private File checkpointFile;
+	private FileMassIndexerCheckpointStore checkpointStore;
+
+	@Override
+	public void setUp() throws Exception {
+		super.setUp();
+		checkpointFile = File.createTempFile( "hsearch-checkpoint-", ".bin" );
+		checkpointFile.delete();
+		checkpointStore = new FileMassIndexerCheckpointStore( checkpointFile );
+		Session session = openSession();
+		Transaction transaction = session.beginTransaction();
+		Nation italy = new Nation( "Italy", "IT" );
+		session.persist( italy );
+		for ( int i = 0; i < BOOK_NUM; i++ ) {
+			Book book = new Book();
+			book.setTitle( "Book " + i );
+			book.setFirstPublishedIn( italy );
+			session.persist( book );
+		}
+		transaction.commit();
+		session.close();
+	}
+
+	@Override
+	public void tearDown() throws Exception {
+		checkpointStore.clear();
+		super.tearDown();
+	}
+
+	public void testCheckpointsDuringIndexing() throws InterruptedException {
+		purgeBooks();
+		FullTextSession fullTextSession = Search.getFullTextSession( openSession() );
+		fullTextSession.createIndexer( Book.class )
+				.batchSizeToLoadObjects( 2 )
+				.checkpointStore( checkpointStore )
+				.checkpointInterval( 1 )
+				.startAndWait();
+		fullTextSession.close();
+		assertEquals( BOOK_NUM, countBooksInIndex() );
+		assertFalse( "checkpoint should be removed when indexing completes", checkpointFile.exists() );
+	}
+
+	public void testResumeAfterLastIndexedId() throws InterruptedException {
+		List<Serializable> ids = bookIds();
+		MassIndexerCheckpoint checkpoint = new MassIndexerCheckpoint();
+		checkpoint.setProgress(
+				Book.class,
+				Collections.<Serializable>emptyList(),
+				new Serializable[] { ids.get( 3 ) },
+				new boolean[] { false }
+		);
+		purgeBooks();
+		FullTextSession fullTextSession = Search.getFullTextSession( openSession() );
+		fullTextSession.createIndexer( Book.class )
+				.checkpointStore( checkpointStore )
+				.resumeFrom( checkpoint )
+				.startAndWait();
+		fullTextSession.close();
+		// the first 4 books are considered indexed already
+		assertEquals( BOOK_NUM - 4, countBooksInIndex() );
+		assertFalse( checkpointFile.exists() );
+	}
+
+	public void testResumeDoesNotDuplicateEntities() throws InterruptedException {
+		List<Serializable> ids = bookIds();
+		MassIndexerCheckpoint checkpoint = new MassIndexerCheckpoint();
+		checkpoint.setProgress(
+				Book.class,
+				Collections.<Serializable>emptyList(),
+				new Serializable[] { ids.get( 3 ) },
+				new boolean[] { false }
+		);
+		// the books are all in the index already, as if the checkpoint was taken before a later commit
+		FullTextSession fullTextSession = Search.getFullTextSession( openSession() );
+		fullTextSession.createIndexer( Book.class )
+				.resumeFrom( checkpoint )
+				.startAndWait();
+		fullTextSession.close();
+		assertEquals( BOOK_NUM, countBooksInIndex() );
+	}
+
+	public void testResumeSkipsCompletedTypes() throws InterruptedException {
+		MassIndexerCheckpoint checkpoint = new MassIndexerCheckpoint();
+		checkpoint.setProgress(
+				Book.class,
+				Collections.<Serializable>emptyList(),
+				new Serializable[] { null },
+				new boolean[] { true }
+		);
+		purgeBooks();
+		FullTextSession fullTextSession = Search.getFullTextSession( openSession() );
+		fullTextSession.createIndexer( Book.class )
+				.resumeFrom( checkpoint )
+				.startAndWait();
+		fullTextSession.close();
+		assertEquals( 0, countBooksInIndex() );
+	}
+
+	public void testSideDirectoryRebuildWithCheckpointsIsRejected() throws InterruptedException {
+		FullTextSession fullTextSession = Search.getFullTextSession( openSession() );
+		try {
+			fullTextSession.createIndexer( Book.class )
+					.rebuildInSideDirectory( true )
+					.checkpointStore( checkpointStore )
+					.startAndWait();
+			fail( "a resumed side directory rebuild would lose the live changes" );
+		}
+		catch (SearchException e) {
+			// expected
+		}
+		finally {
+			fullTextSession.close();
+		}
+		assertEquals( BOOK_NUM, countBooksInIndex() );
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<Serializable> bookIds() {
+		Session session = openSession();
+		Transaction transaction = session.beginTransaction();
+		List<Serializable> ids = session.createCriteria( Book.class )
+				.setProjection( Projections.id() )
+				.addOrder( Order.asc( "id" ) )
+				.list();
+		transaction.commit();
+		session.close();
+		return ids;
+	}
+
+	private void purgeBooks() {
+		FullTextSession fullTextSession = Search.getFullTextSession( openSession() );
+		Transaction transaction = fullTextSession.beginTransaction();
+		fullTextSession.purgeAll( Book.class );
+		transaction.commit();
+		fullTextSession.close();
+		assertEquals( 0, countBooksInIndex() );
+	}
+
+	private int countBooksInIndex() {
+		FullTextSession fullTextSession = Search.getFullTextSession( openSession() );
+		fullTextSession.beginTransaction();
+		int size = fullTextSession.createFullTextQuery( new MatchAllDocsQuery(), Book.class ).list().size();
+		fullTextSession.getTransaction().commit();
+		fullTextSession.close();
+		return size;
+	}
+
+	@Override
+	protected Class<?>[] getAnnotatedClasses() {
+		return new Class[] {
+				Book.class,
+				Nation.class
+		};
+	}
+
+}
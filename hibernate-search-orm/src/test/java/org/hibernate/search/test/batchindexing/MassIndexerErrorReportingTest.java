@@ -18,7 +18,7 @@ import org.junit.runner.RunWith;
 public class MassIndexerErrorReportingTest extends SearchTestCase {
 
 	@Test
-	@BMRule(targetClass = "org.hibernate.search.batchindexing.impl.IdentifierConsumerEntityProducer",
+	@BMRule(targetClass = "org.hibernate.search.batchindexing.impl.EntityIndexingWorker",
 			targetMethod = "loadList",
 			helper = "org.hibernate.search.test.util.BytemanHelper",
 			action = "throwNPE(\"Byteman created NPE\")",
@@ -0,0 +1,116 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.test.batchindexing;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.TermQuery;
+
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.hibernate.stat.Statistics;
+import org.hibernate.search.FullTextSession;
+import org.hibernate.search.Search;
+import org.hibernate.search.test.SearchTestCase;
+
+/**
+ * Verifies the MassIndexer fetches the embedded associations with each batch of entities,
+ * rather than loading them lazily for each entity.
+ *
+ * @author agent <agent@local>
+ */
+public class MassIndexerFetchPlanTest extends SearchTestCase {
+
+	private static final int BOOK_NUM = 40;
+
+	@Override
+	public void setUp() throws Exception {
+		super.setUp();
+		Session session = openSession();
+		Transaction transaction = session.beginTransaction();
+		Nation italy = new Nation( "Italy", "IT" );
+		Nation france = new Nation( "France", "FR" );
+		session.persist( italy );
+		session.persist( france );
+		for ( int i = 0; i < BOOK_NUM; i++ ) {
+			Book book = new Book();
+			book.setTitle( "Book " + i );
+			Nation nation = i % 2 == 0 ? italy : france;
+			book.setFirstPublishedIn( nation );
+			nation.getLibrariesHave().add( book );
+			session.persist( book );
+		}
+		transaction.commit();
+		session.close();
+	}
+
+	public void testEmbeddedAssociationsAreIndexed() throws InterruptedException {
+		purgeBooks();
+		Statistics statistics = getSessions().getStatistics();
+		statistics.clear();
+		FullTextSession fullTextSession = Search.getFullTextSession( openSession() );
+		fullTextSession.createIndexer( Book.class )
+				.batchSizeToLoadObjects( 10 )
+				.startAndWait();
+		fullTextSession.close();
+		assertTrue(
+				"embedded associations should not be loaded one entity at a time",
+				statistics.getPrepareStatementCount() < BOOK_NUM
+		);
+
+		assertEquals( BOOK_NUM / 2, countBooks( "firstPublishedIn.name", "italy" ) );
+		assertEquals( BOOK_NUM / 2, countBooks( "firstPublishedIn.code", "FR" ) );
+		// the books published in France, as Book 3 is
+		assertEquals( BOOK_NUM / 2, countBooks( "firstPublishedIn.librariesHave.title", "3" ) );
+	}
+
+	private void purgeBooks() {
+		FullTextSession fullTextSession = Search.getFullTextSession( openSession() );
+		Transaction transaction = fullTextSession.beginTransaction();
+		fullTextSession.purgeAll( Book.class );
+		transaction.commit();
+		fullTextSession.close();
+	}
+
+	private int countBooks(String field, String value) {
+		FullTextSession fullTextSession = Search.getFullTextSession( openSession() );
+		fullTextSession.beginTransaction();
+		int size = fullTextSession.createFullTextQuery( new TermQuery( new Term( field, value ) ), Book.class )
+				.getResultSize();
+		fullTextSession.getTransaction().commit();
+		fullTextSession.close();
+		return size;
+	}
+
+	@Override
+	protected void configure(org.hibernate.cfg.Configuration cfg) {
+		super.configure( cfg );
+		cfg.setProperty( "hibernate.generate_statistics", "true" );
+	}
+
+	@Override
+	protected Class<?>[] getAnnotatedClasses() {
+		return new Class[] {
+				Book.class,
+				Nation.class
+		};
+	}
+
+}
@@ -0,0 +1,243 @@
+/* 
+ * Hibernate, Relational Persistence for Idiomatic Java
+ * 
+ * JBoss, Home of Professional Open Source
+ * Copyright 2012 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ * See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * This copyrighted material is made available to anyone wishing to use,
+ * modify, copy, or redistribute it subject to the terms and conditions
+ * of the GNU Lesser General Public License, v. 2.1.
+ * This program is distributed in the hope that it will be useful, but WITHOUT A
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A
+ * PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * You should have received a copy of the GNU Lesser General Public License,
+ * v.2.1 along with this distribution; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston,
+ * MA  02110-1301, USA.
+ */
+package org.hibernate.search.test.batchindexing;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import org.hibernate.search.batchindexing.MassIndexerStageProgressMonitor.Stage;
+import org.hibernate.search.batchindexing.impl.LoadingThrottle;
+import org.hibernate.search.batchindexing.impl.ProducerConsumerQueue;
+import org.hibernate.search.batchindexing.impl.StageScheduler;
+import org.hibernate.search.impl.SimpleIndexingProgressMonitor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Verifies how the {@link StageScheduler} hands the batches over between the loading
+ * and the Document building stages, when it lets the workers stop, and what it reports.
+ *
+ * @author agent <agent@local>
+ */
+public class StageSchedulerTest {
+
+	@Test
+	public void testLoadedEntitiesAreHandedOverToBuilding() throws InterruptedException {
+		ProducerConsumerQueue<List<Serializable>> identifiers = newIdentifiers( 1 );
+		StageScheduler scheduler = newScheduler( identifiers, 2 );
+		assertNull( "nothing loaded yet", scheduler.pollEntitiesToBuild() );
+
+		List<Serializable> ids = scheduler.pollIdentifiers();
+		assertNotNull( ids );
+		List<Object> loaded = new ArrayList<Object>( ids );
+		scheduler.entitiesLoaded( loaded, 1000 );
+
+		assertSame( loaded, scheduler.pollEntitiesToBuild() );
+		assertNull( scheduler.pollEntities() );
+		scheduler.documentsBuilt( loaded.size(), 1000 );
+	}
+
+	@Test
+	public void testBacklogIsBounded() throws InterruptedException {
+		ProducerConsumerQueue<List<Serializable>> identifiers = newIdentifiers( 10 );
+		// one thread: Documents are built when two batches are waiting, and one more can be in flight
+		StageScheduler scheduler = newScheduler( identifiers, 1 );
+		int loadedBatches = 0;
+		List<Serializable> ids;
+		while ( ( ids = scheduler.pollIdentifiers() ) != null ) {
+			scheduler.entitiesLoaded( new ArrayList<Object>( ids ), 1000 );
+			loadedBatches++;
+		}
+		assertEquals( 3, loadedBatches );
+
+		List<?> entities = scheduler.pollEntities();
+		assertNotNull( entities );
+		scheduler.documentsBuilt( entities.size(), 1000 );
+		assertNotNull( "a slot was freed", scheduler.pollIdentifiers() );
+		scheduler.entitiesLoaded( Collections.emptyList(), 1000 );
+	}
+
+	@Test
+	public void testDoneOnlyWhenAllBatchesAreProcessed() throws InterruptedException {
+		ProducerConsumerQueue<List<Serializable>> identifiers = newIdentifiers( 1 );
+		StageScheduler scheduler = newScheduler( identifiers, 2 );
+		assertFalse( "identifiers not loaded", scheduler.isDone() );
+
+		List<Serializable> ids = scheduler.pollIdentifiers();
+		assertFalse( "loading in progress", scheduler.isDone() );
+		scheduler.entitiesLoaded( new ArrayList<Object>( ids ), 1000 );
+		assertFalse( "Documents not built", scheduler.isDone() );
+
+		List<?> entities = scheduler.pollEntities();
+		scheduler.documentsBuilt( entities.size(), 1000 );
+		assertTrue( scheduler.isDone() );
+	}
+
+	@Test
+	public void testFailedLoadingDoesNotPreventCompletion() throws InterruptedException {
+		ProducerConsumerQueue<List<Serializable>> identifiers = newIdentifiers( 4 );
+		StageScheduler scheduler = newScheduler( identifiers, 1 );
+		for ( int i = 0; i < 4; i++ ) {
+			assertNotNull( "the slots of failed batches are released", scheduler.pollIdentifiers() );
+			scheduler.entitiesLoaded( null, 1000 );
+		}
+		assertTrue( scheduler.isDone() );
+	}
+
+	@Test
+	public void testWorkersStopAfterFailures() throws InterruptedException {
+		final int batches = 100;
+		final int threads = 4;
+		ProducerConsumerQueue<List<Serializable>> identifiers = newIdentifiers( batches );
+		final StageScheduler scheduler = newScheduler( identifiers, threads );
+		final AtomicInteger built = new AtomicInteger();
+		final List<Throwable> errors = new CopyOnWriteArrayList<Throwable>();
+		ExecutorService executor = Executors.newFixedThreadPool( threads );
+		for ( int i = 0; i < threads; i++ ) {
+			executor.execute( new Runnable() {
+				public void run() {
+					try {
+						work( scheduler, built );
+					}
+					catch (Throwable e) {
+						// what EntityIndexingWorker hands to the ErrorHandler
+						errors.add( e );
+					}
+				}
+			} );
+		}
+		executor.shutdown();
+		assertTrue( "workers didn't stop", executor.awaitTermination( 30, TimeUnit.SECONDS ) );
+		assertTrue( scheduler.isDone() );
+		assertEquals( 0, errors.size() );
+		// batches of two ids, loading fails for the batches of multiples of 10
+		assertEquals( 2 * ( batches - batches / 10 ), built.get() );
+	}
+
+	@Test
+	public void testIdentifierLoadingIsReported() throws InterruptedException {
+		ProducerConsumerQueue<List<Serializable>> identifiers = newIdentifiers( 1 );
+		RecordingMonitor monitor = new RecordingMonitor();
+		LoadingThrottle throttle = new LoadingThrottle( Object.class, monitor, 0, 2, 10, 10 );
+		StageScheduler scheduler = new StageScheduler( Object.class, identifiers, monitor, 2, 1, throttle );
+		scheduler.identifiersLoaded( 2, 1000 );
+		scheduler.identifiersLoaded( 3, 1000 );
+		scheduler.workCompleted();
+
+		assertEquals( 3, monitor.throughputs.size() );
+		assertTrue( monitor.throughputs.get( Stage.IDENTIFIER_LOADING ) > 0 );
+		assertEquals( 0, monitor.throughputs.get( Stage.ENTITY_LOADING ), 0 );
+	}
+
+	/**
+	 * Same loop as {@link org.hibernate.search.batchindexing.impl.EntityIndexingWorker},
+	 * whose loading fails for some batches.
+	 */
+	private static void work(StageScheduler scheduler, AtomicInteger built) throws InterruptedException {
+		while ( true ) {
+			List<?> entities = scheduler.pollEntitiesToBuild();
+			if ( entities != null ) {
+				build( scheduler, entities, built );
+				continue;
+			}
+			List<Serializable> ids = scheduler.pollIdentifiers();
+			if ( ids != null ) {
+				List<?> loaded = null;
+				try {
+					loaded = load( ids );
+				}
+				catch (IllegalStateException e) {
+					// reported to the ErrorHandler by the worker, which goes on with the next batch
+				}
+				finally {
+					scheduler.entitiesLoaded( loaded, 1000 );
+				}
+				continue;
+			}
+			entities = scheduler.pollEntities();
+			if ( entities != null ) {
+				build( scheduler, entities, built );
+			}
+			else if ( scheduler.isDone() ) {
+				break;
+			}
+		}
+	}
+
+	private static List<?> load(List<Serializable> ids) {
+		if ( ( (Integer) ids.get( 0 ) ).intValue() % 20 == 0 ) {
+			throw new IllegalStateException( "Failed loading " + ids );
+		}
+		return new ArrayList<Object>( ids );
+	}
+
+	private static void build(StageScheduler scheduler, List<?> entities, AtomicInteger built) {
+		built.addAndGet( entities.size() );
+		scheduler.documentsBuilt( entities.size(), 1000 );
+	}
+
+	/**
+	 * @return a queue with the given number of batches of two identifiers, whose producer is done
+	 */
+	private static ProducerConsumerQueue<List<Serializable>> newIdentifiers(int batches) throws InterruptedException {
+		ProducerConsumerQueue<List<Serializable>> identifiers = new ProducerConsumerQueue<List<Serializable>>( 1 );
+		for ( int i = 0; i < batches; i++ ) {
+			List<Serializable> ids = new ArrayList<Serializable>();
+			ids.add( Integer.valueOf( 2 * i ) );
+			ids.add( Integer.valueOf( 2 * i + 1 ) );
+			identifiers.put( ids );
+		}
+		identifiers.producerStopping();
+		return identifiers;
+	}
+
+	private static final class RecordingMonitor extends SimpleIndexingProgressMonitor {
+
+		private final Map<Stage, Double> throughputs = Collections.synchronizedMap( new EnumMap<Stage, Double>( Stage.class ) );
+
+		@Override
+		public void stageThroughput(Class<?> indexedType, Stage stage, double entitiesPerSecond, double busyThreads) {
+			throughputs.put( stage, entitiesPerSecond );
+		}
+	}
+
+	private static StageScheduler newScheduler(ProducerConsumerQueue<List<Serializable>> identifiers, int threads) {
+		SimpleIndexingProgressMonitor monitor = new SimpleIndexingProgressMonitor();
+		LoadingThrottle throttle = new LoadingThrottle( Object.class, monitor, 0, threads, 10, 10 );
+		return new StageScheduler( Object.class, identifiers, monitor, threads, 1, throttle );
+	}
+}
@@ -36,10 +36,12 @@ import org.hibernate.Transaction;
 import org.hibernate.cfg.Configuration;
 import org.hibernate.search.FullTextSession;
 import org.hibernate.search.Search;
+import org.hibernate.search.Environment;
 import org.hibernate.search.SearchException;
 import org.hibernate.search.backend.LuceneWork;
 import org.hibernate.search.indexes.IndexReaderAccessor;
 import org.hibernate.search.query.dsl.QueryBuilder;
+import org.hibernate.search.stat.Statistics;
 import org.hibernate.search.test.SearchTestCase;
 import org.hibernate.search.test.util.LeakingLuceneBackend;
 import org.hibernate.testing.SkipForDialect;
@@ -116,6 +118,20 @@ public class WorkDoneOnEntitiesTest extends SearchTestCase {
 		assertEquals( 1, countWorksDoneOnPersonId( 1 ) );
 	}
 
+	public void testContainedInPropagationIsDeduplicated() throws Exception {
+		Statistics statistics = getSearchFactory().getStatistics();
+		statistics.clear();
+		Transaction transaction = session.beginTransaction();
+		( (WorkingPerson) session.load( WorkingPerson.class, 6 ) ).name = "William";
+		( (WorkingPerson) session.load( WorkingPerson.class, 3 ) ).name = "Eleanor";
+		transaction.commit();
+		checkRawIndexFields();
+		assertEquals( 1, countWorksDoneOnPersonId( 1 ) );
+		// 6 -> 3 and 3 -> 1, but 3 is only processed once
+		assertEquals( Long.valueOf( 2 ), statistics.containedInFanOut().get( WorkingPerson.class.getName() + ".children" ) );
+		assertEquals( 1, statistics.getContainedInDuplicateCount() );
+	}
+
 	public void testNoWorkShouldBeExecutedOnEmployee() throws Exception {
 		renamePerson( session, 23, "LM" );
 		checkRawIndexFields();
@@ -310,6 +326,7 @@ public class WorkDoneOnEntitiesTest extends SearchTestCase {
 	protected void configure(Configuration cfg) {
 		super.configure( cfg );
 		cfg.setProperty( "hibernate.search.default.worker.backend", LeakingLuceneBackend.class.getName() );
+		cfg.setProperty( Environment.GENERATE_STATS, "true" );
 	}
 	
 }
\ No newline at end of file
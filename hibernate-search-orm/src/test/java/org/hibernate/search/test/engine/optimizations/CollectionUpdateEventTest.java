@@ -24,9 +24,11 @@ import java.lang.annotation.ElementType;
 import org.hibernate.Transaction;
 import org.hibernate.collection.internal.PersistentBag;
 import org.hibernate.collection.internal.PersistentSet;
+import org.hibernate.search.Environment;
 import org.hibernate.search.FullTextSession;
 import org.hibernate.search.cfg.EntityMapping;
 import org.hibernate.search.cfg.SearchMapping;
+import org.hibernate.search.stat.Statistics;
 import org.hibernate.search.test.util.FullTextSessionBuilder;
 import org.junit.Test;
 
@@ -93,16 +95,27 @@ public class CollectionUpdateEventTest {
 				assertThat( consumers.wasInitialized() )
 					.as( "catalogItems should not be initialized" )
 					.isFalse();
+				Statistics statistics = fulltextSessionBuilder.getSearchFactory().getStatistics();
+				statistics.clear();
 				updateCatalogsCollection( fullTextSession, catalog );
 				if ( ( usingClassBridge || usingClassbridgeOnEmbedded ) && depth > 1 ) {
 					assertThat( catalogItems.wasInitialized() )
 						.as( "catalogItems should have been initialized" )
 						.isTrue();
+					assertThat( statistics.getExecutedCollectionUpdateCount() )
+						.as( "the update of Catalog.consumers should have been executed" )
+						.isGreaterThan( 0 );
 				}
 				else {
 					assertThat( catalogItems.wasInitialized() )
 						.as( "catalogItems should not be initialized" )
 						.isFalse();
+					assertThat( statistics.getSkippedCollectionUpdateCount() )
+						.as( "the update of Catalog.consumers should have been skipped" )
+						.isGreaterThan( 0 );
+					assertThat( statistics.getExecutedCollectionUpdateCount() )
+						.as( "no collection update should have been executed" )
+						.isEqualTo( 0 );
 				}
 			} finally {
 				fullTextSession.close();
@@ -114,6 +127,7 @@ public class CollectionUpdateEventTest {
 	
 	private FullTextSessionBuilder createSearchFactory(boolean defineClassBridge, int depth, boolean usingClassbridgeOnEmbedded) {
 		FullTextSessionBuilder builder = new FullTextSessionBuilder()
+			.setProperty( Environment.GENERATE_STATS, "true" )
 			.addAnnotatedClass( Catalog.class )
 			.addAnnotatedClass( CatalogItem.class )
 			.addAnnotatedClass( Consumer.class )
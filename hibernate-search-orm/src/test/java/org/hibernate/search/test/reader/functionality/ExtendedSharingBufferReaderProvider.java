@@ -66,6 +66,7 @@ public class ExtendedSharingBufferReaderProvider extends SharingBufferReaderProv
 	private final RAMDirectoryProvider[] directories = new RAMDirectoryProvider[ NUM_DIRECTORY_PROVIDERS ];
 	private final AtomicInteger currentDirectoryIndex = new AtomicInteger();
 	private volatile RAMDirectoryProvider currentDirectory;
+	private boolean notifyingAllIndexChanges = false;
 	
 	public ExtendedSharingBufferReaderProvider() {
 		for ( int i = 0; i < NUM_DIRECTORY_PROVIDERS; i++ ) {
@@ -134,7 +135,15 @@ public class ExtendedSharingBufferReaderProvider extends SharingBufferReaderProv
 
 	@Override
 	public void initialize(DirectoryBasedIndexManager indexManager, Properties props) {
-		super.initialize( new MockDirectoryBasedIndexManager(), null );
+		super.initialize( new MockDirectoryBasedIndexManager(), props );
+	}
+
+	/**
+	 * Emulates a backend notifying each change to the index.
+	 * Needs to be set before initialization.
+	 */
+	public void setNotifyingAllIndexChanges(boolean notifyingAllIndexChanges) {
+		this.notifyingAllIndexChanges = notifyingAllIndexChanges;
 	}
 
 	public boolean areAllOldReferencesGone() {
@@ -158,6 +167,11 @@ public class ExtendedSharingBufferReaderProvider extends SharingBufferReaderProv
 		public DirectoryProvider getDirectoryProvider() {
 			return provider;
 		}
+
+		@Override
+		public boolean isNotifyingAllIndexChanges() {
+			return notifyingAllIndexChanges;
+		}
 		
 	}
 
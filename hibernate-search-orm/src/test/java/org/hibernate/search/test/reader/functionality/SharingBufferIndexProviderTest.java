@@ -24,8 +24,12 @@
 package org.hibernate.search.test.reader.functionality;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Properties;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -76,6 +80,74 @@ public class SharingBufferIndexProviderTest {
 		assertEquals( SEARCHES_NUM/10, countDoneIndexmods.get() );
 	}
 
+	@Test
+	public void testOpeningDoesNotCheckIndexWithRefreshPeriod() {
+		readerProvider.initialize( null, refreshPeriod( 600000 ) );
+		IndexReader first = readerProvider.openIndexReader();
+		readerProvider.closeIndexReader( first );
+		readerProvider.currentDPWasWritten();
+		IndexReader second = readerProvider.openIndexReader();
+		readerProvider.closeIndexReader( second );
+		assertSame( "the index should only be checked by the refresher", first, second );
+	}
+
+	@Test
+	public void testBackgroundRefresh() throws InterruptedException {
+		readerProvider.initialize( null, refreshPeriod( 10 ) );
+		IndexReader first = readerProvider.openIndexReader();
+		readerProvider.closeIndexReader( first );
+		readerProvider.currentDPWasWritten();
+		IndexReader refreshed = first;
+		long deadline = System.currentTimeMillis() + 5000;
+		while ( refreshed == first && System.currentTimeMillis() < deadline ) {
+			Thread.sleep( 10 );
+			refreshed = readerProvider.openIndexReader();
+			readerProvider.closeIndexReader( refreshed );
+		}
+		assertNotSame( "the IndexReader should be refreshed in background", first, refreshed );
+		assertTrue( "the replaced IndexReader should be closed", ( (MockIndexReader) first ).isClosed() );
+	}
+
+	@Test
+	public void testRefreshOnChangeNotification() {
+		readerProvider.setNotifyingAllIndexChanges( true );
+		readerProvider.initialize( null, null );
+		IndexReader first = readerProvider.openIndexReader();
+		readerProvider.closeIndexReader( first );
+		readerProvider.currentDPWasWritten();
+		IndexReader beforeNotification = readerProvider.openIndexReader();
+		readerProvider.closeIndexReader( beforeNotification );
+		assertSame( "the index should not be checked when changes are notified", first, beforeNotification );
+		readerProvider.indexChanged();
+		IndexReader afterNotification = readerProvider.openIndexReader();
+		readerProvider.closeIndexReader( afterNotification );
+		assertNotSame( "the IndexReader should be refreshed by the notification", first, afterNotification );
+		assertTrue( "the replaced IndexReader should be closed", ( (MockIndexReader) first ).isClosed() );
+	}
+
+	@Test
+	public void testChangeNotificationRefreshesInBackground() throws InterruptedException {
+		readerProvider.setNotifyingAllIndexChanges( true );
+		readerProvider.initialize( null, null );
+		IndexReader first = readerProvider.openIndexReader();
+		readerProvider.closeIndexReader( first );
+		readerProvider.currentDPWasWritten();
+		readerProvider.indexChanged();
+		// no IndexReader is opened: only the background refresh can replace the current one
+		long deadline = System.currentTimeMillis() + 5000;
+		while ( !( (MockIndexReader) first ).isClosed() && System.currentTimeMillis() < deadline ) {
+			Thread.sleep( 10 );
+		}
+		assertTrue( "the IndexReader should be refreshed in background", ( (MockIndexReader) first ).isClosed() );
+		assertFalse( readerProvider.isReaderCurrent( (MockIndexReader) first ) );
+	}
+
+	private static Properties refreshPeriod(int millis) {
+		Properties props = new Properties();
+		props.setProperty( "refresh_period", String.valueOf( millis ) );
+		return props;
+	}
+
 	private Runnable makeTask(int i) {
 		if ( i % 100 == 0 ) {
 			return directorySwitchTask;